@@ -0,0 +1,516 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+/** Immutable BitSet for large domains, that adapts its representation to its elements. The
+ * elements are stored as one of:
+ * <ul>
+ * <li>{@link Representation#SPARSE}: a sorted array of the positions of the elements,</li>
+ * <li>{@link Representation#DENSE}: a bitmap with one bit for each element of the domain,</li>
+ * <li>{@link Representation#RUNS}: intervals of consecutive elements.</li>
+ * </ul>
+ * Each set uses the representation that needs the least memory. This is chosen again for the result
+ * of each operation, so that the representation follows the cardinality of the set. All operations
+ * are implemented for each pair of representations.
+ *
+ * @param <T>
+ *          The type of the domain. All elements in the domain must be of type T or of any subtype
+ *          of T.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class AdaptiveDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
+  private static final long serialVersionUID = 7709580062413416815L;
+
+  /** The representations of an {@link AdaptiveDomainBitSet}. */
+  public static enum Representation {
+    /** Sorted array of positions. */
+    SPARSE,
+    /** Bitmap of all positions. */
+    DENSE,
+    /** Intervals of consecutive positions. */
+    RUNS;
+  }
+
+  private static final class Itr<T> implements Iterator<T> {
+    @NonNull
+    private final Domain<T>    dom;
+    @NonNull
+    private final Container    container;
+    private int                next;
+
+    public Itr(@NonNull final Domain<T> d, final Container container) {
+      this.dom = d;
+      this.container = container;
+      this.next = container.first();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next >= 0;
+    }
+
+    @Override
+    public T next() {
+      if (this.next < 0)
+        throw new NoSuchElementException();
+      final T result = this.dom.get(this.next);
+      this.next = this.container.nextSetBit(this.next + 1);
+      return result;
+    }
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return An AdaptiveDomainBitSet containing all elements of the given domain. */
+  @NonNull
+  public static <T> AdaptiveDomainBitSet<T> allOf(final List<T> domain) {
+    final Domain<T> d = DefaultDomain.of(requireNonNull(domain, "domain"));
+    return of(d, Container.range(0, d.size()));
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return An AdaptiveDomainBitSet containing all elements of the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> AdaptiveDomainBitSet<T> allOf(final T... domain) {
+    return allOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return Empty AdaptiveDomainBitSet based on the given domain. */
+  @NonNull
+  public static <T> AdaptiveDomainBitSet<T> noneOf(final List<T> domain) {
+    return of(DefaultDomain.of(requireNonNull(domain, "domain")), ArrayContainer.EMPTY);
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return Empty AdaptiveDomainBitSet based on the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> AdaptiveDomainBitSet<T> noneOf(final T... domain) {
+    return noneOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, containing all given elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The elements.
+   * @throws IllegalArgumentException
+   *           if an element is not in the domain.
+   * @return AdaptiveDomainBitSet based on the given domain and set. */
+  @NonNull
+  public static <T> AdaptiveDomainBitSet<T> of(final List<T> domain, final Collection<T> set) {
+    return noneOf(domain).union(requireNonNull(set, "set"));
+  }
+
+  /** Creates a set with the given domain, containing all given elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The elements.
+   * @throws IllegalArgumentException
+   *           if an element is not in the domain.
+   * @return AdaptiveDomainBitSet based on the given domain and set. */
+  @SafeVarargs
+  @NonNull
+  public static <T> AdaptiveDomainBitSet<T> of(@NonNull final List<T> domain,
+      @NonNull final T... set) {
+    return of(domain, asList(set));
+  }
+
+  /** Creates a set with the given domain, containing elements according to the given bit set.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The positions of the elements.
+   * @throws IllegalArgumentException
+   *           if the bit set contains positions that are not in the domain.
+   * @return AdaptiveDomainBitSet based on the given domain and bit set. */
+  @NonNull
+  public static <T> AdaptiveDomainBitSet<T> of(final List<T> domain, final BitSet set) {
+    return noneOf(domain).union(requireNonNull(set, "set"));
+  }
+
+  @NonNull
+  static <T> AdaptiveDomainBitSet<T> of(final Domain<T> domain, final Container container) {
+    return DomainBitSetPool.internIfEnabled(new AdaptiveDomainBitSet<>(domain, container
+        .optimize(domain.size())));
+  }
+
+  private final Domain<T>    domain;
+
+  private final Container    container;
+
+  @SuppressFBWarnings(value = "JCIP_FIELD_ISNT_FINAL_IN_IMMUTABLE_CLASS", justification = "It's lazy.")
+  private transient int      hash = 0; // defaults to 0, later it's set to a hash code.
+
+  private AdaptiveDomainBitSet(final Domain<T> domain, final Container container) {
+    this.domain = domain;
+    this.container = container;
+    if (container.last() >= domain.size())
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+  }
+
+  /** The word at the given index, without creating the other words. */
+  long word(final int index) {
+    return this.container.word(index);
+  }
+
+  /** The container of a given Iterable. */
+  @SuppressFBWarnings("unchecked")
+  private Container toContainer(final Iterable<T> itr) throws IllegalArgumentException {
+    requireNonNull(itr, "itr");
+    if (itr instanceof AdaptiveDomainBitSet && this.ofEqualDomain((DomainBitSet<T>) itr))
+      return ((AdaptiveDomainBitSet<T>) itr).container;
+    int[] indices = new int[itr instanceof Collection ? ((Collection<T>) itr).size() : 16];
+    int n = 0;
+    for (final T t : itr) {
+      final int index = this.domain.indexOf(t);
+      if (index < 0)
+        throw new IllegalArgumentException(String.format(
+            "The object '%s' is not element of the domain.", t));
+      if (n == indices.length)
+        indices = Arrays.copyOf(indices, 2 * n + 1);
+      indices[n++] = index;
+    }
+    return ArrayContainer.of(Arrays.copyOf(indices, n));
+  }
+
+  private Container toContainer(final BitSet set) throws IllegalArgumentException {
+    if (requireNonNull(set, "set").length() > this.domain.size())
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+    return new BitmapContainer(set.toLongArray());
+  }
+
+  private Container toContainer(final long mask) throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.toContainer(BitSet.valueOf(new long[] { mask }));
+  }
+
+  /** The representation that is currently used for this set.
+   *
+   * @return The representation of the elements. */
+  @NonNull
+  public Representation getRepresentation() {
+    if (this.container instanceof ArrayContainer)
+      return Representation.SPARSE;
+    if (this.container instanceof BitmapContainer)
+      return Representation.DENSE;
+    return Representation.RUNS;
+  }
+
+  @Override
+  @SuppressFBWarnings("CN_IDIOM_NO_SUPER_CALL")
+  public AdaptiveDomainBitSet<T> clone() {
+    return this;
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> complement() {
+    return of(this.domain, this.container.complement(this.domain.size()));
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    final int index = this.domain.indexOf(o);
+    return index >= 0 && this.container.contains(index);
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this)
+      return true;
+    if (other instanceof DomainBitSet) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<T> domBitSet = (DomainBitSet<T>) other;
+      if (this.size() != domBitSet.size() || !this.ofEqualDomain(domBitSet))
+        return false;
+      if (other instanceof AdaptiveDomainBitSet)
+        return this.container.sameIndices(((AdaptiveDomainBitSet<?>) other).container);
+      if (BitSetUtilities.isWordComparable(other))
+        return BitSetUtilities.equalWords(this, domBitSet);
+      return this.containsAll(domBitSet.toSet());
+    }
+    return false;
+  }
+
+  @Override
+  public boolean getBit(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex >= this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return this.container.contains(bitIndex);
+  }
+
+  @Override
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  @Override
+  public int hashCode() {
+    if (this.hash == 0)
+      this.hash = this.domain.hashCode() ^ this.container.wordsHashCode();
+    return this.hash;
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> intersect(final BigInteger mask) {
+    return this.intersect(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> intersect(final BitSet set) {
+    return of(this.domain, this.container.and(this.toContainer(set)));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> intersect(final Iterable<T> set) {
+    return of(this.domain, this.container.and(this.toContainer(set)));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> intersect(final long mask) throws MoreThan64ElementsException {
+    return of(this.domain, this.container.and(this.toContainer(mask)));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public AdaptiveDomainBitSet<T> intersectVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.intersect(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.container.isEmpty();
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new Itr<>(this.domain, this.container);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> minus(final BigInteger mask) {
+    return this.minus(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> minus(final BitSet set) {
+    return of(this.domain, this.container.andNot(this.toContainer(set)));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> minus(final Iterable<T> set) {
+    return of(this.domain, this.container.andNot(this.toContainer(set)));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> minus(final long mask) throws MoreThan64ElementsException {
+    return of(this.domain, this.container.andNot(this.toContainer(mask)));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public AdaptiveDomainBitSet<T> minusVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.minus(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    return this.container.nextSetBit(from);
+  }
+
+  @Override
+  public int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return this.container.rank(bitIndex);
+  }
+
+  @Override
+  public int select(final int n) throws IndexOutOfBoundsException {
+    return this.container.select(n);
+  }
+
+  @Override
+  public int size() {
+    return this.container.cardinality();
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return Spliterators.spliterator(this.iterator(), this.size(), Spliterator.SIZED
+        | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+  }
+
+  @Override
+  public BigInteger toBigInteger() {
+    return BitSetUtilities.asBigInteger(this.toBitSet());
+  }
+
+  @Override
+  public BitSet toBitSet() {
+    return BitSet.valueOf(this.container.toWords(Container.words(this.container.last() + 1)));
+  }
+
+  @Override
+  public long toLong() throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.container.isEmpty() ? 0L : this.container.toWords(1)[0];
+  }
+
+  @Override
+  public long[] toLongArray() {
+    return this.container.toWords(Container.words(this.domain.size()));
+  }
+
+  @Override
+  public Set<T> toSet() {
+    final Set<T> result = new LinkedHashSet<>(this.size());
+    this.forEach(result::add);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    final Iterator<T> it = this.iterator();
+    if (!it.hasNext())
+      return "[]";
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (;;) {
+      sb.append(it.next());
+      if (!it.hasNext())
+        return sb.append(']').toString();
+      sb.append(',').append(' ');
+    }
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> union(final BigInteger mask) {
+    return this.union(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> union(final BitSet set) {
+    return of(this.domain, this.container.or(this.toContainer(set)));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> union(final Iterable<T> set) {
+    return of(this.domain, this.container.or(this.toContainer(set)));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> union(final long mask) throws MoreThan64ElementsException {
+    return of(this.domain, this.container.or(this.toContainer(mask)));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public AdaptiveDomainBitSet<T> unionVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.union(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> xor(final DomainBitSet<T> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    if (set instanceof AdaptiveDomainBitSet)
+      return of(this.domain, this.container.xor(((AdaptiveDomainBitSet<?>) set).container));
+    return of(this.domain, this.container.xor(new BitmapContainer(set.toLongArray())));
+  }
+
+  @Override
+  public Stream<Pair<Object, Integer, T>> zipWithPosition() {
+    return this.stream().map(e -> Pair.of(this.domain.indexOf(e), e));
+  }
+
+  /** This proxy class is used to serialize AdaptiveDomainBitSet instances. */
+  private static class SerializationProxy<T> implements java.io.Serializable {
+    private static final long serialVersionUID = -2379426218826573512L;
+
+    private final Domain<T>   domain;
+    private final Container   container;
+
+    public SerializationProxy(@NonNull final Domain<T> domain, @NonNull final Container container) {
+      this.domain = domain;
+      this.container = container;
+    }
+
+    private Object readResolve() {
+      return of(this.domain, this.container);
+    }
+  }
+
+  private Object writeReplace() {
+    return new SerializationProxy<>(this.domain, this.container);
+  }
+
+  @SuppressFBWarnings({ "static-method", "unused" })
+  private void readObject(final java.io.ObjectInputStream stream)
+      throws java.io.InvalidObjectException {
+    throw new java.io.InvalidObjectException("Proxy required");
+  }
+}
@@ -0,0 +1,236 @@
+package ch.claude_martin.enumbitset;
+
+import java.util.Arrays;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** A {@link Container} of a sorted array of distinct indices. This is used for sparse sets.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+final class ArrayContainer extends Container {
+  private static final long    serialVersionUID = -2171573722708117021L;
+
+  static final ArrayContainer EMPTY            = new ArrayContainer(new int[0]);
+
+  /** Creates a container of the given indices, which can be unsorted and contain duplicates. */
+  static ArrayContainer of(final int[] indices) {
+    final int[] sorted = indices.clone();
+    Arrays.sort(sorted);
+    int n = 0;
+    for (int i = 0; i < sorted.length; i++)
+      if (n == 0 || sorted[n - 1] != sorted[i])
+        sorted[n++] = sorted[i];
+    return new ArrayContainer(n == sorted.length ? sorted : Arrays.copyOf(sorted, n));
+  }
+
+  /** Sorted, distinct indices. Must not be modified. */
+  final int[] values;
+
+  ArrayContainer(final int[] values) {
+    this.values = values;
+  }
+
+  @Override
+  int cardinality() {
+    return this.values.length;
+  }
+
+  @Override
+  boolean contains(final int index) {
+    return Arrays.binarySearch(this.values, index) >= 0;
+  }
+
+  @Override
+  int nextSetBit(final int from) {
+    final int i = this.rank(from);
+    return i < this.values.length ? this.values[i] : -1;
+  }
+
+  @Override
+  int last() {
+    return this.values.length == 0 ? -1 : this.values[this.values.length - 1];
+  }
+
+  @Override
+  int rank(final int index) {
+    final int i = Arrays.binarySearch(this.values, index);
+    return i >= 0 ? i : -i - 1;
+  }
+
+  @Override
+  int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0 || n >= this.values.length)
+      throw new IndexOutOfBoundsException();
+    return this.values[n];
+  }
+
+  @Override
+  int numberOfRuns() {
+    int runs = 0;
+    for (int i = 0; i < this.values.length; i++)
+      if (i == 0 || this.values[i - 1] + 1 != this.values[i])
+        runs++;
+    return runs;
+  }
+
+  @Override
+  long[] toWords(final int length) {
+    final long[] words = new long[length];
+    for (final int i : this.values)
+      words[i >>> 6] |= 1L << i;
+    return words;
+  }
+
+  @Override
+  ArrayContainer toArrayContainer() {
+    return this;
+  }
+
+  @Override
+  BitmapContainer toBitmapContainer(final int universe) {
+    final int length = Math.max(words(universe), words(this.last() + 1));
+    return new BitmapContainer(this.toWords(length), this.values.length);
+  }
+
+  @Override
+  RunContainer toRunContainer() {
+    final RunContainer.Builder builder = new RunContainer.Builder(this.numberOfRuns());
+    for (final int i : this.values)
+      builder.add(i, i + 1);
+    return builder.build();
+  }
+
+  /** Keeps the values that are (or are not) in the other container. */
+  private ArrayContainer filter(final Container other, final boolean keep) {
+    final int[] result = new int[this.values.length];
+    int n = 0;
+    for (final int i : this.values)
+      if (other.contains(i) == keep)
+        result[n++] = i;
+    return n == this.values.length ? this : new ArrayContainer(Arrays.copyOf(result, n));
+  }
+
+  @Override
+  Container and(final Container other) {
+    if (other instanceof ArrayContainer) {
+      final int[] a = this.values;
+      final int[] b = ((ArrayContainer) other).values;
+      final int[] result = new int[Math.min(a.length, b.length)];
+      int i = 0, j = 0, n = 0;
+      while (i < a.length && j < b.length)
+        if (a[i] < b[j])
+          i++;
+        else if (a[i] > b[j])
+          j++;
+        else {
+          result[n++] = a[i];
+          i++;
+          j++;
+        }
+      return new ArrayContainer(Arrays.copyOf(result, n));
+    }
+    return this.filter(other, true);
+  }
+
+  @Override
+  Container or(final Container other) {
+    if (other instanceof ArrayContainer) {
+      final int[] a = this.values;
+      final int[] b = ((ArrayContainer) other).values;
+      final int[] result = new int[a.length + b.length];
+      int i = 0, j = 0, n = 0;
+      while (i < a.length && j < b.length)
+        if (a[i] < b[j])
+          result[n++] = a[i++];
+        else if (a[i] > b[j])
+          result[n++] = b[j++];
+        else {
+          result[n++] = a[i];
+          i++;
+          j++;
+        }
+      while (i < a.length)
+        result[n++] = a[i++];
+      while (j < b.length)
+        result[n++] = b[j++];
+      return new ArrayContainer(Arrays.copyOf(result, n));
+    }
+    return other.or(this);
+  }
+
+  @Override
+  Container andNot(final Container other) {
+    if (other instanceof ArrayContainer) {
+      final int[] a = this.values;
+      final int[] b = ((ArrayContainer) other).values;
+      final int[] result = new int[a.length];
+      int i = 0, j = 0, n = 0;
+      while (i < a.length)
+        if (j >= b.length || a[i] < b[j])
+          result[n++] = a[i++];
+        else if (a[i] > b[j])
+          j++;
+        else {
+          i++;
+          j++;
+        }
+      return new ArrayContainer(Arrays.copyOf(result, n));
+    }
+    return this.filter(other, false);
+  }
+
+  @Override
+  Container xor(final Container other) {
+    if (other instanceof ArrayContainer) {
+      final int[] a = this.values;
+      final int[] b = ((ArrayContainer) other).values;
+      final int[] result = new int[a.length + b.length];
+      int i = 0, j = 0, n = 0;
+      while (i < a.length && j < b.length)
+        if (a[i] < b[j])
+          result[n++] = a[i++];
+        else if (a[i] > b[j])
+          result[n++] = b[j++];
+        else {
+          i++;
+          j++;
+        }
+      while (i < a.length)
+        result[n++] = a[i++];
+      while (j < b.length)
+        result[n++] = b[j++];
+      return new ArrayContainer(Arrays.copyOf(result, n));
+    }
+    return other.xor(this);
+  }
+
+  @Override
+  Container complement(final int universe) {
+    final RunContainer.Builder builder = new RunContainer.Builder(this.values.length + 1);
+    int start = 0;
+    for (final int i : this.values) {
+      builder.add(start, i);
+      start = i + 1;
+    }
+    builder.add(start, universe);
+    return builder.build();
+  }
+
+  @Override
+  long wordsXor(final int offset) {
+    long h = 0;
+    for (int i = 0; i < this.values.length;) {
+      final int w = this.values[i] >>> 6;
+      long word = 0L;
+      do
+        word |= 1L << this.values[i++];
+      while (i < this.values.length && this.values[i] >>> 6 == w);
+      h ^= word * (offset + w + 1);
+    }
+    return h;
+  }
+}
@@ -4,6 +4,7 @@ import static java.util.Objects.requireNonNull;
 
 import java.lang.reflect.Modifier;
 import java.math.BigInteger;
+import java.nio.LongBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
@@ -18,6 +19,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
+import java.util.function.IntToLongFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
@@ -36,6 +38,161 @@ import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
 @DefaultAnnotationForParameters({ NonNull.class })
 public final class BitSetUtilities {
 
+  /** Reads the words of a set without copying them, if the implementation allows it. The function
+   * returns 0 for indices after the last word. */
+  private static IntToLongFunction wordReader(final DomainBitSet<?> set) {
+    if (set.getDomain().size() <= 64) {
+      final long word = set.toLong();
+      return i -> i == 0 ? word : 0L;
+    }
+    if (set instanceof MediumDomainBitSet)
+      return ((MediumDomainBitSet<?>) set)::word;
+    if (set instanceof AdaptiveDomainBitSet)
+      return ((AdaptiveDomainBitSet<?>) set)::word;
+    if (set instanceof CompressedDomainBitSet)
+      return ((CompressedDomainBitSet<?>) set)::word;
+    if (set instanceof PersistentDomainBitSet)
+      return ((PersistentDomainBitSet<?>) set)::word;
+    if (set instanceof MappedDomainBitSet)
+      return ((MappedDomainBitSet<?>) set)::word;
+    if (set instanceof OffHeapDomainBitSet)
+      return ((OffHeapDomainBitSet<?>) set)::word;
+    if (set instanceof MultiEnumBitSet)
+      return ((MultiEnumBitSet) set)::word;
+    final long[] words = set instanceof CopyOnWriteEnumBitSet ? ((CopyOnWriteEnumBitSet<?>) set)
+        .snapshot() : set.toLongArray();
+    return i -> i < words.length ? words[i] : 0L;
+  }
+
+  /** Accumulates the words of many sets of one domain. This is used by
+   * {@link #unionAll(Collection)}, {@link #intersectAll(Collection)}, {@link #xorAll(Collection)}
+   * and {@link #countAtLeast(Collection, int)}, and can be used by parallel streams. */
+  private static final class WordAccumulator<T> {
+    static final int OR       = 0;
+    static final int AND      = 1;
+    static final int XOR      = 2;
+    static final int AT_LEAST = 3;
+
+    private final int       op;
+    /** levels[j][i]: bits that were set in at least j+1 sets. Only AT_LEAST uses more than one. */
+    private long[][]        levels;
+    private DomainBitSet<T> template;
+    /** The intersection is empty, so the remaining sets can be ignored. */
+    private boolean         empty = false;
+
+    WordAccumulator(final int op, final int k) {
+      if (k < 1)
+        throw new IllegalArgumentException("k must be positive.");
+      this.op = op;
+      this.levels = new long[k][];
+    }
+
+    void add(final DomainBitSet<T> set) {
+      requireNonNull(set, "set");
+      if (this.template == null) {
+        this.template = set;
+        this.levels[0] = set.toLongArray();
+        for (int j = 1; j < this.levels.length; j++)
+          this.levels[j] = new long[this.levels[0].length];
+        this.empty = this.op == AND && set.isEmpty();
+        return;
+      }
+      if (!this.template.ofEqualDomain(set))
+        throw new IllegalArgumentException("All sets must be of the same domain.");
+      if (this.empty)
+        return;
+      this.add(wordReader(set));
+    }
+
+    private void add(final IntToLongFunction words) {
+      final long[] acc = this.levels[0];
+      switch (this.op) {
+        case OR:
+          for (int i = 0; i < acc.length; i++)
+            acc[i] |= words.applyAsLong(i);
+          break;
+        case AND:
+          long any = 0L;
+          for (int i = 0; i < acc.length; i++)
+            any |= acc[i] &= words.applyAsLong(i);
+          this.empty = any == 0L;
+          break;
+        case XOR:
+          for (int i = 0; i < acc.length; i++)
+            acc[i] ^= words.applyAsLong(i);
+          break;
+        case AT_LEAST:
+          final long[][] l = this.levels;
+          for (int i = 0; i < acc.length; i++) {
+            final long x = words.applyAsLong(i);
+            for (int j = l.length - 1; j > 0; j--)
+              l[j][i] |= l[j - 1][i] & x;
+            acc[i] |= x;
+          }
+          break;
+        default:
+          throw new AssertionError();
+      }
+    }
+
+    void addAll(final WordAccumulator<T> other) {
+      if (other.template == null)
+        return;
+      if (this.template == null) {
+        this.template = other.template;
+        this.levels = other.levels;
+        this.empty = other.empty;
+        return;
+      }
+      if (!this.template.ofEqualDomain(other.template))
+        throw new IllegalArgumentException("All sets must be of the same domain.");
+      if (this.empty)
+        return;
+      if (other.empty) {
+        this.levels = other.levels;
+        this.empty = true;
+      } else if (this.op != AT_LEAST) {
+        final long[] words = other.levels[0];
+        this.add(i -> words[i]);
+      } else {
+        // at least j+1 in both: at least j+1 in one of them, or p+1 in this and j-p in the other.
+        final long[][] a = this.levels, b = other.levels;
+        for (int i = 0; i < a[0].length; i++)
+          for (int j = a.length - 1; j >= 0; j--) {
+            long c = a[j][i] | b[j][i];
+            for (int p = 0; p < j; p++)
+              c |= a[p][i] & b[j - 1 - p][i];
+            a[j][i] = c;
+          }
+      }
+    }
+
+    Optional<DomainBitSet<T>> result() {
+      if (this.template == null)
+        return Optional.empty();
+      return Optional.of(withWords(this.template.getDomain(), this.levels[this.levels.length - 1]));
+    }
+
+    static <T> Optional<DomainBitSet<T>> reduce(final Collection<? extends DomainBitSet<T>> sets,
+        final int op, final int k) {
+      requireNonNull(sets, "sets");
+      final WordAccumulator<T> acc = new WordAccumulator<>(op, k);
+      for (final DomainBitSet<T> set : sets) {
+        acc.add(set);
+        if (acc.empty)
+          break;
+      }
+      return acc.result();
+    }
+
+    static <T> Optional<DomainBitSet<T>> reduce(final Stream<? extends DomainBitSet<T>> sets,
+        final int op, final int k) {
+      requireNonNull(sets, "sets");
+      return sets.collect(() -> new WordAccumulator<T>(op, k), WordAccumulator::add,
+          WordAccumulator::addAll).result();
+    }
+  }
+
   /** Creates a BigInteger of a given bit set. The value is a positive value with the same "value" as
    * the bit set.
    * 
@@ -185,6 +342,115 @@ public final class BitSetUtilities {
     return (Set) set1.cross(set2);
   }
 
+  /** Returns the set of all elements that are contained in at least <code>k</code> of the given
+   * sets. All sets are processed in a single pass, using <code>k</code> words per word of the
+   * domain.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @param sets
+   *          Sets of the same domain.
+   * @param k
+   *          The minimal number of sets that contain an element.
+   * @throws IllegalArgumentException
+   *           if the sets are not all of the same domain or <code>k</code> is not positive.
+   * @see #unionAll(Collection)
+   * @see #intersectAll(Collection)
+   * @return Set of the elements in at least <code>k</code> sets, or an empty Optional if there are
+   *         no sets. */
+  @CheckReturnValue
+  @NonNull
+  public static <T> Optional<DomainBitSet<T>> countAtLeast(
+      final Collection<? extends DomainBitSet<T>> sets, final int k) {
+    return WordAccumulator.reduce(sets, WordAccumulator.AT_LEAST, k);
+  }
+
+  /** Returns the set of all elements that are contained in at least <code>k</code> of the given
+   * sets. The stream can be parallel.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @param sets
+   *          Sets of the same domain.
+   * @param k
+   *          The minimal number of sets that contain an element.
+   * @throws IllegalArgumentException
+   *           if the sets are not all of the same domain or <code>k</code> is not positive.
+   * @see #countAtLeast(Collection, int)
+   * @return Set of the elements in at least <code>k</code> sets, or an empty Optional if there are
+   *         no sets. */
+  @CheckReturnValue
+  @NonNull
+  public static <T> Optional<DomainBitSet<T>> countAtLeast(
+      final Stream<? extends DomainBitSet<T>> sets, final int k) {
+    return WordAccumulator.reduce(sets, WordAccumulator.AT_LEAST, k);
+  }
+
+  /** Compares the elements of two sets of equal domains word by word.
+   * 
+   * @see DomainBitSet#toLongArray() */
+  static boolean equalWords(final DomainBitSet<?> set1, final DomainBitSet<?> set2) {
+    if (set1.getDomain().size() <= 64)
+      return set1.toLong() == set2.toLong();
+    return Arrays.equals(set1.toLongArray(), set2.toLongArray());
+  }
+
+  /** Checks if the given object is one of the implementations of {@link DomainBitSet} that can
+   * efficiently be compared by {@link #equalWords(DomainBitSet, DomainBitSet)}. */
+  static boolean isWordComparable(final Object set) {
+    return set instanceof SmallDomainBitSet || set instanceof MediumDomainBitSet
+        || set instanceof EnumBitSet || set instanceof GeneralDomainBitSet
+        || set instanceof AdaptiveDomainBitSet || set instanceof CompressedDomainBitSet
+        || set instanceof OffHeapDomainBitSet || set instanceof MappedDomainBitSet
+        || set instanceof PersistentDomainBitSet || set instanceof CopyOnWriteEnumBitSet
+        || set instanceof MultiEnumBitSet;
+  }
+
+  /** Canonical hash code of a {@link DomainBitSet}. All implementations return this value in
+   * {@link DomainBitSet#hashCode()}.
+   * <p>
+   * This is the hash code of the domain, xored with the {@link #hashCode(long[]) hash code of the
+   * words}.
+   * 
+   * @param set
+   *          A set.
+   * @return <code>set.getDomain().hashCode() ^ hashCode(set.toLongArray())</code> */
+  public static int hashCode(final DomainBitSet<?> set) {
+    return set.getDomain().hashCode() ^ hashCode(set.toLongArray());
+  }
+
+  /** Hash code of the words of a bit set. This is the same as the hash code of a {@link BitSet}
+   * with the same bits. Trailing words that are 0 do not change the hash code.
+   * 
+   * @param words
+   *          Words of 64 bits, as returned by {@link DomainBitSet#toLongArray()}.
+   * @return <code>BitSet.valueOf(words).hashCode()</code> */
+  public static int hashCode(final long[] words) {
+    long h = 1234;
+    for (int i = words.length; --i >= 0;)
+      h ^= words[i] * (i + 1);
+    return (int) (h >> 32 ^ h);
+  }
+
+  /** Hash code of the words of a bit set in a buffer, from index 0 to the limit. This is the same
+   * as {@link #hashCode(long[])} of the same words. The position of the buffer is not used.
+   * 
+   * @param words
+   *          Words of 64 bits.
+   * @return <code>BitSet.valueOf(words).hashCode()</code> */
+  public static int hashCode(final LongBuffer words) {
+    long h = 1234;
+    for (int i = words.limit(); --i >= 0;)
+      h ^= words.get(i) * (i + 1);
+    return (int) (h >> 32 ^ h);
+  }
+
+  /** Hash code of a single word. Same as <code>hashCode(new long[] { word })</code>. */
+  static int hashCode(final long word) {
+    final long h = 1234 ^ word;
+    return (int) (h >> 32 ^ h);
+  }
+
   /** Returns the intersection of two sets.
    * 
    * @param <T>
@@ -203,6 +469,42 @@ public final class BitSetUtilities {
     return set1.intersect(set2);
   }
 
+  /** Returns the intersection of all given sets. The words of all sets are combined in a single
+   * pass, without creating intermediate sets. The remaining sets are not read as soon as the
+   * intersection is empty.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @param sets
+   *          Sets of the same domain.
+   * @throws IllegalArgumentException
+   *           if the sets are not all of the same domain.
+   * @see #intersect(DomainBitSet, DomainBitSet)
+   * @return The intersection, or an empty Optional if there are no sets. */
+  @CheckReturnValue
+  @NonNull
+  public static <T> Optional<DomainBitSet<T>> intersectAll(
+      final Collection<? extends DomainBitSet<T>> sets) {
+    return WordAccumulator.reduce(sets, WordAccumulator.AND, 1);
+  }
+
+  /** Returns the intersection of all given sets. The stream can be parallel.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @param sets
+   *          Sets of the same domain.
+   * @throws IllegalArgumentException
+   *           if the sets are not all of the same domain.
+   * @see #intersectAll(Collection)
+   * @return The intersection, or an empty Optional if there are no sets. */
+  @CheckReturnValue
+  @NonNull
+  public static <T> Optional<DomainBitSet<T>> intersectAll(
+      final Stream<? extends DomainBitSet<T>> sets) {
+    return WordAccumulator.reduce(sets, WordAccumulator.AND, 1);
+  }
+
   private static byte[] longToBytes(final long value) {
     long l = value;
     final byte[] bytes = new byte[8];
@@ -345,6 +647,110 @@ public final class BitSetUtilities {
     return set1.union(set2);
   }
 
+  /** Returns the union of all given sets. The words of all sets are combined in a single pass,
+   * without creating intermediate sets.
+   * <p>
+   * For large collections <code>unionAll(sets.parallelStream())</code> can be used.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @param sets
+   *          Sets of the same domain.
+   * @throws IllegalArgumentException
+   *           if the sets are not all of the same domain.
+   * @see #union(DomainBitSet, DomainBitSet)
+   * @return The union, or an empty Optional if there are no sets. */
+  @CheckReturnValue
+  @NonNull
+  public static <T> Optional<DomainBitSet<T>> unionAll(
+      final Collection<? extends DomainBitSet<T>> sets) {
+    return WordAccumulator.reduce(sets, WordAccumulator.OR, 1);
+  }
+
+  /** Returns the union of all given sets. The stream can be parallel.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @param sets
+   *          Sets of the same domain.
+   * @throws IllegalArgumentException
+   *           if the sets are not all of the same domain.
+   * @see #unionAll(Collection)
+   * @return The union, or an empty Optional if there are no sets. */
+  @CheckReturnValue
+  @NonNull
+  public static <T> Optional<DomainBitSet<T>> unionAll(
+      final Stream<? extends DomainBitSet<T>> sets) {
+    return WordAccumulator.reduce(sets, WordAccumulator.OR, 1);
+  }
+
+  /** Creates a set of the given domain and words. An {@link EnumBitSet} is returned for an enum
+   * domain and the same as {@link #immutableWithWords(Domain, long[])} for all other domains.
+   * 
+   * @param words
+   *          The words, as returned by {@link DomainBitSet#toLongArray()}. The array is not
+   *          copied and must not be modified later. */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  @NonNull
+  static <T> DomainBitSet<T> withWords(final Domain<T> domain, final long[] words) {
+    if (domain instanceof EnumDomain)
+      return EnumBitSet.asEnumBitSet(BitSet.valueOf(words), ((EnumDomain) domain).getEnumType());
+    return immutableWithWords(domain, words);
+  }
+
+  /** Creates an immutable set of the given domain and words, also for an enum domain. A
+   * {@link SmallDomainBitSet} or {@link MediumDomainBitSet} is returned for small domains. For
+   * larger domains an {@link AdaptiveDomainBitSet} is returned, so no {@link java.util.HashSet} is
+   * created.
+   * 
+   * @param words
+   *          The words, as returned by {@link DomainBitSet#toLongArray()}. The array is not
+   *          copied and must not be modified later. */
+  @NonNull
+  static <T> DomainBitSet<T> immutableWithWords(final Domain<T> domain, final long[] words) {
+    if (domain.size() <= 64)
+      return SmallDomainBitSet.of(domain, words.length == 0 ? 0L : words[0]);
+    if (domain.size() <= MediumDomainBitSet.MAX_SIZE)
+      return MediumDomainBitSet.of(domain, words.length > 0 ? words[0] : 0L,
+          words.length > 1 ? words[1] : 0L, words.length > 2 ? words[2] : 0L,
+          words.length > 3 ? words[3] : 0L);
+    return AdaptiveDomainBitSet.of(domain, new BitmapContainer(words));
+  }
+
+  /** Returns the symmetric difference of all given sets. These are the elements that are contained
+   * in an odd number of the sets. The words of all sets are combined in a single pass, without
+   * creating intermediate sets.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @param sets
+   *          Sets of the same domain.
+   * @throws IllegalArgumentException
+   *           if the sets are not all of the same domain.
+   * @return The symmetric difference, or an empty Optional if there are no sets. */
+  @CheckReturnValue
+  @NonNull
+  public static <T> Optional<DomainBitSet<T>> xorAll(
+      final Collection<? extends DomainBitSet<T>> sets) {
+    return WordAccumulator.reduce(sets, WordAccumulator.XOR, 1);
+  }
+
+  /** Returns the symmetric difference of all given sets. The stream can be parallel.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @param sets
+   *          Sets of the same domain.
+   * @throws IllegalArgumentException
+   *           if the sets are not all of the same domain.
+   * @see #xorAll(Collection)
+   * @return The symmetric difference, or an empty Optional if there are no sets. */
+  @CheckReturnValue
+  @NonNull
+  public static <T> Optional<DomainBitSet<T>> xorAll(final Stream<? extends DomainBitSet<T>> sets) {
+    return WordAccumulator.reduce(sets, WordAccumulator.XOR, 1);
+  }
+
   /** Returns a string representation of the object. All arrays and iterables are processed as such.
    * In case of loops in the object graph this will return a partial result, but will not throw a
    * {@link StackOverflowError}. This should only be used for debugging.
@@ -0,0 +1,288 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** Counts for each element of a domain in how many of the added sets it is contained. The counts
+ * are stored as bit planes: plane <code>p</code> holds bit <code>p</code> of the count of every
+ * position. So the counts of N sets need <code>ceil(log2(N + 1))</code> planes with
+ * <code>ceil(domain.size() / 64)</code> words each, and all counts of 64 positions are updated
+ * with one operation per plane.
+ * <p>
+ * {@link #addAll(Collection)} reduces three sets at a time by a carry-save adder to one word of
+ * weight 1 and one of weight 2, before they are added to the planes.
+ * <p>
+ * Queries such as {@link #atLeast(long)} and {@link #exactly(long)} compare all counts of a word to
+ * a constant at once, in <code>O(words &times; planes)</code>. No element is boxed.
+ * <p>
+ * This class is not thread-safe. Counters of different threads can be combined by
+ * {@link #addAll(BitSlicedCounter)}.
+ *
+ * @param <T>
+ *          The type of the domain.
+ * @see BitSetUtilities#countAtLeast(Collection, int)
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class BitSlicedCounter<T> {
+
+  private final Domain<T> domain;
+  private final int       width;
+  /** planes[p][i]: bit p of the counts of the positions of word i. */
+  private long[][]        planes = new long[0][];
+  private long            sets   = 0;
+
+  /** Creates a counter of the given domain, with all counts at 0.
+   *
+   * @param domain
+   *          The domain. */
+  public BitSlicedCounter(final Domain<T> domain) {
+    this.domain = requireNonNull(domain, "domain");
+    this.width = Container.words(domain.size());
+  }
+
+  /** Creates a counter of the given sets.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param domain
+   *          The domain.
+   * @param sets
+   *          Sets of the domain.
+   * @return A new counter.
+   * @throws IllegalArgumentException
+   *           if a set is of a different domain. */
+  @NonNull
+  public static <T> BitSlicedCounter<T> of(final Domain<T> domain,
+      final Collection<? extends DomainBitSet<T>> sets) {
+    final BitSlicedCounter<T> counter = new BitSlicedCounter<>(domain);
+    counter.addAll(sets);
+    return counter;
+  }
+
+  private long[] words(final DomainBitSet<T> set) {
+    requireNonNull(set, "set");
+    final Domain<T> d = set.getDomain();
+    if (d != this.domain && !d.equals(this.domain))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    return set.toLongArray();
+  }
+
+  /** Adds the given words with the weight <code>2^plane</code>. The carry ripples through the
+   * planes, and stops as soon as it is 0. */
+  private void add(final long[] words, final int plane) {
+    for (int i = 0; i < this.width; i++) {
+      long carry = words[i];
+      for (int p = plane; carry != 0L; p++) {
+        while (p >= this.planes.length)
+          this.addPlane();
+        final long[] w = this.planes[p];
+        final long sum = w[i] ^ carry;
+        carry &= w[i];
+        w[i] = sum;
+      }
+    }
+  }
+
+  private void addPlane() {
+    this.planes = Arrays.copyOf(this.planes, this.planes.length + 1);
+    this.planes[this.planes.length - 1] = new long[this.width];
+  }
+
+  /** Adds one set, i.e. increments the counts of all its elements.
+   *
+   * @param set
+   *          A set of the domain.
+   * @throws IllegalArgumentException
+   *           if the set is of a different domain. */
+  public void add(final DomainBitSet<T> set) {
+    this.add(this.words(set), 0);
+    this.sets++;
+  }
+
+  /** Adds all given sets.
+   *
+   * @param sets
+   *          Sets of the domain.
+   * @throws IllegalArgumentException
+   *           if a set is of a different domain. */
+  public void addAll(final Collection<? extends DomainBitSet<T>> sets) {
+    requireNonNull(sets, "sets");
+    final Iterator<? extends DomainBitSet<T>> itr = sets.iterator();
+    final long[] twos = new long[this.width];
+    while (itr.hasNext()) {
+      final long[] a = this.words(itr.next());
+      if (!itr.hasNext()) {
+        this.addOne(a);
+        break;
+      }
+      final long[] b = this.words(itr.next());
+      if (!itr.hasNext()) {
+        this.addOne(a);
+        this.addOne(b);
+        break;
+      }
+      final long[] c = this.words(itr.next());
+      // carry-save adder: a + b + c = ones + 2 * twos
+      for (int i = 0; i < this.width; i++) {
+        final long u = a[i] ^ b[i];
+        twos[i] = a[i] & b[i] | u & c[i];
+        a[i] = u ^ c[i];
+      }
+      this.add(a, 0);
+      this.add(twos, 1);
+      this.sets += 3;
+    }
+  }
+
+  private void addOne(final long[] words) {
+    this.add(words, 0);
+    this.sets++;
+  }
+
+  /** Adds the counts of another counter of the same domain.
+   *
+   * @param other
+   *          Another counter.
+   * @throws IllegalArgumentException
+   *           if the counter is of a different domain. */
+  public void addAll(final BitSlicedCounter<T> other) {
+    requireNonNull(other, "other");
+    if (other.domain != this.domain && !other.domain.equals(this.domain))
+      throw new IllegalArgumentException("The counter is of a different domain.");
+    final long[][] planes = new long[other.planes.length][];
+    for (int p = 0; p < planes.length; p++)
+      planes[p] = other.planes[p].clone();
+    for (int p = 0; p < planes.length; p++)
+      this.add(planes[p], p);
+    this.sets += other.sets;
+  }
+
+  /** The domain of the counted sets.
+   *
+   * @return The domain. */
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  /** The number of sets that were added.
+   *
+   * @return The number of sets. */
+  public long getSetCount() {
+    return this.sets;
+  }
+
+  /** Returns the count of the element at the given position.
+   *
+   * @param bitIndex
+   *          The position in the domain.
+   * @return The number of added sets that contain the element.
+   * @throws IndexOutOfBoundsException
+   *           if the index is not in the domain. */
+  public long count(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex >= this.domain.size())
+      throw new IndexOutOfBoundsException();
+    long count = 0;
+    for (int p = 0; p < this.planes.length; p++)
+      count |= (this.planes[p][bitIndex >>> 6] >>> bitIndex & 1L) << p;
+    return count;
+  }
+
+  /** Returns the count of the given element.
+   *
+   * @param element
+   *          An element.
+   * @return The number of added sets that contain the element. This is 0 for elements that are not
+   *         in the domain. */
+  public long count(final Object element) {
+    final int index = this.domain.indexOf(element);
+    return index < 0 ? 0 : this.count(index);
+  }
+
+  /** Returns the counts of all elements.
+   *
+   * @return A new array with the count of each position of the domain. */
+  @NonNull
+  public long[] counts() {
+    final long[] result = new long[this.domain.size()];
+    for (int p = 0; p < this.planes.length; p++) {
+      final long[] w = this.planes[p];
+      for (int i = 0; i < this.width; i++)
+        for (long bits = w[i]; bits != 0L; bits &= bits - 1)
+          result[i << 6 | Long.numberOfTrailingZeros(bits)] |= 1L << p;
+    }
+    return result;
+  }
+
+  /** Compares all counts to <code>k</code>. Returns the words of the positions with a count that is
+   * greater than or equal to k, or only equal to k. */
+  private long[] compare(final long k, final boolean orGreater) {
+    final long[] result = new long[this.width];
+    if (k < 0)
+      throw new IllegalArgumentException("k must not be negative.");
+    final int bits = 64 - Long.numberOfLeadingZeros(k);
+    if (bits > this.planes.length) // k is larger than any count
+      return result;
+    for (int i = 0; i < this.width; i++) {
+      long greater = 0L, equal = -1L;
+      for (int p = this.planes.length - 1; p >= 0; p--) {
+        final long w = this.planes[p][i];
+        if ((k >>> p & 1L) != 0L)
+          equal &= w;
+        else {
+          greater |= equal & w;
+          equal &= ~w;
+        }
+      }
+      result[i] = orGreater ? greater | equal : equal;
+    }
+    if ((this.domain.size() & 63) != 0)
+      result[this.width - 1] &= -1L >>> -this.domain.size();
+    return result;
+  }
+
+  /** Returns the set of all elements with a count of at least <code>k</code>, i.e. the elements
+   * that are contained in at least k of the added sets.
+   *
+   * @param k
+   *          The minimal count.
+   * @return A new set.
+   * @throws IllegalArgumentException
+   *           if k is negative. */
+  @NonNull
+  public DomainBitSet<T> atLeast(final long k) {
+    return BitSetUtilities.withWords(this.domain, this.compare(k, true));
+  }
+
+  /** Returns the set of all elements with a count of exactly <code>k</code>.
+   *
+   * @param k
+   *          The count.
+   * @return A new set.
+   * @throws IllegalArgumentException
+   *           if k is negative. */
+  @NonNull
+  public DomainBitSet<T> exactly(final long k) {
+    return BitSetUtilities.withWords(this.domain, this.compare(k, false));
+  }
+
+  /** Returns the set of all elements that are contained in more than half of the added sets.
+   *
+   * @return A new set. */
+  @NonNull
+  public DomainBitSet<T> majority() {
+    return this.atLeast(this.sets / 2 + 1);
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getSimpleName() + "[sets=" + this.sets + ", planes="
+        + this.planes.length + "]";
+  }
+}
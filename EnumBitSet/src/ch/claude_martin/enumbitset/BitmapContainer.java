@@ -0,0 +1,342 @@
+package ch.claude_martin.enumbitset;
+
+import java.util.Arrays;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** A {@link Container} of a bitmap. This is used for dense sets.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+final class BitmapContainer extends Container {
+  private static final long serialVersionUID = 8528346390133567003L;
+
+  private static int bitCount(final long[] words) {
+    int count = 0;
+    for (final long w : words)
+      count += Long.bitCount(w);
+    return count;
+  }
+
+  /** Sets (or clears) all bits from <code>from</code> (inclusive) to <code>to</code> (exclusive). */
+  static void setRange(final long[] words, final int from, final int to, final boolean value) {
+    if (from >= to)
+      return;
+    final int first = from >>> 6;
+    final int last = (to - 1) >>> 6;
+    final long firstMask = -1L << from;
+    final long lastMask = -1L >>> -to;
+    for (int w = first; w <= last; w++) {
+      long mask = -1L;
+      if (w == first)
+        mask &= firstMask;
+      if (w == last)
+        mask &= lastMask;
+      if (value)
+        words[w] |= mask;
+      else
+        words[w] &= ~mask;
+    }
+  }
+
+  /** Flips all bits from <code>from</code> (inclusive) to <code>to</code> (exclusive). */
+  static void flipRange(final long[] words, final int from, final int to) {
+    if (from >= to)
+      return;
+    final int first = from >>> 6;
+    final int last = (to - 1) >>> 6;
+    for (int w = first; w <= last; w++) {
+      long mask = -1L;
+      if (w == first)
+        mask &= -1L << from;
+      if (w == last)
+        mask &= -1L >>> -to;
+      words[w] ^= mask;
+    }
+  }
+
+  /** Bitmap, must not be modified. */
+  final long[]                     words;
+  private final int                cardinality;
+  /** Number of elements before each block of words, or null. */
+  private transient volatile int[] directory = null;
+
+  BitmapContainer(final long[] words) {
+    this(words, bitCount(words));
+  }
+
+  BitmapContainer(final long[] words, final int cardinality) {
+    this.words = words;
+    this.cardinality = cardinality;
+  }
+
+  @Override
+  int cardinality() {
+    return this.cardinality;
+  }
+
+  @Override
+  boolean contains(final int index) {
+    final int w = index >>> 6;
+    return index >= 0 && w < this.words.length && (this.words[w] & 1L << index) != 0L;
+  }
+
+  /** Checks if all indices from <code>from</code> (inclusive) to <code>to</code> (exclusive) are
+   * set. */
+  boolean containsRange(final int from, final int to) {
+    if (from >= to)
+      return true;
+    final int first = from >>> 6;
+    final int last = (to - 1) >>> 6;
+    if (last >= this.words.length)
+      return false;
+    for (int w = first; w <= last; w++) {
+      long mask = -1L;
+      if (w == first)
+        mask &= -1L << from;
+      if (w == last)
+        mask &= -1L >>> -to;
+      if ((this.words[w] & mask) != mask)
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  int nextSetBit(final int from) {
+    int w = from >>> 6;
+    if (from < 0 || w >= this.words.length)
+      return -1;
+    long word = this.words[w] & -1L << from;
+    while (true) {
+      if (word != 0L)
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+      if (++w == this.words.length)
+        return -1;
+      word = this.words[w];
+    }
+  }
+
+  @Override
+  int last() {
+    for (int w = this.words.length - 1; w >= 0; w--)
+      if (this.words[w] != 0L)
+        return (w << 6) + 63 - Long.numberOfLeadingZeros(this.words[w]);
+    return -1;
+  }
+
+  /** Number of words per block of the rank directory. */
+  private static final int BLOCK = 8;
+
+  /** The rank directory, created on first use for large bitmaps. */
+  private int[] directory() {
+    int[] dir = this.directory;
+    if (dir == null) {
+      dir = new int[(this.words.length + BLOCK - 1) / BLOCK + 1];
+      for (int w = 0; w < this.words.length; w++)
+        dir[w / BLOCK + 1] += Long.bitCount(this.words[w]);
+      for (int b = 1; b < dir.length; b++)
+        dir[b] += dir[b - 1];
+      this.directory = dir;
+    }
+    return dir;
+  }
+
+  @Override
+  int rank(final int index) {
+    if (index <= 0)
+      return 0;
+    final int end = Math.min(index >>> 6, this.words.length);
+    int rank = 0;
+    int w = 0;
+    if (end >= BLOCK * 2) {
+      rank = this.directory()[end / BLOCK];
+      w = end / BLOCK * BLOCK;
+    }
+    for (; w < end; w++)
+      rank += Long.bitCount(this.words[w]);
+    if (end < this.words.length && (index & 63) != 0)
+      rank += Long.bitCount(this.words[end] & -1L >>> -index);
+    return rank;
+  }
+
+  @Override
+  int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0 || n >= this.cardinality)
+      throw new IndexOutOfBoundsException();
+    int remaining = n;
+    int w = 0;
+    if (this.words.length >= BLOCK * 2) {
+      final int[] dir = this.directory();
+      int b = Arrays.binarySearch(dir, n);
+      // the first block whose directory entry is larger than n contains the element:
+      if (b < 0)
+        b = -b - 2;
+      else
+        while (b + 1 < dir.length && dir[b + 1] == n)
+          b++;
+      remaining -= dir[b];
+      w = b * BLOCK;
+    }
+    for (;; w++) {
+      long word = this.words[w];
+      final int count = Long.bitCount(word);
+      if (remaining < count) {
+        for (int i = 0; i < remaining; i++)
+          word &= word - 1;
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+      }
+      remaining -= count;
+    }
+  }
+
+  @Override
+  int numberOfRuns() {
+    int runs = 0;
+    long previous = 0L;
+    for (final long w : this.words) {
+      // A run starts at each bit that is set, where the bit before is not set:
+      runs += Long.bitCount(w & ~(w << 1 | previous >>> 63));
+      previous = w;
+    }
+    return runs;
+  }
+
+  @Override
+  long[] toWords(final int length) {
+    return Arrays.copyOf(this.words, length);
+  }
+
+  @Override
+  long word(final int index) {
+    return index < this.words.length ? this.words[index] : 0L;
+  }
+
+  @Override
+  ArrayContainer toArrayContainer() {
+    final int[] values = new int[this.cardinality];
+    int n = 0;
+    for (int w = 0; w < this.words.length; w++)
+      for (long word = this.words[w]; word != 0L; word &= word - 1)
+        values[n++] = (w << 6) + Long.numberOfTrailingZeros(word);
+    return new ArrayContainer(values);
+  }
+
+  @Override
+  BitmapContainer toBitmapContainer(final int universe) {
+    return this;
+  }
+
+  @Override
+  RunContainer toRunContainer() {
+    final RunContainer.Builder builder = new RunContainer.Builder(this.numberOfRuns());
+    int start = this.nextSetBit(0);
+    while (start >= 0) {
+      int end = start + 1;
+      while (this.contains(end))
+        end++;
+      builder.add(start, end);
+      start = this.nextSetBit(end);
+    }
+    return builder.build();
+  }
+
+  @Override
+  Container and(final Container other) {
+    if (other instanceof BitmapContainer) {
+      final long[] o = ((BitmapContainer) other).words;
+      final long[] result = new long[Math.min(this.words.length, o.length)];
+      for (int w = 0; w < result.length; w++)
+        result[w] = this.words[w] & o[w];
+      return new BitmapContainer(result);
+    }
+    if (other instanceof RunContainer) {
+      final int[] runs = ((RunContainer) other).runs;
+      final long[] mask = new long[this.words.length];
+      for (int r = 0; r < runs.length; r += 2)
+        setRange(mask, runs[r], Math.min(runs[r + 1], this.words.length << 6), true);
+      for (int w = 0; w < mask.length; w++)
+        mask[w] &= this.words[w];
+      return new BitmapContainer(mask);
+    }
+    return other.and(this);
+  }
+
+  @Override
+  Container or(final Container other) {
+    if (other instanceof BitmapContainer) {
+      final long[] o = ((BitmapContainer) other).words;
+      final long[] result = Arrays.copyOf(this.words, Math.max(this.words.length, o.length));
+      for (int w = 0; w < o.length; w++)
+        result[w] |= o[w];
+      return new BitmapContainer(result);
+    }
+    final long[] result = Arrays.copyOf(this.words,
+        Math.max(this.words.length, words(other.last() + 1)));
+    if (other instanceof RunContainer) {
+      final int[] runs = ((RunContainer) other).runs;
+      for (int r = 0; r < runs.length; r += 2)
+        setRange(result, runs[r], runs[r + 1], true);
+    } else
+      for (final int i : ((ArrayContainer) other).values)
+        result[i >>> 6] |= 1L << i;
+    return new BitmapContainer(result);
+  }
+
+  @Override
+  Container andNot(final Container other) {
+    final long[] result = this.words.clone();
+    if (other instanceof BitmapContainer) {
+      final long[] o = ((BitmapContainer) other).words;
+      for (int w = 0; w < Math.min(result.length, o.length); w++)
+        result[w] &= ~o[w];
+    } else if (other instanceof RunContainer) {
+      final int[] runs = ((RunContainer) other).runs;
+      for (int r = 0; r < runs.length && runs[r] < result.length << 6; r += 2)
+        setRange(result, runs[r], Math.min(runs[r + 1], result.length << 6), false);
+    } else
+      for (final int i : ((ArrayContainer) other).values)
+        if (i >>> 6 < result.length)
+          result[i >>> 6] &= ~(1L << i);
+    return new BitmapContainer(result);
+  }
+
+  @Override
+  Container xor(final Container other) {
+    final long[] result = Arrays.copyOf(this.words,
+        Math.max(this.words.length, words(other.last() + 1)));
+    if (other instanceof BitmapContainer) {
+      final long[] o = ((BitmapContainer) other).words;
+      for (int w = 0; w < o.length; w++)
+        result[w] ^= o[w];
+    } else if (other instanceof RunContainer) {
+      final int[] runs = ((RunContainer) other).runs;
+      for (int r = 0; r < runs.length; r += 2)
+        flipRange(result, runs[r], runs[r + 1]);
+    } else
+      for (final int i : ((ArrayContainer) other).values)
+        result[i >>> 6] ^= 1L << i;
+    return new BitmapContainer(result);
+  }
+
+  @Override
+  Container complement(final int universe) {
+    final long[] result = new long[words(universe)];
+    for (int w = 0; w < result.length; w++)
+      result[w] = w < this.words.length ? ~this.words[w] : -1L;
+    if ((universe & 63) != 0)
+      result[result.length - 1] &= -1L >>> -universe;
+    return new BitmapContainer(result);
+  }
+
+  @Override
+  long wordsXor(final int offset) {
+    long h = 0;
+    for (int w = 0; w < this.words.length; w++)
+      h ^= this.words[w] * (offset + w + 1);
+    return h;
+  }
+}
@@ -0,0 +1,92 @@
+package ch.claude_martin.enumbitset;
+
+import java.util.function.IntToLongFunction;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** Position queries on the words of a bit vector. The words are read one at a time through a
+ * function, so a set can answer {@link DomainBitSet#rank(int)}, {@link DomainBitSet#select(int)}
+ * and the related methods from its own storage, without copying it to an array.
+ * <p>
+ * The arguments are not checked. The function must accept all indices lower than
+ * <code>length</code>.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+final class Bitmaps {
+  private Bitmaps() {
+    throw new UnsupportedOperationException();
+  }
+
+  /** See {@link DomainBitSet#nextSetIndex(int)}, with <code>from &gt;= 0</code>. */
+  static int nextSetIndex(final IntToLongFunction words, final int length, final int from) {
+    int i = from >>> 6;
+    if (i >= length)
+      return -1;
+    long word = words.applyAsLong(i) & -1L << from;
+    while (word == 0L)
+      if (++i == length)
+        return -1;
+      else
+        word = words.applyAsLong(i);
+    return (i << 6) + Long.numberOfTrailingZeros(word);
+  }
+
+  /** See {@link DomainBitSet#nextClearIndex(int)}, with <code>0 &lt;= from &lt; size</code>. The
+   * words must cover the domain. */
+  static int nextClearIndex(final IntToLongFunction words, final int size, final int from) {
+    final int length = Container.words(size);
+    int i = from >>> 6;
+    long word = ~words.applyAsLong(i) & -1L << from;
+    while (word == 0L)
+      if (++i == length)
+        return -1;
+      else
+        word = ~words.applyAsLong(i);
+    final int index = (i << 6) + Long.numberOfTrailingZeros(word);
+    return index < size ? index : -1;
+  }
+
+  /** See {@link DomainBitSet#previousSetIndex(int)}, with <code>0 &lt;= start</code> and
+   * <code>start &gt;&gt;&gt; 6 &lt; length</code>. */
+  static int previousSetIndex(final IntToLongFunction words, final int start) {
+    int i = start >>> 6;
+    long word = words.applyAsLong(i) & -1L >>> ~start;
+    while (word == 0L)
+      if (i-- == 0)
+        return -1;
+      else
+        word = words.applyAsLong(i);
+    return (i << 6) + 63 - Long.numberOfLeadingZeros(word);
+  }
+
+  /** See {@link DomainBitSet#rank(int)}, with <code>0 &lt;= bitIndex</code>. Only the words before
+   * <code>bitIndex</code> are read. */
+  static int rank(final IntToLongFunction words, final int length, final int bitIndex) {
+    final int end = Math.min(bitIndex >>> 6, length);
+    int rank = 0;
+    for (int i = 0; i < end; i++)
+      rank += Long.bitCount(words.applyAsLong(i));
+    if ((bitIndex & 63) != 0 && end < length)
+      rank += Long.bitCount(words.applyAsLong(end) & -1L >>> -bitIndex);
+    return rank;
+  }
+
+  /** See {@link DomainBitSet#select(int)}, with <code>0 &lt;= n</code>. */
+  static int select(final IntToLongFunction words, final int length, final int n)
+      throws IndexOutOfBoundsException {
+    int remaining = n;
+    for (int i = 0; i < length; i++) {
+      long word = words.applyAsLong(i);
+      final int count = Long.bitCount(word);
+      if (remaining < count) {
+        for (; remaining > 0; remaining--)
+          word &= word - 1;
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+      remaining -= count;
+    }
+    throw new IndexOutOfBoundsException();
+  }
+}
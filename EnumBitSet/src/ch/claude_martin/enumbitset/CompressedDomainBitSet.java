@@ -0,0 +1,813 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+/** Immutable, compressed BitSet for huge domains. The positions of the domain are split into chunks
+ * of {@value #CHUNK_SIZE} positions. The high 16 bits of a position are the key of its chunk and
+ * the low 16 bits are stored in a container of that chunk. Only chunks that contain at least one
+ * element are stored. Each container is a sorted array, a bitmap or a list of intervals, whichever
+ * needs the least memory.
+ * <p>
+ * Operations are performed container by container, so the cost depends on the number and size of
+ * the containers, not on the size of the domain. The size and the {@link #rank(int) rank} of a
+ * position are calculated from a table of the cumulative cardinalities of the containers.
+ * <p>
+ * The sets can be written to a {@link DataOutput} by {@link #writeTo(DataOutput)} and read by
+ * {@link #readFrom(Domain, DataInput)}. That format does not depend on the JVM and does not contain
+ * the domain.
+ *
+ * @param <T>
+ *          The type of the domain. All elements in the domain must be of type T or of any subtype
+ *          of T.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class CompressedDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
+  private static final long serialVersionUID = -4315127792468803245L;
+
+  /** Number of positions in one chunk. */
+  public static final int   CHUNK_SIZE       = 1 << 16;
+
+  private static final int  CHUNK_WORDS      = CHUNK_SIZE >>> 6;
+
+  /** First four bytes of the portable format. */
+  private static final int  MAGIC            = 0x43444253;
+
+  private static final byte ARRAY            = 0;
+  private static final byte BITMAP           = 1;
+  private static final byte RUNS             = 2;
+
+  /** Number of positions in the chunk with the given key. */
+  private static int universe(final int domainSize, final int key) {
+    return Math.min(CHUNK_SIZE, domainSize - (key << 16));
+  }
+
+  /** Number of chunks of a domain of the given size. */
+  private static int chunks(final int domainSize) {
+    return (domainSize + CHUNK_SIZE - 1) >>> 16;
+  }
+
+  /** Collects containers in ascending order of their keys. Empty containers are ignored. */
+  private static final class Appender {
+    private final int   domainSize;
+    private char[]      keys;
+    private Container[] containers;
+    private int         length = 0;
+
+    Appender(final int domainSize, final int capacity) {
+      this.domainSize = domainSize;
+      this.keys = new char[Math.max(1, capacity)];
+      this.containers = new Container[this.keys.length];
+    }
+
+    void add(final int key, final Container container) {
+      if (container.isEmpty())
+        return;
+      if (this.length == this.keys.length) {
+        this.keys = Arrays.copyOf(this.keys, 2 * this.length);
+        this.containers = Arrays.copyOf(this.containers, 2 * this.length);
+      }
+      this.keys[this.length] = (char) key;
+      this.containers[this.length++] = container.optimize(universe(this.domainSize, key));
+    }
+
+    <T> CompressedDomainBitSet<T> build(final Domain<T> domain) {
+      return DomainBitSetPool.internIfEnabled(new CompressedDomainBitSet<>(domain, Arrays.copyOf(
+          this.keys, this.length), Arrays.copyOf(this.containers, this.length)));
+    }
+  }
+
+  private static final class Itr<T> implements Iterator<T> {
+    @NonNull
+    private final CompressedDomainBitSet<T> set;
+    private int                             position = 0;
+    private int                             next;
+
+    public Itr(@NonNull final CompressedDomainBitSet<T> set) {
+      this.set = set;
+      this.next = set.containers.length == 0 ? -1 : set.containers[0].first();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next >= 0;
+    }
+
+    @Override
+    public T next() {
+      if (this.next < 0)
+        throw new NoSuchElementException();
+      final Container[] containers = this.set.containers;
+      final T result = this.set.domain.get(this.set.keys[this.position] << 16 | this.next);
+      this.next = containers[this.position].nextSetBit(this.next + 1);
+      if (this.next < 0 && ++this.position < containers.length)
+        this.next = containers[this.position].first();
+      return result;
+    }
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return A CompressedDomainBitSet containing all elements of the given domain. */
+  @NonNull
+  public static <T> CompressedDomainBitSet<T> allOf(final List<T> domain) {
+    final Domain<T> d = DefaultDomain.of(requireNonNull(domain, "domain"));
+    final int chunks = chunks(d.size());
+    final Appender appender = new Appender(d.size(), chunks);
+    for (int key = 0; key < chunks; key++)
+      appender.add(key, Container.range(0, universe(d.size(), key)));
+    return appender.build(d);
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return A CompressedDomainBitSet containing all elements of the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> CompressedDomainBitSet<T> allOf(final T... domain) {
+    return allOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return Empty CompressedDomainBitSet based on the given domain. */
+  @NonNull
+  public static <T> CompressedDomainBitSet<T> noneOf(final List<T> domain) {
+    final Domain<T> d = DefaultDomain.of(requireNonNull(domain, "domain"));
+    return new Appender(d.size(), 0).build(d);
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return Empty CompressedDomainBitSet based on the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> CompressedDomainBitSet<T> noneOf(final T... domain) {
+    return noneOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, containing all given elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The elements.
+   * @throws IllegalArgumentException
+   *           if an element is not in the domain.
+   * @return CompressedDomainBitSet based on the given domain and set. */
+  @NonNull
+  public static <T> CompressedDomainBitSet<T> of(final List<T> domain, final Collection<T> set) {
+    return noneOf(domain).union(requireNonNull(set, "set"));
+  }
+
+  /** Creates a set with the given domain, containing all given elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The elements.
+   * @throws IllegalArgumentException
+   *           if an element is not in the domain.
+   * @return CompressedDomainBitSet based on the given domain and set. */
+  @SafeVarargs
+  @NonNull
+  public static <T> CompressedDomainBitSet<T> of(@NonNull final List<T> domain,
+      @NonNull final T... set) {
+    return of(domain, asList(set));
+  }
+
+  /** Creates a set with the given domain, containing elements according to the given bit set.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The positions of the elements.
+   * @throws IllegalArgumentException
+   *           if the bit set contains positions that are not in the domain.
+   * @return CompressedDomainBitSet based on the given domain and bit set. */
+  @NonNull
+  public static <T> CompressedDomainBitSet<T> of(final List<T> domain, final BitSet set) {
+    return noneOf(domain).union(requireNonNull(set, "set"));
+  }
+
+  /** Reads a set in the format written by {@link #writeTo(DataOutput)}.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The domain of the set. It must have the same size as the domain of the written set.
+   * @param in
+   *          The input.
+   * @return The set that was read.
+   * @throws IOException
+   *           if the input can't be read or does not contain a valid set of the given domain. */
+  @NonNull
+  public static <T> CompressedDomainBitSet<T> readFrom(final Domain<T> domain, final DataInput in)
+      throws IOException {
+    requireNonNull(domain, "domain");
+    requireNonNull(in, "in");
+    if (in.readInt() != MAGIC)
+      throw new StreamCorruptedException("Not a CompressedDomainBitSet.");
+    if (in.readInt() != domain.size())
+      throw new StreamCorruptedException("The size of the domain does not match.");
+    final int length = in.readInt();
+    if (length < 0 || length > chunks(domain.size()))
+      throw new StreamCorruptedException("Invalid number of containers: " + length);
+    final Appender appender = new Appender(domain.size(), length);
+    int previous = -1;
+    for (int i = 0; i < length; i++) {
+      final int key = in.readUnsignedShort();
+      if (key <= previous || key >= chunks(domain.size()))
+        throw new StreamCorruptedException("Invalid key: " + key);
+      previous = key;
+      final Container container = readContainer(in);
+      if (container.isEmpty() || container.last() >= universe(domain.size(), key))
+        throw new StreamCorruptedException("Invalid container: " + key);
+      appender.add(key, container);
+    }
+    return appender.build(domain);
+  }
+
+  private static Container readContainer(final DataInput in) throws IOException {
+    final byte type = in.readByte();
+    final int count = in.readInt();
+    switch (type) {
+      case ARRAY: {
+        if (count < 0 || count > CHUNK_SIZE)
+          break;
+        final int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+          values[i] = in.readUnsignedShort();
+          if (i > 0 && values[i] <= values[i - 1])
+            throw new StreamCorruptedException("Values are not sorted.");
+        }
+        return new ArrayContainer(values);
+      }
+      case BITMAP: {
+        if (count < 0 || count > CHUNK_WORDS)
+          break;
+        final long[] words = new long[count];
+        for (int w = 0; w < count; w++)
+          words[w] = in.readLong();
+        return new BitmapContainer(words);
+      }
+      case RUNS: {
+        if (count < 0 || count > CHUNK_SIZE / 2)
+          break;
+        final RunContainer.Builder builder = new RunContainer.Builder(count);
+        int end = 0;
+        for (int r = 0; r < count; r++) {
+          final int start = in.readUnsignedShort();
+          if (start < end)
+            throw new StreamCorruptedException("Runs are not sorted.");
+          end = start + in.readUnsignedShort() + 1;
+          builder.add(start, end);
+        }
+        return builder.build();
+      }
+      default:
+        throw new StreamCorruptedException("Unknown container type: " + type);
+    }
+    throw new StreamCorruptedException("Invalid container size: " + count);
+  }
+
+  private final Domain<T>   domain;
+
+  /** Sorted keys of the chunks that are not empty. */
+  private final char[]      keys;
+
+  /** The containers of the chunks, in the same order as the keys. None of them is empty. */
+  private final Container[] containers;
+
+  /** <code>ranks[i]</code> is the number of elements in all containers before <code>i</code>. */
+  private final int[]       ranks;
+
+  @SuppressFBWarnings(value = "JCIP_FIELD_ISNT_FINAL_IN_IMMUTABLE_CLASS", justification = "It's lazy.")
+  private transient int     hash = 0; // defaults to 0, later it's set to a hash code.
+
+  private CompressedDomainBitSet(final Domain<T> domain, final char[] keys,
+      final Container[] containers) {
+    this.domain = domain;
+    this.keys = keys;
+    this.containers = containers;
+    this.ranks = new int[containers.length + 1];
+    for (int i = 0; i < containers.length; i++)
+      this.ranks[i + 1] = this.ranks[i] + containers[i].cardinality();
+  }
+
+  /** The word at the given index, without creating the other words. */
+  long word(final int index) {
+    final int p = Arrays.binarySearch(this.keys, (char) (index >>> 10));
+    return p < 0 ? 0L : this.containers[p].word(index & CHUNK_WORDS - 1);
+  }
+
+  /** Combines the containers with equal keys. Containers without a partner are kept, if
+   * <code>left</code> or <code>right</code> is set. */
+  private CompressedDomainBitSet<T> merge(final CompressedDomainBitSet<T> other,
+      final BinaryOperator<Container> op, final boolean left, final boolean right) {
+    final char[] a = this.keys;
+    final char[] b = other.keys;
+    final Appender appender = new Appender(this.domain.size(), a.length + b.length);
+    int i = 0, j = 0;
+    while (i < a.length || j < b.length)
+      if (j >= b.length || i < a.length && a[i] < b[j]) {
+        if (left)
+          appender.add(a[i], this.containers[i]);
+        i++;
+      } else if (i >= a.length || a[i] > b[j]) {
+        if (right)
+          appender.add(b[j], other.containers[j]);
+        j++;
+      } else {
+        appender.add(a[i], op.apply(this.containers[i], other.containers[j]));
+        i++;
+        j++;
+      }
+    return appender.build(this.domain);
+  }
+
+  /** The given Iterable as a CompressedDomainBitSet of the same domain. */
+  @SuppressFBWarnings("unchecked")
+  private CompressedDomainBitSet<T> toCompressed(final Iterable<T> itr)
+      throws IllegalArgumentException {
+    requireNonNull(itr, "itr");
+    if (itr instanceof CompressedDomainBitSet && this.ofEqualDomain((DomainBitSet<T>) itr))
+      return (CompressedDomainBitSet<T>) itr;
+    int[] indices = new int[itr instanceof Collection ? ((Collection<T>) itr).size() : 16];
+    int n = 0;
+    for (final T t : itr) {
+      final int index = this.domain.indexOf(t);
+      if (index < 0)
+        throw new IllegalArgumentException(String.format(
+            "The object '%s' is not element of the domain.", t));
+      if (n == indices.length)
+        indices = Arrays.copyOf(indices, 2 * n + 1);
+      indices[n++] = index;
+    }
+    final int[] sorted = ArrayContainer.of(Arrays.copyOf(indices, n)).values;
+    final Appender appender = new Appender(this.domain.size(), 1);
+    for (int from = 0; from < sorted.length;) {
+      final int key = sorted[from] >>> 16;
+      int to = from;
+      while (to < sorted.length && sorted[to] >>> 16 == key)
+        to++;
+      final int[] low = new int[to - from];
+      for (int i = from; i < to; i++)
+        low[i - from] = sorted[i] & 0xFFFF;
+      appender.add(key, new ArrayContainer(low));
+      from = to;
+    }
+    return appender.build(this.domain);
+  }
+
+  private CompressedDomainBitSet<T> toCompressed(final BitSet set) throws IllegalArgumentException {
+    if (requireNonNull(set, "set").length() > this.domain.size())
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+    final long[] words = set.toLongArray();
+    final Appender appender = new Appender(this.domain.size(), 1);
+    for (int key = 0; key << 10 < words.length; key++)
+      appender.add(key, new BitmapContainer(Arrays.copyOfRange(words, key << 10,
+          Math.min(words.length, key + 1 << 10))));
+    return appender.build(this.domain);
+  }
+
+  private CompressedDomainBitSet<T> toCompressed(final long mask)
+      throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.toCompressed(BitSet.valueOf(new long[] { mask }));
+  }
+
+  @Override
+  public int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    if (from >= this.domain.size())
+      return -1;
+    int p = Arrays.binarySearch(this.keys, (char) (from >>> 16));
+    if (p >= 0) {
+      final int next = this.containers[p].nextSetBit(from & 0xFFFF);
+      if (next >= 0)
+        return this.keys[p] << 16 | next;
+      p++;
+    } else
+      p = -p - 1;
+    return p < this.containers.length ? this.keys[p] << 16 | this.containers[p].first() : -1;
+  }
+
+  /** Returns the number of elements of this set that are at a position lower than the given
+   * position.
+   *
+   * @param bitIndex
+   *          A position of the domain, or the size of the domain.
+   * @return The number of elements before the given position.
+   * @throws IndexOutOfBoundsException
+   *           if the position is negative or larger than the size of the domain. */
+  @Override
+  public int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.domain.size())
+      throw new IndexOutOfBoundsException();
+    final int p = Arrays.binarySearch(this.keys, (char) (bitIndex >>> 16));
+    if (p < 0)
+      return this.ranks[-p - 1];
+    return this.ranks[p] + this.containers[p].rank(bitIndex & 0xFFFF);
+  }
+
+  /** Returns the position of the n-th element of this set. This is the inverse of
+   * {@link #rank(int)}.
+   *
+   * @param n
+   *          The number of elements before the requested element, with
+   *          <code>0 &lt;= n &lt; size()</code>.
+   * @return The position of the element in the domain.
+   * @throws IndexOutOfBoundsException
+   *           if <code>n</code> is negative or not lower than the size of this set. */
+  @Override
+  public int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0 || n >= this.size())
+      throw new IndexOutOfBoundsException();
+    int p = Arrays.binarySearch(this.ranks, 0, this.containers.length, n);
+    if (p < 0)
+      p = -p - 2;
+    return this.keys[p] << 16 | this.containers[p].select(n - this.ranks[p]);
+  }
+
+  /** Writes this set in a portable, binary format. All values are big-endian. The format is:
+   * <ol>
+   * <li>int: a magic number,</li>
+   * <li>int: the size of the domain,</li>
+   * <li>int: the number of containers,</li>
+   * <li>for each container: the key (unsigned short), the type (byte: 0 for an array, 1 for a
+   * bitmap, 2 for runs), the length (int), and the data. For an array that is each position (unsigned
+   * short), for a bitmap each word (long) and for runs the start and the length minus one of each
+   * interval (two unsigned shorts).</li>
+   * </ol>
+   * The domain itself is not written. Use {@link #readFrom(Domain, DataInput)} to read the set.
+   *
+   * @param out
+   *          The output.
+   * @throws IOException
+   *           if the set can't be written. */
+  public void writeTo(final DataOutput out) throws IOException {
+    requireNonNull(out, "out");
+    out.writeInt(MAGIC);
+    out.writeInt(this.domain.size());
+    out.writeInt(this.containers.length);
+    for (int i = 0; i < this.containers.length; i++) {
+      out.writeShort(this.keys[i]);
+      final Container container = this.containers[i];
+      if (container instanceof ArrayContainer) {
+        final int[] values = ((ArrayContainer) container).values;
+        out.writeByte(ARRAY);
+        out.writeInt(values.length);
+        for (final int v : values)
+          out.writeShort(v);
+      } else if (container instanceof BitmapContainer) {
+        final long[] words = ((BitmapContainer) container).words;
+        out.writeByte(BITMAP);
+        out.writeInt(words.length);
+        for (final long w : words)
+          out.writeLong(w);
+      } else {
+        final int[] runs = ((RunContainer) container).runs;
+        out.writeByte(RUNS);
+        out.writeInt(runs.length / 2);
+        for (int r = 0; r < runs.length; r += 2) {
+          out.writeShort(runs[r]);
+          out.writeShort(runs[r + 1] - runs[r] - 1);
+        }
+      }
+    }
+  }
+
+  @Override
+  @SuppressFBWarnings("CN_IDIOM_NO_SUPER_CALL")
+  public CompressedDomainBitSet<T> clone() {
+    return this;
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> complement() {
+    final int size = this.domain.size();
+    final int chunks = chunks(size);
+    final Appender appender = new Appender(size, chunks);
+    for (int key = 0, i = 0; key < chunks; key++)
+      if (i < this.keys.length && this.keys[i] == key)
+        appender.add(key, this.containers[i++].complement(universe(size, key)));
+      else
+        appender.add(key, Container.range(0, universe(size, key)));
+    return appender.build(this.domain);
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    final int index = this.domain.indexOf(o);
+    return index >= 0 && this.getBit(index);
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this)
+      return true;
+    if (other instanceof DomainBitSet) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<T> domBitSet = (DomainBitSet<T>) other;
+      if (this.size() != domBitSet.size() || !this.ofEqualDomain(domBitSet))
+        return false;
+      if (other instanceof CompressedDomainBitSet) {
+        final CompressedDomainBitSet<?> set = (CompressedDomainBitSet<?>) other;
+        if (!Arrays.equals(this.keys, set.keys))
+          return false;
+        for (int i = 0; i < this.containers.length; i++)
+          if (!this.containers[i].sameIndices(set.containers[i]))
+            return false;
+        return true;
+      }
+      if (BitSetUtilities.isWordComparable(other))
+        return BitSetUtilities.equalWords(this, domBitSet);
+      return this.containsAll(domBitSet.toSet());
+    }
+    return false;
+  }
+
+  @Override
+  public boolean getBit(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex >= this.domain.size())
+      throw new IndexOutOfBoundsException();
+    final int p = Arrays.binarySearch(this.keys, (char) (bitIndex >>> 16));
+    return p >= 0 && this.containers[p].contains(bitIndex & 0xFFFF);
+  }
+
+  @Override
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  @Override
+  public int hashCode() {
+    if (this.hash == 0) {
+      long h = 1234;
+      for (int i = 0; i < this.containers.length; i++)
+        h ^= this.containers[i].wordsXor(this.keys[i] * CHUNK_WORDS);
+      this.hash = this.domain.hashCode() ^ (int) (h >> 32 ^ h);
+    }
+    return this.hash;
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> intersect(final BigInteger mask) {
+    return this.intersect(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> intersect(final BitSet set) {
+    return this.merge(this.toCompressed(set), Container::and, false, false);
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> intersect(final Iterable<T> set) {
+    return this.merge(this.toCompressed(set), Container::and, false, false);
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> intersect(final long mask) throws MoreThan64ElementsException {
+    return this.merge(this.toCompressed(mask), Container::and, false, false);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CompressedDomainBitSet<T> intersectVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.intersect(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.containers.length == 0;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new Itr<>(this);
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> minus(final BigInteger mask) {
+    return this.minus(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> minus(final BitSet set) {
+    return this.merge(this.toCompressed(set), Container::andNot, true, false);
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> minus(final Iterable<T> set) {
+    return this.merge(this.toCompressed(set), Container::andNot, true, false);
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> minus(final long mask) throws MoreThan64ElementsException {
+    return this.merge(this.toCompressed(mask), Container::andNot, true, false);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CompressedDomainBitSet<T> minusVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.minus(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public int size() {
+    return this.ranks[this.containers.length];
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return Spliterators.spliterator(this.iterator(), this.size(), Spliterator.SIZED
+        | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+  }
+
+  @Override
+  public BigInteger toBigInteger() {
+    return BitSetUtilities.asBigInteger(this.toBitSet());
+  }
+
+  @Override
+  public BitSet toBitSet() {
+    return BitSet.valueOf(this.toLongArray());
+  }
+
+  @Override
+  public long toLong() throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.isEmpty() ? 0L : this.containers[0].toWords(1)[0];
+  }
+
+  @Override
+  public long[] toLongArray() {
+    final long[] words = new long[Container.words(this.domain.size())];
+    for (int i = 0; i < this.containers.length; i++) {
+      final int offset = this.keys[i] * CHUNK_WORDS;
+      final int length = Math.min(CHUNK_WORDS, words.length - offset);
+      System.arraycopy(this.containers[i].toWords(length), 0, words, offset, length);
+    }
+    return words;
+  }
+
+  @Override
+  public Set<T> toSet() {
+    final Set<T> result = new LinkedHashSet<>(this.size());
+    this.forEach(result::add);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    final Iterator<T> it = this.iterator();
+    if (!it.hasNext())
+      return "[]";
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (;;) {
+      sb.append(it.next());
+      if (!it.hasNext())
+        return sb.append(']').toString();
+      sb.append(',').append(' ');
+    }
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> union(final BigInteger mask) {
+    return this.union(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> union(final BitSet set) {
+    return this.merge(this.toCompressed(set), Container::or, true, true);
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> union(final Iterable<T> set) {
+    return this.merge(this.toCompressed(set), Container::or, true, true);
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> union(final long mask) throws MoreThan64ElementsException {
+    return this.merge(this.toCompressed(mask), Container::or, true, true);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CompressedDomainBitSet<T> unionVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.union(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public CompressedDomainBitSet<T> xor(final DomainBitSet<T> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    final CompressedDomainBitSet<T> other = set instanceof CompressedDomainBitSet ? this
+        .toCompressed(set) : this.toCompressed(set.toBitSet());
+    return this.merge(other, Container::xor, true, true);
+  }
+
+  @Override
+  public Stream<Pair<Object, Integer, T>> zipWithPosition() {
+    return this.stream().map(e -> Pair.of(this.domain.indexOf(e), e));
+  }
+
+  /** This proxy class is used to serialize CompressedDomainBitSet instances. The set is written in
+   * the format of {@link CompressedDomainBitSet#writeTo(DataOutput)}. */
+  private static class SerializationProxy<T> implements java.io.Serializable {
+    private static final long                   serialVersionUID = 4408853180367958416L;
+
+    private transient CompressedDomainBitSet<T> set;
+
+    public SerializationProxy(@NonNull final CompressedDomainBitSet<T> set) {
+      this.set = set;
+    }
+
+    private void writeObject(final ObjectOutputStream stream) throws IOException {
+      stream.defaultWriteObject();
+      stream.writeObject(this.set.domain);
+      this.set.writeTo(stream);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(final ObjectInputStream stream) throws IOException,
+        ClassNotFoundException {
+      stream.defaultReadObject();
+      this.set = readFrom((Domain<T>) stream.readObject(), stream);
+    }
+
+    private Object readResolve() {
+      return this.set;
+    }
+  }
+
+  private Object writeReplace() {
+    return new SerializationProxy<>(this);
+  }
+
+  @SuppressFBWarnings({ "static-method", "unused" })
+  private void readObject(final java.io.ObjectInputStream stream)
+      throws java.io.InvalidObjectException {
+    throw new java.io.InvalidObjectException("Proxy required");
+  }
+}
@@ -0,0 +1,192 @@
+package ch.claude_martin.enumbitset;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** An immutable set of non-negative indices. There are three representations:
+ * <ul>
+ * <li>{@link ArrayContainer}: a sorted array of the indices, for sparse sets,</li>
+ * <li>{@link BitmapContainer}: a bitmap of words, for dense sets,</li>
+ * <li>{@link RunContainer}: intervals of consecutive indices, for clustered sets.</li>
+ * </ul>
+ * All binary operations are implemented for each pair of representations. The result is not
+ * necessarily in the best representation, see {@link #optimize(int)}.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+abstract class Container implements Serializable {
+  private static final long serialVersionUID = 2604431233812785612L;
+
+  /** Number of words needed for a bitmap of the given universe. */
+  static int words(final int universe) {
+    return (universe + 63) >>> 6;
+  }
+
+  /** A container of all indices from <code>from</code> (inclusive) to <code>to</code>
+   * (exclusive). */
+  @NonNull
+  static Container range(final int from, final int to) {
+    if (from >= to)
+      return ArrayContainer.EMPTY;
+    return new RunContainer(new int[] { from, to }, to - from);
+  }
+
+  /** The number of indices in this container. */
+  abstract int cardinality();
+
+  /** Checks if this contains the given index. */
+  abstract boolean contains(final int index);
+
+  /** Returns the smallest index that is equal to or larger than the given index, or -1. */
+  abstract int nextSetBit(final int from);
+
+  /** Returns the largest index, or -1 if this is empty. */
+  abstract int last();
+
+  /** The number of indices that are smaller than the given index. */
+  abstract int rank(final int index);
+
+  /** The index at the given position, with <code>0 &lt;= n &lt; cardinality()</code>. */
+  abstract int select(final int n) throws IndexOutOfBoundsException;
+
+  /** The number of intervals of consecutive indices. */
+  abstract int numberOfRuns();
+
+  /** The indices as a bitmap of the given length. */
+  @NonNull
+  abstract long[] toWords(final int length);
+
+  /** The word at the given index of the bitmap, without creating the other words. */
+  long word(final int index) {
+    final int from = index << 6;
+    long word = 0L;
+    for (int i = this.nextSetBit(from); i >= 0 && i < from + 64; i = this.nextSetBit(i + 1))
+      word |= 1L << i;
+    return word;
+  }
+
+  @NonNull
+  abstract ArrayContainer toArrayContainer();
+
+  @NonNull
+  abstract BitmapContainer toBitmapContainer(final int universe);
+
+  @NonNull
+  abstract RunContainer toRunContainer();
+
+  /** Intersection of two containers. */
+  @NonNull
+  abstract Container and(final Container other);
+
+  /** Union of two containers. */
+  @NonNull
+  abstract Container or(final Container other);
+
+  /** Relative complement of two containers. */
+  @NonNull
+  abstract Container andNot(final Container other);
+
+  /** Symmetric difference of two containers. */
+  @NonNull
+  abstract Container xor(final Container other);
+
+  /** Complement in a universe of the given size. */
+  @NonNull
+  abstract Container complement(final int universe);
+
+  final boolean isEmpty() {
+    return this.cardinality() == 0;
+  }
+
+  /** Returns the smallest index, or -1 if this is empty. */
+  final int first() {
+    return this.nextSetBit(0);
+  }
+
+  /** Returns the same indices in the representation that uses the least memory.
+   *
+   * @param universe
+   *          The size of the universe, which is the size of the domain. */
+  @NonNull
+  final Container optimize(final int universe) {
+    final long array = 4L * this.cardinality();
+    final long bitmap = 8L * words(universe);
+    final long runs = 8L * this.numberOfRuns();
+    if (array <= bitmap && array <= runs)
+      return this.toArrayContainer();
+    if (runs < bitmap)
+      return this.toRunContainer();
+    return this.toBitmapContainer(universe);
+  }
+
+  /** Checks if both containers contain the same indices. */
+  final boolean sameIndices(final Container other) {
+    if (this == other)
+      return true;
+    if (this.cardinality() != other.cardinality())
+      return false;
+    // With the same cardinality it is enough to check that one contains the other:
+    if (other instanceof ArrayContainer)
+      return this.containsAll((ArrayContainer) other);
+    if (this instanceof ArrayContainer)
+      return other.containsAll((ArrayContainer) this);
+    if (this instanceof RunContainer && other instanceof RunContainer)
+      return Arrays.equals(((RunContainer) this).runs, ((RunContainer) other).runs);
+    if (this instanceof BitmapContainer && other instanceof BitmapContainer) {
+      final long[] a = ((BitmapContainer) this).words;
+      final long[] b = ((BitmapContainer) other).words;
+      for (int w = 0; w < Math.max(a.length, b.length); w++)
+        if ((w < a.length ? a[w] : 0L) != (w < b.length ? b[w] : 0L))
+          return false;
+      return true;
+    }
+    final BitmapContainer bitmap = (BitmapContainer) (this instanceof BitmapContainer ? this
+        : other);
+    final int[] runs = ((RunContainer) (this instanceof RunContainer ? this : other)).runs;
+    for (int r = 0; r < runs.length; r += 2)
+      if (!bitmap.containsRange(runs[r], runs[r + 1]))
+        return false;
+    return true;
+  }
+
+  /** Checks if this contains all indices of the given container. */
+  private boolean containsAll(final ArrayContainer other) {
+    for (final int i : other.values)
+      if (!this.contains(i))
+        return false;
+    return true;
+  }
+
+  /** The same as <code>{@link BitSetUtilities#hashCode(long[]) hashCode}(toWords(n))</code>, but
+   * without creating the words. */
+  final int wordsHashCode() {
+    final long h = 1234 ^ this.wordsXor(0);
+    return (int) (h >> 32 ^ h);
+  }
+
+  /** Xor of all <code>word * (offset + w + 1)</code>, where <code>word</code> is the word at index
+   * <code>w</code> of the bitmap. This is used to calculate the hash code of a bitmap that is split
+   * into several containers.
+   *
+   * @param offset
+   *          The index of the first word of this container in the complete bitmap. */
+  long wordsXor(final int offset) {
+    long h = 0;
+    int i = this.nextSetBit(0);
+    while (i >= 0) {
+      final int w = i >>> 6;
+      long word = 0L;
+      do {
+        word |= 1L << i;
+        i = this.nextSetBit(i + 1);
+      } while (i >= 0 && i >>> 6 == w);
+      h ^= word * (offset + w + 1);
+    }
+    return h;
+  }
+}
@@ -0,0 +1,766 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.Nullable;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+/** Thread-safe, mutable set of enum constants for data that is read much more often than it is
+ * modified.
+ * <p>
+ * The elements are held in an array of words that is never modified. Each read operation uses the
+ * array that is current when it starts, without any locking. Each modification creates a new array
+ * and replaces the current array by compare-and-set, and tries again if another thread was faster.
+ * So modifications are expensive and should be rare, but they never block the readers.
+ * <p>
+ * The {@link #iterator() iterator}, the {@link #spliterator() spliterator} and all methods that
+ * return a copy, such as {@link #toSet()} or {@link #union(Iterable)}, use one snapshot. They never
+ * see a concurrent modification and never throw a
+ * {@link java.util.ConcurrentModificationException}. The iterator does not support
+ * {@link Iterator#remove() remove}.
+ * <p>
+ * Methods such as {@link #union(Iterable)} and {@link #complement()} return a new and independent
+ * set. {@link #clone()} returns a new set that starts with the current snapshot of this set.
+ *
+ * @param <E>
+ *          Enum type that implements <code>{@link EnumBitSetHelper}&lt;E&gt; </code>.
+ * @see EnumBitSet
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class CopyOnWriteEnumBitSet<E extends Enum<E> & EnumBitSetHelper<E>> implements
+    DomainBitSet<E>, Collection<E> {
+  private static final long serialVersionUID = 4180736322178565023L;
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<CopyOnWriteEnumBitSet, long[]> WORDS = //
+  AtomicReferenceFieldUpdater.newUpdater(CopyOnWriteEnumBitSet.class, long[].class, "words");
+
+  private static final class Itr<E> implements Iterator<E> {
+    @NonNull
+    private final E[]    constants;
+    @NonNull
+    private final long[] words;
+    private int          word = 0;
+    private long         next;
+
+    public Itr(@NonNull final E[] constants, final long[] words) {
+      this.constants = constants;
+      this.words = words;
+      this.next = words.length == 0 ? 0L : words[0];
+      this.advance();
+    }
+
+    private void advance() {
+      while (this.next == 0L && this.word < this.words.length - 1)
+        this.next = this.words[++this.word];
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next != 0L;
+    }
+
+    @Override
+    public E next() {
+      if (this.next == 0L)
+        throw new NoSuchElementException();
+      final int index = this.word << 6 | Long.numberOfTrailingZeros(this.next);
+      this.next &= this.next - 1;
+      this.advance();
+      return this.constants[index];
+    }
+  }
+
+  /** Creates a set containing all elements of the given enum type.
+   *
+   * @param <X>
+   *          The enum type.
+   * @param type
+   *          Enum type.
+   * @return CopyOnWriteEnumBitSet containing all elements. */
+  @NonNull
+  public static <X extends Enum<X> & EnumBitSetHelper<X>> CopyOnWriteEnumBitSet<X> allOf(
+      final Class<X> type) {
+    final CopyOnWriteEnumBitSet<X> result = noneOf(type);
+    result.words = mask(result.constants.length);
+    return result;
+  }
+
+  /** Creates a set containing none of the elements of the given enum type.
+   *
+   * @param <X>
+   *          The enum type.
+   * @param type
+   *          Enum type.
+   * @return CopyOnWriteEnumBitSet containing no elements. */
+  @NonNull
+  public static <X extends Enum<X> & EnumBitSetHelper<X>> CopyOnWriteEnumBitSet<X> noneOf(
+      final Class<X> type) {
+    final X[] constants = requireNonNull(type, "type").getEnumConstants();
+    if (constants == null)
+      throw new IllegalArgumentException("Not an enum type: " + type.getName());
+    final Class<X> enumType = constants.length == 0 ? type : constants[0].getDeclaringClass();
+    return new CopyOnWriteEnumBitSet<>(enumType, constants,
+        new long[Container.words(constants.length)]);
+  }
+
+  /** Creates a set containing the given elements.
+   *
+   * @param <X>
+   *          The enum type of all elements.
+   * @param first
+   *          The first element (must not be null).
+   * @param more
+   *          More elements to add.
+   * @return New CopyOnWriteEnumBitSet containing all given elements. */
+  @SafeVarargs
+  @NonNull
+  public static <X extends Enum<X> & EnumBitSetHelper<X>> CopyOnWriteEnumBitSet<X> of(
+      final X first, final X... more) {
+    requireNonNull(first, "first");
+    requireNonNull(more, "more");
+    final CopyOnWriteEnumBitSet<X> result = noneOf(first.getDeclaringClass());
+    result.words = or(result.words, result.toWords(EnumSet.of(first, more)));
+    return result;
+  }
+
+  /** Creates a set containing the elements of the given set.
+   *
+   * @param <X>
+   *          The enum type of all elements.
+   * @param set
+   *          An EnumBitSet.
+   * @return New CopyOnWriteEnumBitSet containing all elements of the given set. */
+  @NonNull
+  public static <X extends Enum<X> & EnumBitSetHelper<X>> CopyOnWriteEnumBitSet<X> copyOf(
+      final EnumBitSet<X> set) {
+    final CopyOnWriteEnumBitSet<X> result = noneOf(requireNonNull(set, "set").getEnumType());
+    result.words = set.toLongArray();
+    return result;
+  }
+
+  /** Words of a full set of the given size. */
+  private static long[] mask(final int size) {
+    final long[] result = new long[Container.words(size)];
+    Arrays.fill(result, -1L);
+    if ((size & 63) != 0)
+      result[result.length - 1] = -1L >>> -size;
+    return result;
+  }
+
+  @NonNull
+  private final Class<E>  enumType;
+
+  @NonNull
+  private final E[]       constants;
+
+  @NonNull
+  private final Domain<E> domain;
+
+  /** The current snapshot. The array is never modified. */
+  @NonNull
+  private volatile long[] words;
+
+  private CopyOnWriteEnumBitSet(final Class<E> enumType, final E[] constants, final long[] words) {
+    this.enumType = enumType;
+    this.constants = constants;
+    this.domain = EnumDomain.of(enumType);
+    this.words = words;
+  }
+
+  /** A new set of the same type with the given words. */
+  private CopyOnWriteEnumBitSet<E> with(final long[] snapshot) {
+    return new CopyOnWriteEnumBitSet<>(this.enumType, this.constants, snapshot);
+  }
+
+  /** The current snapshot, without a copy. It must not be modified. */
+  long[] snapshot() {
+    return this.words;
+  }
+
+  /** Replaces the snapshot by the result of the given function, until the compare-and-set
+   * succeeds. The function must not modify its argument and must return the argument if nothing
+   * changes.
+   *
+   * @return <code>true</code>, if the set was modified. */
+  private boolean update(final UnaryOperator<long[]> function) {
+    for (;;) {
+      final long[] current = this.words;
+      final long[] next = function.apply(current);
+      if (next == current)
+        return false;
+      if (WORDS.compareAndSet(this, current, next))
+        return true;
+    }
+  }
+
+  private int indexOf(@Nullable final Object o) {
+    if (o instanceof Enum && ((Enum<?>) o).getDeclaringClass() == this.enumType)
+      return ((Enum<?>) o).ordinal();
+    return -1;
+  }
+
+  /** The words of the given elements. The array might be the snapshot of another set and must not
+   * be modified. */
+  private long[] toWords(final Iterable<?> itr) throws IllegalArgumentException {
+    requireNonNull(itr, "itr");
+    if (itr instanceof CopyOnWriteEnumBitSet
+        && ((CopyOnWriteEnumBitSet<?>) itr).enumType == this.enumType)
+      return ((CopyOnWriteEnumBitSet<?>) itr).words;
+    if (itr instanceof DomainBitSet && this.domain.equals(((DomainBitSet<?>) itr).getDomain()))
+      return ((DomainBitSet<?>) itr).toLongArray();
+    final long[] result = new long[this.words.length];
+    for (final Object o : itr) {
+      final int index = this.indexOf(o);
+      if (index < 0)
+        throw new IllegalArgumentException(String.format(
+            "The object '%s' is not element of the domain.", o));
+      result[index >>> 6] |= 1L << index;
+    }
+    return result;
+  }
+
+  private long[] toWords(final BitSet set) throws IllegalArgumentException {
+    if (requireNonNull(set, "set").length() > this.constants.length)
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+    return Arrays.copyOf(set.toLongArray(), this.words.length);
+  }
+
+  private long[] toWords(final long mask) throws MoreThan64ElementsException {
+    if (this.constants.length > 64)
+      throw new MoreThan64ElementsException();
+    if (this.constants.length < 64 && mask >>> this.constants.length != 0L)
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+    return new long[] { mask };
+  }
+
+  /** Bitwise AND of the words, or <code>current</code> if nothing changes. */
+  private static long[] and(final long[] current, final long[] mask) {
+    long[] result = current;
+    for (int i = 0; i < current.length; i++) {
+      final long w = current[i] & (i < mask.length ? mask[i] : 0L);
+      if (w != current[i]) {
+        if (result == current)
+          result = current.clone();
+        result[i] = w;
+      }
+    }
+    return result;
+  }
+
+  /** Bitwise AND NOT of the words, or <code>current</code> if nothing changes. */
+  private static long[] andNot(final long[] current, final long[] mask) {
+    long[] result = current;
+    for (int i = 0; i < current.length && i < mask.length; i++) {
+      final long w = current[i] & ~mask[i];
+      if (w != current[i]) {
+        if (result == current)
+          result = current.clone();
+        result[i] = w;
+      }
+    }
+    return result;
+  }
+
+  /** Bitwise OR of the words, or <code>current</code> if nothing changes. */
+  private static long[] or(final long[] current, final long[] mask) {
+    long[] result = current;
+    for (int i = 0; i < current.length && i < mask.length; i++) {
+      final long w = current[i] | mask[i];
+      if (w != current[i]) {
+        if (result == current)
+          result = current.clone();
+        result[i] = w;
+      }
+    }
+    return result;
+  }
+
+  /** Adds the element. This creates a new snapshot, if the element is not already in the set. */
+  @Override
+  public boolean add(final E e) {
+    final int index = this.indexOf(requireNonNull(e, "e"));
+    if (index < 0)
+      throw new ClassCastException(e.getClass() + " != " + this.enumType);
+    final long bit = 1L << index;
+    return this.update(w -> {
+      if ((w[index >>> 6] & bit) != 0L)
+        return w;
+      final long[] result = w.clone();
+      result[index >>> 6] |= bit;
+      return result;
+    });
+  }
+
+  /** Adds all elements with one new snapshot. */
+  @Override
+  public boolean addAll(final Collection<? extends E> c) {
+    final long[] mask = this.toWords(c);
+    return this.update(w -> or(w, mask));
+  }
+
+  /** Removes all elements with one new snapshot. */
+  @Override
+  public void clear() {
+    this.words = new long[this.words.length];
+  }
+
+  /** Returns a new set that starts with the current snapshot of this set.
+   *
+   * @return A new and independent CopyOnWriteEnumBitSet. */
+  @Override
+  @NonNull
+  @SuppressFBWarnings("CN_IDIOM_NO_SUPER_CALL")
+  public CopyOnWriteEnumBitSet<E> clone() {
+    return this.with(this.words);
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> complement() {
+    final long[] w = this.words;
+    final long[] result = mask(this.constants.length);
+    for (int i = 0; i < result.length; i++)
+      result[i] &= ~w[i];
+    return this.with(result);
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    final int index = this.indexOf(o);
+    return index >= 0 && (this.words[index >>> 6] & 1L << index) != 0L;
+  }
+
+  @Override
+  public boolean containsAll(final Collection<?> c) {
+    final long[] w = this.words;
+    for (final Object o : requireNonNull(c, "c")) {
+      final int index = this.indexOf(o);
+      if (index < 0 || (w[index >>> 6] & 1L << index) == 0L)
+        return false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean domainContains(final E object) {
+    return requireNonNull(object, "object").getDeclaringClass() == this.enumType;
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this)
+      return true;
+    if (other instanceof DomainBitSet) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<E> domBitSet = (DomainBitSet<E>) other;
+      if (!this.ofEqualDomain(domBitSet))
+        return false;
+      if (BitSetUtilities.isWordComparable(other))
+        return Arrays.equals(this.words, domBitSet.toLongArray());
+      return this.ofEqualElements(domBitSet);
+    }
+    return false;
+  }
+
+  @Override
+  public boolean getBit(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex >= this.constants.length)
+      throw new IndexOutOfBoundsException();
+    return (this.words[bitIndex >>> 6] & 1L << bitIndex) != 0L;
+  }
+
+  @Override
+  @NonNull
+  public Domain<E> getDomain() {
+    return this.domain;
+  }
+
+  /** The declaring enum type that defines the available enum elements.
+   *
+   * @return The enum type of all elements in this set. */
+  @NonNull
+  public Class<E> getEnumType() {
+    return this.enumType;
+  }
+
+  @Override
+  public int hashCode() {
+    return this.domain.hashCode() ^ BitSetUtilities.hashCode(this.words);
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> intersect(final BigInteger mask) {
+    return this.intersect(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> intersect(final BitSet set) {
+    return this.with(and(this.words, this.toWords(set)));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> intersect(final Iterable<E> set) {
+    return this.with(and(this.words, this.toWords(set)));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> intersect(final long mask) throws MoreThan64ElementsException {
+    return this.with(and(this.words, this.toWords(mask)));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CopyOnWriteEnumBitSet<E> intersectVarArgs(
+      @SuppressFBWarnings("unchecked") final E... elements) {
+    return this.intersect(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (final long w : this.words)
+      if (w != 0L)
+        return false;
+    return true;
+  }
+
+  /** Returns an iterator over the current snapshot. It does not support
+   * {@link Iterator#remove() remove}. */
+  @Override
+  public Iterator<E> iterator() {
+    return new Itr<>(this.constants, this.words);
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> minus(final BigInteger mask) {
+    return this.minus(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> minus(final BitSet set) {
+    return this.with(andNot(this.words, this.toWords(set)));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> minus(final Iterable<E> set) {
+    return this.with(andNot(this.words, this.toWords(set)));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> minus(final long mask) throws MoreThan64ElementsException {
+    return this.with(andNot(this.words, this.toWords(mask)));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CopyOnWriteEnumBitSet<E> minusVarArgs(
+      @SuppressFBWarnings("unchecked") final E... elements) {
+    return this.minus(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    final long[] w = this.words;
+    int i = from >>> 6;
+    if (i >= w.length)
+      return -1;
+    long word = w[i] & -1L << from;
+    while (word == 0L) {
+      if (++i == w.length)
+        return -1;
+      word = w[i];
+    }
+    return i << 6 | Long.numberOfTrailingZeros(word);
+  }
+
+  @Override
+  public int nextClearIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    final int size = this.domain.size();
+    if (from >= size)
+      return -1;
+    final long[] w = this.words;
+    return Bitmaps.nextClearIndex(i -> w[i], size, from);
+  }
+
+  @Override
+  public int previousSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < -1)
+      throw new IndexOutOfBoundsException("from < -1: " + from);
+    final int start = Math.min(from, this.domain.size() - 1);
+    if (start < 0)
+      return -1;
+    final long[] w = this.words;
+    return Bitmaps.previousSetIndex(i -> w[i], start);
+  }
+
+  @Override
+  public int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.domain.size())
+      throw new IndexOutOfBoundsException();
+    final long[] w = this.words;
+    return Bitmaps.rank(i -> w[i], w.length, bitIndex);
+  }
+
+  @Override
+  public int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0)
+      throw new IndexOutOfBoundsException();
+    final long[] w = this.words;
+    return Bitmaps.select(i -> w[i], w.length, n);
+  }
+
+  @Override
+  public boolean ofEqualDomain(final DomainBitSet<E> set) {
+    if (requireNonNull(set, "set") instanceof CopyOnWriteEnumBitSet)
+      return this.enumType == ((CopyOnWriteEnumBitSet<?>) set).enumType;
+    return this.domain.equals(set.getDomain());
+  }
+
+  @Override
+  public Stream<E> parallelStream() {
+    return StreamSupport.stream(this.spliterator(), true);
+  }
+
+  /** Removes the element. This creates a new snapshot, if the element is in the set. */
+  @Override
+  public boolean remove(final Object o) {
+    final int index = this.indexOf(o);
+    if (index < 0)
+      return false;
+    final long bit = 1L << index;
+    return this.update(w -> {
+      if ((w[index >>> 6] & bit) == 0L)
+        return w;
+      final long[] result = w.clone();
+      result[index >>> 6] &= ~bit;
+      return result;
+    });
+  }
+
+  /** Removes all elements of the given collection with one new snapshot. */
+  @Override
+  public boolean removeAll(final Collection<?> c) {
+    requireNonNull(c, "c");
+    final long[] mask = new long[this.words.length];
+    for (final Object o : c) {
+      final int index = this.indexOf(o);
+      if (index >= 0)
+        mask[index >>> 6] |= 1L << index;
+    }
+    return this.update(w -> andNot(w, mask));
+  }
+
+  /** Removes all elements that match the filter, with one new snapshot. The filter is applied to
+   * the elements of the current snapshot. It is applied again if another thread modifies this set
+   * before the new snapshot is set. */
+  @Override
+  public boolean removeIf(final Predicate<? super E> filter) {
+    requireNonNull(filter, "filter");
+    return this.update(w -> {
+      final long[] mask = new long[w.length];
+      for (int i = 0; i < w.length; i++)
+        for (long word = w[i]; word != 0L; word &= word - 1) {
+          final int index = i << 6 | Long.numberOfTrailingZeros(word);
+          if (filter.test(this.constants[index]))
+            mask[i] |= 1L << index;
+        }
+      return andNot(w, mask);
+    });
+  }
+
+  /** Retains only the elements of the given collection, with one new snapshot. */
+  @Override
+  public boolean retainAll(final Collection<?> c) {
+    requireNonNull(c, "c");
+    final long[] mask = new long[this.words.length];
+    for (final Object o : c) {
+      final int index = this.indexOf(o);
+      if (index >= 0)
+        mask[index >>> 6] |= 1L << index;
+    }
+    return this.update(w -> and(w, mask));
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (final long w : this.words)
+      size += Long.bitCount(w);
+    return size;
+  }
+
+  /** Returns a spliterator over the current snapshot. */
+  @Override
+  public Spliterator<E> spliterator() {
+    final long[] w = this.words;
+    int size = 0;
+    for (final long word : w)
+      size += Long.bitCount(word);
+    return Spliterators.spliterator(new Itr<>(this.constants, w), size, Spliterator.SIZED
+        | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED
+        | Spliterator.IMMUTABLE);
+  }
+
+  @Override
+  public Stream<E> stream() {
+    return StreamSupport.stream(this.spliterator(), false);
+  }
+
+  @Override
+  public Object[] toArray() {
+    return this.toEnumSet().toArray();
+  }
+
+  @Override
+  public <T> T[] toArray(final T[] a) {
+    return this.toEnumSet().toArray(a);
+  }
+
+  @Override
+  public BigInteger toBigInteger() {
+    return BitSetUtilities.asBigInteger(this.toBitSet());
+  }
+
+  @Override
+  public BitSet toBitSet() {
+    return BitSet.valueOf(this.words);
+  }
+
+  /** Returns a new EnumBitSet with the elements of the current snapshot.
+   *
+   * @return A mutable copy of this set. */
+  @NonNull
+  public EnumBitSet<E> toEnumBitSet() {
+    return EnumBitSet.asEnumBitSet(this.toBitSet(), this.enumType);
+  }
+
+  /** Returns a new EnumSet with the elements of the current snapshot.
+   *
+   * @return A mutable copy of this set. */
+  @NonNull
+  public EnumSet<E> toEnumSet() {
+    final EnumSet<E> result = EnumSet.noneOf(this.enumType);
+    new Itr<>(this.constants, this.words).forEachRemaining(result::add);
+    return result;
+  }
+
+  @Override
+  public long toLong() throws MoreThan64ElementsException {
+    if (this.constants.length > 64)
+      throw new MoreThan64ElementsException();
+    final long[] w = this.words;
+    return w.length == 0 ? 0L : w[0];
+  }
+
+  @Override
+  public long[] toLongArray() {
+    return this.words.clone();
+  }
+
+  @Override
+  public Set<E> toSet() {
+    return this.toEnumSet();
+  }
+
+  @Override
+  public String toString() {
+    return this.toEnumSet().toString();
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> union(final BigInteger mask) {
+    return this.union(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> union(final BitSet set) {
+    return this.with(or(this.words, this.toWords(set)));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> union(final Iterable<E> set) {
+    return this.with(or(this.words, this.toWords(set)));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> union(final long mask) throws MoreThan64ElementsException {
+    return this.with(or(this.words, this.toWords(mask)));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public CopyOnWriteEnumBitSet<E> unionVarArgs(
+      @SuppressFBWarnings("unchecked") final E... elements) {
+    return this.union(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public CopyOnWriteEnumBitSet<E> xor(final DomainBitSet<E> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    final long[] result = this.toWords(set).clone();
+    final long[] w = this.words;
+    for (int i = 0; i < result.length; i++)
+      result[i] ^= w[i];
+    return this.with(result);
+  }
+
+  /** This proxy class is used to serialize CopyOnWriteEnumBitSet instances. Only the enum type and
+   * the words of the current snapshot are written. */
+  private static class SerializationProxy<E extends Enum<E> & EnumBitSetHelper<E>> implements
+      java.io.Serializable {
+    private static final long serialVersionUID = -1587069324850742167L;
+
+    private final Class<E>    enumType;
+    private final long[]      words;
+
+    public SerializationProxy(final Class<E> enumType, final long[] words) {
+      this.enumType = enumType;
+      this.words = words;
+    }
+
+    private Object readResolve() throws java.io.InvalidObjectException {
+      final CopyOnWriteEnumBitSet<E> result = noneOf(this.enumType);
+      if (BitSet.valueOf(this.words).length() > result.constants.length)
+        throw new java.io.InvalidObjectException("The mask contains more elements than "
+            + this.enumType.getName());
+      result.words = Arrays.copyOf(this.words, result.words.length);
+      return result;
+    }
+  }
+
+  private Object writeReplace() {
+    return new SerializationProxy<>(this.enumType, this.words);
+  }
+
+  @SuppressFBWarnings({ "static-method", "unused" })
+  private void readObject(final java.io.ObjectInputStream stream)
+      throws java.io.InvalidObjectException {
+    throw new java.io.InvalidObjectException("Proxy required");
+  }
+}
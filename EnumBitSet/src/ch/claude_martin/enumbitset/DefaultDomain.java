@@ -3,6 +3,8 @@ package ch.claude_martin.enumbitset;
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -10,6 +12,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Spliterator;
 import java.util.function.Function;
 
@@ -69,6 +72,121 @@ final class DefaultDomain<T> extends AbstractList<T> implements Domain<T> {
     return new DefaultDomain<>(domain);
   }
 
+  /** Entry of the registry. It is removed when the domain is collected. */
+  private static final class RegistryEntry extends WeakReference<DefaultDomain<?>> {
+    final DomainFingerprint fingerprint;
+
+    RegistryEntry(final DefaultDomain<?> domain, final ReferenceQueue<DefaultDomain<?>> queue) {
+      super(domain, queue);
+      this.fingerprint = domain.fingerprint;
+    }
+  }
+
+  /** Registry of deserialized domains, see {@link #intern(Object[])}. */
+  private static final Map<DomainFingerprint, RegistryEntry> registry      = new HashMap<>();
+  private static final ReferenceQueue<DefaultDomain<?>>      registryQueue = new ReferenceQueue<>();
+
+  /** Domains that are serialized by reference, see {@link Domain#register(Collection)}. */
+  private static final Map<DomainFingerprint, DefaultDomain<?>> registered = new HashMap<>();
+
+  /** See {@link Domain#register(Collection)}. */
+  @SuppressWarnings("unchecked")
+  @NonNull
+  static <T> DefaultDomain<T> register(final Collection<? extends T> elements) {
+    final DefaultDomain<T> domain = elements instanceof DefaultDomain ? (DefaultDomain<T>) elements
+        : intern((T[]) elements.toArray());
+    if (!domain.fingerprint.isStable())
+      throw new IllegalArgumentException("The fingerprint of the domain is not stable.");
+    synchronized (registry) {
+      final DefaultDomain<?> existing = registered.get(domain.fingerprint);
+      if (existing == null) {
+        registered.put(domain.fingerprint, domain);
+        return domain;
+      }
+      if (Arrays.equals(existing.elements, domain.elements))
+        return (DefaultDomain<T>) existing;
+    }
+    throw new IllegalArgumentException("Another domain with the same fingerprint is registered.");
+  }
+
+  /** See {@link Domain#unregister(Domain)}. */
+  static boolean unregister(final Domain<?> domain) {
+    synchronized (registry) {
+      final DefaultDomain<?> existing = registered.get(domain.fingerprint());
+      if (existing == null || !Arrays.equals(existing.elements, domain.toArray()))
+        return false;
+      registered.remove(existing.fingerprint);
+      return true;
+    }
+  }
+
+  /** The registered domain that is equal to the given domain, or <code>null</code>. */
+  private static DefaultDomain<?> registered(final DefaultDomain<?> domain) {
+    final DefaultDomain<?> existing;
+    synchronized (registry) {
+      existing = registered.get(domain.fingerprint);
+    }
+    if (existing == domain || existing != null && Arrays.equals(existing.elements, domain.elements))
+      return existing;
+    return null;
+  }
+
+  /** Returns a registered domain of the given elements, or creates and registers a new one. All
+   * deserialized domains are resolved by this method, so that equal domains that are read from
+   * different streams are the same instance and share their lookup table. Domains are only held
+   * weakly.
+   * <p>
+   * The {@link DomainFingerprint fingerprint} is only used to find a candidate. Its elements are
+   * always compared, as enum constants of equal names from different class loaders have equal
+   * fingerprints. This is still much cheaper than building the lookup table of a new domain.
+   * 
+   * @throws IllegalArgumentException
+   *           if the given array contains duplicates. */
+  @SuppressWarnings("unchecked")
+  @NonNull
+  static <T> DefaultDomain<T> intern(final T[] elements) {
+    requireNonNull(elements, "elements");
+    if (elements.length == 0)
+      return EMPTY_DOMAIN;
+    final DomainFingerprint fingerprint = DomainFingerprint.of(asList(elements));
+    synchronized (registry) {
+      final DefaultDomain<T> domain = (DefaultDomain<T>) lookup(fingerprint, elements);
+      if (domain != null)
+        return domain;
+    }
+    final DefaultDomain<T> result = new DefaultDomain<>(elements);
+    synchronized (registry) {
+      final DefaultDomain<T> domain = (DefaultDomain<T>) lookup(fingerprint, elements);
+      if (domain != null)
+        return domain;
+      registry.put(fingerprint, new RegistryEntry(result, registryQueue));
+      return result;
+    }
+  }
+
+  /** Removes collected domains. Must be called while holding the lock of the registry. */
+  private static void expunge() {
+    for (Object ref; (ref = registryQueue.poll()) != null;) {
+      final DomainFingerprint key = ((RegistryEntry) ref).fingerprint;
+      if (registry.get(key) == ref)
+        registry.remove(key);
+    }
+  }
+
+  /** Must be called while holding the lock of the registry. */
+  private static DefaultDomain<?> lookup(final DomainFingerprint fingerprint,
+      final Object[] elements) {
+    expunge();
+    final DefaultDomain<?> r = registered.get(fingerprint);
+    if (r != null && Arrays.equals(r.elements, elements))
+      return r;
+    final RegistryEntry entry = registry.get(fingerprint);
+    final DefaultDomain<?> domain = entry == null ? null : entry.get();
+    if (domain != null && Arrays.equals(domain.elements, elements))
+      return domain;
+    return null;
+  }
+
   /** Internal use only! */
   @SafeVarargs
   @NonNull
@@ -92,6 +210,9 @@ final class DefaultDomain<T> extends AbstractList<T> implements Domain<T> {
   @NonNull
   private final HashMap<T, Integer> map;
 
+  @NonNull
+  private final DomainFingerprint   fingerprint;
+
   @SuppressFBWarnings(value = "JCIP_FIELD_ISNT_FINAL_IN_IMMUTABLE_CLASS", justification = "It's lazy.")
   private int                       hash;    // defaults to 0, later it's set to a hash code.
 
@@ -123,6 +244,7 @@ final class DefaultDomain<T> extends AbstractList<T> implements Domain<T> {
     }
     if (this.map.size() != domain.length)
       throw new IllegalArgumentException("The domain must not contain duplicates.");
+    this.fingerprint = DomainFingerprint.of(this.list);
   }
 
   @Override
@@ -139,6 +261,9 @@ final class DefaultDomain<T> extends AbstractList<T> implements Domain<T> {
   public boolean equals(final Object obj) {
     if (this == obj)
       return true;
+    if ((obj instanceof DefaultDomain || obj instanceof EnumDomain)
+        && this.fingerprint.domainsDiffer(((Domain<?>) obj).fingerprint()))
+      return false;
     if (obj == null || !(obj instanceof Domain) || this.hashCode() != obj.hashCode())
       return false;
     if (obj instanceof DefaultDomain)
@@ -150,9 +275,16 @@ final class DefaultDomain<T> extends AbstractList<T> implements Domain<T> {
   public Function<Collection<T>, DomainBitSet<T>> factory() {
     if (this.size() <= 64)
       return (s) -> SmallDomainBitSet.of(this, s);
+    if (this.size() <= MediumDomainBitSet.MAX_SIZE)
+      return (s) -> MediumDomainBitSet.of(this, s);
     return (s) -> GeneralDomainBitSet.of(this, s);
   }
 
+  @Override
+  public DomainFingerprint fingerprint() {
+    return this.fingerprint;
+  }
+
   @Override
   public T get(final int i) {
     return this.elements[i];
@@ -215,12 +347,41 @@ final class DefaultDomain<T> extends AbstractList<T> implements Domain<T> {
     }
 
     private Object readResolve() {
-      return DefaultDomain.of(this.elements);
+      return DefaultDomain.intern(this.elements);
     }
 
   }
 
+  /** This proxy class is used to serialize {@link Domain#register(Collection) registered}
+   * DefaultDomain instances. Only the fingerprint is written. */
+  private static class ReferenceSerializationProxy implements java.io.Serializable {
+    private static final long serialVersionUID = 3618279544418390263L;
+    private final long        high;
+    private final long        low;
+    private final int         size;
+
+    public ReferenceSerializationProxy(@NonNull final DomainFingerprint fingerprint,
+        final int size) {
+      this.high = fingerprint.getHigh();
+      this.low = fingerprint.getLow();
+      this.size = size;
+    }
+
+    private Object readResolve() throws java.io.InvalidObjectException {
+      final DomainFingerprint fingerprint = new DomainFingerprint(this.high, this.low, true);
+      final DefaultDomain<?> domain;
+      synchronized (registry) {
+        domain = registered.get(fingerprint);
+      }
+      if (domain == null || domain.size() != this.size)
+        throw new java.io.InvalidObjectException("The domain is not registered: " + fingerprint);
+      return domain;
+    }
+  }
+
   private Object writeReplace() {
+    if (registered(this) != null)
+      return new ReferenceSerializationProxy(this.fingerprint, this.elements.length);
     return new SerializationProxy<>(this.elements);
   }
 
@@ -68,7 +68,40 @@ public interface Domain<T> extends List<T>, Set<T>, Serializable {
     return DefaultDomain.of(elements);
   }
 
+  /** Registers a domain of the given elements, so that it is serialized by reference. Sets of the
+   * returned domain, or of an equal domain, are then serialized with the {@link DomainFingerprint
+   * fingerprint} of the domain instead of all its elements. This is useful when each set is written
+   * to its own stream, such as the attributes of a replicated session.
+   * <p>
+   * The receiving JVM must have registered the same domain before it reads such a set. Otherwise
+   * deserialization fails with an {@link java.io.InvalidObjectException}.
+   * 
+   * @param elements
+   *          Elements of the domain. The collection must be ordered.
+   * @throws IllegalArgumentException
+   *           if the fingerprint of the domain is not {@link DomainFingerprint#isStable() stable}
+   *           or if another domain with the same fingerprint is registered.
+   * @return The registered domain.
+   * @see #unregister(Domain) */
+  @NonNull
+  public static <T> Domain<T> register(@NonNull final Collection<? extends T> elements) {
+    return DefaultDomain.register(requireNonNull(elements, "elements"));
+  }
+
+  /** Removes a domain that was {@link #register(Collection) registered}. Sets of that domain are
+   * then serialized with all elements of the domain again.
+   * 
+   * @param domain
+   *          A registered domain, or a domain that is equal to it.
+   * @return <code>true</code>, if the domain was registered. */
+  public static boolean unregister(@NonNull final Domain<?> domain) {
+    return DefaultDomain.unregister(requireNonNull(domain, "domain"));
+  }
+
   /** Two domains are defined to be equal if they contain the same elements in the same order.
+   * <p>
+   * Implementations should compare the {@link #fingerprint() fingerprints} before comparing the
+   * elements.
    * 
    * @param other
    *          the object to be compared for equality with this domain */
@@ -82,6 +115,16 @@ public interface Domain<T> extends List<T>, Set<T>, Serializable {
    * @see BitSetUtilities#toDomainBitSet(Domain) */
   public Function<Collection<T>, DomainBitSet<T>> factory();
 
+  /** Structural fingerprint of this domain. Implementations should compute it only once, so that
+   * different domains can be told apart in constant time.
+   * 
+   * @see DomainFingerprint
+   * @return The fingerprint of the elements of this domain. */
+  @NonNull
+  public default DomainFingerprint fingerprint() {
+    return DomainFingerprint.of(this);
+  }
+
   /** Returns the hash code value for this domain. The value must be equal to:<br>
    * <code>java.util.Arrays.hashCode(this.toArray())</code>
    * 
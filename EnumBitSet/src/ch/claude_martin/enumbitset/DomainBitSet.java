@@ -10,17 +10,17 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.SplittableRandom;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -65,6 +65,256 @@ import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
 @DefaultAnnotationForParameters({ NonNull.class })
 public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
 
+  /** Mutable builder of a {@link DomainBitSet}. The elements are collected in a buffer of words,
+   * which grows as needed. {@link #freeze()} passes the buffer to the created set without copying
+   * it. After that the builder can't be used any more.
+   * <p>
+   * A builder is not thread-safe.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @see DomainBitSet#builder(Domain) */
+  public static final class Builder<T> {
+    private final Domain<T> domain;
+    /** The buffer, or <code>null</code> after {@link #freeze()}. */
+    private long[]          words = new long[0];
+
+    Builder(final Domain<T> domain) {
+      this.domain = requireNonNull(domain, "domain");
+    }
+
+    /** The buffer, with at least the given number of words. */
+    private long[] words(final int length) throws IllegalStateException {
+      if (this.words == null)
+        throw new IllegalStateException("The builder was already frozen.");
+      if (this.words.length < length) {
+        final int max = Container.words(this.domain.size());
+        this.words = Arrays.copyOf(this.words, Math.min(max, Math.max(length,
+            2 * this.words.length)));
+      }
+      return this.words;
+    }
+
+    private int checkIndex(final int bitIndex) throws IndexOutOfBoundsException {
+      if (bitIndex < 0 || bitIndex >= this.domain.size())
+        throw new IndexOutOfBoundsException("bitIndex: " + bitIndex);
+      return bitIndex;
+    }
+
+    private void checkRange(final int from, final int to) throws IndexOutOfBoundsException {
+      if (from < 0 || to > this.domain.size() || from > to)
+        throw new IndexOutOfBoundsException("from: " + from + ", to: " + to);
+    }
+
+    private int indexOf(final T element) throws IllegalArgumentException {
+      final int index = this.domain.indexOf(requireNonNull(element, "element"));
+      if (index < 0)
+        throw new IllegalArgumentException(String.format(
+            "The object '%s' is not element of the domain.", element));
+      return index;
+    }
+
+    /** Adds an element.
+     * 
+     * @param element
+     *          An element of the domain.
+     * @return this
+     * @throws IllegalArgumentException
+     *           if the element is not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public Builder<T> add(final T element) {
+      return this.addIndex(this.indexOf(element));
+    }
+
+    /** Adds all given elements.
+     * 
+     * @param elements
+     *          Elements of the domain.
+     * @return this
+     * @throws IllegalArgumentException
+     *           if an element is not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public Builder<T> addAll(final Iterable<? extends T> elements) {
+      for (final T e : requireNonNull(elements, "elements"))
+        this.add(e);
+      return this;
+    }
+
+    /** Adds the element at the given position.
+     * 
+     * @param bitIndex
+     *          The position in the domain.
+     * @return this
+     * @throws IndexOutOfBoundsException
+     *           if the index is not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public Builder<T> addIndex(final int bitIndex) {
+      final int index = this.checkIndex(bitIndex);
+      this.words((index >>> 6) + 1)[index >>> 6] |= 1L << index;
+      return this;
+    }
+
+    /** Adds the elements of the given mask, for domains of up to 64 elements.
+     * 
+     * @param mask
+     *          The positions of the elements.
+     * @return this
+     * @throws MoreThan64ElementsException
+     *           if the domain contains more than 64 elements.
+     * @throws IllegalArgumentException
+     *           if the mask contains positions that are not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public Builder<T> addMask(final long mask) throws MoreThan64ElementsException {
+      final int size = this.domain.size();
+      if (size > 64)
+        throw new MoreThan64ElementsException();
+      if (size < 64 && mask >>> size != 0L)
+        throw new IllegalArgumentException(
+            "The parameter contains more elements than the domain allows.");
+      if (mask != 0L)
+        this.words(1)[0] |= mask;
+      return this;
+    }
+
+    /** Adds the elements of the given bit set.
+     * 
+     * @param set
+     *          The positions of the elements.
+     * @return this
+     * @throws IllegalArgumentException
+     *           if the bit set contains positions that are not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public Builder<T> addMask(final BitSet set) {
+      if (requireNonNull(set, "set").length() > this.domain.size())
+        throw new IllegalArgumentException(
+            "The parameter contains more elements than the domain allows.");
+      final long[] mask = set.toLongArray();
+      final long[] w = this.words(mask.length);
+      for (int i = 0; i < mask.length; i++)
+        w[i] |= mask[i];
+      return this;
+    }
+
+    /** Adds the elements at the positions from <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive).
+     * 
+     * @param from
+     *          The first position.
+     * @param to
+     *          The position after the last position.
+     * @return this
+     * @throws IndexOutOfBoundsException
+     *           if the range is not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public Builder<T> addRange(final int from, final int to) {
+      this.checkRange(from, to);
+      BitmapContainer.setRange(this.words(Container.words(to)), from, to, true);
+      return this;
+    }
+
+    /** Removes an element.
+     * 
+     * @param element
+     *          An element of the domain.
+     * @return this
+     * @throws IllegalArgumentException
+     *           if the element is not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public Builder<T> remove(final T element) {
+      return this.removeIndex(this.indexOf(element));
+    }
+
+    /** Removes the element at the given position.
+     * 
+     * @param bitIndex
+     *          The position in the domain.
+     * @return this
+     * @throws IndexOutOfBoundsException
+     *           if the index is not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public Builder<T> removeIndex(final int bitIndex) {
+      final int index = this.checkIndex(bitIndex);
+      final long[] w = this.words(0);
+      if (index >>> 6 < w.length)
+        w[index >>> 6] &= ~(1L << index);
+      return this;
+    }
+
+    /** Removes the elements at the positions from <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive).
+     * 
+     * @param from
+     *          The first position.
+     * @param to
+     *          The position after the last position.
+     * @return this
+     * @throws IndexOutOfBoundsException
+     *           if the range is not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public Builder<T> removeRange(final int from, final int to) {
+      this.checkRange(from, to);
+      final long[] w = this.words(0);
+      BitmapContainer.setRange(w, from, Math.min(to, w.length << 6), false);
+      return this;
+    }
+
+    /** Checks whether the element at the given position was added.
+     * 
+     * @param bitIndex
+     *          The position in the domain.
+     * @return <code>true</code>, if the element is in the set.
+     * @throws IndexOutOfBoundsException
+     *           if the index is not in the domain.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    public boolean getBit(final int bitIndex) {
+      final int index = this.checkIndex(bitIndex);
+      final long[] w = this.words(0);
+      return index >>> 6 < w.length && (w[index >>> 6] & 1L << index) != 0L;
+    }
+
+    /** Creates the set and invalidates this builder. The buffer is used by the set without copying
+     * it: a {@link SmallDomainBitSet} or {@link MediumDomainBitSet} is created for small domains,
+     * and an {@link AdaptiveDomainBitSet}, which keeps the buffer or a more compact representation,
+     * for larger domains. This is also true for an enum domain, so the set is never an
+     * {@link EnumBitSet}. It is still {@link DomainBitSet#equals(Object) equal} to an EnumBitSet of
+     * the same elements.
+     * 
+     * @return A new, immutable set.
+     * @throws IllegalStateException
+     *           if the builder was already frozen. */
+    @NonNull
+    public DomainBitSet<T> freeze() {
+      final long[] w = this.words(0);
+      this.words = null;
+      return BitSetUtilities.immutableWithWords(this.domain, w);
+    }
+
+    @Override
+    public String toString() {
+      return this.getClass().getSimpleName() + "[domain=" + this.domain.size()
+          + (this.words == null ? ", frozen]" : "]");
+    }
+  }
+
   /** Creates a set with the given domain, that contains all elements.
    * 
    * @param <T>
@@ -73,8 +323,10 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
    *          The elements of the domain and the set.
    * @return A new DomainBitSet containing all given elements. */
   public static <T> DomainBitSet<T> allOf(final List<T> elements) {
-    if (elements.size() > 64)
+    if (elements.size() > MediumDomainBitSet.MAX_SIZE)
       return GeneralDomainBitSet.allOf(elements);
+    else if (elements.size() > 64)
+      return MediumDomainBitSet.allOf(elements);
     else
       return SmallDomainBitSet.allOf(elements);
   }
@@ -88,31 +340,43 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
    * @return A new DomainBitSet containing all given elements. */
   @SafeVarargs
   public static <T> DomainBitSet<T> allOf(final T... elements) {
-    if (elements.length > 64)
+    if (elements.length > MediumDomainBitSet.MAX_SIZE)
       return GeneralDomainBitSet.allOf(elements);
+    else if (elements.length > 64)
+      return MediumDomainBitSet.allOf(elements);
     else
       return SmallDomainBitSet.allOf(elements);
   }
 
-  /** Creates a general bit set with a domain that consists of all elements of all given enum types.
+  /** Creates a mutable builder for sets of the given domain.
+   * 
+   * @param <T>
+   *          The type of the domain.
+   * @param domain
+   *          The domain.
+   * @return A new, empty builder.
+   * @see Builder#freeze() */
+  @NonNull
+  public static <T> Builder<T> builder(final Domain<T> domain) {
+    return new Builder<>(domain);
+  }
+
+  /** Creates a mutable bit set with a domain that consists of all elements of all given enum types.
    * Note that all bit masks become invalid when any of the types are altered. The set is empty
    * after creation.
+   * <p>
+   * The position of an element is its ordinal plus the number of constants of the types before its
+   * type, so no lookup in a hash table is needed.
    * 
    * @param enumTypes
    *          All enum types that define the domain. The ordering is relevant.
-   * @return A new DomainBitSet that can contain enums from different enum types. */
+   * @return A new {@link MultiEnumBitSet} that can contain enums from different enum types.
+   * @throws IllegalArgumentException
+   *           if a type is given more than once. */
   @SafeVarargs
-  @SuppressFBWarnings({ "unchecked", "rawtypes" })
   public static DomainBitSet<Enum<?>> createMultiEnumBitSet(
       final Class<? extends Enum<?>>... enumTypes) {
-    final List<Enum<?>> dom = new LinkedList<>();
-    for (final Class type : enumTypes)
-      for (final Object e : EnumSet.allOf(type))
-        dom.add((Enum) e);
-    if (dom.size() > 64)
-      return GeneralDomainBitSet.noneOf(dom);
-    else
-      return SmallDomainBitSet.noneOf(dom);
+    return MultiEnumBitSet.noneOf(enumTypes);
   }
 
   /** Creates a set with the given domain, that contains none of the elements.
@@ -123,8 +387,10 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
    *          The elements of the domain.
    * @return A new DomainBitSet containing none of the given elements. */
   public static <T> DomainBitSet<T> noneOf(final List<T> elements) {
-    if (elements.size() > 64)
+    if (elements.size() > MediumDomainBitSet.MAX_SIZE)
       return GeneralDomainBitSet.noneOf(elements);
+    else if (elements.size() > 64)
+      return MediumDomainBitSet.noneOf(elements);
     else
       return SmallDomainBitSet.noneOf(elements);
   }
@@ -138,8 +404,10 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
    * @return A new DomainBitSet containing none of the given elements. */
   @SafeVarargs
   public static <T> DomainBitSet<T> noneOf(final T... elements) {
-    if (elements.length > 64)
+    if (elements.length > MediumDomainBitSet.MAX_SIZE)
       return GeneralDomainBitSet.noneOf(elements);
+    else if (elements.length > 64)
+      return MediumDomainBitSet.noneOf(elements);
     else
       return SmallDomainBitSet.noneOf(elements);
   }
@@ -258,6 +526,35 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
     this.forEach(x -> set.forEach(y -> consumer.accept(x, y)));
   }
 
+  /** Compares this set to another set of the same domain in one pass over the words of both sets.
+   * This is the same as <code>other.minus(this)</code> and <code>this.minus(other)</code>, but the
+   * type of the returned sets only depends on the domain.
+   * 
+   * @param other
+   *          The new version of this set.
+   * @return The elements that were added and removed, in comparison to this set.
+   * @throws IllegalArgumentException
+   *           if the other set is of a different domain.
+   * @see #xor(DomainBitSet) */
+  @NonNull
+  @CheckReturnValue
+  public default DomainBitSetDiff<T> diff(final DomainBitSet<T> other)
+      throws IllegalArgumentException {
+    requireNonNull(other, "other");
+    if (!this.ofEqualDomain(other))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    final long[] a = this.toLongArray();
+    final long[] b = other.toLongArray();
+    final long[] added = new long[a.length];
+    for (int i = 0; i < a.length; i++) {
+      added[i] = b[i] & ~a[i];
+      a[i] &= ~b[i];
+    }
+    final Domain<T> domain = this.getDomain();
+    return new DomainBitSetDiff<>(BitSetUtilities.withWords(domain, added), BitSetUtilities
+        .withWords(domain, a));
+  }
+
   /** Searches an object in the domain of this set.
    * 
    * @param object
@@ -337,9 +634,14 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
       return Optional.empty();
   }
 
-  /** Hash code of domain and elements. The hash code of the domain must be xored with the sum of the
-   * hash codes of all elements:<br>
-   * {@code this.getDomain().hashCode() ^ this.stream().mapToInt(Object::hashCode).sum()} */
+  /** Hash code of domain and elements. The hash code of the domain must be xored with the hash code
+   * of the {@link #toLongArray() words}:<br>
+   * {@code this.getDomain().hashCode() ^ BitSetUtilities.hashCode(this.toLongArray())}
+   * <p>
+   * This is the same for all implementations, so that equal sets of different types have the same
+   * hash code.
+   * 
+   * @see BitSetUtilities#hashCode(DomainBitSet) */
   @Override
   public int hashCode();
 
@@ -530,16 +832,60 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
     return this.minus(Arrays.asList(requireNonNull(set)));
   }
 
+  /** Returns the position of the first position at or after the given position that is not in this
+   * set.
+   * 
+   * @param from
+   *          The position to start at.
+   * @return The position of the next element of the domain that is not in this set, or -1 if there
+   *         is none.
+   * @throws IndexOutOfBoundsException
+   *           if the position is negative.
+   * @see BitSet#nextClearBit(int) */
+  public default int nextClearIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    final int size = this.getDomain().size();
+    if (from >= size)
+      return -1;
+    final long[] words = this.toLongArray();
+    return Bitmaps.nextClearIndex(i -> i < words.length ? words[i] : 0L, size, from);
+  }
+
+  /** Returns the position of the first element of this set that is at or after the given position.
+   * 
+   * @param from
+   *          The position to start at.
+   * @return The position of the next element, or -1 if there is none.
+   * @throws IndexOutOfBoundsException
+   *           if the position is negative.
+   * @see BitSet#nextSetBit(int) */
+  public default int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    if (from >= this.getDomain().size())
+      return -1;
+    final long[] words = this.toLongArray();
+    return Bitmaps.nextSetIndex(i -> words[i], words.length, from);
+  }
+
   /** Compares the domains.
    * <p>
    * This is equal to, but could be a bit faster than
    * <code>this.getDomain().equals(set.getDomain())</code>.
+   * <p>
+   * Domains are compared by reference and then by their {@link Domain#fingerprint() fingerprint}.
+   * Both take constant time, so sets of the same domain instance or of different domains are
+   * compared quickly. Distinct, but equal domains have equal fingerprints, so their elements are
+   * still compared, which takes linear time.
    * 
    * @param set
    *          The other set.
    * @return <code>true</code> if both are of equal domains. */
   public default boolean ofEqualDomain(final DomainBitSet<T> set) {
-    return this.getDomain().equals(set.getDomain());
+    final Domain<T> domain = this.getDomain();
+    final Domain<T> other = set.getDomain();
+    return domain == other || domain.equals(other);
   }
 
   /** Compares the elements, ignoring the domains.
@@ -564,6 +910,50 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
     return StreamSupport.stream(spliterator(), true);
   }
 
+  /** Parallel version of {@link #randomSubset(Random, double)}. Large sets are split into blocks,
+   * which are sampled in parallel, each with its own {@link SplittableRandom#split() split}
+   * generator. The result only depends on the state of the given generator.
+   * 
+   * @param rnd
+   *          The source of randomness.
+   * @param probability
+   *          The probability for each element to be in the subset.
+   * @return A random subset of this set.
+   * @throws IllegalArgumentException
+   *           if the probability is not in the range [0, 1]. */
+  @NonNull
+  @CheckReturnValue
+  public default DomainBitSet<T> parallelRandomSubset(final SplittableRandom rnd,
+      final double probability) {
+    requireNonNull(rnd, "rnd");
+    Sampling.checkProbability(probability);
+    return this.intersect(BitSet.valueOf(Sampling.parallelBernoulli(this.toLongArray(),
+        probability, rnd)));
+  }
+
+  /** Parallel version of {@link #randomSubsetOfSize(Random, int)}. Large sets are split into
+   * blocks, the number of elements of each block is drawn first, and then the blocks are sampled in
+   * parallel, each with its own {@link SplittableRandom#split() split} generator. The result only
+   * depends on the state of the given generator.
+   * 
+   * @param rnd
+   *          The source of randomness.
+   * @param k
+   *          The size of the subset.
+   * @return A random subset of this set with <code>k</code> elements.
+   * @throws IllegalArgumentException
+   *           if <code>k</code> is negative or larger than the size of this set. */
+  @NonNull
+  @CheckReturnValue
+  public default DomainBitSet<T> parallelRandomSubsetOfSize(final SplittableRandom rnd,
+      final int k) {
+    requireNonNull(rnd, "rnd");
+    final long[] words = this.toLongArray();
+    if (k < 0 || k > Sampling.bitCount(words, 0, words.length))
+      throw new IllegalArgumentException("k must be in the range [0, size()]: " + k);
+    return this.intersect(BitSet.valueOf(Sampling.parallelSelection(words, k, rnd)));
+  }
+
   /** The powerset, which is the set of all subsets.
    * <p>
    * Note: Complexity is <code>O(2<sup>n</sup>)</code>. For sets with more than 64 elements this
@@ -681,6 +1071,119 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
       }
   }
 
+  /** Returns the position of the last element of this set that is at or before the given position.
+   * 
+   * @param from
+   *          The position to start at. Positions after the end of the domain are allowed.
+   * @return The position of the previous element, or -1 if there is none.
+   * @throws IndexOutOfBoundsException
+   *           if the position is less than -1.
+   * @see BitSet#previousSetBit(int) */
+  public default int previousSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < -1)
+      throw new IndexOutOfBoundsException("from < -1: " + from);
+    final int start = Math.min(from, this.getDomain().size() - 1);
+    if (start < 0)
+      return -1;
+    final long[] words = this.toLongArray();
+    return Bitmaps.previousSetIndex(i -> i < words.length ? words[i] : 0L, start);
+  }
+
+  /** Returns an element of this set, which is chosen uniformly at random.
+   * 
+   * @param rnd
+   *          The source of randomness.
+   * @return A random element, or an empty Optional if this set is empty.
+   * @see #select(int) */
+  @NonNull
+  public default Optional<T> randomElement(final Random rnd) {
+    requireNonNull(rnd, "rnd");
+    final int size = this.size();
+    if (size == 0)
+      return Optional.empty();
+    return Optional.of(this.getDomain().get(this.select(rnd.nextInt(size))));
+  }
+
+  /** Returns a random subset, which contains each element of this set independently with the given
+   * probability. Instead of one random number per element, the gaps between the chosen elements are
+   * drawn from a geometric distribution, so this is fast for small probabilities.
+   * 
+   * @param rnd
+   *          The source of randomness.
+   * @param probability
+   *          The probability for each element to be in the subset.
+   * @return A random subset of this set.
+   * @throws IllegalArgumentException
+   *           if the probability is not in the range [0, 1].
+   * @see #parallelRandomSubset(SplittableRandom, double) */
+  @NonNull
+  @CheckReturnValue
+  public default DomainBitSet<T> randomSubset(final Random rnd, final double probability) {
+    requireNonNull(rnd, "rnd");
+    Sampling.checkProbability(probability);
+    final long[] words = this.toLongArray();
+    final long[] result = new long[words.length];
+    Sampling.bernoulli(words, 0, words.length, probability, rnd::nextDouble, result);
+    return this.intersect(BitSet.valueOf(result));
+  }
+
+  /** Returns a subset of the given size, which is chosen uniformly at random among all subsets of
+   * that size. The elements are chosen by selection sampling in one pass over the words of this
+   * set.
+   * 
+   * @param rnd
+   *          The source of randomness.
+   * @param k
+   *          The size of the subset.
+   * @return A random subset of this set with <code>k</code> elements.
+   * @throws IllegalArgumentException
+   *           if <code>k</code> is negative or larger than the size of this set.
+   * @see #parallelRandomSubsetOfSize(SplittableRandom, int) */
+  @NonNull
+  @CheckReturnValue
+  public default DomainBitSet<T> randomSubsetOfSize(final Random rnd, final int k) {
+    requireNonNull(rnd, "rnd");
+    final long[] words = this.toLongArray();
+    final int n = Sampling.bitCount(words, 0, words.length);
+    if (k < 0 || k > n)
+      throw new IllegalArgumentException("k must be in the range [0, size()]: " + k);
+    final long[] result = new long[words.length];
+    Sampling.selection(words, 0, words.length, k, n, rnd::nextInt, result);
+    return this.intersect(BitSet.valueOf(result));
+  }
+
+  /** Returns the number of elements of this set that are at a position lower than the given
+   * position.
+   * 
+   * @param bitIndex
+   *          A position of the domain, or the size of the domain.
+   * @return The number of elements before the given position.
+   * @throws IndexOutOfBoundsException
+   *           if the position is negative or larger than the size of the domain.
+   * @see #select(int) */
+  public default int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.getDomain().size())
+      throw new IndexOutOfBoundsException();
+    final long[] words = this.toLongArray();
+    return Bitmaps.rank(i -> words[i], words.length, bitIndex);
+  }
+
+  /** Returns the position of the n-th element of this set. This is the inverse of
+   * {@link #rank(int)}. The element itself is <code>getDomain().get(select(n))</code>.
+   * 
+   * @param n
+   *          The number of elements before the requested element, with
+   *          <code>0 &lt;= n &lt; size()</code>.
+   * @return The position of the element in the domain.
+   * @throws IndexOutOfBoundsException
+   *           if <code>n</code> is negative or not lower than the size of this set. */
+  public default int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0)
+      throw new IndexOutOfBoundsException();
+    final long[] words = this.toLongArray();
+    return Bitmaps.select(i -> words[i], words.length, n);
+  }
+
   /** Returns a new set with all elements in this set, that have a matching element in the other set.
    * <p>
    * This is basically the same as {@link #cross(DomainBitSet)}, but filtered by a predicate. All
@@ -793,6 +1296,18 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
   @CheckReturnValue
   public long toLong() throws MoreThan64ElementsException;
 
+  /** A representation of the elements in this set as words of 64 bits, in the same format as
+   * {@link BitSet#toLongArray()}. The length of the array is always
+   * <code>(getDomain().size() + 63) / 64</code>, so that sets of the same domain can be compared
+   * word by word.
+   * 
+   * @return The set as an array of {@link Long longs}. */
+  @NonNull
+  @CheckReturnValue
+  public default long[] toLongArray() {
+    return Arrays.copyOf(this.toBitSet().toLongArray(), (this.getDomain().size() + 63) >>> 6);
+  }
+
   /** A regular set, with no defined domain. Note that the returned set can be compared to other
    * regular sets, which this always returns <code>false</code> for other sets without a domain.
    * 
@@ -860,6 +1375,36 @@ public interface DomainBitSet<T> extends Iterable<T>, Cloneable, Serializable {
     return this.union(Arrays.asList(requireNonNull(set)));
   }
 
+  /** The symmetric difference of this set and another set of the same domain. These are the
+   * elements that are contained in exactly one of the two sets.
+   * <p>
+   * The default implementation uses {@link #minus(BitSet)} and {@link #union(BitSet)}, so that the
+   * result is of the same type as this set. Most implementations calculate the result directly on
+   * their words.
+   * 
+   * @param set
+   *          A set of the same domain.
+   * @return <code>(this &#x2216; set) &#x222a; (set &#x2216; this)</code>
+   * @throws IllegalArgumentException
+   *           if the set is of a different domain.
+   * @see BitSet#xor(BitSet)
+   * @see BitSetUtilities#xorAll(Collection) */
+  @NonNull
+  @CheckReturnValue
+  public default DomainBitSet<T> xor(final DomainBitSet<T> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    final long[] common = this.toLongArray();
+    final long[] added = set.toLongArray();
+    for (int i = 0; i < common.length; i++) {
+      final long w = added[i];
+      added[i] &= ~common[i];
+      common[i] &= w;
+    }
+    return this.minus(BitSet.valueOf(common)).union(BitSet.valueOf(added));
+  }
+
   /** Returns a sequential stream with pairs of all elements of this set and their position in the
    * domain.
    * <p>
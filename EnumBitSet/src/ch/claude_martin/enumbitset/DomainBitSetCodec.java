@@ -0,0 +1,441 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** Writes and reads single {@link DomainBitSet}s in a compact binary format. For each set the
+ * smallest of three {@link Encoding encodings} is chosen. The domain itself is not written, the
+ * reader must know it.
+ * <p>
+ * An encoded set consists of:
+ * <ol>
+ * <li>byte: the ordinal of the {@link Encoding},</li>
+ * <li>varint: the size of the domain,</li>
+ * <li>varint: the length of the payload in bytes,</li>
+ * <li>the payload, as described by the encoding.</li>
+ * </ol>
+ * A varint is an unsigned integer in groups of seven bits, least significant group first. The high
+ * bit of each byte is set if more bytes follow.
+ * <p>
+ * {@link #wrap(Domain, ByteBuffer)} does not copy the words of a set with the encoding
+ * {@link Encoding#WORDS}. It returns a read-only view of the buffer instead.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainBitSetCodec {
+
+  /** The encodings of the payload. */
+  public static enum Encoding {
+    /** varint: the number of words, without trailing words that are 0. Then the words as
+     * little-endian longs. This is used for dense sets. */
+    WORDS,
+    /** varint: the number of elements. Then for each element the difference to the index of the
+     * previous element, minus one. The first index is written as it is. This is used for sparse
+     * sets. */
+    INDICES,
+    /** varint: the number of intervals of consecutive elements. Then for each interval the distance
+     * of its start to the end of the previous interval, followed by the length of the interval
+     * minus one. This is used for clustered sets. */
+    RUNS;
+  }
+
+  /** A source of single bytes. */
+  @FunctionalInterface
+  static interface ByteSource {
+    byte get() throws IOException;
+  }
+
+  /** The words of a set and the encoding that needs the least bytes. */
+  static final class Plan {
+    final long[]   words;
+    final int      length;
+    final Encoding encoding;
+    final int      payload;
+    final int      size;
+    final int      elements;
+    final int      intervals;
+
+    Plan(final DomainBitSet<?> set) {
+      this(set.getDomain().size(), set.toLongArray());
+    }
+
+    /** The bitmap must not be modified while the plan is used. */
+    Plan(final int domainSize, final long[] bitmap) {
+      this.words = bitmap;
+      int length = this.words.length;
+      while (length > 0 && this.words[length - 1] == 0L)
+        length--;
+      this.length = length;
+
+      int elements = 0, intervals = 0, indices = 0, runs = 0;
+      for (int start = nextSetBit(this.words, 0), end = 0; start >= 0; start = nextSetBit(
+          this.words, end)) {
+        final int gap = varintSize(start - end);
+        end = nextClearBit(this.words, start);
+        indices += gap + end - start - 1;
+        runs += gap + varintSize(end - start - 1);
+        elements += end - start;
+        intervals++;
+      }
+
+      final int words = varintSize(length) + 8 * length;
+      indices += varintSize(elements);
+      runs += varintSize(intervals);
+      this.elements = elements;
+      this.intervals = intervals;
+      if (words <= indices && words <= runs) {
+        this.encoding = Encoding.WORDS;
+        this.payload = words;
+      } else if (indices <= runs) {
+        this.encoding = Encoding.INDICES;
+        this.payload = indices;
+      } else {
+        this.encoding = Encoding.RUNS;
+        this.payload = runs;
+      }
+      this.size = 1 + varintSize(domainSize) + varintSize(this.payload) + this.payload;
+    }
+  }
+
+  private static int nextSetBit(final long[] words, final int from) {
+    int i = from >>> 6;
+    if (i >= words.length)
+      return -1;
+    long word = words[i] & -1L << from;
+    while (true) {
+      if (word != 0L)
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      if (++i == words.length)
+        return -1;
+      word = words[i];
+    }
+  }
+
+  private static int nextClearBit(final long[] words, final int from) {
+    int i = from >>> 6;
+    if (i >= words.length)
+      return from;
+    long word = ~words[i] & -1L << from;
+    while (true) {
+      if (word != 0L)
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      if (++i == words.length)
+        return i << 6;
+      word = ~words[i];
+    }
+  }
+
+  static int varintSize(final int value) {
+    return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+  }
+
+  static void putVarint(final ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) (value & 0x7F | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  static int readVarint(final ByteSource in) throws IOException {
+    int result = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      final byte b = in.get();
+      if (shift == 28 && (b & 0xF8) != 0)
+        break;
+      result |= (b & 0x7F) << shift;
+      if (b >= 0)
+        return result;
+    }
+    throw new StreamCorruptedException("Invalid varint.");
+  }
+
+  /** Returns the encoding that {@link #write(DomainBitSet, ByteBuffer)} uses for the given set.
+   *
+   * @param set
+   *          A set.
+   * @return The encoding that needs the least bytes. */
+  @NonNull
+  public static Encoding encodingOf(final DomainBitSet<?> set) {
+    return new Plan(requireNonNull(set, "set")).encoding;
+  }
+
+  /** Returns the number of bytes that {@link #write(DomainBitSet, ByteBuffer)} writes for the given
+   * set.
+   *
+   * @param set
+   *          A set.
+   * @return The size of the encoded set in bytes. */
+  public static int encodedSize(final DomainBitSet<?> set) {
+    return new Plan(requireNonNull(set, "set")).size;
+  }
+
+  /** Writes a set to a buffer, starting at its current position. The byte order of the buffer is
+   * not used and not modified.
+   *
+   * @param set
+   *          The set.
+   * @param buffer
+   *          The buffer.
+   * @throws BufferOverflowException
+   *           if the buffer has less than {@link #encodedSize(DomainBitSet)} remaining bytes. Then
+   *           nothing is written. */
+  public static void write(final DomainBitSet<?> set, final ByteBuffer buffer)
+      throws BufferOverflowException {
+    requireNonNull(buffer, "buffer");
+    final Plan plan = new Plan(requireNonNull(set, "set"));
+    if (buffer.remaining() < plan.size)
+      throw new BufferOverflowException();
+    write(set.getDomain().size(), plan, buffer);
+  }
+
+  /** Writes a set to a channel.
+   *
+   * @param set
+   *          The set.
+   * @param channel
+   *          The channel.
+   * @throws IOException
+   *           if the channel can't be written. */
+  public static void write(final DomainBitSet<?> set, final WritableByteChannel channel)
+      throws IOException {
+    requireNonNull(channel, "channel");
+    final Plan plan = new Plan(requireNonNull(set, "set"));
+    final ByteBuffer buffer = ByteBuffer.allocate(plan.size);
+    write(set.getDomain().size(), plan, buffer);
+    buffer.flip();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+  }
+
+  /** Writes a set of a domain of the given size, as planned. The buffer must have at least
+   * <code>plan.size</code> remaining bytes. */
+  static void write(final int domainSize, final Plan plan, final ByteBuffer buffer) {
+    buffer.put((byte) plan.encoding.ordinal());
+    putVarint(buffer, domainSize);
+    putVarint(buffer, plan.payload);
+    final long[] words = plan.words;
+    switch (plan.encoding) {
+      case WORDS:
+        putVarint(buffer, plan.length);
+        buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(words, 0, plan.length);
+        buffer.position(buffer.position() + 8 * plan.length);
+        break;
+      case INDICES:
+        putVarint(buffer, plan.elements);
+        for (int i = nextSetBit(words, 0), previous = -1; i >= 0; previous = i, i = nextSetBit(
+            words, i + 1))
+          putVarint(buffer, i - previous - 1);
+        break;
+      case RUNS:
+        putVarint(buffer, plan.intervals);
+        for (int start = nextSetBit(words, 0), end = 0; start >= 0; start = nextSetBit(words,
+            end)) {
+          putVarint(buffer, start - end);
+          end = nextClearBit(words, start);
+          putVarint(buffer, end - start - 1);
+        }
+        break;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  /** Reads a set from a buffer. The words are copied to a new set on the heap. The position of the
+   * buffer is moved to the end of the encoded set.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param domain
+   *          The domain of the set.
+   * @param buffer
+   *          The buffer.
+   * @return A new set.
+   * @throws IOException
+   *           if the buffer does not contain a valid set of the given domain. */
+  @NonNull
+  public static <T> DomainBitSet<T> read(final Domain<T> domain, final ByteBuffer buffer)
+      throws IOException {
+    return read(domain, buffer, false);
+  }
+
+  /** Reads a set from a buffer. If the set was encoded as {@link Encoding#WORDS} then the returned
+   * set is a read-only view of the words in the buffer, which can be a heap buffer, a direct buffer
+   * or a mapped file. Later changes to these bytes of the buffer are visible in the set. Other
+   * encodings are copied to a new set on the heap. The position of the buffer is moved to the end
+   * of the encoded set.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param domain
+   *          The domain of the set.
+   * @param buffer
+   *          The buffer.
+   * @return A set that is backed by the buffer, or a new set.
+   * @throws IOException
+   *           if the buffer does not contain a valid set of the given domain. */
+  @NonNull
+  public static <T> DomainBitSet<T> wrap(final Domain<T> domain, final ByteBuffer buffer)
+      throws IOException {
+    return read(domain, buffer, true);
+  }
+
+  private static <T> DomainBitSet<T> read(final Domain<T> domain, final ByteBuffer buffer,
+      final boolean view) throws IOException {
+    requireNonNull(domain, "domain");
+    requireNonNull(buffer, "buffer");
+    final int encoding, size, payload;
+    try {
+      encoding = buffer.get();
+      size = readVarint(buffer::get);
+      payload = readVarint(buffer::get);
+    } catch (final BufferUnderflowException e) {
+      throw new EOFException();
+    }
+    if (buffer.remaining() < payload)
+      throw new EOFException();
+    final ByteBuffer data = buffer.slice();
+    data.limit(payload);
+    buffer.position(buffer.position() + payload);
+    return decode(domain, encoding, size, data, view);
+  }
+
+  /** Reads a set from a channel. Exactly the bytes of the encoded set are read.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param domain
+   *          The domain of the set.
+   * @param channel
+   *          The channel.
+   * @return A new set.
+   * @throws IOException
+   *           if the channel can't be read or does not contain a valid set of the given domain. */
+  @NonNull
+  public static <T> DomainBitSet<T> read(final Domain<T> domain, final ReadableByteChannel channel)
+      throws IOException {
+    requireNonNull(domain, "domain");
+    requireNonNull(channel, "channel");
+    final ByteBuffer single = ByteBuffer.allocate(1);
+    final ByteSource in = () -> {
+      single.clear();
+      readFully(channel, single);
+      return single.get(0);
+    };
+    final int encoding = in.get();
+    final int size = readVarint(in);
+    final int payload = readVarint(in);
+    checkHeader(domain, encoding, size);
+    if (payload > maxPayload(Encoding.values()[encoding], size))
+      throw new StreamCorruptedException("Invalid length of payload: " + payload);
+    final ByteBuffer data = ByteBuffer.allocate(payload);
+    readFully(channel, data);
+    data.flip();
+    return decode(domain, encoding, size, data, false);
+  }
+
+  static void readFully(final ReadableByteChannel channel, final ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining())
+      if (channel.read(buffer) < 0)
+        throw new EOFException();
+  }
+
+  private static void checkHeader(final Domain<?> domain, final int encoding, final int size)
+      throws StreamCorruptedException {
+    if (size != domain.size())
+      throw new StreamCorruptedException("The size of the domain does not match.");
+    if (encoding < 0 || encoding >= Encoding.values().length)
+      throw new StreamCorruptedException("Unknown encoding: " + encoding);
+  }
+
+  /** The largest payload of a valid set of a domain of the given size. A varint of <i>n</i> needs
+   * at most <i>n</i>+1 bytes, so the gaps and lengths of all elements or intervals need at most
+   * one byte per element of the domain each. */
+  private static long maxPayload(final Encoding encoding, final int size) {
+    switch (encoding) {
+      case WORDS:
+        final int words = Container.words(size);
+        return varintSize(words) + 8L * words;
+      case INDICES:
+        return varintSize(size) + (long) size;
+      default:
+        return varintSize(size) + 2L * size;
+    }
+  }
+
+  private static <T> DomainBitSet<T> decode(final Domain<T> domain, final int encoding,
+      final int size, final ByteBuffer data, final boolean view) throws IOException {
+    checkHeader(domain, encoding, size);
+    try {
+      final ByteSource in = data::get;
+      final int count = readVarint(in);
+      final Container container;
+      switch (Encoding.values()[encoding]) {
+        case WORDS:
+          if (count > Container.words(size) || data.remaining() != 8L * count)
+            throw new StreamCorruptedException("Invalid number of words: " + count);
+          data.order(ByteOrder.LITTLE_ENDIAN);
+          if (count > 0 && count == Container.words(size) && (size & 63) != 0
+              && (data.getLong(data.limit() - 8) & -1L << size) != 0L)
+            throw new StreamCorruptedException("The words contain positions outside the domain.");
+          if (view)
+            return new MappedDomainBitSet<>(domain, data.slice().order(ByteOrder.LITTLE_ENDIAN)
+                .asLongBuffer());
+          final long[] words = new long[Container.words(size)];
+          data.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(words, 0, count);
+          data.position(data.limit());
+          container = new BitmapContainer(words);
+          break;
+        case INDICES:
+          if (count > size || count > data.remaining())
+            throw new StreamCorruptedException("Invalid number of elements: " + count);
+          final int[] values = new int[count];
+          long index = -1;
+          for (int i = 0; i < count; i++)
+            values[i] = (int) (index += 1L + readVarint(in));
+          if (index >= size)
+            throw new StreamCorruptedException("The elements are not in the domain.");
+          container = new ArrayContainer(values);
+          break;
+        case RUNS:
+          if (count > size || count > data.remaining() / 2)
+            throw new StreamCorruptedException("Invalid number of intervals: " + count);
+          final RunContainer.Builder builder = new RunContainer.Builder(count);
+          long end = 0;
+          for (int i = 0; i < count; i++) {
+            final long start = end + readVarint(in);
+            end = start + 1L + readVarint(in);
+            if (end > size)
+              throw new StreamCorruptedException("The intervals are not in the domain.");
+            builder.add((int) start, (int) end);
+          }
+          container = builder.build();
+          break;
+        default:
+          throw new AssertionError();
+      }
+      if (data.hasRemaining())
+        throw new StreamCorruptedException("Invalid length of payload.");
+      return AdaptiveDomainBitSet.of(domain, container);
+    } catch (final BufferUnderflowException e) {
+      throw new StreamCorruptedException("Invalid length of payload.");
+    }
+  }
+
+  private DomainBitSetCodec() {
+    throw new UnsupportedOperationException();
+  }
+}
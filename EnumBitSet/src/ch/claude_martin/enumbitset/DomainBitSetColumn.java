@@ -0,0 +1,335 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** A column of many sets of one domain, stored as one array of words. Each row uses
+ * <code>ceil(domain.size() / 64)</code> consecutive words, so a domain of up to 64 elements needs
+ * exactly one long per row, without any object header or reference to the domain.
+ * <p>
+ * The bulk filters {@link #rowsContainingAll(DomainBitSet)} and
+ * {@link #rowsIntersecting(DomainBitSet)} scan the array sequentially and return the ids of the
+ * matching rows as a {@link BitSet}. A {@link Cursor} reads a single row without creating a set.
+ * <p>
+ * The number of words must not exceed the maximum size of an array. This class is not
+ * thread-safe.
+ *
+ * @param <T>
+ *          The type of the domain.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainBitSetColumn<T> {
+
+  /** A movable, read-only view of one row of a column. A cursor is reused for many rows, so reading
+   * rows does not allocate. A cursor is only valid while the column is not modified. */
+  public final class Cursor {
+    private int row    = -1;
+    private int offset = 0;
+
+    Cursor() {
+    }
+
+    /** Moves this cursor to the given row.
+     *
+     * @param row
+     *          The id of a row.
+     * @return this
+     * @throws IndexOutOfBoundsException
+     *           if there is no such row. */
+    @NonNull
+    public Cursor moveTo(final int row) throws IndexOutOfBoundsException {
+      DomainBitSetColumn.this.checkRow(row);
+      this.row = row;
+      this.offset = row * DomainBitSetColumn.this.width;
+      return this;
+    }
+
+    /** The row of this cursor.
+     *
+     * @return The id of the row, or -1 if this was not moved to a row. */
+    public int getRow() {
+      return this.row;
+    }
+
+    /** Returns the value of the bit with the specified index in the current row.
+     *
+     * @param bitIndex
+     *          The position in the domain.
+     * @return <code>true</code> if the row contains the element at the given position.
+     * @throws IndexOutOfBoundsException
+     *           if the index is not in the domain. */
+    public boolean getBit(final int bitIndex) throws IndexOutOfBoundsException {
+      DomainBitSetColumn.this.checkIndex(bitIndex);
+      final long word = DomainBitSetColumn.this.words[this.offset + (bitIndex >>> 6)];
+      return (word & 1L << bitIndex) != 0L;
+    }
+
+    /** Checks whether the current row contains the given element.
+     *
+     * @param element
+     *          An element.
+     * @return <code>true</code> if the row contains the element. */
+    public boolean contains(final Object element) {
+      final int index = DomainBitSetColumn.this.domain.indexOf(element);
+      return index >= 0 && this.getBit(index);
+    }
+
+    /** Returns a word of the current row.
+     *
+     * @param word
+     *          The index of the word, less than <code>ceil(domain.size() / 64)</code>.
+     * @return The word.
+     * @throws IndexOutOfBoundsException
+     *           if there is no such word. */
+    public long getWord(final int word) throws IndexOutOfBoundsException {
+      if (word < 0 || word >= DomainBitSetColumn.this.width)
+        throw new IndexOutOfBoundsException();
+      return DomainBitSetColumn.this.words[this.offset + word];
+    }
+
+    /** The number of elements in the current row.
+     *
+     * @return The size of the set of the current row. */
+    public int size() {
+      int size = 0;
+      for (int i = 0; i < DomainBitSetColumn.this.width; i++)
+        size += Long.bitCount(DomainBitSetColumn.this.words[this.offset + i]);
+      return size;
+    }
+
+    /** Returns the position of the first element of the current row that is at or after the given
+     * position.
+     *
+     * @param from
+     *          The position to start at.
+     * @return The position of the next element, or -1 if there is none. */
+    public int nextSetBit(final int from) {
+      if (from < 0)
+        throw new IndexOutOfBoundsException();
+      final long[] w = DomainBitSetColumn.this.words;
+      int i = from >>> 6;
+      if (i >= DomainBitSetColumn.this.width)
+        return -1;
+      long word = w[this.offset + i] & -1L << from;
+      while (true) {
+        if (word != 0L)
+          return (i << 6) + Long.numberOfTrailingZeros(word);
+        if (++i == DomainBitSetColumn.this.width)
+          return -1;
+        word = w[this.offset + i];
+      }
+    }
+
+    /** Creates a set of the current row.
+     *
+     * @return A new set. */
+    @NonNull
+    public DomainBitSet<T> toDomainBitSet() {
+      return DomainBitSetColumn.this.get(this.row);
+    }
+
+    @Override
+    public String toString() {
+      return this.row < 0 ? "Cursor[]" : "Cursor[" + this.row + ": " + this.toDomainBitSet() + "]";
+    }
+  }
+
+  private final Domain<T> domain;
+  /** Number of words per row. */
+  private final int       width;
+  private long[]          words;
+  private int             rows = 0;
+
+  /** Creates an empty column.
+   *
+   * @param domain
+   *          The domain of all rows.
+   * @param capacity
+   *          The expected number of rows. */
+  public DomainBitSetColumn(final Domain<T> domain, final int capacity) {
+    this.domain = requireNonNull(domain, "domain");
+    if (capacity < 0)
+      throw new IllegalArgumentException("capacity must not be negative.");
+    this.width = Math.max(1, Container.words(domain.size()));
+    this.words = new long[Math.multiplyExact(capacity, this.width)];
+  }
+
+  void checkRow(final int row) {
+    if (row < 0 || row >= this.rows)
+      throw new IndexOutOfBoundsException("Row: " + row + ", Rows: " + this.rows);
+  }
+
+  void checkIndex(final int bitIndex) {
+    if (bitIndex < 0 || bitIndex >= this.domain.size())
+      throw new IndexOutOfBoundsException();
+  }
+
+  /** Returns the words of the given set, which must be of the domain of this column. */
+  private long[] words(final DomainBitSet<T> set) {
+    requireNonNull(set, "set");
+    final Domain<T> d = set.getDomain();
+    if (d != this.domain && !d.equals(this.domain))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    return set.toLongArray();
+  }
+
+  /** Appends a row.
+   *
+   * @param set
+   *          A set of the domain.
+   * @return The id of the new row.
+   * @throws IllegalArgumentException
+   *           if the set is of a different domain. */
+  public int add(final DomainBitSet<T> set) {
+    final long[] w = this.words(set);
+    final int end = Math.multiplyExact(this.rows + 1, this.width);
+    if (end > this.words.length)
+      this.words = Arrays.copyOf(this.words,
+          (int) Math.min(Integer.MAX_VALUE - 8, Math.max(end, this.words.length * 3L / 2)));
+    System.arraycopy(w, 0, this.words, this.rows * this.width, w.length);
+    return this.rows++;
+  }
+
+  /** Replaces the set of a row.
+   *
+   * @param row
+   *          The id of the row.
+   * @param set
+   *          A set of the domain.
+   * @throws IndexOutOfBoundsException
+   *           if there is no such row.
+   * @throws IllegalArgumentException
+   *           if the set is of a different domain. */
+  public void set(final int row, final DomainBitSet<T> set) {
+    this.checkRow(row);
+    final long[] w = this.words(set);
+    System.arraycopy(w, 0, this.words, row * this.width, w.length);
+  }
+
+  /** Sets or clears one bit of a row.
+   *
+   * @param row
+   *          The id of the row.
+   * @param bitIndex
+   *          The position in the domain.
+   * @param value
+   *          The new value of the bit.
+   * @throws IndexOutOfBoundsException
+   *           if there is no such row or the index is not in the domain. */
+  public void setBit(final int row, final int bitIndex, final boolean value) {
+    this.checkRow(row);
+    this.checkIndex(bitIndex);
+    final int i = row * this.width + (bitIndex >>> 6);
+    if (value)
+      this.words[i] |= 1L << bitIndex;
+    else
+      this.words[i] &= ~(1L << bitIndex);
+  }
+
+  /** Creates a set of the given row.
+   *
+   * @param row
+   *          The id of the row.
+   * @return A new set.
+   * @throws IndexOutOfBoundsException
+   *           if there is no such row. */
+  @NonNull
+  public DomainBitSet<T> get(final int row) {
+    this.checkRow(row);
+    final int from = row * this.width;
+    return BitSetUtilities.withWords(this.domain, Arrays.copyOfRange(this.words, from, from
+        + Container.words(this.domain.size())));
+  }
+
+  /** Creates a new cursor. It has to be {@link Cursor#moveTo(int) moved} to a row before it can be
+   * used.
+   *
+   * @return A new cursor. */
+  @NonNull
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /** The domain of all rows.
+   *
+   * @return The domain. */
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  /** The number of rows.
+   *
+   * @return The number of rows. */
+  public int size() {
+    return this.rows;
+  }
+
+  /** Returns the ids of all rows that contain all elements of the given set.
+   *
+   * @param mask
+   *          A set of the domain.
+   * @return A new BitSet of the ids of the matching rows.
+   * @throws IllegalArgumentException
+   *           if the set is of a different domain. */
+  @NonNull
+  public BitSet rowsContainingAll(final DomainBitSet<T> mask) {
+    final long[] m = this.words(mask);
+    final long[] w = this.words;
+    final long[] result = new long[Container.words(this.rows)];
+    if (this.width == 1) {
+      final long m0 = m.length == 0 ? 0L : m[0];
+      for (int r = 0; r < this.rows; r++)
+        result[r >>> 6] |= ((w[r] & m0) == m0 ? 1L : 0L) << r;
+    } else
+      for (int r = 0, offset = 0; r < this.rows; r++, offset += this.width) {
+        long missing = 0L;
+        for (int i = 0; i < m.length; i++)
+          missing |= m[i] & ~w[offset + i];
+        result[r >>> 6] |= (missing == 0L ? 1L : 0L) << r;
+      }
+    return BitSet.valueOf(result);
+  }
+
+  /** Returns the ids of all rows that contain at least one element of the given set.
+   *
+   * @param mask
+   *          A set of the domain.
+   * @return A new BitSet of the ids of the matching rows.
+   * @throws IllegalArgumentException
+   *           if the set is of a different domain. */
+  @NonNull
+  public BitSet rowsIntersecting(final DomainBitSet<T> mask) {
+    final long[] m = this.words(mask);
+    final long[] w = this.words;
+    final long[] result = new long[Container.words(this.rows)];
+    if (this.width == 1) {
+      final long m0 = m.length == 0 ? 0L : m[0];
+      for (int r = 0; r < this.rows; r++)
+        result[r >>> 6] |= ((w[r] & m0) != 0L ? 1L : 0L) << r;
+    } else
+      for (int r = 0, offset = 0; r < this.rows; r++, offset += this.width) {
+        long common = 0L;
+        for (int i = 0; i < m.length; i++)
+          common |= m[i] & w[offset + i];
+        result[r >>> 6] |= (common != 0L ? 1L : 0L) << r;
+      }
+    return BitSet.valueOf(result);
+  }
+
+  /** Reduces the capacity to the number of rows. */
+  public void trimToSize() {
+    this.words = Arrays.copyOf(this.words, this.rows * this.width);
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getSimpleName() + "[rows=" + this.rows + ", domain=" + this.domain.size()
+        + "]";
+  }
+}
@@ -0,0 +1,318 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.Nullable;
+
+/** Reads a sequence of sets that was written by a {@link DomainBitSetDeltaWriter}. Each delta frame
+ * is applied to the words of the previous set, so replaying a sequence only touches the positions
+ * that change.
+ * <p>
+ * The reader must start at a keyframe. This is either the start of the sequence or one of the
+ * {@link DomainBitSetDeltaWriter#getKeyframeOffsets() keyframe offsets}, see
+ * {@link #fromKeyframe(Domain, InputStream, long)}. The offsets of a finished sequence are also
+ * stored in its index, see {@link #readIndex(SeekableByteChannel)} and
+ * {@link #fromFrame(Domain, SeekableByteChannel, long)}.
+ * <p>
+ * Delta frames are read byte by byte, so the stream should be buffered. This class is not
+ * thread-safe.
+ *
+ * @param <T>
+ *          The type of the domain.
+ * @see DomainBitSetDeltaWriter
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainBitSetDeltaReader<T> implements Closeable {
+
+  /** The index of the keyframes of a finished sequence, as written by
+   * {@link DomainBitSetDeltaWriter#finish()}. */
+  public static final class KeyframeIndex {
+    private final long   start;
+    private final int    keyframeInterval;
+    private final long   frames;
+    private final long[] offsets;
+
+    KeyframeIndex(final long start, final int keyframeInterval, final long frames,
+        final long[] offsets) {
+      this.start = start;
+      this.keyframeInterval = keyframeInterval;
+      this.frames = frames;
+      this.offsets = offsets;
+    }
+
+    /** The position in the channel where the sequence starts.
+     *
+     * @return The position of the first frame. */
+    public long getStart() {
+      return this.start;
+    }
+
+    /** The number of frames from one keyframe to the next.
+     *
+     * @return The interval of the keyframes. */
+    public int getKeyframeInterval() {
+      return this.keyframeInterval;
+    }
+
+    /** The number of sets in the sequence.
+     *
+     * @return The number of frames. */
+    public long getFrameCount() {
+      return this.frames;
+    }
+
+    /** Returns the positions of all keyframes, relative to {@link #getStart()}. Keyframe
+     * <code>k</code> contains the set with the index <code>k * getKeyframeInterval()</code>.
+     *
+     * @return A new array of the positions. */
+    @NonNull
+    public long[] getKeyframeOffsets() {
+      return this.offsets.clone();
+    }
+
+    @Override
+    public String toString() {
+      return this.getClass().getSimpleName() + "[frames=" + this.frames + ", keyframes="
+          + this.offsets.length + "]";
+    }
+  }
+
+  /** Reads the index at the end of a finished sequence. The sequence must end at the end of the
+   * channel, but it doesn't need to start at the beginning of the channel. The position of the
+   * channel is changed.
+   *
+   * @param channel
+   *          A channel that ends with a finished sequence, such as a file.
+   * @return The index of the sequence.
+   * @throws IOException
+   *           if the channel can't be read or does not end with a valid index. */
+  @NonNull
+  public static KeyframeIndex readIndex(final SeekableByteChannel channel) throws IOException {
+    requireNonNull(channel, "channel");
+    final long size = channel.size();
+    if (size < DomainBitSetDeltaWriter.TRAILER)
+      throw new StreamCorruptedException("The sequence has no index.");
+    final ByteBuffer trailer = ByteBuffer.allocate(DomainBitSetDeltaWriter.TRAILER);
+    channel.position(size - DomainBitSetDeltaWriter.TRAILER);
+    DomainBitSetCodec.readFully(channel, trailer);
+    trailer.flip();
+    final int count = trailer.getInt();
+    final long position = trailer.getLong();
+    if (trailer.getInt() != DomainBitSetDeltaWriter.MAGIC)
+      throw new StreamCorruptedException("The sequence has no index.");
+    final long length = 1 + 4 + 8 + 8L * count;
+    final long start = size - DomainBitSetDeltaWriter.TRAILER - length - position;
+    if (count < 0 || position < 0 || start < 0)
+      throw new StreamCorruptedException("Invalid index.");
+    final ByteBuffer index = ByteBuffer.allocate((int) length);
+    channel.position(start + position);
+    DomainBitSetCodec.readFully(channel, index);
+    index.flip();
+    if (index.get() != DomainBitSetDeltaWriter.INDEX)
+      throw new StreamCorruptedException("Invalid index.");
+    final int interval = index.getInt();
+    final long frames = index.getLong();
+    if (interval <= 0 || frames < 0 || (frames + interval - 1) / interval != count)
+      throw new StreamCorruptedException("Invalid index.");
+    final long[] offsets = new long[count];
+    for (int k = 0; k < count; k++) {
+      offsets[k] = index.getLong();
+      if (offsets[k] < (k == 0 ? 0 : offsets[k - 1] + 1) || offsets[k] >= position)
+        throw new StreamCorruptedException("Invalid index.");
+    }
+    return new KeyframeIndex(start, interval, frames, offsets);
+  }
+
+  /** Creates a reader of a finished sequence, so that the next set that is read is the set with the
+   * given index. The position of the nearest previous keyframe is read from the
+   * {@link #readIndex(SeekableByteChannel) index}, so only the frames after that keyframe are read.
+   * The caller owns the returned reader and must close it, which also closes the channel.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param domain
+   *          The domain of all sets.
+   * @param channel
+   *          A channel that ends with a finished sequence, such as a file.
+   * @param frame
+   *          The index of the next set to read.
+   * @return A new reader.
+   * @throws IOException
+   *           if the channel can't be read or does not contain a valid sequence of the domain.
+   * @throws IndexOutOfBoundsException
+   *           if the sequence does not contain a set with the given index. */
+  @NonNull
+  @SuppressWarnings("resource")
+  public static <T> DomainBitSetDeltaReader<T> fromFrame(final Domain<T> domain,
+      final SeekableByteChannel channel, final long frame) throws IOException,
+      IndexOutOfBoundsException {
+    final KeyframeIndex index = readIndex(channel);
+    if (frame < 0 || frame >= index.frames)
+      throw new IndexOutOfBoundsException("frame: " + frame);
+    channel.position(index.start + index.offsets[(int) (frame / index.keyframeInterval)]);
+    final DomainBitSetDeltaReader<T> reader = new DomainBitSetDeltaReader<>(domain,
+        new BufferedInputStream(Channels.newInputStream(channel)));
+    try {
+      for (long i = frame % index.keyframeInterval; i > 0; i--)
+        if (reader.readWords() == null)
+          throw new EOFException();
+    } catch (final IOException | RuntimeException e) {
+      reader.close();
+      throw e;
+    }
+    return reader;
+  }
+
+  /** Creates a reader that starts at the given keyframe. The given number of bytes are skipped.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param domain
+   *          The domain of all sets.
+   * @param in
+   *          The stream, at the position where the writer started.
+   * @param offset
+   *          The position of the keyframe, as returned by
+   *          {@link DomainBitSetDeltaWriter#getKeyframeOffsets()}.
+   * @return A new reader.
+   * @throws IOException
+   *           if the stream can't be read or ends before the keyframe. */
+  @NonNull
+  public static <T> DomainBitSetDeltaReader<T> fromKeyframe(final Domain<T> domain,
+      final InputStream in, final long offset) throws IOException {
+    requireNonNull(in, "in");
+    if (offset < 0)
+      throw new IllegalArgumentException("offset must not be negative.");
+    for (long remaining = offset; remaining > 0;) {
+      final long skipped = in.skip(remaining);
+      if (skipped > 0)
+        remaining -= skipped;
+      else if (in.read() < 0)
+        throw new EOFException();
+      else
+        remaining--;
+    }
+    return new DomainBitSetDeltaReader<>(domain, in);
+  }
+
+  private final Domain<T>           domain;
+  private final InputStream         in;
+  private final ReadableByteChannel channel;
+
+  /** The words of the previous set, or null before the first keyframe. */
+  @Nullable
+  private long[]                    words;
+  private long                      frames = 0;
+  /** Set when the index frame was reached. */
+  private boolean                   end    = false;
+
+  /** Creates a reader that reads from the given stream. The stream must be at a keyframe.
+   *
+   * @param domain
+   *          The domain of all sets.
+   * @param in
+   *          The stream. */
+  public DomainBitSetDeltaReader(final Domain<T> domain, final InputStream in) {
+    this.domain = requireNonNull(domain, "domain");
+    this.in = requireNonNull(in, "in");
+    this.channel = Channels.newChannel(in);
+  }
+
+  private byte readByte() throws IOException {
+    final int b = this.in.read();
+    if (b < 0)
+      throw new EOFException();
+    return (byte) b;
+  }
+
+  /** Reads the next set.
+   *
+   * @return The next set, or <code>null</code> at the end of the stream.
+   * @throws IOException
+   *           if the stream can't be read or does not contain a valid sequence of the domain. */
+  @Nullable
+  public DomainBitSet<T> read() throws IOException {
+    final long[] words = this.readWords();
+    if (words == null)
+      return null;
+    return AdaptiveDomainBitSet.of(this.domain, new BitmapContainer(words.clone()));
+  }
+
+  /** Reads the next frame and returns the words of the resulting set. The returned array is reused
+   * by the next frame and must not be modified. This does not create a set for each frame.
+   *
+   * @return The words of the next set, or <code>null</code> at the end of the stream.
+   * @throws IOException
+   *           if the stream can't be read or does not contain a valid sequence of the domain. */
+  @Nullable
+  public long[] readWords() throws IOException {
+    if (this.end)
+      return null;
+    final int type = this.in.read();
+    if (type < 0 || type == DomainBitSetDeltaWriter.INDEX) {
+      this.end = true;
+      return null;
+    }
+    if (type == DomainBitSetDeltaWriter.KEYFRAME) {
+      final long[] keyframe = DomainBitSetCodec.read(this.domain, this.channel).toLongArray();
+      if (this.words == null)
+        this.words = keyframe;
+      else
+        System.arraycopy(keyframe, 0, this.words, 0, keyframe.length);
+    } else if (type == DomainBitSetDeltaWriter.DELTA) {
+      final long[] w = this.words;
+      if (w == null)
+        throw new StreamCorruptedException("The stream does not start at a keyframe.");
+      final int flipped = DomainBitSetCodec.readVarint(this::readByte);
+      long index = -1;
+      for (int i = 0; i < flipped; i++) {
+        index += 1L + DomainBitSetCodec.readVarint(this::readByte);
+        if (index >= this.domain.size())
+          throw new StreamCorruptedException("Position not in domain: " + index);
+        w[(int) (index >>> 6)] ^= 1L << index;
+      }
+    } else
+      throw new StreamCorruptedException("Unknown frame: " + type);
+    this.frames++;
+    return this.words;
+  }
+
+  /** The domain of all sets.
+   *
+   * @return The domain. */
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  /** The number of sets read so far.
+   *
+   * @return The number of frames. */
+  public long getFrameCount() {
+    return this.frames;
+  }
+
+  /** Closes the underlying stream. */
+  @Override
+  public void close() throws IOException {
+    this.in.close();
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getSimpleName() + "[frames=" + this.frames + "]";
+  }
+}
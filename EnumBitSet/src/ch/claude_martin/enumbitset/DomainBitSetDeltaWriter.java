@@ -0,0 +1,244 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.Nullable;
+
+/** Writes a sequence of sets of one domain to a stream, such as the states of an entity at
+ * consecutive points in time. When consecutive sets differ only in few elements this is much
+ * smaller than writing each set.
+ * <p>
+ * Each set is written as a frame. Every {@link #getKeyframeInterval() n-th} frame, starting with
+ * the first, is a keyframe that contains the complete set. All other frames only contain the
+ * positions that differ from the previous set, i.e. the bits of the XOR of both sets.
+ * <ul>
+ * <li>Keyframe: the byte 1, followed by the set as written by
+ * {@link DomainBitSetCodec#write(DomainBitSet, ByteBuffer)}.</li>
+ * <li>Delta frame: the byte 0, followed by a varint of the number of flipped positions and a
+ * varint for each of them: the difference to the previous flipped position, minus one. The first
+ * position is written as it is.</li>
+ * </ul>
+ * A keyframe does not depend on any previous frame. {@link #getKeyframeOffsets()} returns the
+ * position of each keyframe in the stream, so that
+ * {@link DomainBitSetDeltaReader#fromKeyframe(Domain, java.io.InputStream, long)} can start reading
+ * at any keyframe.
+ * <p>
+ * {@link #finish()} (or {@link #close()}) appends an index of all keyframes, so that the positions
+ * are also known to a reader in another process, see
+ * {@link DomainBitSetDeltaReader#readIndex(java.nio.channels.SeekableByteChannel)}:
+ * <ul>
+ * <li>Index frame: the byte 2, followed by the keyframe interval (int), the number of frames
+ * (long) and the position of each keyframe (long).</li>
+ * <li>Trailer: the number of keyframes (int), the position of the index frame (long) and the
+ * magic number <code>"DBSX"</code> (int).</li>
+ * </ul>
+ * All numbers of the index and the trailer are big-endian. All positions are relative to where the
+ * writer started. A reader that reads the sequence from the start stops at the index frame.
+ * <p>
+ * Each frame is written to the stream with a single call, so the stream does not need to be
+ * buffered. This class is not thread-safe.
+ *
+ * @param <T>
+ *          The type of the domain.
+ * @see DomainBitSetDeltaReader
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainBitSetDeltaWriter<T> implements Closeable, Flushable {
+
+  static final byte DELTA    = 0;
+  static final byte KEYFRAME = 1;
+  static final byte INDEX    = 2;
+
+  /** Magic number at the very end of a finished sequence. */
+  static final int  MAGIC    = 0x44425358;
+  /** Size of the trailer after the index frame. */
+  static final int  TRAILER  = 16;
+
+  private final Domain<T>    domain;
+  private final OutputStream out;
+  private final int          keyframeInterval;
+
+  /** The words of the previous set, or null before the first set. */
+  @Nullable
+  private long[]             previous;
+  private ByteBuffer         buffer    = ByteBuffer.allocate(64);
+  private long               frames    = 0;
+  private long               position  = 0;
+  private long[]             keyframes = new long[8];
+  private boolean            finished  = false;
+
+  /** Creates a writer that writes to the given stream.
+   *
+   * @param domain
+   *          The domain of all sets.
+   * @param out
+   *          The stream.
+   * @param keyframeInterval
+   *          The number of frames from one keyframe to the next. With 1 every frame is a
+   *          keyframe.
+   * @throws IllegalArgumentException
+   *           if the interval is not positive. */
+  public DomainBitSetDeltaWriter(final Domain<T> domain, final OutputStream out,
+      final int keyframeInterval) {
+    this.domain = requireNonNull(domain, "domain");
+    this.out = requireNonNull(out, "out");
+    if (keyframeInterval <= 0)
+      throw new IllegalArgumentException("keyframeInterval must be positive.");
+    this.keyframeInterval = keyframeInterval;
+  }
+
+  private ByteBuffer buffer(final int capacity) {
+    if (this.buffer.capacity() < capacity)
+      this.buffer = ByteBuffer.allocate(Math.max(capacity, 2 * this.buffer.capacity()));
+    this.buffer.clear();
+    return this.buffer;
+  }
+
+  /** Writes the next set.
+   *
+   * @param set
+   *          The set.
+   * @throws IOException
+   *           if the stream can't be written.
+   * @throws IllegalArgumentException
+   *           if the set has a different domain.
+   * @throws IllegalStateException
+   *           if the sequence was already {@link #finish() finished}. */
+  public void write(final DomainBitSet<T> set) throws IOException {
+    requireNonNull(set, "set");
+    if (this.finished)
+      throw new IllegalStateException("The sequence was already finished.");
+    if (set.getDomain() != this.domain && !set.getDomain().equals(this.domain))
+      throw new IllegalArgumentException("The set has a different domain.");
+    final long[] words = set.toLongArray();
+    final ByteBuffer frame;
+    if (this.frames % this.keyframeInterval == 0) {
+      final int k = (int) (this.frames / this.keyframeInterval);
+      if (k == this.keyframes.length)
+        this.keyframes = Arrays.copyOf(this.keyframes, 2 * k);
+      this.keyframes[k] = this.position;
+      final DomainBitSetCodec.Plan plan = new DomainBitSetCodec.Plan(this.domain.size(), words);
+      frame = this.buffer(1 + plan.size);
+      frame.put(KEYFRAME);
+      DomainBitSetCodec.write(this.domain.size(), plan, frame);
+    } else {
+      final long[] previous = this.previous;
+      int flipped = 0;
+      for (int i = 0; i < words.length; i++)
+        flipped += Long.bitCount(words[i] ^ previous[i]);
+      frame = this.buffer(6 + 5 * flipped);
+      frame.put(DELTA);
+      DomainBitSetCodec.putVarint(frame, flipped);
+      int last = -1;
+      for (int i = 0; i < words.length; i++)
+        for (long xor = words[i] ^ previous[i]; xor != 0L; xor &= xor - 1) {
+          final int index = i << 6 | Long.numberOfTrailingZeros(xor);
+          DomainBitSetCodec.putVarint(frame, index - last - 1);
+          last = index;
+        }
+    }
+    this.out.write(frame.array(), 0, frame.position());
+    this.position += frame.position();
+    this.previous = words;
+    this.frames++;
+  }
+
+  /** The domain of all sets.
+   *
+   * @return The domain. */
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  /** The number of frames from one keyframe to the next.
+   *
+   * @return The interval of the keyframes. */
+  public int getKeyframeInterval() {
+    return this.keyframeInterval;
+  }
+
+  /** The number of sets written so far.
+   *
+   * @return The number of frames. */
+  public long getFrameCount() {
+    return this.frames;
+  }
+
+  /** The number of bytes written so far.
+   *
+   * @return The position in the stream, relative to where this writer started. */
+  public long getPosition() {
+    return this.position;
+  }
+
+  /** Returns the positions of all keyframes written so far, relative to where this writer started.
+   * Keyframe <code>k</code> contains the set with the index <code>k * getKeyframeInterval()</code>.
+   *
+   * @return A new array of the positions. */
+  @NonNull
+  public long[] getKeyframeOffsets() {
+    return Arrays.copyOf(this.keyframes,
+        (int) ((this.frames + this.keyframeInterval - 1) / this.keyframeInterval));
+  }
+
+  /** Appends the index of all keyframes and the trailer. No more sets can be written after this.
+   * This is done by {@link #close()}, if it wasn't done before.
+   *
+   * @throws IOException
+   *           if the stream can't be written. */
+  public void finish() throws IOException {
+    if (this.finished)
+      return;
+    final long[] offsets = this.getKeyframeOffsets();
+    final ByteBuffer index = this.buffer(1 + 4 + 8 + 8 * offsets.length + TRAILER);
+    index.put(INDEX);
+    index.putInt(this.keyframeInterval);
+    index.putLong(this.frames);
+    for (final long offset : offsets)
+      index.putLong(offset);
+    index.putInt(offsets.length);
+    index.putLong(this.position);
+    index.putInt(MAGIC);
+    this.out.write(index.array(), 0, index.position());
+    this.position += index.position();
+    this.finished = true;
+  }
+
+  /** Whether the index was already written.
+   *
+   * @return <code>true</code>, if no more sets can be written. */
+  public boolean isFinished() {
+    return this.finished;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.out.flush();
+  }
+
+  /** {@link #finish() Finishes} the sequence and closes the underlying stream. */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.finish();
+    } finally {
+      this.out.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getSimpleName() + "[frames=" + this.frames + ", bytes=" + this.position
+        + "]";
+  }
+}
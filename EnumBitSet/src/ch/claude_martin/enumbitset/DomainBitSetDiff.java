@@ -0,0 +1,69 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** The difference between two sets of the same domain, as returned by
+ * {@link DomainBitSet#diff(DomainBitSet)}: the elements that were added and the elements that were
+ * removed.
+ *
+ * @param <T>
+ *          The type of the domain.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainBitSetDiff<T> {
+  private final DomainBitSet<T> added;
+  private final DomainBitSet<T> removed;
+
+  DomainBitSetDiff(final DomainBitSet<T> added, final DomainBitSet<T> removed) {
+    this.added = requireNonNull(added, "added");
+    this.removed = requireNonNull(removed, "removed");
+  }
+
+  /** The elements that are only in the other set.
+   *
+   * @return <code>other &#x2216; this</code> */
+  @NonNull
+  public DomainBitSet<T> getAdded() {
+    return this.added;
+  }
+
+  /** The elements that are only in the original set.
+   *
+   * @return <code>this &#x2216; other</code> */
+  @NonNull
+  public DomainBitSet<T> getRemoved() {
+    return this.removed;
+  }
+
+  /** Checks whether both sets contain the same elements.
+   *
+   * @return <code>true</code>, if nothing was added or removed. */
+  public boolean isEmpty() {
+    return this.added.isEmpty() && this.removed.isEmpty();
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof DomainBitSetDiff))
+      return false;
+    final DomainBitSetDiff<?> other = (DomainBitSetDiff<?>) obj;
+    return this.added.equals(other.added) && this.removed.equals(other.removed);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * this.added.hashCode() + this.removed.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "+" + this.added + " -" + this.removed;
+  }
+}
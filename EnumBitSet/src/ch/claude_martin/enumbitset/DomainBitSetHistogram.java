@@ -0,0 +1,269 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+import ch.claude_martin.enumbitset.annotations.CheckReturnValue;
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** Counts how often each element of a domain occurs in the added sets. The counts are kept in a
+ * <code>long[]</code> indexed by the position in the domain, so no element or count is boxed.
+ * <p>
+ * Sparse sets are added by iterating their bits. Dense sets are added to a
+ * {@link BitSlicedCounter}, which updates the counts of 64 positions at once, and which is folded
+ * into the counts when they are read.
+ * <p>
+ * This class is not thread-safe. The histograms of different threads can be combined by
+ * {@link #merge(DomainBitSetHistogram)}, as done by {@link #collector(Domain)} for parallel
+ * streams.
+ *
+ * @param <T>
+ *          The type of the domain.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainBitSetHistogram<T> implements Consumer<DomainBitSet<T>> {
+
+  /** A set is dense, if it has more than this many elements per word. */
+  private static final int    DENSE  = 4;
+
+  private final Domain<T>     domain;
+  private final long[]        counts;
+  /** Counts of the dense sets, or null. */
+  private BitSlicedCounter<T> dense  = null;
+  private long                sets   = 0;
+
+  /** Creates an empty histogram.
+   *
+   * @param domain
+   *          The domain. */
+  public DomainBitSetHistogram(final Domain<T> domain) {
+    this.domain = requireNonNull(domain, "domain");
+    this.counts = new long[domain.size()];
+  }
+
+  /** Collector to count the elements of a stream of sets.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param domain
+   *          The domain.
+   * @return A new Collector that creates a histogram. */
+  @CheckReturnValue
+  @NonNull
+  public static <T> Collector<DomainBitSet<T>, ?, DomainBitSetHistogram<T>> collector(
+      final Domain<T> domain) {
+    requireNonNull(domain, "domain");
+    return Collector.of(() -> new DomainBitSetHistogram<>(domain), DomainBitSetHistogram::add,
+        DomainBitSetHistogram::merge, Collector.Characteristics.UNORDERED,
+        Collector.Characteristics.IDENTITY_FINISH);
+  }
+
+  /** Adds one set, i.e. increments the counts of all its elements.
+   *
+   * @param set
+   *          A set of the domain.
+   * @throws IllegalArgumentException
+   *           if the set is of a different domain. */
+  public void add(final DomainBitSet<T> set) {
+    requireNonNull(set, "set");
+    final Domain<T> d = set.getDomain();
+    if (d != this.domain && !d.equals(this.domain))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    final long[] words = set.toLongArray();
+    int bits = 0;
+    for (final long w : words)
+      bits += Long.bitCount(w);
+    if (bits > DENSE * words.length) {
+      if (this.dense == null)
+        this.dense = new BitSlicedCounter<>(this.domain);
+      this.dense.add(set);
+    } else
+      for (int i = 0; i < words.length; i++)
+        for (long w = words[i]; w != 0L; w &= w - 1)
+          this.counts[i << 6 | Long.numberOfTrailingZeros(w)]++;
+    this.sets++;
+  }
+
+  /** Same as {@link #add(DomainBitSet)}. */
+  @Override
+  public void accept(final DomainBitSet<T> set) {
+    this.add(set);
+  }
+
+  /** Adds all given sets.
+   *
+   * @param sets
+   *          Sets of the domain.
+   * @throws IllegalArgumentException
+   *           if a set is of a different domain. */
+  public void addAll(final Collection<? extends DomainBitSet<T>> sets) {
+    requireNonNull(sets, "sets").forEach(this::add);
+  }
+
+  /** Adds all sets of the given stream. A parallel stream is counted by one histogram per thread.
+   *
+   * @param sets
+   *          Sets of the domain.
+   * @throws IllegalArgumentException
+   *           if a set is of a different domain. */
+  public void addAll(final Stream<? extends DomainBitSet<T>> sets) {
+    requireNonNull(sets, "sets");
+    if (sets.isParallel())
+      this.merge(sets.collect(collector(this.domain)));
+    else
+      sets.forEachOrdered(this::add);
+  }
+
+  /** Adds the counts of another histogram of the same domain.
+   *
+   * @param other
+   *          Another histogram.
+   * @return this
+   * @throws IllegalArgumentException
+   *           if the histogram is of a different domain. */
+  @NonNull
+  public DomainBitSetHistogram<T> merge(final DomainBitSetHistogram<T> other) {
+    requireNonNull(other, "other");
+    if (other.domain != this.domain && !other.domain.equals(this.domain))
+      throw new IllegalArgumentException("The histogram is of a different domain.");
+    for (int i = 0; i < this.counts.length; i++)
+      this.counts[i] += other.counts[i];
+    if (other.dense != null) {
+      if (this.dense == null)
+        this.dense = new BitSlicedCounter<>(this.domain);
+      this.dense.addAll(other.dense);
+    }
+    this.sets += other.sets;
+    return this;
+  }
+
+  /** Adds the counts of the dense sets to the counts. */
+  private void fold() {
+    if (this.dense == null)
+      return;
+    final long[] c = this.dense.counts();
+    for (int i = 0; i < c.length; i++)
+      this.counts[i] += c[i];
+    this.dense = null;
+  }
+
+  /** The domain of the counted sets.
+   *
+   * @return The domain. */
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  /** The number of sets that were added.
+   *
+   * @return The number of sets. */
+  public long getSetCount() {
+    return this.sets;
+  }
+
+  /** Returns the count of the element at the given position.
+   *
+   * @param bitIndex
+   *          The position in the domain.
+   * @return The number of added sets that contain the element.
+   * @throws IndexOutOfBoundsException
+   *           if the index is not in the domain. */
+  public long count(final int bitIndex) throws IndexOutOfBoundsException {
+    this.fold();
+    return this.counts[bitIndex];
+  }
+
+  /** Returns the count of the given element.
+   *
+   * @param element
+   *          An element.
+   * @return The number of added sets that contain the element. This is 0 for elements that are not
+   *         in the domain. */
+  public long count(final Object element) {
+    final int index = this.domain.indexOf(element);
+    return index < 0 ? 0 : this.count(index);
+  }
+
+  /** Returns the counts of all elements.
+   *
+   * @return A new array with the count of each position of the domain. */
+  @NonNull
+  public long[] counts() {
+    this.fold();
+    return this.counts.clone();
+  }
+
+  /** Returns the elements with the highest counts, in descending order of their counts. Elements
+   * with equal counts are in the order of the domain.
+   *
+   * @param n
+   *          The maximal number of elements.
+   * @return A new list of at most n elements.
+   * @throws IllegalArgumentException
+   *           if n is negative. */
+  @NonNull
+  public List<T> topK(final int n) {
+    if (n < 0)
+      throw new IllegalArgumentException("n must not be negative.");
+    this.fold();
+    final long[] c = this.counts;
+    // min-heap of the positions of the n largest counts; the root is the smallest of them.
+    final int[] heap = new int[Math.min(n, c.length)];
+    int size = 0;
+    for (int i = 0; i < c.length && heap.length > 0; i++)
+      if (size < heap.length) {
+        int k = size++;
+        while (k > 0 && this.less(i, heap[(k - 1) >>> 1])) {
+          heap[k] = heap[(k - 1) >>> 1];
+          k = (k - 1) >>> 1;
+        }
+        heap[k] = i;
+      } else if (this.less(heap[0], i))
+        this.siftDown(heap, size, i);
+    final List<T> result = new ArrayList<>(size);
+    for (int j = size; j > 0; j--)
+      result.add(null);
+    while (size > 0) {
+      final int root = heap[0];
+      result.set(--size, this.domain.get(root));
+      this.siftDown(heap, size, heap[size]);
+    }
+    return result;
+  }
+
+  /** Whether position a comes after position b in the order of {@link #topK(int)}. */
+  private boolean less(final int a, final int b) {
+    return this.counts[a] < this.counts[b] || this.counts[a] == this.counts[b] && a > b;
+  }
+
+  private void siftDown(final int[] heap, final int size, final int value) {
+    int k = 0;
+    while (true) {
+      int child = 2 * k + 1;
+      if (child >= size)
+        break;
+      if (child + 1 < size && this.less(heap[child + 1], heap[child]))
+        child++;
+      if (!this.less(heap[child], value))
+        break;
+      heap[k] = heap[child];
+      k = child;
+    }
+    if (size > 0)
+      heap[k] = value;
+  }
+
+  @Override
+  public String toString() {
+    return this.getClass().getSimpleName() + "[sets=" + this.sets + ", domain="
+        + this.domain.size() + "]";
+  }
+}
@@ -0,0 +1,180 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** A global pool of canonical instances of immutable {@link DomainBitSet}s (hash-consing).
+ * <p>
+ * Many applications hold large numbers of equal sets. If the pool is {@link #setEnabled(boolean)
+ * enabled}, the factory methods of the immutable implementations (such as
+ * {@link SmallDomainBitSet}) and deserialization return a canonical instance. Equal sets are then
+ * usually the same object, which saves memory and makes {@link Object#equals(Object) equals}
+ * trivial.
+ * <p>
+ * Sets are pooled by their class, their domain instance and their elements. Sets of different
+ * classes or of equal but distinct domains are never returned for each other, so the canonical
+ * instance is always of the same type as the given set. Deserialized domains are resolved to a
+ * shared instance. The pool only holds weak references, so sets that are not used anymore can
+ * still be collected. The pool is split into shards, each with its own lock, so
+ * that concurrent access does not contend on a single lock.
+ * <p>
+ * Mutable sets (such as {@link EnumBitSet} and {@link GeneralDomainBitSet}) can not be pooled.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainBitSetPool {
+  /** Name of the system property that enables the pool at startup. */
+  public static final String PROPERTY = "ch.claude_martin.enumbitset.intern";
+
+  /** Weak reference to a pooled set. Two references are equal if both sets are of the same class
+   * and the same domain instance and contain the same elements. */
+  private static final class Ref extends WeakReference<DomainBitSet<?>> {
+    private final int hash;
+
+    Ref(final DomainBitSet<?> set, final ReferenceQueue<DomainBitSet<?>> queue) {
+      super(set, queue);
+      this.hash = set.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (obj == this)
+        return true;
+      if (!(obj instanceof Ref) || ((Ref) obj).hash != this.hash)
+        return false;
+      final DomainBitSet<?> a = this.get();
+      final DomainBitSet<?> b = ((Ref) obj).get();
+      return a != null && b != null && a.getClass() == b.getClass()
+          && a.getDomain() == b.getDomain() && a.equals(b);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+
+  private static final class Shard {
+    private final HashMap<Ref, Ref>               map   = new HashMap<>();
+    private final ReferenceQueue<DomainBitSet<?>> queue = new ReferenceQueue<>();
+
+    synchronized DomainBitSet<?> intern(final DomainBitSet<?> set) {
+      for (Object ref; (ref = this.queue.poll()) != null;)
+        this.map.remove(ref);
+      final Ref key = new Ref(set, this.queue);
+      final Ref ref = this.map.get(key);
+      if (ref != null) {
+        final DomainBitSet<?> existing = ref.get();
+        if (existing != null)
+          return existing;
+      }
+      this.map.put(key, key);
+      return set;
+    }
+
+    synchronized int size() {
+      return this.map.size();
+    }
+
+    synchronized void clear() {
+      this.map.clear();
+    }
+  }
+
+  private static final Shard[]    SHARDS;
+  static {
+    // Power of two, at least 4 times the number of processors:
+    final int n = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+    SHARDS = new Shard[Math.max(16, n)];
+    for (int i = 0; i < SHARDS.length; i++)
+      SHARDS[i] = new Shard();
+  }
+
+  private static volatile boolean enabled = Boolean.getBoolean(PROPERTY);
+
+  private DomainBitSetPool() {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Returns the canonical instance of the given set. The set must be immutable.
+   *
+   * @param <S>
+   *          The type of the set.
+   * @param set
+   *          An immutable set.
+   * @throws IllegalArgumentException
+   *           if the set is mutable.
+   * @return A set of the same class and domain that is equal to the given set. This is the same
+   *         reference for all such sets, unless the canonical instance was collected in the
+   *         meantime. */
+  @SuppressWarnings("unchecked")
+  @NonNull
+  public static <S extends DomainBitSet<?>> S intern(final S set) {
+    requireNonNull(set, "set");
+    if (!isImmutable(set))
+      throw new IllegalArgumentException("Only immutable sets can be interned: "
+          + set.getClass().getSimpleName());
+    final int h = set.hashCode();
+    return (S) SHARDS[(h ^ h >>> 16) & SHARDS.length - 1].intern(set);
+  }
+
+  /** Interns the given set, but only if the pool is enabled. This is used by the factory methods of
+   * the immutable implementations. */
+  @NonNull
+  static <S extends DomainBitSet<?>> S internIfEnabled(final S set) {
+    if (enabled)
+      return intern(set);
+    return set;
+  }
+
+  /** Checks if the given set can be interned. Only immutable sets are allowed.
+   *
+   * @param set
+   *          any set
+   * @return <code>true</code>, if the set is immutable. */
+  public static boolean isImmutable(final DomainBitSet<?> set) {
+    return set instanceof SmallDomainBitSet || set instanceof MediumDomainBitSet
+        || set instanceof AdaptiveDomainBitSet || set instanceof CompressedDomainBitSet
+        || set instanceof PersistentDomainBitSet;
+  }
+
+  /** Returns whether the factory methods of immutable sets return pooled instances. The default is
+   * <code>false</code>, unless the system property {@value #PROPERTY} is set to <code>true</code>.
+   *
+   * @return <code>true</code>, if the pool is enabled. */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /** Enables or disables the pool. Sets that were already pooled remain in the pool as long as they
+   * are referenced.
+   *
+   * @param enable
+   *          <code>true</code> to enable the pool. */
+  public static void setEnabled(final boolean enable) {
+    enabled = enable;
+  }
+
+  /** Number of sets currently in the pool. This is an estimate, as entries are removed
+   * concurrently by the garbage collector.
+   *
+   * @return approximate number of pooled sets. */
+  public static int size() {
+    int size = 0;
+    for (final Shard shard : SHARDS)
+      size += shard.size();
+    return size;
+  }
+
+  /** Removes all sets from the pool. */
+  public static void clear() {
+    for (final Shard shard : SHARDS)
+      shard.clear();
+  }
+}
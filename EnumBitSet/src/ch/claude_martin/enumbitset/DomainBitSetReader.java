@@ -0,0 +1,170 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.Nullable;
+
+/** Reads sets that were written by a {@link DomainBitSetWriter}. Each domain table is only
+ * deserialized once per stream and the domains are interned, so all sets of equal domains share
+ * one domain instance.
+ * <p>
+ * A domain table is only deserialized if it is not longer than the maximum length, and only
+ * with classes that are allowed. By default these are the classes of this package, enum types,
+ * {@link String}, the boxed primitives, {@link BigInteger} and {@link BigDecimal}. Other classes of
+ * elements must be allowed explicitly.
+ * <p>
+ * The headers are read byte by byte, so the stream should be buffered. This class is not
+ * thread-safe.
+ *
+ * @see DomainBitSetWriter
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainBitSetReader implements Closeable {
+  /** The default maximum length of a domain table, in bytes. */
+  public static final int                 MAX_TABLE_LENGTH = 1 << 26;
+
+  /** Classes that are allowed in domain tables, besides enum types and this package. */
+  private static final Set<Class<?>>      ALLOWED          = new HashSet<>(Arrays.asList(
+                                                               Object.class, Enum.class,
+                                                               Number.class, String.class,
+                                                               Boolean.class, Character.class,
+                                                               Byte.class, Short.class,
+                                                               Integer.class, Long.class,
+                                                               Float.class, Double.class,
+                                                               BigInteger.class,
+                                                               BigDecimal.class));
+
+  private final InputStream               in;
+  private final ReadableByteChannel       channel;
+  private final int                       maxTableLength;
+  private final Predicate<? super Class<?>> allowed;
+  /** The domains in the order they were read. */
+  private final List<Domain<?>>           domains          = new ArrayList<>();
+
+  /** Creates a reader that reads from the given stream. Domain tables are limited to
+   * {@link #MAX_TABLE_LENGTH} bytes and the default classes.
+   *
+   * @param in
+   *          The stream. */
+  public DomainBitSetReader(final InputStream in) {
+    this(in, MAX_TABLE_LENGTH, c -> false);
+  }
+
+  /** Creates a reader that reads from the given stream.
+   *
+   * @param in
+   *          The stream.
+   * @param maxTableLength
+   *          The maximum length of a domain table, in bytes.
+   * @param allowed
+   *          Classes of elements that are allowed in addition to the default classes.
+   * @throws IllegalArgumentException
+   *           if the maximum length is negative. */
+  public DomainBitSetReader(final InputStream in, final int maxTableLength,
+      final Predicate<? super Class<?>> allowed) {
+    if (maxTableLength < 0)
+      throw new IllegalArgumentException("maxTableLength must not be negative.");
+    this.in = requireNonNull(in, "in");
+    this.channel = Channels.newChannel(in);
+    this.maxTableLength = maxTableLength;
+    this.allowed = requireNonNull(allowed, "allowed");
+  }
+
+  private boolean isAllowed(final Class<?> type) {
+    Class<?> c = type;
+    while (c.isArray())
+      c = c.getComponentType();
+    return c.isPrimitive() || Enum.class.isAssignableFrom(c) || ALLOWED.contains(c)
+        || Domain.class.getPackage().equals(c.getPackage()) || this.allowed.test(c);
+  }
+
+  private byte readByte() throws IOException {
+    final int b = this.in.read();
+    if (b < 0)
+      throw new EOFException();
+    return (byte) b;
+  }
+
+  /** Reads the next set.
+   *
+   * @return The next set, or <code>null</code> at the end of the stream.
+   * @throws IOException
+   *           if the stream can't be read, does not contain valid sets, or contains a domain table
+   *           that is too long or has classes that are not allowed.
+   * @throws ClassNotFoundException
+   *           if the class of a domain or of its elements can't be found. */
+  @Nullable
+  public DomainBitSet<?> read() throws IOException, ClassNotFoundException {
+    final int first = this.in.read();
+    if (first < 0)
+      return null;
+    final int reference = first < 0x80 ? first : first & 0x7F
+        | DomainBitSetCodec.readVarint(this::readByte) << 7;
+    final Domain<?> domain;
+    if (reference == 0) {
+      final int length = DomainBitSetCodec.readVarint(this::readByte);
+      if (length > this.maxTableLength)
+        throw new StreamCorruptedException("The domain table is too long: " + length);
+      final byte[] table = new byte[length];
+      for (int n = 0, r; n < length; n += r)
+        if ((r = this.in.read(table, n, length - n)) < 0)
+          throw new EOFException();
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(table)) {
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException,
+            ClassNotFoundException {
+          final Class<?> type = super.resolveClass(desc);
+          if (!DomainBitSetReader.this.isAllowed(type))
+            throw new InvalidClassException(type.getName(), "Not allowed in a domain table.");
+          return type;
+        }
+      }) {
+        final Object object = ois.readObject();
+        if (!(object instanceof Domain))
+          throw new StreamCorruptedException("Not a domain: " + object.getClass().getName());
+        domain = (Domain<?>) object;
+      }
+      this.domains.add(domain);
+    } else if (reference > 0 && reference <= this.domains.size())
+      domain = this.domains.get(reference - 1);
+    else
+      throw new StreamCorruptedException("Unknown domain: " + (reference - 1));
+    return DomainBitSetCodec.read(domain, this.channel);
+  }
+
+  /** The distinct domains read so far, in the order they were read.
+   *
+   * @return The domains. */
+  @NonNull
+  public List<Domain<?>> getDomains() {
+    return new ArrayList<>(this.domains);
+  }
+
+  /** Closes the underlying stream. */
+  @Override
+  public void close() throws IOException {
+    this.in.close();
+  }
+}
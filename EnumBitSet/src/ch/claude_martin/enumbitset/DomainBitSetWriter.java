@@ -0,0 +1,103 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** Writes sets of any domains to a stream. Unlike {@link DomainBitSetCodec} this includes the
+ * domains, but each domain is only written once per stream. Later sets of an equal domain only
+ * refer to it by its number.
+ * <p>
+ * Each set is written as:
+ * <ol>
+ * <li>varint: 0 if a new domain follows, or the number of a domain that was already written, plus
+ * one. Domains are numbered from 0 in the order they are written.</li>
+ * <li>Only for a new domain: varint: the length of the domain table, followed by the table, which
+ * is the domain in Java serialization.</li>
+ * <li>The set as written by {@link DomainBitSetCodec#write(DomainBitSet, ByteBuffer)}.</li>
+ * </ol>
+ * Deserialized domains are interned, so the domains of all sets that are read by
+ * {@link DomainBitSetReader}s are shared, even across streams.
+ * <p>
+ * Each set is written to the stream with a single call, so the stream does not need to be buffered.
+ * This class is not thread-safe.
+ *
+ * @see DomainBitSetReader
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainBitSetWriter implements Closeable, Flushable {
+
+  private final OutputStream            out;
+  /** Number of each domain that was written. */
+  private final Map<Domain<?>, Integer> domains = new HashMap<>();
+
+  /** Creates a writer that writes to the given stream.
+   *
+   * @param out
+   *          The stream. */
+  public DomainBitSetWriter(final OutputStream out) {
+    this.out = requireNonNull(out, "out");
+  }
+
+  /** Writes a set and its domain, unless the domain was already written.
+   *
+   * @param set
+   *          The set.
+   * @throws IOException
+   *           if the stream can't be written or the domain can't be serialized. */
+  public void write(final DomainBitSet<?> set) throws IOException {
+    requireNonNull(set, "set");
+    final Domain<?> domain = set.getDomain();
+    final Integer id = this.domains.get(domain);
+    byte[] table = null;
+    if (id == null) {
+      final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bas)) {
+        oos.writeObject(domain);
+      }
+      table = bas.toByteArray();
+    }
+    final int reference = id == null ? 0 : id + 1;
+    final int header = DomainBitSetCodec.varintSize(reference)
+        + (table == null ? 0 : DomainBitSetCodec.varintSize(table.length) + table.length);
+    final ByteBuffer buffer = ByteBuffer.allocate(header + DomainBitSetCodec.encodedSize(set));
+    DomainBitSetCodec.putVarint(buffer, reference);
+    if (table != null) {
+      DomainBitSetCodec.putVarint(buffer, table.length);
+      buffer.put(table);
+    }
+    DomainBitSetCodec.write(set, buffer);
+    this.out.write(buffer.array(), 0, buffer.position());
+    if (id == null)
+      this.domains.put(domain, this.domains.size());
+  }
+
+  /** The number of distinct domains written so far.
+   *
+   * @return The number of domains. */
+  public int getDomainCount() {
+    return this.domains.size();
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.out.flush();
+  }
+
+  /** Closes the underlying stream. */
+  @Override
+  public void close() throws IOException {
+    this.out.close();
+  }
+}
@@ -0,0 +1,176 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** A 128 bit structural fingerprint of a {@link Domain}. It depends on the elements and their order.
+ * <p>
+ * Equal domains always have equal fingerprints. So if the fingerprints of two domains are not
+ * equal, the domains are not equal either. The inverse is not true: the fingerprint is not a
+ * cryptographic hash, and enum constants only contribute the names of their type and constant, so
+ * the same enum type loaded by two class loaders gives equal fingerprints. Equal fingerprints
+ * therefore still require a comparison of the elements.
+ * <p>
+ * Fingerprints that are {@link #isStable() stable} are computed from the values of the elements
+ * (strings, enum constants, boxed primitives and big numbers) and are the same on every JVM. Any
+ * other element contributes its {@link Object#hashCode() hash code}, which is not necessarily
+ * stable.
+ * <p>
+ * Domains compute their fingerprint once, at construction. This allows to check in constant time
+ * whether two domains are different.
+ *
+ * @see Domain#fingerprint()
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class DomainFingerprint implements Serializable {
+  private static final long serialVersionUID = 4236409591342865921L;
+
+  private static final long PRIME_A          = 0x100000001b3L;
+  private static final long PRIME_B          = 0x9e3779b97f4a7c15L;
+
+  /** Two lanes of 64 bits, each with its own multiplier. */
+  private static final class Hasher {
+    long a = 0xcbf29ce484222325L;
+    long b = 0x84222325cbf29ce4L;
+
+    void add(final long value) {
+      this.a = (this.a ^ value) * PRIME_A;
+      this.b = Long.rotateLeft(this.b ^ value, 31) * PRIME_B;
+    }
+
+    void add(final String value) {
+      for (int i = 0; i < value.length(); i++)
+        this.add(value.charAt(i));
+      this.add(value.length());
+    }
+
+    /** Adds the element and returns whether its contribution is stable. */
+    boolean add(final Object element) {
+      if (element instanceof String) {
+        this.add(1);
+        this.add((String) element);
+        return true;
+      }
+      if (element instanceof Enum) {
+        this.add(2);
+        this.add(((Enum<?>) element).getDeclaringClass().getName());
+        this.add(((Enum<?>) element).name());
+        return true;
+      }
+      if (element instanceof Integer || element instanceof Long || element instanceof Short
+          || element instanceof Byte || element instanceof Double || element instanceof Float
+          || element instanceof Character || element instanceof Boolean
+          || element instanceof BigInteger || element instanceof BigDecimal) {
+        this.add(3);
+        this.add(element.getClass().getName());
+        this.add(element.toString());
+        return true;
+      }
+      this.add(4);
+      this.add(element.hashCode());
+      return false;
+    }
+  }
+
+  /** Computes the fingerprint of the given elements.
+   *
+   * @param elements
+   *          The elements of a domain, in their order.
+   * @return The fingerprint of the elements. */
+  @NonNull
+  public static DomainFingerprint of(final Iterable<?> elements) {
+    requireNonNull(elements, "elements");
+    final Hasher hasher = new Hasher();
+    boolean stable = true;
+    int size = 0;
+    for (final Object e : elements) {
+      stable &= hasher.add(requireNonNull(e));
+      size++;
+    }
+    hasher.add(size);
+    return new DomainFingerprint(mix(hasher.a), mix(hasher.b ^ hasher.a), stable);
+  }
+
+  /** Final mixing step of MurmurHash3. */
+  private static long mix(final long value) {
+    long h = value;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private final long    high;
+  private final long    low;
+  private final boolean stable;
+
+  DomainFingerprint(final long high, final long low, final boolean stable) {
+    this.high = high;
+    this.low = low;
+    this.stable = stable;
+  }
+
+  /** The upper 64 bits of the fingerprint.
+   *
+   * @return the upper 64 bits. */
+  public long getHigh() {
+    return this.high;
+  }
+
+  /** The lower 64 bits of the fingerprint.
+   *
+   * @return the lower 64 bits. */
+  public long getLow() {
+    return this.low;
+  }
+
+  /** A stable fingerprint only depends on the values of the elements. It is the same on all JVMs,
+   * so it can be used to identify a domain that was persisted by another JVM.
+   *
+   * @return <code>true</code>, if this fingerprint is stable. */
+  public boolean isStable() {
+    return this.stable;
+  }
+
+  /** Checks whether two domains with these fingerprints are different, without comparing the
+   * elements. Only a positive result is certain: if this returns <code>false</code>, then the
+   * elements must still be compared.
+   *
+   * @param other
+   *          The fingerprint of the other domain.
+   * @return <code>true</code>, if the domains are not equal. */
+  boolean domainsDiffer(final DomainFingerprint other) {
+    return !this.equals(other);
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj)
+      return true;
+    if (!(obj instanceof DomainFingerprint))
+      return false;
+    final DomainFingerprint other = (DomainFingerprint) obj;
+    return this.high == other.high && this.low == other.low && this.stable == other.stable;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (this.high ^ this.high >>> 32);
+  }
+
+  /** Hexadecimal representation of all 128 bits. */
+  @Override
+  public String toString() {
+    return String.format("%016x%016x", this.high, this.low);
+  }
+}
@@ -530,9 +530,14 @@ public final class EnumBitSet<E extends Enum<E> & EnumBitSetHelper<E>> implement
     if (other instanceof EnumBitSet)
       return this.enumType == ((EnumBitSet<E>) other).enumType
           && this.bitset.equals(((EnumBitSet<E>) other).bitset);
-    if (other instanceof DomainBitSet)
-      return this.ofEqualDomain((DomainBitSet<E>) other)
-          && this.ofEqualElements((DomainBitSet<E>) other);
+    if (other instanceof DomainBitSet) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<E> set = (DomainBitSet<E>) other;
+      if (BitSetUtilities.isWordComparable(other))
+        return this.bitset.size() == set.size() && this.ofEqualDomain(set)
+            && BitSetUtilities.equalWords(this, set);
+      return this.ofEqualDomain(set) && this.ofEqualElements(set);
+    }
     return false;
   }
 
@@ -595,7 +600,9 @@ public final class EnumBitSet<E extends Enum<E> & EnumBitSetHelper<E>> implement
   /** {@inheritDoc} */
   @Override
   public int hashCode() {
-    return this.getDomain().hashCode() ^ this.bitset.hashCode();
+    if (this.getEnumTypeSize() <= 64)
+      return this.getDomain().hashCode() ^ BitSetUtilities.hashCode(this.toLong());
+    return BitSetUtilities.hashCode(this);
   }
 
   /** Returns a new EnumBitSet containing all elements that are in <code>this</code> and the given
@@ -706,6 +713,92 @@ public final class EnumBitSet<E extends Enum<E> & EnumBitSetHelper<E>> implement
     return new EnumBitSet<>(this.enumType, clone);
   }
 
+  /** The constants at the positions <code>[from, to)</code>. */
+  private EnumSet<E> rangeOf(final int from, final int to) throws IndexOutOfBoundsException {
+    if (from < 0 || from > to || to > this.getEnumTypeSize())
+      throw new IndexOutOfBoundsException("from: " + from + ", to: " + to);
+    if (from == to)
+      return EnumSet.noneOf(this.enumType);
+    final Domain<E> d = this.getDomain();
+    return EnumSet.range(d.get(from), d.get(to - 1));
+  }
+
+  /** Adds all elements at the positions from <code>from</code> (inclusive) to <code>to</code>
+   * (exclusive). Like all range operations this is done on whole words of the underlying
+   * {@link EnumSet}.
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain.
+   * @see BitSet#set(int, int) */
+  public void setRange(final int from, final int to) throws IndexOutOfBoundsException {
+    this.bitset.addAll(this.rangeOf(from, to));
+  }
+
+  /** Removes all elements at the positions from <code>from</code> (inclusive) to <code>to</code>
+   * (exclusive).
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain.
+   * @see BitSet#clear(int, int) */
+  public void clearRange(final int from, final int to) throws IndexOutOfBoundsException {
+    this.bitset.removeAll(this.rangeOf(from, to));
+  }
+
+  /** Adds the missing and removes the contained elements at the positions from <code>from</code>
+   * (inclusive) to <code>to</code> (exclusive).
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain.
+   * @see BitSet#flip(int, int) */
+  public void flipRange(final int from, final int to) throws IndexOutOfBoundsException {
+    final EnumSet<E> missing = this.rangeOf(from, to);
+    missing.removeAll(this.bitset);
+    this.bitset.removeAll(this.rangeOf(from, to));
+    this.bitset.addAll(missing);
+  }
+
+  /** Checks whether all elements at the positions from <code>from</code> (inclusive) to
+   * <code>to</code> (exclusive) are in this set.
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @return <code>true</code>, if the range is empty or all its elements are in this set.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain. */
+  public boolean isRangeSet(final int from, final int to) throws IndexOutOfBoundsException {
+    return this.bitset.containsAll(this.rangeOf(from, to));
+  }
+
+  /** Checks whether none of the elements at the positions from <code>from</code> (inclusive) to
+   * <code>to</code> (exclusive) are in this set.
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @return <code>true</code>, if no element of the range is in this set.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain. */
+  public boolean isRangeClear(final int from, final int to) throws IndexOutOfBoundsException {
+    final EnumSet<E> range = this.rangeOf(from, to);
+    range.retainAll(this.bitset);
+    return range.isEmpty();
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean isEmpty() {
@@ -1053,6 +1146,14 @@ public final class EnumBitSet<E extends Enum<E> & EnumBitSetHelper<E>> implement
     return result;
   }
 
+  @Override
+  public long[] toLongArray() {
+    final long[] result = new long[(this.getEnumTypeSize() + 63) >>> 6];
+    for (final E e : this.bitset)
+      result[e.ordinal() >>> 6] |= 1L << e.ordinal();
+    return result;
+  }
+
   /** Copy of the underlying EnumSet.
    * 
    * @return <code>bitset.clone()</code> */
@@ -1179,6 +1280,23 @@ public final class EnumBitSet<E extends Enum<E> & EnumBitSetHelper<E>> implement
     return new EnumBitSet<>(this.enumType, clone);
   }
 
+  /** {@inheritDoc}
+   * <p>
+   * If the other set is an EnumBitSet this is done on the words of both {@link EnumSet}s. */
+  @Override
+  public EnumBitSet<E> xor(final DomainBitSet<E> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!(set instanceof EnumBitSet) || ((EnumBitSet<E>) set).enumType != this.enumType)
+      return (EnumBitSet<E>) DomainBitSet.super.xor(set);
+    final EnumSet<E> other = ((EnumBitSet<E>) set).bitset;
+    final EnumSet<E> common = this.bitset.clone();
+    common.retainAll(other);
+    final EnumSet<E> result = this.bitset.clone();
+    result.addAll(other);
+    result.removeAll(common);
+    return new EnumBitSet<>(this.enumType, result);
+  }
+
   /** {@inheritDoc}
    * <p>
    * As this uses enum types the position is always the {@link Enum#ordinal() ordinal} of the
@@ -1188,7 +1306,32 @@ public final class EnumBitSet<E extends Enum<E> & EnumBitSetHelper<E>> implement
     return this.stream().map(e -> Pair.of(e.ordinal(), e));
   }
 
-  /** This proxy class is used to serialize EnumBitSet instances. */
+  /** This proxy class is used to serialize EnumBitSet instances. Only the enum type and the words
+   * of the bit mask are written. */
+  private static class CompactSerializationProxy<E extends Enum<E> & EnumBitSetHelper<E>>
+      implements java.io.Serializable {
+    private static final long serialVersionUID = -3412868620779452315L;
+
+    private final Class<E>    enumType;
+    private final long[]      words;
+
+    public CompactSerializationProxy(final Class<E> enumType, final long[] words) {
+      this.enumType = enumType;
+      this.words = words;
+    }
+
+    private Object readResolve() throws java.io.InvalidObjectException {
+      final BitSet bitset = BitSet.valueOf(this.words);
+      if (bitset.length() > this.enumType.getEnumConstants().length)
+        throw new java.io.InvalidObjectException("The mask contains more elements than "
+            + this.enumType.getName());
+      return asEnumBitSet(bitset, this.enumType);
+    }
+  }
+
+  /** This proxy class was used to serialize EnumBitSet instances, before
+   * {@link CompactSerializationProxy}. It is still read, but no longer written. */
+  @SuppressWarnings("unused")
   private static class SerializationProxy<E extends Enum<E> & EnumBitSetHelper<E>> implements
       java.io.Serializable {
     private static final long serialVersionUID = 7134313027153728022L;
@@ -1207,7 +1350,7 @@ public final class EnumBitSet<E extends Enum<E> & EnumBitSetHelper<E>> implement
   }
 
   private Object writeReplace() {
-    return new SerializationProxy<>(this.enumType, this.bitset);
+    return new CompactSerializationProxy<>(this.enumType, this.toLongArray());
   }
 
   @SuppressFBWarnings({ "static-method", "unused" })
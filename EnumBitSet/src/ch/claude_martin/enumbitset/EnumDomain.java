@@ -32,6 +32,8 @@ final class EnumDomain<E extends Enum<E> & EnumBitSetHelper<E>> extends Abstract
   private int                 hash             = 0;                      // lazy!
   @NonNull
   private final Class<E>      enumType;
+  @NonNull
+  private final DomainFingerprint fingerprint;
 
   private static final// domainCache:
   Map<Class<? extends Enum<?>>, // Maps Enum-Type to Domain
@@ -57,6 +59,7 @@ final class EnumDomain<E extends Enum<E> & EnumBitSetHelper<E>> extends Abstract
   private EnumDomain(final Class<E> enumType) {
     this.enumType = enumType;
     this.elements = enumType.getEnumConstants();
+    this.fingerprint = DomainFingerprint.of(asList(this.elements));
   }
 
   @Override
@@ -85,10 +88,13 @@ final class EnumDomain<E extends Enum<E> & EnumBitSetHelper<E>> extends Abstract
   public boolean equals(final Object obj) {
     if (this == obj)
       return true;
-    if (obj == null || !(obj instanceof Domain) || this.hashCode() != obj.hashCode())
-      return false;
     if (obj instanceof EnumDomain)
       return this.getEnumType() == ((EnumDomain<?>) obj).getEnumType();
+    if (obj instanceof DefaultDomain
+        && this.fingerprint.domainsDiffer(((Domain<?>) obj).fingerprint()))
+      return false;
+    if (obj == null || !(obj instanceof Domain) || this.hashCode() != obj.hashCode())
+      return false;
     return Arrays.equals(this.elements, ((Domain<?>) obj).toArray());
   }
 
@@ -100,6 +106,11 @@ final class EnumDomain<E extends Enum<E> & EnumBitSetHelper<E>> extends Abstract
     return (s) -> EnumBitSet.asEnumBitSet(s, this.getEnumType());
   }
 
+  @Override
+  public DomainFingerprint fingerprint() {
+    return this.fingerprint;
+  }
+
   @Override
   @NonNull
   public E get(final int index) {
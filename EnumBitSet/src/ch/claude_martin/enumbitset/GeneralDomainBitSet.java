@@ -150,6 +150,9 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
 
   private final Domain<T> domain;
 
+  /** The hash code, or 0 if it has to be calculated. Each modification resets it. */
+  private transient int   hash = 0;
+
   private GeneralDomainBitSet(final Domain<T> domain) {
     requireNonNull(domain, "domain");
     this.domain = domain;
@@ -187,6 +190,7 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
   @Override
   public boolean add(final T e) {
     this.check(e);
+    this.hash = 0;
     return this.set.add(e);
   }
 
@@ -198,6 +202,7 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
   @Override
   public boolean addAll(final Collection<? extends T> c) {
     requireNonNull(c, "c").forEach(this::check);
+    this.hash = 0;
     return this.set.addAll(c);
   }
 
@@ -220,6 +225,7 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
 
   @Override
   public void clear() {
+    this.hash = 0;
     this.set.clear();
   }
 
@@ -255,10 +261,20 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
   }
 
   @Override
-  @SuppressFBWarnings("unchecked")
+  @SuppressWarnings("unchecked")
   public boolean equals(final Object o) {
-    return this == o || o instanceof DomainBitSet && this.ofEqualDomain((DomainBitSet<T>) o)
-        && this.ofEqualElements((DomainBitSet<T>) o);
+    if (this == o)
+      return true;
+    if (!(o instanceof DomainBitSet))
+      return false;
+    final DomainBitSet<T> other = (DomainBitSet<T>) o;
+    if (this.size() != other.size() || !this.ofEqualDomain(other))
+      return false;
+    if (o instanceof GeneralDomainBitSet)
+      return this.set.equals(((GeneralDomainBitSet<?>) o).set);
+    if (BitSetUtilities.isWordComparable(o))
+      return BitSetUtilities.equalWords(this, other);
+    return this.ofEqualElements(other);
   }
 
   @Override
@@ -278,7 +294,9 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
 
   @Override
   public int hashCode() {
-    return this.domain.hashCode() ^ this.set.hashCode();
+    if (this.hash == 0)
+      this.hash = BitSetUtilities.hashCode(this);
+    return this.hash;
   }
 
   @Override
@@ -335,6 +353,103 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
     return result;
   }
 
+  private void checkRange(final int from, final int to) throws IndexOutOfBoundsException {
+    if (from < 0 || from > to || to > this.domain.size())
+      throw new IndexOutOfBoundsException("from: " + from + ", to: " + to);
+  }
+
+  /** Adds all elements at the positions from <code>from</code> (inclusive) to <code>to</code>
+   * (exclusive). The elements are stored in a hash set, so all range operations take time linear
+   * in the length of the range.
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain.
+   * @see BitSet#set(int, int) */
+  public void setRange(final int from, final int to) throws IndexOutOfBoundsException {
+    this.checkRange(from, to);
+    this.hash = 0;
+    this.set.addAll(this.domain.subList(from, to));
+  }
+
+  /** Removes all elements at the positions from <code>from</code> (inclusive) to <code>to</code>
+   * (exclusive).
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain.
+   * @see BitSet#clear(int, int) */
+  public void clearRange(final int from, final int to) throws IndexOutOfBoundsException {
+    this.checkRange(from, to);
+    this.hash = 0;
+    for (int i = from; i < to; i++)
+      this.set.remove(this.domain.get(i));
+  }
+
+  /** Adds the missing and removes the contained elements at the positions from <code>from</code>
+   * (inclusive) to <code>to</code> (exclusive).
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain.
+   * @see BitSet#flip(int, int) */
+  public void flipRange(final int from, final int to) throws IndexOutOfBoundsException {
+    this.checkRange(from, to);
+    this.hash = 0;
+    for (int i = from; i < to; i++) {
+      final T e = this.domain.get(i);
+      if (!this.set.remove(e))
+        this.set.add(e);
+    }
+  }
+
+  /** Checks whether all elements at the positions from <code>from</code> (inclusive) to
+   * <code>to</code> (exclusive) are in this set.
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @return <code>true</code>, if the range is empty or all its elements are in this set.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain. */
+  public boolean isRangeSet(final int from, final int to) throws IndexOutOfBoundsException {
+    this.checkRange(from, to);
+    if (to - from > this.set.size())
+      return false;
+    for (int i = from; i < to; i++)
+      if (!this.set.contains(this.domain.get(i)))
+        return false;
+    return true;
+  }
+
+  /** Checks whether none of the elements at the positions from <code>from</code> (inclusive) to
+   * <code>to</code> (exclusive) are in this set.
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @return <code>true</code>, if no element of the range is in this set.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain. */
+  public boolean isRangeClear(final int from, final int to) throws IndexOutOfBoundsException {
+    this.checkRange(from, to);
+    for (int i = from; i < to && !this.set.isEmpty(); i++)
+      if (this.set.contains(this.domain.get(i)))
+        return false;
+    return true;
+  }
+
   @Override
   public boolean isEmpty() {
     return this.set.isEmpty();
@@ -342,7 +457,24 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
 
   @Override
   public Iterator<T> iterator() {
-    return this.set.iterator();
+    final Iterator<T> itr = this.set.iterator();
+    return new Iterator<T>() {
+      @Override
+      public boolean hasNext() {
+        return itr.hasNext();
+      }
+
+      @Override
+      public T next() {
+        return itr.next();
+      }
+
+      @Override
+      public void remove() {
+        GeneralDomainBitSet.this.hash = 0;
+        itr.remove();
+      }
+    };
   }
 
   @Override
@@ -410,21 +542,25 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
 
   @Override
   public boolean remove(final Object o) {
+    this.hash = 0;
     return this.set.remove(o);
   }
 
   @Override
   public boolean removeAll(final Collection<?> c) {
+    this.hash = 0;
     return this.set.removeAll(c);
   }
 
   @Override
   public boolean removeIf(final Predicate<? super T> filter) {
+    this.hash = 0;
     return this.set.removeIf(filter);
   }
 
   @Override
   public boolean retainAll(final Collection<?> c) {
+    this.hash = 0;
     return this.set.retainAll(c);
   }
 
@@ -490,6 +626,16 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
     return result;
   }
 
+  @Override
+  public long[] toLongArray() {
+    final long[] result = new long[(this.domain.size() + 63) >>> 6];
+    for (final T t : this.set) {
+      final int i = this.domain.indexOf(t);
+      result[i >>> 6] |= 1L << i;
+    }
+    return result;
+  }
+
   @Override
   public Set<T> toSet() {
     return new HashSet<>(this.set);
@@ -548,7 +694,45 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
     return result;
   }
 
-  /** This proxy class is used to serialize GeneralDomainBitSet instances. */
+  @Override
+  public GeneralDomainBitSet<T> xor(final DomainBitSet<T> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    final GeneralDomainBitSet<T> result = new GeneralDomainBitSet<>(this);
+    for (final T e : set)
+      if (!result.set.remove(e))
+        result.set.add(e);
+    return result;
+  }
+
+  /** This proxy class is used to serialize GeneralDomainBitSet instances. The elements are written
+   * as the words of a bit mask of the domain. */
+  private static class CompactSerializationProxy<T> implements java.io.Serializable {
+    private static final long serialVersionUID = 8253760958410651871L;
+
+    private final Domain<T>   domain;
+    private final long[]      words;
+
+    public CompactSerializationProxy(@NonNull final Domain<T> domain, @NonNull final long[] words) {
+      this.domain = domain;
+      this.words = words;
+    }
+
+    private Object readResolve() throws java.io.InvalidObjectException {
+      final BitSet bitset = BitSet.valueOf(this.words);
+      if (bitset.length() > this.domain.size())
+        throw new java.io.InvalidObjectException(
+            "The mask contains more elements than the domain allows.");
+      final Set<T> set = new HashSet<>(bitset.cardinality() * 4 / 3 + 1);
+      bitset.stream().forEach(i -> set.add(this.domain.get(i)));
+      return new GeneralDomainBitSet<>(this.domain, set);
+    }
+  }
+
+  /** This proxy class was used to serialize GeneralDomainBitSet instances, before
+   * {@link CompactSerializationProxy}. It is still read, but no longer written. */
+  @SuppressWarnings("unused")
   private static class SerializationProxy<T> implements java.io.Serializable {
     private static final long serialVersionUID = -2580103018874648686L;
 
@@ -566,7 +750,7 @@ public final class GeneralDomainBitSet<T> implements DomainBitSet<T>, Collection
   }
 
   private Object writeReplace() {
-    return new SerializationProxy<>(this.domain, this.set);
+    return new CompactSerializationProxy<>(this.domain, this.toLongArray());
   }
 
   @SuppressFBWarnings({ "static-method", "unused" })
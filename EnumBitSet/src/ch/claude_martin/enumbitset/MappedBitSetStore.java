@@ -0,0 +1,364 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.Nullable;
+
+/** A file of many bit vectors of one {@link Domain}, that is read by memory mapping. Opening a store
+ * only reads the header and checks the offset table. {@link #get(int)} returns a read-only
+ * {@link DomainBitSet} that reads the words directly from the mapped pages, so the operating system
+ * loads and caches them on demand.
+ * <p>
+ * The file is written by {@link #write(Path, Domain, List, Layout)}. All values are little-endian:
+ * <ol>
+ * <li>int: a magic number, byte: the version, byte: the {@link Layout}, two bytes: reserved,</li>
+ * <li>int: the size of the domain, int: the number of sets,</li>
+ * <li>two longs: the {@link DomainFingerprint fingerprint} of the domain,</li>
+ * <li>int: the length of the domain table, followed by the table itself, which is the domain in
+ * Java serialization,</li>
+ * <li>padding up to a multiple of 8 bytes,</li>
+ * <li>{@link Layout#OFFSET_INDEXED}: a long for the offset of each set and one for the end of the
+ * last set, in words after the offset table,</li>
+ * <li>the words of all sets.</li>
+ * </ol>
+ * <p>
+ * A store can be used by multiple threads.
+ *
+ * @param <T>
+ *          The type of the domain.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class MappedBitSetStore<T> implements Closeable {
+
+  /** How the bit vectors are stored in the file. */
+  public static enum Layout {
+    /** Each set has <code>ceil(domain.size() / 64)</code> words. */
+    FIXED_WIDTH,
+    /** Trailing words that are 0 are not stored. A table of offsets locates each set. This is
+     * smaller when many sets only contain elements at the start of the domain. */
+    OFFSET_INDEXED;
+  }
+
+  private static final int  MAGIC        = 0x53534244;
+  private static final byte VERSION      = 1;
+  private static final int  HEADER       = 36;
+
+  /** Size of the mapped segments, without the overlap. A buffer can't be larger than 2 GiB. */
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  /** Writes the given sets to a new file, replacing any existing file.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param file
+   *          The file.
+   * @param domain
+   *          The domain of all sets.
+   * @param sets
+   *          The sets. The index in this list is the id of the set in the store.
+   * @param layout
+   *          The layout of the sets in the file.
+   * @throws IOException
+   *           if the file can't be written.
+   * @throws IllegalArgumentException
+   *           if any set has a different domain. */
+  public static <T> void write(final Path file, final Domain<T> domain,
+      final List<? extends DomainBitSet<T>> sets, final Layout layout) throws IOException {
+    requireNonNull(file, "file");
+    requireNonNull(domain, "domain");
+    requireNonNull(sets, "sets");
+    requireNonNull(layout, "layout");
+    final int width = Container.words(domain.size());
+    final long[] offsets = new long[sets.size() + 1];
+    for (int i = 0; i < sets.size(); i++) {
+      final DomainBitSet<T> set = sets.get(i);
+      if (!set.getDomain().equals(domain))
+        throw new IllegalArgumentException("The set at " + i + " has a different domain.");
+      offsets[i + 1] = offsets[i]
+          + (layout == Layout.FIXED_WIDTH ? width : trimmedLength(set.toLongArray()));
+    }
+
+    final ByteArrayOutputStream table = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(table)) {
+      oos.writeObject(domain);
+    }
+    final int start = HEADER + table.size() + 7 & ~7;
+    final ByteBuffer header = ByteBuffer.allocate(start).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC).put(VERSION).put((byte) layout.ordinal()).putShort((short) 0);
+    header.putInt(domain.size()).putInt(sets.size());
+    header.putLong(domain.fingerprint().getHigh()).putLong(domain.fingerprint().getLow());
+    header.putInt(table.size()).put(table.toByteArray());
+    header.clear();
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(channel, header);
+      final ByteBuffer buffer = ByteBuffer.allocate(Math.max(8 * width, 8 * offsets.length))
+          .order(ByteOrder.LITTLE_ENDIAN);
+      if (layout == Layout.OFFSET_INDEXED) {
+        buffer.asLongBuffer().put(offsets);
+        buffer.limit(8 * offsets.length);
+        writeFully(channel, buffer);
+      }
+      for (int i = 0; i < sets.size(); i++) {
+        buffer.clear();
+        final int length = (int) (offsets[i + 1] - offsets[i]);
+        buffer.asLongBuffer().put(sets.get(i).toLongArray(), 0, length);
+        buffer.limit(8 * length);
+        writeFully(channel, buffer);
+      }
+    }
+  }
+
+  private static int trimmedLength(final long[] words) {
+    int length = words.length;
+    while (length > 0 && words[length - 1] == 0L)
+      length--;
+    return length;
+  }
+
+  private static void writeFully(final FileChannel channel, final ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+  }
+
+  /** Opens a store and reads the domain from its domain table.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param file
+   *          The file.
+   * @return The store.
+   * @throws IOException
+   *           if the file can't be read or is not a valid store. */
+  @NonNull
+  public static <T> MappedBitSetStore<T> open(final Path file) throws IOException {
+    requireNonNull(file, "file");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new MappedBitSetStore<>(channel, null);
+    }
+  }
+
+  /** Opens a store of the given domain. The domain table of the file is not read if the
+   * {@link DomainFingerprint fingerprints} show that the domains are equal. The sets of the store
+   * then use the given instance as their domain.
+   *
+   * @param <T>
+   *          The type of the domain.
+   * @param file
+   *          The file.
+   * @param domain
+   *          The domain of the store.
+   * @return The store.
+   * @throws IOException
+   *           if the file can't be read, is not a valid store or has a different domain. */
+  @NonNull
+  public static <T> MappedBitSetStore<T> open(final Path file, final Domain<T> domain)
+      throws IOException {
+    requireNonNull(file, "file");
+    requireNonNull(domain, "domain");
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new MappedBitSetStore<>(channel, domain);
+    }
+  }
+
+  @NonNull
+  private final Domain<T>          domain;
+  private final Layout             layout;
+  private final int                count;
+  private final int                width;
+  /** Position of the offset table, or of the first set in the file. */
+  private final long               start;
+  /** Position of the first set in the file. */
+  private final long               data;
+  /** Segments of {@link #SEGMENT_SIZE} bytes. Each also maps the bytes of one set after its end,
+   * so that any set that starts in a segment can be read from that segment. */
+  private volatile MappedByteBuffer[] segments;
+
+  @SuppressWarnings("unchecked")
+  private MappedBitSetStore(final FileChannel channel, @Nullable final Domain<T> expected)
+      throws IOException {
+    final ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(channel, header, 0);
+    header.flip();
+    if (header.getInt() != MAGIC || header.get() != VERSION)
+      throw new StreamCorruptedException("Not a MappedBitSetStore.");
+    final int l = header.get();
+    if (l < 0 || l >= Layout.values().length)
+      throw new StreamCorruptedException("Unknown layout: " + l);
+    this.layout = Layout.values()[l];
+    header.getShort();
+    final int size = header.getInt();
+    this.count = header.getInt();
+    final long high = header.getLong();
+    final long low = header.getLong();
+    final int tableLength = header.getInt();
+    if (size < 0 || this.count < 0 || tableLength < 0)
+      throw new StreamCorruptedException("Invalid header.");
+    if (HEADER + (long) tableLength > channel.size())
+      throw new StreamCorruptedException("The file is too short.");
+
+    if (expected != null && expected.size() == size && expected.fingerprint().isStable()
+        && expected.fingerprint().getHigh() == high && expected.fingerprint().getLow() == low)
+      this.domain = expected;
+    else {
+      final ByteBuffer table = ByteBuffer.allocate(tableLength);
+      readFully(channel, table, HEADER);
+      final Domain<T> d;
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(table.array()))) {
+        d = (Domain<T>) ois.readObject();
+      } catch (final ClassNotFoundException | ClassCastException e) {
+        throw new StreamCorruptedException("Invalid domain table: " + e);
+      }
+      if (d.size() != size)
+        throw new StreamCorruptedException("Invalid domain table.");
+      if (expected != null && !expected.equals(d))
+        throw new IOException("The store has a different domain.");
+      this.domain = expected == null ? d : expected;
+    }
+
+    this.width = Container.words(size);
+    this.start = HEADER + tableLength + 7 & ~7;
+    this.data = this.layout == Layout.OFFSET_INDEXED ? this.start + 8L * (this.count + 1)
+        : this.start;
+    final long end = this.layout == Layout.OFFSET_INDEXED ? channel.size() : this.data + 8L
+        * this.width * this.count;
+    if (channel.size() < end || channel.size() < this.data)
+      throw new StreamCorruptedException("The file is too short.");
+
+    final int n = (int) ((end - this.start + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+    final MappedByteBuffer[] s = new MappedByteBuffer[n];
+    for (int i = 0; i < n; i++) {
+      final long position = this.start + i * SEGMENT_SIZE;
+      final long length = Math.min(SEGMENT_SIZE + Math.max(16L, 8L * this.width), end - position);
+      s[i] = channel.map(MapMode.READ_ONLY, position, length);
+    }
+    this.segments = s;
+
+    if (this.layout == Layout.OFFSET_INDEXED) {
+      final ByteBuffer offsets = ByteBuffer.allocate(8 << 10).order(ByteOrder.LITTLE_ENDIAN);
+      long previous = 0L;
+      for (long id = 0; id <= this.count;) {
+        offsets.clear().limit(8 * (int) Math.min(1 << 10, this.count + 1 - id));
+        readFully(channel, offsets, this.start + 8 * id);
+        offsets.flip();
+        for (; offsets.hasRemaining(); id++) {
+          final long offset = offsets.getLong();
+          if (offset < previous || offset - previous > this.width || id == 0 && offset != 0L)
+            throw new StreamCorruptedException("Invalid offset table at " + id);
+          previous = offset;
+        }
+      }
+      if (this.data + 8 * previous > end)
+        throw new StreamCorruptedException("The file is too short.");
+    }
+  }
+
+  private static void readFully(final FileChannel channel, final ByteBuffer buffer,
+      final long position) throws IOException {
+    long p = position;
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, p);
+      if (read < 0)
+        throw new StreamCorruptedException("The file is too short.");
+      p += read;
+    }
+  }
+
+  /** The words from the given position, relative to the start of the mapped region. */
+  private LongBuffer words(final long position, final int length) {
+    final MappedByteBuffer[] s = this.segments;
+    if (s == null)
+      throw new IllegalStateException("The store is closed.");
+    if (length == 0) // there are no segments if the domain is empty
+      return LongBuffer.allocate(0);
+    final ByteBuffer b = s[(int) (position / SEGMENT_SIZE)].duplicate();
+    b.position((int) (position % SEGMENT_SIZE));
+    b.limit(b.position() + 8 * length);
+    return b.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+  }
+
+  /** Returns a read-only view of the set with the given id. The view reads the words directly from
+   * the file. All operations that create new sets create them on the heap.
+   *
+   * @param id
+   *          The index of the set, as in the list given to
+   *          {@link #write(Path, Domain, List, Layout)}.
+   * @return A read-only view of the set.
+   * @throws IndexOutOfBoundsException
+   *           if there is no set with the given id.
+   * @throws IllegalStateException
+   *           if the store is closed. */
+  @NonNull
+  public DomainBitSet<T> get(final int id) throws IndexOutOfBoundsException,
+      IllegalStateException {
+    if (id < 0 || id >= this.count)
+      throw new IndexOutOfBoundsException("id: " + id);
+    final long offset;
+    final int length;
+    if (this.layout == Layout.FIXED_WIDTH) {
+      offset = 8L * this.width * id;
+      length = this.width;
+    } else {
+      final LongBuffer table = this.words(8L * id, 2);
+      offset = this.data - this.start + 8 * table.get(0);
+      length = (int) (table.get(1) - table.get(0)); // checked when the store was opened
+    }
+    return new MappedDomainBitSet<>(this.domain, this.words(offset, length).asReadOnlyBuffer());
+  }
+
+  /** The domain of all sets of this store.
+   *
+   * @return The domain. */
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  /** The layout of the file.
+   *
+   * @return The layout. */
+  @NonNull
+  public Layout getLayout() {
+    return this.layout;
+  }
+
+  /** The number of sets in this store.
+   *
+   * @return The number of sets. */
+  public int size() {
+    return this.count;
+  }
+
+  /** Closes this store. {@link #get(int)} can't be used afterwards. Views that were already
+   * returned remain valid, the mapping is released when they are collected. */
+  @Override
+  public void close() {
+    this.segments = null;
+  }
+
+  @Override
+  public String toString() {
+    return "MappedBitSetStore [size=" + this.count + ", layout=" + this.layout + "]";
+  }
+}
@@ -0,0 +1,350 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigInteger;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+/** Read-only view of a bit vector in a buffer, as used by {@link MappedBitSetStore} and
+ * {@link DomainBitSetCodec#wrap(Domain, ByteBuffer)}. The words are read directly from the buffer,
+ * which can be a mapped file. Words after the end of the buffer are 0.
+ * <p>
+ * All operations that return a new set return an {@link AdaptiveDomainBitSet}. Serialization also
+ * writes an {@link AdaptiveDomainBitSet}.
+ *
+ * @param <T>
+ *          The type of the domain.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+final class MappedDomainBitSet<T> implements DomainBitSet<T> {
+  private static final long serialVersionUID = 1503217466425193628L;
+
+  private final class Itr implements Iterator<T> {
+    private int next = MappedDomainBitSet.this.nextSetBit(0);
+
+    @Override
+    public boolean hasNext() {
+      return this.next >= 0;
+    }
+
+    @Override
+    public T next() {
+      if (this.next < 0)
+        throw new NoSuchElementException();
+      final T result = MappedDomainBitSet.this.domain.get(this.next);
+      this.next = MappedDomainBitSet.this.nextSetBit(this.next + 1);
+      return result;
+    }
+  }
+
+  private final Domain<T>            domain;
+  private final transient LongBuffer words;
+
+  MappedDomainBitSet(final Domain<T> domain, final LongBuffer words) {
+    this.domain = domain;
+    this.words = words;
+  }
+
+  /** The word at the given index, without creating the other words. */
+  long word(final int index) {
+    return index < this.words.limit() ? this.words.get(index) : 0L;
+  }
+
+  private int nextSetBit(final int from) {
+    int i = from >>> 6;
+    if (i >= this.words.limit())
+      return -1;
+    long word = this.words.get(i) & -1L << from;
+    while (true) {
+      if (word != 0L)
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      if (++i == this.words.limit())
+        return -1;
+      word = this.words.get(i);
+    }
+  }
+
+  /** A copy of this set on the heap. */
+  private AdaptiveDomainBitSet<T> toHeap() {
+    return AdaptiveDomainBitSet.of(this.domain, new BitmapContainer(this.toLongArray()));
+  }
+
+  @Override
+  @SuppressFBWarnings("CN_IDIOM_NO_SUPER_CALL")
+  public MappedDomainBitSet<T> clone() {
+    return this;
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> complement() {
+    return this.toHeap().complement();
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    final int index = this.domain.indexOf(o);
+    return index >= 0 && this.getBit(index);
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this)
+      return true;
+    if (other instanceof DomainBitSet) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<T> domBitSet = (DomainBitSet<T>) other;
+      if (this.size() != domBitSet.size() || !this.ofEqualDomain(domBitSet))
+        return false;
+      if (BitSetUtilities.isWordComparable(other))
+        return BitSetUtilities.equalWords(this, domBitSet);
+      return this.containsAll(domBitSet.toSet());
+    }
+    return false;
+  }
+
+  @Override
+  public boolean getBit(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex >= this.domain.size())
+      throw new IndexOutOfBoundsException();
+    final int i = bitIndex >>> 6;
+    return i < this.words.limit() && (this.words.get(i) & 1L << bitIndex) != 0L;
+  }
+
+  @Override
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  @Override
+  public int hashCode() {
+    return this.domain.hashCode() ^ BitSetUtilities.hashCode(this.words);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> intersect(final BigInteger mask) {
+    return this.toHeap().intersect(mask);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> intersect(final BitSet set) {
+    return this.toHeap().intersect(set);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> intersect(final Iterable<T> set) {
+    return this.toHeap().intersect(set);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> intersect(final long mask) throws MoreThan64ElementsException {
+    return this.toHeap().intersect(mask);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public AdaptiveDomainBitSet<T> intersectVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.intersect(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.nextSetBit(0) < 0;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new Itr();
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> minus(final BigInteger mask) {
+    return this.toHeap().minus(mask);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> minus(final BitSet set) {
+    return this.toHeap().minus(set);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> minus(final Iterable<T> set) {
+    return this.toHeap().minus(set);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> minus(final long mask) throws MoreThan64ElementsException {
+    return this.toHeap().minus(mask);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public AdaptiveDomainBitSet<T> minusVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.minus(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public int nextClearIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    final int size = this.domain.size();
+    if (from >= size)
+      return -1;
+    return Bitmaps.nextClearIndex(this::word, size, from);
+  }
+
+  @Override
+  public int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    return Bitmaps.nextSetIndex(this::word, this.words.limit(), from);
+  }
+
+  @Override
+  public int previousSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < -1)
+      throw new IndexOutOfBoundsException("from < -1: " + from);
+    final int start = Math.min(from, this.domain.size() - 1);
+    if (start < 0)
+      return -1;
+    return Bitmaps.previousSetIndex(this::word, start);
+  }
+
+  @Override
+  public int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return Bitmaps.rank(this::word, this.words.limit(), bitIndex);
+  }
+
+  @Override
+  public int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0)
+      throw new IndexOutOfBoundsException();
+    return Bitmaps.select(this::word, this.words.limit(), n);
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (int i = 0; i < this.words.limit(); i++)
+      size += Long.bitCount(this.words.get(i));
+    return size;
+  }
+
+  @Override
+  public BigInteger toBigInteger() {
+    return BitSetUtilities.asBigInteger(this.toBitSet());
+  }
+
+  @Override
+  public BitSet toBitSet() {
+    return BitSet.valueOf(this.words.duplicate());
+  }
+
+  @Override
+  public long toLong() throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.words.limit() == 0 ? 0L : this.words.get(0);
+  }
+
+  @Override
+  public long[] toLongArray() {
+    final long[] result = new long[Container.words(this.domain.size())];
+    this.words.duplicate().get(result, 0, this.words.limit());
+    return result;
+  }
+
+  @Override
+  public Set<T> toSet() {
+    final Set<T> result = new LinkedHashSet<>(this.size());
+    this.forEach(result::add);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    final Iterator<T> it = this.iterator();
+    if (!it.hasNext())
+      return "[]";
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (;;) {
+      sb.append(it.next());
+      if (!it.hasNext())
+        return sb.append(']').toString();
+      sb.append(',').append(' ');
+    }
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> union(final BigInteger mask) {
+    return this.toHeap().union(mask);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> union(final BitSet set) {
+    return this.toHeap().union(set);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> union(final Iterable<T> set) {
+    return this.toHeap().union(set);
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> union(final long mask) throws MoreThan64ElementsException {
+    return this.toHeap().union(mask);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public AdaptiveDomainBitSet<T> unionVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.union(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public AdaptiveDomainBitSet<T> xor(final DomainBitSet<T> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    final long[] words = Arrays.copyOf(set.toLongArray(), Container.words(this.domain.size()));
+    for (int i = 0; i < this.words.limit(); i++)
+      words[i] ^= this.words.get(i);
+    return AdaptiveDomainBitSet.of(this.domain, new BitmapContainer(words));
+  }
+
+  @Override
+  public Stream<Pair<Object, Integer, T>> zipWithPosition() {
+    return this.stream().map(e -> Pair.of(this.domain.indexOf(e), e));
+  }
+
+  private Object writeReplace() {
+    return this.toHeap();
+  }
+
+  @SuppressFBWarnings({ "static-method", "unused" })
+  private void readObject(final java.io.ObjectInputStream stream)
+      throws java.io.InvalidObjectException {
+    throw new java.io.InvalidObjectException("Proxy required");
+  }
+}
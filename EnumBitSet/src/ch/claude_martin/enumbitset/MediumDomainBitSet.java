@@ -0,0 +1,601 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+/** BitSet with a domain of up to 256 elements. The elements are stored in four words of 64 bits,
+ * without an array. All operations are applied to each of the four words.
+ * <p>
+ * This is used for domains that are too large for a {@link SmallDomainBitSet}. A mask that has a
+ * larger domain causes an {@link IllegalArgumentException}.
+ *
+ * @param <T>
+ *          The type of the domain. All elements in the domain must be of type T or of any subtype
+ *          of T.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+public class MediumDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
+  private static final long serialVersionUID = -3541946237436001863L;
+
+  /** The maximum size of the domain of a MediumDomainBitSet. */
+  public static final int   MAX_SIZE         = 256;
+
+  private static final class Itr<T> implements Iterator<T> {
+    @NonNull
+    private final Domain<T> dom;
+    @NonNull
+    private final long[]    words;
+    private int             word = 0;
+    private long            next;
+
+    public Itr(@NonNull final Domain<T> d, final long[] words) {
+      this.dom = d;
+      this.words = words;
+      this.next = words[0];
+      this.advance();
+    }
+
+    private void advance() {
+      while (this.next == 0L && this.word < this.words.length - 1)
+        this.next = this.words[++this.word];
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next != 0L;
+    }
+
+    @Override
+    public T next() {
+      if (this.next == 0L)
+        throw new NoSuchElementException();
+      final int index = this.word << 6 | Long.numberOfTrailingZeros(this.next);
+      this.next &= this.next - 1;
+      this.advance();
+      return this.dom.get(index);
+    }
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @throws IllegalArgumentException
+   *           if the domain contains more than {@value #MAX_SIZE} elements.
+   * @return A MediumDomainBitSet containing all elements of the given domain. */
+  @NonNull
+  public static <T> MediumDomainBitSet<T> allOf(final List<T> domain) {
+    final Domain<T> d = DefaultDomain.of(requireNonNull(domain, "domain"));
+    final int size = d.size();
+    return of(d, mask(size, 0), mask(size, 1), mask(size, 2), mask(size, 3));
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @throws IllegalArgumentException
+   *           if the domain contains more than {@value #MAX_SIZE} elements.
+   * @return A MediumDomainBitSet containing all elements of the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> MediumDomainBitSet<T> allOf(final T... domain) {
+    return allOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @throws IllegalArgumentException
+   *           if the domain contains more than {@value #MAX_SIZE} elements.
+   * @return Empty MediumDomainBitSet based on the given domain. */
+  @NonNull
+  public static <T> MediumDomainBitSet<T> noneOf(final List<T> domain) {
+    return of(DefaultDomain.of(requireNonNull(domain, "domain")), 0L, 0L, 0L, 0L);
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @throws IllegalArgumentException
+   *           if the domain contains more than {@value #MAX_SIZE} elements.
+   * @return Empty MediumDomainBitSet based on the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> MediumDomainBitSet<T> noneOf(final T... domain) {
+    return noneOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, containing all given elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The elements.
+   * @throws IllegalArgumentException
+   *           if the domain contains more than {@value #MAX_SIZE} elements or if an element is not
+   *           in the domain.
+   * @return MediumDomainBitSet based on the given domain and set. */
+  @NonNull
+  public static <T> MediumDomainBitSet<T> of(final List<T> domain, final Collection<T> set) {
+    return noneOf(domain).union(requireNonNull(set, "set"));
+  }
+
+  /** Creates a set with the given domain, containing elements according to the given words. The
+   * format is the same as in {@link BitSet#valueOf(long[])}.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param words
+   *          The elements as a bit mask of up to four words.
+   * @throws IllegalArgumentException
+   *           if the domain contains more than {@value #MAX_SIZE} elements or if the mask contains
+   *           elements that are not in the domain.
+   * @return MediumDomainBitSet based on the given domain and words. */
+  @NonNull
+  public static <T> MediumDomainBitSet<T> of(final List<T> domain, final long[] words) {
+    requireNonNull(words, "words");
+    final long[] w = checkLength(words);
+    return of(DefaultDomain.of(requireNonNull(domain, "domain")), w[0], w[1], w[2], w[3]);
+  }
+
+  /** Creates a set with the given domain, containing all given elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The elements.
+   * @throws IllegalArgumentException
+   *           if the domain contains more than {@value #MAX_SIZE} elements or if an element is not
+   *           in the domain.
+   * @return MediumDomainBitSet based on the given domain and set. */
+  @SafeVarargs
+  @NonNull
+  public static <T> MediumDomainBitSet<T> of(@NonNull final List<T> domain,
+      @NonNull final T... set) {
+    return of(domain, asList(set));
+  }
+
+  @NonNull
+  static <T> MediumDomainBitSet<T> of(final Domain<T> domain, final long w0,
+      final long w1, final long w2, final long w3) {
+    return DomainBitSetPool.internIfEnabled(new MediumDomainBitSet<>(domain, w0, w1, w2, w3));
+  }
+
+  /** Bit mask of all elements of a domain of the given size in the given word. */
+  private static long mask(final int size, final int word) {
+    final int n = size - (word << 6);
+    if (n >= 64)
+      return -1L;
+    if (n <= 0)
+      return 0L;
+    return (1L << n) - 1L;
+  }
+
+  private static long[] checkLength(final long[] words) {
+    if (words.length > 4)
+      for (int i = 4; i < words.length; i++)
+        if (words[i] != 0L)
+          throw new IllegalArgumentException(
+              "The parameter contains more elements than the domain allows.");
+    return Arrays.copyOf(words, 4);
+  }
+
+  private final Domain<T> domain;
+
+  private final long      w0;
+  private final long      w1;
+  private final long      w2;
+  private final long      w3;
+
+  @SuppressFBWarnings(value = "JCIP_FIELD_ISNT_FINAL_IN_IMMUTABLE_CLASS", justification = "It's lazy.")
+  private transient int   hash = 0; // defaults to 0, later it's set to a hash code.
+
+  MediumDomainBitSet(final Domain<T> domain, final long w0, final long w1, final long w2,
+      final long w3) throws IllegalArgumentException {
+    this.domain = requireNonNull(domain, "domain");
+    if (domain.size() > MAX_SIZE)
+      throw new IllegalArgumentException("The domain contains more than " + MAX_SIZE
+          + " elements.");
+    this.w0 = w0;
+    this.w1 = w1;
+    this.w2 = w2;
+    this.w3 = w3;
+    this.check(w0, w1, w2, w3);
+  }
+
+  private void check(final long x0, final long x1, final long x2, final long x3)
+      throws IllegalArgumentException {
+    final int size = this.domain.size();
+    if ((x0 & ~mask(size, 0) | x1 & ~mask(size, 1) | x2 & ~mask(size, 2) | x3 & ~mask(size, 3))
+        != 0L)
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+  }
+
+  private long[] checkWords(final long[] words) throws IllegalArgumentException {
+    final long[] w = checkLength(words);
+    this.check(w[0], w[1], w[2], w[3]);
+    return w;
+  }
+
+  /** Words of a set of 64 elements or less. */
+  private long[] longToWords(final long mask) throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.checkWords(new long[] { mask });
+  }
+
+  @SuppressFBWarnings("unchecked")
+  private long[] itrToWords(final Iterable<T> itr) throws IllegalArgumentException {
+    requireNonNull(itr, "itr");
+    if (itr instanceof DomainBitSet && this.ofEqualDomain((DomainBitSet<T>) itr))
+      return checkLength(((DomainBitSet<T>) itr).toLongArray());
+    final long[] result = new long[4];
+    for (final T t : itr) {
+      final int index = this.domain.indexOf(t);
+      if (index < 0)
+        throw new IllegalArgumentException(String.format(
+            "The object '%s' is not element of the domain.", t));
+      result[index >>> 6] |= 1L << index;
+    }
+    return result;
+  }
+
+  private MediumDomainBitSet<T> and(final long[] w) {
+    return of(this.domain, this.w0 & w[0], this.w1 & w[1], this.w2 & w[2], this.w3 & w[3]);
+  }
+
+  private MediumDomainBitSet<T> andNot(final long[] w) {
+    return of(this.domain, this.w0 & ~w[0], this.w1 & ~w[1], this.w2 & ~w[2], this.w3 & ~w[3]);
+  }
+
+  private MediumDomainBitSet<T> or(final long[] w) {
+    return of(this.domain, this.w0 | w[0], this.w1 | w[1], this.w2 | w[2], this.w3 | w[3]);
+  }
+
+  /** The word at the given index, with <code>0 &lt;= index &lt; 4</code>. */
+  long word(final int index) {
+    switch (index) {
+      case 0:
+        return this.w0;
+      case 1:
+        return this.w1;
+      case 2:
+        return this.w2;
+      default:
+        return this.w3;
+    }
+  }
+
+  private long[] words() {
+    return new long[] { this.w0, this.w1, this.w2, this.w3 };
+  }
+
+  @Override
+  @SuppressFBWarnings("CN_IDIOM_NO_SUPER_CALL")
+  public MediumDomainBitSet<T> clone() {
+    return this;
+  }
+
+  @Override
+  public MediumDomainBitSet<T> complement() {
+    final int size = this.domain.size();
+    return of(this.domain, ~this.w0 & mask(size, 0), ~this.w1 & mask(size, 1), ~this.w2
+        & mask(size, 2), ~this.w3 & mask(size, 3));
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    final int index = this.domain.indexOf(o);
+    return index >= 0 && (this.word(index >>> 6) & 1L << index) != 0L;
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this)
+      return true;
+    if (other instanceof DomainBitSet) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<T> domBitSet = (DomainBitSet<T>) other;
+      if (this.size() != domBitSet.size() || !this.ofEqualDomain(domBitSet))
+        return false;
+      if (other instanceof MediumDomainBitSet) {
+        final MediumDomainBitSet<?> o = (MediumDomainBitSet<?>) other;
+        return ((this.w0 ^ o.w0) | (this.w1 ^ o.w1) | (this.w2 ^ o.w2) | (this.w3 ^ o.w3)) == 0L;
+      }
+      if (BitSetUtilities.isWordComparable(other))
+        return BitSetUtilities.equalWords(this, domBitSet);
+      return this.containsAll(domBitSet.toSet());
+    }
+    return false;
+  }
+
+  @Override
+  public boolean getBit(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex >= this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return (this.word(bitIndex >>> 6) & 1L << bitIndex) != 0L;
+  }
+
+  @Override
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  @Override
+  public int hashCode() {
+    if (this.hash == 0)
+      this.hash = this.domain.hashCode() ^ BitSetUtilities.hashCode(this.words());
+    return this.hash;
+  }
+
+  @Override
+  public MediumDomainBitSet<T> intersect(final BigInteger mask) {
+    return this.intersect(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> intersect(final BitSet s) {
+    return this.and(this.checkWords(requireNonNull(s, "s").toLongArray()));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> intersect(final Iterable<T> s) {
+    return this.and(this.itrToWords(s));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> intersect(final long mask) throws MoreThan64ElementsException {
+    return this.and(this.longToWords(mask));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public MediumDomainBitSet<T> intersectVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.and(this.itrToWords(asList(requireNonNull(elements, "elements"))));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return (this.w0 | this.w1 | this.w2 | this.w3) == 0L;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new Itr<>(this.domain, this.words());
+  }
+
+  @Override
+  public MediumDomainBitSet<T> minus(final BigInteger mask) {
+    return this.minus(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> minus(final BitSet s) {
+    return this.andNot(this.checkWords(requireNonNull(s, "s").toLongArray()));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> minus(final Iterable<T> s) {
+    return this.andNot(this.itrToWords(s));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> minus(final long mask) throws MoreThan64ElementsException {
+    return this.andNot(this.longToWords(mask));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public MediumDomainBitSet<T> minusVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.andNot(this.itrToWords(asList(requireNonNull(elements, "elements"))));
+  }
+
+  @Override
+  public int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    for (int i = from >>> 6; i < 4; i++) {
+      final long w = i == from >>> 6 ? this.word(i) & -1L << from : this.word(i);
+      if (w != 0L)
+        return (i << 6) + Long.numberOfTrailingZeros(w);
+    }
+    return -1;
+  }
+
+  @Override
+  public int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.domain.size())
+      throw new IndexOutOfBoundsException();
+    final int end = bitIndex >>> 6;
+    int rank = 0;
+    for (int i = 0; i < end; i++)
+      rank += Long.bitCount(this.word(i));
+    if ((bitIndex & 63) != 0)
+      rank += Long.bitCount(this.word(end) & -1L >>> -bitIndex);
+    return rank;
+  }
+
+  @Override
+  public int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0)
+      throw new IndexOutOfBoundsException();
+    int remaining = n;
+    for (int i = 0; i < 4; i++) {
+      long w = this.word(i);
+      final int count = Long.bitCount(w);
+      if (remaining < count) {
+        for (; remaining > 0; remaining--)
+          w &= w - 1;
+        return (i << 6) + Long.numberOfTrailingZeros(w);
+      }
+      remaining -= count;
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  @Override
+  public int size() {
+    return Long.bitCount(this.w0) + Long.bitCount(this.w1) + Long.bitCount(this.w2)
+        + Long.bitCount(this.w3);
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return Spliterators.spliterator(this.iterator(), this.size(), Spliterator.SIZED
+        | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+  }
+
+  @Override
+  public BigInteger toBigInteger() {
+    return BitSetUtilities.asBigInteger(this.toBitSet());
+  }
+
+  @Override
+  public BitSet toBitSet() {
+    return BitSet.valueOf(this.words());
+  }
+
+  @Override
+  public long toLong() throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.w0;
+  }
+
+  @Override
+  public long[] toLongArray() {
+    return Arrays.copyOf(this.words(), (this.domain.size() + 63) >>> 6);
+  }
+
+  @Override
+  public Set<T> toSet() {
+    final Set<T> result = new LinkedHashSet<>(this.size());
+    this.forEach(result::add);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    final Iterator<T> it = this.iterator();
+    if (!it.hasNext())
+      return "[]";
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (;;) {
+      sb.append(it.next());
+      if (!it.hasNext())
+        return sb.append(']').toString();
+      sb.append(',').append(' ');
+    }
+  }
+
+  @Override
+  public MediumDomainBitSet<T> union(final BigInteger mask) {
+    return this.union(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> union(final BitSet s) {
+    return this.or(this.checkWords(requireNonNull(s, "s").toLongArray()));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> union(final Iterable<T> s) {
+    return this.or(this.itrToWords(s));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> union(final long mask) throws MoreThan64ElementsException {
+    return this.or(this.longToWords(mask));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public MediumDomainBitSet<T> unionVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.or(this.itrToWords(asList(requireNonNull(elements, "elements"))));
+  }
+
+  @Override
+  public MediumDomainBitSet<T> xor(final DomainBitSet<T> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    final long[] w = Arrays.copyOf(set.toLongArray(), 4);
+    return of(this.domain, this.w0 ^ w[0], this.w1 ^ w[1], this.w2 ^ w[2], this.w3 ^ w[3]);
+  }
+
+  @Override
+  public Stream<Pair<Object, Integer, T>> zipWithPosition() {
+    return this.stream().map(e -> Pair.of(this.domain.indexOf(e), e));
+  }
+
+  /** This proxy class is used to serialize MediumDomainBitSet instances. */
+  private static class SerializationProxy<T> implements java.io.Serializable {
+    private static final long serialVersionUID = 8117093036584208614L;
+
+    private final Domain<T>   domain;
+    private final long[]      words;
+
+    public SerializationProxy(@NonNull final Domain<T> domain, @NonNull final long[] words) {
+      this.domain = domain;
+      this.words = words;
+    }
+
+    private Object readResolve() {
+      final long[] w = checkLength(this.words);
+      return of(this.domain, w[0], w[1], w[2], w[3]);
+    }
+  }
+
+  private Object writeReplace() {
+    return new SerializationProxy<>(this.domain, this.toLongArray());
+  }
+
+  @SuppressFBWarnings({ "static-method", "unused" })
+  private void readObject(final java.io.ObjectInputStream stream)
+      throws java.io.InvalidObjectException {
+    throw new java.io.InvalidObjectException("Proxy required");
+  }
+}
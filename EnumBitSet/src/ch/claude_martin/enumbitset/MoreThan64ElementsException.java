@@ -29,8 +29,11 @@ public class MoreThan64ElementsException extends RuntimeException {
     this.type = null;
   }
 
-  /** Used for a set with an enum type as the domain. */
-  MoreThan64ElementsException(final Class<?> type) {
+  /** Used for a set with an enum type as the domain.
+   * 
+   * @param type
+   *          The enum type. */
+  public MoreThan64ElementsException(final Class<?> type) {
     // "type" must not be null! But let's be sure this wouldn't fail for null.
     super("Type " + (type == null ? "<unknown>" : type.getSimpleName())
         + " contains more than 64 elements.");
@@ -0,0 +1,576 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.LongBinaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+/** Mutable set of the constants of several enum types. The domain consists of all constants of all
+ * given types, in the given order of the types, so the position of a constant is its
+ * {@link Enum#ordinal() ordinal} plus the number of constants of the types before its type.
+ * <p>
+ * The elements are stored in an array of words, as in a {@link BitSet}. {@link #add(Enum)},
+ * {@link #remove(Object)} and {@link #contains(Object)} only compute the position of the constant
+ * and change or read one bit. All operations with another set of the same domain, such as
+ * {@link #union(Iterable)} and {@link #addAll(Collection)}, are done on the words.
+ * <p>
+ * Methods such as {@link #union(Iterable)} and {@link #complement()} return a new and independent
+ * set. This class is not thread-safe.
+ *
+ * @see DomainBitSet#createMultiEnumBitSet(Class...)
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class MultiEnumBitSet implements DomainBitSet<Enum<?>>, Collection<Enum<?>> {
+  private static final long serialVersionUID = 8074417655702925318L;
+
+  private final class Itr implements Iterator<Enum<?>> {
+    private int next = MultiEnumBitSet.this.nextSetIndex(0);
+    private int last = -1;
+
+    @Override
+    public boolean hasNext() {
+      return this.next >= 0;
+    }
+
+    @Override
+    public Enum<?> next() {
+      if (this.next < 0)
+        throw new NoSuchElementException();
+      this.last = this.next;
+      this.next = MultiEnumBitSet.this.nextSetIndex(this.next + 1);
+      return MultiEnumBitSet.this.domain.get(this.last);
+    }
+
+    @Override
+    public void remove() {
+      if (this.last < 0)
+        throw new IllegalStateException();
+      MultiEnumBitSet.this.setBit(this.last, false);
+      this.last = -1;
+    }
+  }
+
+  /** Creates a set with all constants of all given enum types.
+   *
+   * @param enumTypes
+   *          All enum types that define the domain. The ordering is relevant.
+   * @return A new MultiEnumBitSet containing all elements of the domain.
+   * @throws IllegalArgumentException
+   *           if a type is given more than once. */
+  @SafeVarargs
+  @NonNull
+  public static MultiEnumBitSet allOf(final Class<? extends Enum<?>>... enumTypes) {
+    return noneOf(enumTypes).complement();
+  }
+
+  /** Creates an empty set with a domain of all constants of all given enum types.
+   *
+   * @param enumTypes
+   *          All enum types that define the domain. The ordering is relevant.
+   * @return A new, empty MultiEnumBitSet.
+   * @throws IllegalArgumentException
+   *           if a type is given more than once. */
+  @SafeVarargs
+  @NonNull
+  public static MultiEnumBitSet noneOf(final Class<? extends Enum<?>>... enumTypes) {
+    return new MultiEnumBitSet(MultiEnumDomain.of(enumTypes));
+  }
+
+  @NonNull
+  private final MultiEnumDomain domain;
+
+  @NonNull
+  private final long[]          words;
+
+  MultiEnumBitSet(final MultiEnumDomain domain) {
+    this.domain = requireNonNull(domain, "domain");
+    this.words = new long[Container.words(domain.size())];
+  }
+
+  /** The word at the given index, without creating the other words. */
+  long word(final int index) {
+    return index < this.words.length ? this.words[index] : 0L;
+  }
+
+  private int checkedIndexOf(final Object o) throws IllegalArgumentException {
+    final int index = this.domain.indexOf(o);
+    if (index < 0)
+      throw new IllegalArgumentException(String.format(
+          "The object '%s' is not element of the domain.", o));
+    return index;
+  }
+
+  /** The words of a given Iterable. The result might be the array of another set. */
+  private long[] toWords(final Iterable<?> itr) throws IllegalArgumentException {
+    requireNonNull(itr, "itr");
+    if (itr instanceof MultiEnumBitSet && ((MultiEnumBitSet) itr).domain.equals(this.domain))
+      return ((MultiEnumBitSet) itr).words;
+    if (itr instanceof DomainBitSet
+        && this.domain.equals(((DomainBitSet<?>) itr).getDomain()))
+      return ((DomainBitSet<?>) itr).toLongArray();
+    final long[] result = new long[this.words.length];
+    for (final Object o : itr) {
+      final int index = this.checkedIndexOf(o);
+      result[index >>> 6] |= 1L << index;
+    }
+    return result;
+  }
+
+  private long[] toWords(final BitSet set) throws IllegalArgumentException {
+    if (requireNonNull(set, "set").length() > this.domain.size())
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+    return set.toLongArray();
+  }
+
+  private long[] toWords(final long mask) throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.toWords(BitSet.valueOf(new long[] { mask }));
+  }
+
+  /** Creates a new set with the words of this and the other set combined by the given operator. */
+  private MultiEnumBitSet combine(final long[] other, final LongBinaryOperator op) {
+    final MultiEnumBitSet result = new MultiEnumBitSet(this.domain);
+    for (int i = 0; i < this.words.length; i++)
+      result.words[i] = op.applyAsLong(this.words[i], i < other.length ? other[i] : 0L);
+    return result;
+  }
+
+  /** Combines the words of this set with the other words by the given operator.
+   *
+   * @return <code>true</code>, if this set was modified. */
+  private boolean update(final long[] other, final LongBinaryOperator op) {
+    boolean modified = false;
+    for (int i = 0; i < this.words.length; i++) {
+      final long w = op.applyAsLong(this.words[i], i < other.length ? other[i] : 0L);
+      modified |= w != this.words[i];
+      this.words[i] = w;
+    }
+    return modified;
+  }
+
+  /** The words of the elements of the given collection that are in the domain. Other objects are
+   * ignored. */
+  private long[] knownWords(final Collection<?> c) {
+    requireNonNull(c, "c");
+    if (c instanceof MultiEnumBitSet && ((MultiEnumBitSet) c).domain.equals(this.domain))
+      return ((MultiEnumBitSet) c).words;
+    final long[] result = new long[this.words.length];
+    for (final Object o : c) {
+      final int index = this.domain.indexOf(o);
+      if (index >= 0)
+        result[index >>> 6] |= 1L << index;
+    }
+    return result;
+  }
+
+  /** Adds the given element to this set.
+   *
+   * @param e
+   *          A constant of one of the enum types of the domain.
+   * @return <code>true</code> if this set did not already contain the element.
+   * @throws IllegalArgumentException
+   *           if the element is not in the domain. */
+  @Override
+  public boolean add(final Enum<?> e) throws IllegalArgumentException {
+    return !this.setBit(this.checkedIndexOf(requireNonNull(e, "e")), true);
+  }
+
+  /** Adds all given elements. This is done on the words, if the collection is a set of the same
+   * domain.
+   *
+   * @throws IllegalArgumentException
+   *           if an element is not in the domain. */
+  @Override
+  public boolean addAll(final Collection<? extends Enum<?>> c) throws IllegalArgumentException {
+    return this.update(this.toWords(c), (a, b) -> a | b);
+  }
+
+  /** Removes all elements from this set. */
+  @Override
+  public void clear() {
+    for (int i = 0; i < this.words.length; i++)
+      this.words[i] = 0L;
+  }
+
+  @Override
+  public MultiEnumBitSet clone() {
+    return this.combine(this.words, (a, b) -> a);
+  }
+
+  @Override
+  public MultiEnumBitSet complement() {
+    final MultiEnumBitSet result = this.combine(this.words, (a, b) -> ~a);
+    final int size = this.domain.size();
+    if ((size & 63) != 0)
+      result.words[result.words.length - 1] &= -1L >>> -size;
+    return result;
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    final int index = this.domain.indexOf(o);
+    return index >= 0 && (this.words[index >>> 6] & 1L << index) != 0L;
+  }
+
+  @Override
+  public boolean containsAll(final Collection<?> c) {
+    for (final Object o : requireNonNull(c, "c"))
+      if (!this.contains(o))
+        return false;
+    return true;
+  }
+
+  @Override
+  public boolean domainContains(final Enum<?> object) {
+    return this.domain.indexOf(object) >= 0;
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this)
+      return true;
+    if (other instanceof DomainBitSet) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<Enum<?>> domBitSet = (DomainBitSet<Enum<?>>) other;
+      if (!this.ofEqualDomain(domBitSet))
+        return false;
+      if (BitSetUtilities.isWordComparable(other))
+        return java.util.Arrays.equals(this.words, domBitSet.toLongArray());
+      return this.size() == domBitSet.size() && this.containsAll(domBitSet.toSet());
+    }
+    return false;
+  }
+
+  @Override
+  public boolean getBit(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex >= this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return (this.words[bitIndex >>> 6] & 1L << bitIndex) != 0L;
+  }
+
+  @Override
+  @NonNull
+  public Domain<Enum<?>> getDomain() {
+    return this.domain;
+  }
+
+  @Override
+  public int hashCode() {
+    return this.domain.hashCode() ^ BitSetUtilities.hashCode(this.words);
+  }
+
+  @Override
+  public MultiEnumBitSet intersect(final BigInteger mask) {
+    return this.intersect(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public MultiEnumBitSet intersect(final BitSet set) {
+    return this.combine(this.toWords(set), (a, b) -> a & b);
+  }
+
+  @Override
+  public MultiEnumBitSet intersect(final Iterable<Enum<?>> set) {
+    return this.combine(this.toWords(set), (a, b) -> a & b);
+  }
+
+  @Override
+  public MultiEnumBitSet intersect(final long mask) throws MoreThan64ElementsException {
+    return this.combine(this.toWords(mask), (a, b) -> a & b);
+  }
+
+  @Override
+  public MultiEnumBitSet intersectVarArgs(
+      @SuppressFBWarnings("unchecked") final Enum<?>... elements) {
+    return this.intersect(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for (final long w : this.words)
+      if (w != 0L)
+        return false;
+    return true;
+  }
+
+  @Override
+  public Iterator<Enum<?>> iterator() {
+    return new Itr();
+  }
+
+  @Override
+  public MultiEnumBitSet minus(final BigInteger mask) {
+    return this.minus(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public MultiEnumBitSet minus(final BitSet set) {
+    return this.combine(this.toWords(set), (a, b) -> a & ~b);
+  }
+
+  @Override
+  public MultiEnumBitSet minus(final Iterable<Enum<?>> set) {
+    return this.combine(this.toWords(set), (a, b) -> a & ~b);
+  }
+
+  @Override
+  public MultiEnumBitSet minus(final long mask) throws MoreThan64ElementsException {
+    return this.combine(this.toWords(mask), (a, b) -> a & ~b);
+  }
+
+  @Override
+  public MultiEnumBitSet minusVarArgs(@SuppressFBWarnings("unchecked") final Enum<?>... elements) {
+    return this.minus(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    int i = from >>> 6;
+    if (i >= this.words.length)
+      return -1;
+    long word = this.words[i] & -1L << from;
+    while (word == 0L) {
+      if (++i == this.words.length)
+        return -1;
+      word = this.words[i];
+    }
+    return i << 6 | Long.numberOfTrailingZeros(word);
+  }
+
+  @Override
+  public int nextClearIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    final int size = this.domain.size();
+    if (from >= size)
+      return -1;
+    return Bitmaps.nextClearIndex(i -> this.words[i], size, from);
+  }
+
+  @Override
+  public int previousSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < -1)
+      throw new IndexOutOfBoundsException("from < -1: " + from);
+    final int start = Math.min(from, this.domain.size() - 1);
+    if (start < 0)
+      return -1;
+    return Bitmaps.previousSetIndex(i -> this.words[i], start);
+  }
+
+  @Override
+  public int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return Bitmaps.rank(i -> this.words[i], this.words.length, bitIndex);
+  }
+
+  @Override
+  public int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0)
+      throw new IndexOutOfBoundsException();
+    return Bitmaps.select(i -> this.words[i], this.words.length, n);
+  }
+
+  @Override
+  public Stream<Enum<?>> parallelStream() {
+    return StreamSupport.stream(this.spliterator(), true);
+  }
+
+  /** Removes the given element from this set.
+   *
+   * @param o
+   *          An object.
+   * @return <code>true</code> if this set contained the element. */
+  @Override
+  public boolean remove(final Object o) {
+    final int index = this.domain.indexOf(o);
+    return index >= 0 && this.setBit(index, false);
+  }
+
+  @Override
+  public boolean removeAll(final Collection<?> c) {
+    return this.update(this.knownWords(c), (a, b) -> a & ~b);
+  }
+
+  @Override
+  public boolean retainAll(final Collection<?> c) {
+    return this.update(this.knownWords(c), (a, b) -> a & b);
+  }
+
+  /** Sets or clears the bit at the given position.
+   *
+   * @param bitIndex
+   *          The position in the domain.
+   * @param value
+   *          The new value of the bit.
+   * @return The old value of the bit.
+   * @throws IndexOutOfBoundsException
+   *           if the position is not in the domain. */
+  public boolean setBit(final int bitIndex, final boolean value) throws IndexOutOfBoundsException {
+    final boolean old = this.getBit(bitIndex);
+    if (value)
+      this.words[bitIndex >>> 6] |= 1L << bitIndex;
+    else
+      this.words[bitIndex >>> 6] &= ~(1L << bitIndex);
+    return old;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (final long w : this.words)
+      size += Long.bitCount(w);
+    return size;
+  }
+
+  @Override
+  public Spliterator<Enum<?>> spliterator() {
+    return Spliterators.spliterator(this.iterator(), this.size(), Spliterator.SIZED
+        | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED);
+  }
+
+  @Override
+  public Stream<Enum<?>> stream() {
+    return StreamSupport.stream(this.spliterator(), false);
+  }
+
+  @Override
+  public Object[] toArray() {
+    return this.toSet().toArray();
+  }
+
+  @Override
+  public <X> X[] toArray(final X[] a) {
+    return this.toSet().toArray(a);
+  }
+
+  @Override
+  public BigInteger toBigInteger() {
+    return BitSetUtilities.asBigInteger(this.toBitSet());
+  }
+
+  @Override
+  public BitSet toBitSet() {
+    return BitSet.valueOf(this.words);
+  }
+
+  @Override
+  public long toLong() throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.words.length == 0 ? 0L : this.words[0];
+  }
+
+  @Override
+  public long[] toLongArray() {
+    return this.words.clone();
+  }
+
+  @Override
+  public Set<Enum<?>> toSet() {
+    final Set<Enum<?>> result = new LinkedHashSet<>(this.size());
+    this.forEach(result::add);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    final Iterator<Enum<?>> it = this.iterator();
+    if (!it.hasNext())
+      return "[]";
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (;;) {
+      sb.append(it.next());
+      if (!it.hasNext())
+        return sb.append(']').toString();
+      sb.append(',').append(' ');
+    }
+  }
+
+  @Override
+  public MultiEnumBitSet union(final BigInteger mask) {
+    return this.union(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public MultiEnumBitSet union(final BitSet set) {
+    return this.combine(this.toWords(set), (a, b) -> a | b);
+  }
+
+  @Override
+  public MultiEnumBitSet union(final Iterable<Enum<?>> set) {
+    return this.combine(this.toWords(set), (a, b) -> a | b);
+  }
+
+  @Override
+  public MultiEnumBitSet union(final long mask) throws MoreThan64ElementsException {
+    return this.combine(this.toWords(mask), (a, b) -> a | b);
+  }
+
+  @Override
+  public MultiEnumBitSet unionVarArgs(@SuppressFBWarnings("unchecked") final Enum<?>... elements) {
+    return this.union(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public MultiEnumBitSet xor(final DomainBitSet<Enum<?>> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    return this.combine(this.toWords(set), (a, b) -> a ^ b);
+  }
+
+  /** This proxy class is used to serialize MultiEnumBitSet instances. */
+  private static class SerializationProxy implements java.io.Serializable {
+    private static final long     serialVersionUID = -8816415936357305627L;
+
+    private final MultiEnumDomain domain;
+    private final long[]          words;
+
+    public SerializationProxy(@NonNull final MultiEnumDomain domain, @NonNull final long[] words) {
+      this.domain = domain;
+      this.words = words;
+    }
+
+    private Object readResolve() throws java.io.InvalidObjectException {
+      final MultiEnumBitSet result = new MultiEnumBitSet(this.domain);
+      if (BitSet.valueOf(this.words).length() > this.domain.size())
+        throw new java.io.InvalidObjectException(
+            "The parameter contains more elements than the domain allows.");
+      System.arraycopy(this.words, 0, result.words, 0, Math.min(this.words.length,
+          result.words.length));
+      return result;
+    }
+  }
+
+  private Object writeReplace() {
+    return new SerializationProxy(this.domain, this.toLongArray());
+  }
+
+  @SuppressFBWarnings({ "static-method", "unused" })
+  private void readObject(final java.io.ObjectInputStream stream)
+      throws java.io.InvalidObjectException {
+    throw new java.io.InvalidObjectException("Proxy required");
+  }
+}
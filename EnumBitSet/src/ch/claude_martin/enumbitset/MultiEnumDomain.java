@@ -0,0 +1,247 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+import java.lang.ref.SoftReference;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.Nullable;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+/** Domain of all constants of several enum types, in the given order of the types. The position of
+ * a constant is its {@link Enum#ordinal() ordinal} plus the offset of its type, which is the number
+ * of constants of all types before it. The offsets are looked up in a {@link ClassValue}, so
+ * {@link #indexOf(Object)} needs no hashing of the element and creates no objects.
+ * <p>
+ * This is used by {@link MultiEnumBitSet}.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+final class MultiEnumDomain extends AbstractList<Enum<?>> implements Domain<Enum<?>> {
+  private static final long                   serialVersionUID = -4318609547131658396L;
+
+  private static final Integer                NONE             = -1;
+
+  @NonNull
+  private final Class<? extends Enum<?>>[]    enumTypes;
+  // Array of all elements in the domain:
+  @NonNull
+  private final Enum<?>[]                     elements;
+  // Offset of each enum type, or NONE:
+  @NonNull
+  private final transient ClassValue<Integer> offsets;
+  @NonNull
+  private final DomainFingerprint             fingerprint;
+  @SuppressFBWarnings(value = "JCIP_FIELD_ISNT_FINAL_IN_IMMUTABLE_CLASS", justification = "It's lazy.")
+  private int                                 hash             = 0;
+
+  private static final// domainCache:
+  Map<List<Class<? extends Enum<?>>>, // Maps the list of enum types to the Domain
+      SoftReference<MultiEnumDomain>> domainCache = new HashMap<>(); // Allows GC to collect it
+
+  /** Returns the domain of the given enum types. There is one instance for each list of types, as
+   * long as it is used.
+   *
+   * @throws IllegalArgumentException
+   *           if a type is not an enum type or if a type is given more than once. */
+  @SafeVarargs
+  @NonNull
+  static MultiEnumDomain of(final Class<? extends Enum<?>>... enumTypes)
+      throws IllegalArgumentException {
+    requireNonNull(enumTypes, "enumTypes");
+    synchronized (domainCache) {
+      final SoftReference<MultiEnumDomain> ref = domainCache.get(asList(enumTypes));
+      MultiEnumDomain domain = ref == null ? null : ref.get();
+      if (null == domain) {
+        domain = new MultiEnumDomain(enumTypes);
+        domainCache.put(asList(domain.enumTypes), new SoftReference<>(domain));
+      }
+      return domain;
+    }
+  }
+
+  /** Creates the domain of the given enum types.
+   *
+   * @throws IllegalArgumentException
+   *           if a type is not an enum type or if a type is given more than once. */
+  @SafeVarargs
+  MultiEnumDomain(final Class<? extends Enum<?>>... enumTypes) throws IllegalArgumentException {
+    this.enumTypes = requireNonNull(enumTypes, "enumTypes").clone();
+    int size = 0;
+    for (int i = 0; i < enumTypes.length; i++) {
+      final Class<? extends Enum<?>> type = requireNonNull(enumTypes[i], "enumType");
+      if (!type.isEnum())
+        throw new IllegalArgumentException("Not an enum type: " + type.getName());
+      for (int j = 0; j < i; j++)
+        if (enumTypes[j] == type)
+          throw new IllegalArgumentException("The domain must not contain duplicates.");
+      size += type.getEnumConstants().length;
+    }
+    this.elements = new Enum<?>[size];
+    int offset = 0;
+    for (final Class<? extends Enum<?>> type : enumTypes)
+      for (final Enum<?> e : type.getEnumConstants())
+        this.elements[offset++] = e;
+    this.offsets = new ClassValue<Integer>() {
+      @Override
+      protected Integer computeValue(final Class<?> type) {
+        int result = 0;
+        for (final Class<? extends Enum<?>> t : MultiEnumDomain.this.enumTypes) {
+          if (t == type)
+            return result;
+          result += t.getEnumConstants().length;
+        }
+        return NONE;
+      }
+    };
+    this.fingerprint = DomainFingerprint.of(asList(this.elements));
+  }
+
+  /** The enum types of this domain.
+   *
+   * @return A new array of the enum types, in the order of the domain. */
+  @NonNull
+  Class<? extends Enum<?>>[] getEnumTypes() {
+    return this.enumTypes.clone();
+  }
+
+  @Override
+  public boolean add(final Enum<?> e) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void add(final int index, final Enum<?> element) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean contains(@Nullable final Object o) {
+    return this.indexOf(o) >= 0;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj)
+      return true;
+    if (obj instanceof MultiEnumDomain)
+      return Arrays.equals(this.enumTypes, ((MultiEnumDomain) obj).enumTypes);
+    if ((obj instanceof DefaultDomain || obj instanceof EnumDomain)
+        && this.fingerprint.domainsDiffer(((Domain<?>) obj).fingerprint()))
+      return false;
+    if (obj == null || !(obj instanceof Domain) || this.hashCode() != obj.hashCode())
+      return false;
+    return Arrays.equals(this.elements, ((Domain<?>) obj).toArray());
+  }
+
+  /** {@inheritDoc}
+   * <p>
+   * Note that this always creates {@link MultiEnumBitSet}s. */
+  @Override
+  public Function<Collection<Enum<?>>, DomainBitSet<Enum<?>>> factory() {
+    return (s) -> {
+      final MultiEnumBitSet result = new MultiEnumBitSet(this);
+      result.addAll(s);
+      return result;
+    };
+  }
+
+  @Override
+  public DomainFingerprint fingerprint() {
+    return this.fingerprint;
+  }
+
+  @Override
+  @NonNull
+  public Enum<?> get(final int index) {
+    return this.elements[index];
+  }
+
+  @Override
+  public int hashCode() {
+    if (this.hash == 0)
+      this.hash = Arrays.hashCode(this.elements);
+    return this.hash;
+  }
+
+  @Override
+  public int indexOf(@Nullable final Object o) {
+    if (!(o instanceof Enum))
+      return -1;
+    final Enum<?> e = (Enum<?>) o;
+    final int offset = this.offsets.get(e.getDeclaringClass());
+    return offset < 0 ? -1 : offset + e.ordinal();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.elements.length == 0;
+  }
+
+  @Override
+  public Iterator<Enum<?>> iterator() {
+    return asList(this.elements).iterator();
+  }
+
+  @Override
+  public int lastIndexOf(@Nullable final Object o) {
+    return this.indexOf(o);
+  }
+
+  @Override
+  public int size() {
+    return this.elements.length;
+  }
+
+  @Override
+  public Object[] toArray() {
+    return this.elements.clone();
+  }
+
+  @Override
+  public <X> X[] toArray(final X[] a) {
+    return super.toArray(requireNonNull(a, "a"));
+  }
+
+  /** This proxy class is used to serialize MultiEnumDomain instances. */
+  private static class SerializationProxy implements java.io.Serializable {
+    private static final long                serialVersionUID = 2153069878301429466L;
+    @NonNull
+    private final Class<? extends Enum<?>>[] enumTypes;
+
+    public SerializationProxy(@NonNull final Class<? extends Enum<?>>[] enumTypes) {
+      this.enumTypes = enumTypes;
+    }
+
+    private Object readResolve() {
+      return MultiEnumDomain.of(this.enumTypes);
+    }
+  }
+
+  private Object writeReplace() {
+    return new SerializationProxy(this.enumTypes);
+  }
+
+  @SuppressFBWarnings({ "static-method", "unused" })
+  private void readObject(final java.io.ObjectInputStream stream)
+      throws java.io.InvalidObjectException {
+    throw new java.io.InvalidObjectException("Proxy required");
+  }
+}
@@ -0,0 +1,751 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.LongBinaryOperator;
+import java.util.stream.Stream;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+/** Mutable BitSet for large domains, that stores its words outside of the heap, in a direct
+ * {@link ByteBuffer}. The garbage collector does not scan or copy the bitmap. The words are stored
+ * in little-endian byte order, so the bytes are the same as the bytes of
+ * {@link BitSet#toByteArray()} (but without truncation).
+ * <p>
+ * All methods that return a {@code DomainBitSet<T>} return a new OffHeapDomainBitSet with its own
+ * buffer. The set can be modified by {@link #add(Object)}, {@link #remove(Object)},
+ * {@link #setBit(int, boolean)}, {@link #clear()} and {@link #copyFrom(long[])}.
+ * <p>
+ * The buffer can be written to a channel by {@link #writeTo(WritableByteChannel)} and read by
+ * {@link #readFrom(Domain, ReadableByteChannel)} without copying the words to the heap. An existing
+ * buffer can be used by {@link #wrap(Domain, ByteBuffer)}.
+ * <p>
+ * The set should be {@link #close() closed} when it is no longer needed. It drops its reference to
+ * the buffer and all methods that access the elements then throw an {@link IllegalStateException}.
+ * Closing does not free the memory, as views of the buffer and wrapped buffers can still be in use.
+ * The memory of a direct buffer is returned to the system when the buffer is collected.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <T>
+ *          The type of the domain. All elements in the domain must be of type T or of any subtype
+ *          of T.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class OffHeapDomainBitSet<T> implements DomainBitSet<T>, Closeable {
+  private static final long serialVersionUID = 3104823744590817162L;
+
+  private final class Itr implements Iterator<T> {
+    private final LongBuffer words = OffHeapDomainBitSet.this.words();
+    private int              next  = OffHeapDomainBitSet.this.nextSetBit(0);
+
+    @Override
+    public boolean hasNext() {
+      return this.next >= 0;
+    }
+
+    @Override
+    public T next() {
+      if (this.next < 0)
+        throw new NoSuchElementException();
+      if (this.words != OffHeapDomainBitSet.this.words)
+        throw new ConcurrentModificationException();
+      final T result = OffHeapDomainBitSet.this.domain.get(this.next);
+      this.next = OffHeapDomainBitSet.this.nextSetBit(this.next + 1);
+      return result;
+    }
+  }
+
+  /** Number of bytes of the buffer for a domain of the given size. */
+  private static int bytes(final Domain<?> domain) {
+    return Container.words(domain.size()) << 3;
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return A new OffHeapDomainBitSet containing all elements of the given domain. */
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> allOf(final List<T> domain) {
+    try (OffHeapDomainBitSet<T> none = noneOf(domain)) {
+      return none.complement();
+    }
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return A new OffHeapDomainBitSet containing all elements of the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> allOf(final T... domain) {
+    return allOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return A new, empty OffHeapDomainBitSet based on the given domain. */
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> noneOf(final List<T> domain) {
+    return noneOf(DefaultDomain.of(requireNonNull(domain, "domain")));
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return A new, empty OffHeapDomainBitSet based on the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> noneOf(final T... domain) {
+    return noneOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The domain.
+   * @return A new, empty OffHeapDomainBitSet based on the given domain. */
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> noneOf(final Domain<T> domain) {
+    requireNonNull(domain, "domain");
+    return new OffHeapDomainBitSet<>(domain, ByteBuffer.allocateDirect(bytes(domain)));
+  }
+
+  /** Creates a set with the given domain, containing all given elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The elements.
+   * @throws IllegalArgumentException
+   *           if an element is not in the domain.
+   * @return A new OffHeapDomainBitSet based on the given domain and set. */
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> of(final List<T> domain, final Collection<T> set) {
+    final OffHeapDomainBitSet<T> result = noneOf(domain);
+    result.copyFrom(result.toWords(requireNonNull(set, "set")));
+    return result;
+  }
+
+  /** Creates a set with the given domain, containing elements according to the given bit set.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The positions of the elements.
+   * @throws IllegalArgumentException
+   *           if the bit set contains positions that are not in the domain.
+   * @return A new OffHeapDomainBitSet based on the given domain and bit set. */
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> of(final List<T> domain, final BitSet set) {
+    final OffHeapDomainBitSet<T> result = noneOf(domain);
+    result.copyFrom(result.toWords(requireNonNull(set, "set")));
+    return result;
+  }
+
+  /** Creates a set with the given domain, containing elements according to the given words.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The domain.
+   * @param words
+   *          The words of the bitmap, as returned by {@link #toLongArray()}.
+   * @throws IllegalArgumentException
+   *           if the words contain positions that are not in the domain.
+   * @return A new OffHeapDomainBitSet based on the given domain and words. */
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> of(final Domain<T> domain, final long[] words) {
+    final OffHeapDomainBitSet<T> result = noneOf(domain);
+    result.copyFrom(words);
+    return result;
+  }
+
+  /** Creates a set that uses the given buffer for its words. The remaining bytes of the buffer are
+   * used, without copying them. Changes to the set are visible in the buffer and vice versa. The
+   * position and byte order of the given buffer are not modified.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The domain.
+   * @param buffer
+   *          A buffer with exactly <code>8 * ceil(domain.size() / 64)</code> remaining bytes, in
+   *          little-endian order. Bits that are not in the domain must be clear.
+   * @throws IllegalArgumentException
+   *           if the buffer does not have the correct size or contains positions that are not in
+   *           the domain.
+   * @return A new OffHeapDomainBitSet that is backed by the given buffer. */
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> wrap(final Domain<T> domain, final ByteBuffer buffer) {
+    requireNonNull(domain, "domain");
+    if (requireNonNull(buffer, "buffer").remaining() != bytes(domain))
+      throw new IllegalArgumentException("The buffer must have " + bytes(domain)
+          + " remaining bytes.");
+    final OffHeapDomainBitSet<T> result = new OffHeapDomainBitSet<>(domain, buffer.slice());
+    result.checkLastWord();
+    return result;
+  }
+
+  /** Reads the words of a set from a channel into a new direct buffer. This is the inverse of
+   * {@link #writeTo(WritableByteChannel)}.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The domain.
+   * @param channel
+   *          The channel.
+   * @return A new OffHeapDomainBitSet containing the words that were read.
+   * @throws IOException
+   *           if the channel can't be read or ends before all words are read.
+   * @throws IllegalArgumentException
+   *           if the words contain positions that are not in the domain. */
+  @NonNull
+  public static <T> OffHeapDomainBitSet<T> readFrom(final Domain<T> domain,
+      final ReadableByteChannel channel) throws IOException {
+    requireNonNull(channel, "channel");
+    final OffHeapDomainBitSet<T> result = noneOf(domain);
+    final ByteBuffer buffer = result.buffer.duplicate();
+    while (buffer.hasRemaining())
+      if (channel.read(buffer) < 0)
+        throw new EOFException();
+    result.checkLastWord();
+    return result;
+  }
+
+  @NonNull
+  private final Domain<T>    domain;
+
+  /** The buffer, or null if this is closed. */
+  private transient ByteBuffer buffer;
+
+  /** The words of the buffer, or null if this is closed. */
+  private transient LongBuffer words;
+
+  private OffHeapDomainBitSet(final Domain<T> domain, final ByteBuffer buffer) {
+    this.domain = domain;
+    this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    this.words = this.buffer.asLongBuffer();
+  }
+
+  private LongBuffer words() throws IllegalStateException {
+    final LongBuffer result = this.words;
+    if (result == null)
+      throw new IllegalStateException("This OffHeapDomainBitSet is closed.");
+    return result;
+  }
+
+  /** The word at the given index, without creating the other words. */
+  long word(final int index) throws IllegalStateException {
+    final LongBuffer w = this.words();
+    return index < w.limit() ? w.get(index) : 0L;
+  }
+
+  private void checkLastWord() throws IllegalArgumentException {
+    final LongBuffer w = this.words();
+    final int size = this.domain.size();
+    if ((size & 63) != 0 && w.get(w.limit() - 1) >>> size != 0L) {
+      this.close();
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+    }
+  }
+
+  private int nextSetBit(final int from) {
+    final LongBuffer w = this.words();
+    int i = from >>> 6;
+    if (i >= w.limit())
+      return -1;
+    long word = w.get(i) & -1L << from;
+    while (true) {
+      if (word != 0L)
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+      if (++i == w.limit())
+        return -1;
+      word = w.get(i);
+    }
+  }
+
+  /** The words of a given Iterable. */
+  @SuppressFBWarnings("unchecked")
+  private long[] toWords(final Iterable<T> itr) throws IllegalArgumentException {
+    requireNonNull(itr, "itr");
+    if (itr instanceof DomainBitSet && this.ofEqualDomain((DomainBitSet<T>) itr))
+      return ((DomainBitSet<T>) itr).toLongArray();
+    final long[] result = new long[this.words().limit()];
+    for (final T t : itr) {
+      final int index = this.domain.indexOf(t);
+      if (index < 0)
+        throw new IllegalArgumentException(String.format(
+            "The object '%s' is not element of the domain.", t));
+      result[index >>> 6] |= 1L << index;
+    }
+    return result;
+  }
+
+  private long[] toWords(final BitSet set) throws IllegalArgumentException {
+    if (requireNonNull(set, "set").length() > this.domain.size())
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+    return set.toLongArray();
+  }
+
+  private long[] toWords(final long mask) throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.toWords(BitSet.valueOf(new long[] { mask }));
+  }
+
+  /** Creates a new set with the words of this and the other set combined by the given operator. */
+  private OffHeapDomainBitSet<T> combine(final long[] other, final LongBinaryOperator op) {
+    final LongBuffer w = this.words();
+    final OffHeapDomainBitSet<T> result = noneOf(this.domain);
+    for (int i = 0; i < w.limit(); i++)
+      result.words.put(i, op.applyAsLong(w.get(i), i < other.length ? other[i] : 0L));
+    return result;
+  }
+
+  /** Adds the given element to this set.
+   *
+   * @param e
+   *          An element of the domain.
+   * @return <code>true</code> if this set did not already contain the element.
+   * @throws IllegalArgumentException
+   *           if the element is not in the domain. */
+  public boolean add(final T e) throws IllegalArgumentException {
+    final int index = this.domain.indexOf(requireNonNull(e, "e"));
+    if (index < 0)
+      throw new IllegalArgumentException(String.format(
+          "The object '%s' is not element of the domain.", e));
+    return !this.setBit(index, true);
+  }
+
+  /** Removes the given element from this set.
+   *
+   * @param o
+   *          An object.
+   * @return <code>true</code> if this set contained the element. */
+  public boolean remove(final Object o) {
+    final int index = this.domain.indexOf(o);
+    return index >= 0 && this.setBit(index, false);
+  }
+
+  /** Sets or clears the bit at the given position.
+   *
+   * @param bitIndex
+   *          The position in the domain.
+   * @param value
+   *          The new value of the bit.
+   * @return The old value of the bit.
+   * @throws IndexOutOfBoundsException
+   *           if the position is not in the domain. */
+  public boolean setBit(final int bitIndex, final boolean value) throws IndexOutOfBoundsException {
+    final boolean old = this.getBit(bitIndex);
+    final LongBuffer w = this.words;
+    final long word = w.get(bitIndex >>> 6);
+    w.put(bitIndex >>> 6, value ? word | 1L << bitIndex : word & ~(1L << bitIndex));
+    return old;
+  }
+
+  /** Removes all elements from this set. */
+  public void clear() {
+    final LongBuffer w = this.words();
+    for (int i = 0; i < w.limit(); i++)
+      w.put(i, 0L);
+  }
+
+  /** Replaces the elements of this set by the elements of the given words. Missing words are
+   * cleared.
+   *
+   * @param words
+   *          The words of a bitmap, as returned by {@link #toLongArray()}.
+   * @throws IllegalArgumentException
+   *           if the words contain positions that are not in the domain. */
+  public void copyFrom(final long[] words) throws IllegalArgumentException {
+    requireNonNull(words, "words");
+    if (BitSet.valueOf(words).length() > this.domain.size())
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+    final LongBuffer w = this.words().duplicate();
+    w.put(words, 0, Math.min(words.length, w.limit()));
+    while (w.hasRemaining())
+      w.put(0L);
+  }
+
+  /** Returns a read-only view of the buffer of this set, in little-endian byte order. The view is
+   * invalid after this set is closed.
+   *
+   * @return A read-only view of the words. */
+  @NonNull
+  public ByteBuffer asReadOnlyBuffer() {
+    this.words();
+    return this.buffer.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** Writes all words of this set to the given channel. The bytes are written directly from the
+   * buffer.
+   *
+   * @param channel
+   *          The channel.
+   * @throws IOException
+   *           if the channel can't be written. */
+  public void writeTo(final WritableByteChannel channel) throws IOException {
+    requireNonNull(channel, "channel");
+    this.words();
+    final ByteBuffer b = this.buffer.duplicate();
+    while (b.hasRemaining())
+      channel.write(b);
+  }
+
+  /** Checks whether this set was {@link #close() closed}.
+   *
+   * @return <code>true</code>, if this set is closed. */
+  public boolean isClosed() {
+    return this.words == null;
+  }
+
+  /** Drops the reference to the buffer of this set, so that it can be collected as soon as no view
+   * of it is used. This does not free the memory immediately. Closing a closed set has no
+   * effect. */
+  @Override
+  public void close() {
+    this.buffer = null;
+    this.words = null;
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> clone() {
+    return this.combine(new long[0], (a, b) -> a);
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> complement() {
+    final OffHeapDomainBitSet<T> result = this.combine(new long[0], (a, b) -> ~a);
+    final int size = this.domain.size();
+    if ((size & 63) != 0) {
+      final int last = result.words.limit() - 1;
+      result.words.put(last, result.words.get(last) & -1L >>> -size);
+    }
+    return result;
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    final int index = this.domain.indexOf(o);
+    return index >= 0 && this.getBit(index);
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this)
+      return true;
+    if (other instanceof DomainBitSet) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<T> domBitSet = (DomainBitSet<T>) other;
+      if (!this.ofEqualDomain(domBitSet))
+        return false;
+      if (BitSetUtilities.isWordComparable(other))
+        return this.words().equals(LongBuffer.wrap(domBitSet.toLongArray()));
+      return this.size() == domBitSet.size() && this.containsAll(domBitSet.toSet());
+    }
+    return false;
+  }
+
+  @Override
+  public boolean getBit(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex >= this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return (this.words().get(bitIndex >>> 6) & 1L << bitIndex) != 0L;
+  }
+
+  @Override
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  @Override
+  public int hashCode() {
+    return this.domain.hashCode() ^ BitSetUtilities.hashCode(this.words());
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> intersect(final BigInteger mask) {
+    return this.intersect(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> intersect(final BitSet set) {
+    return this.combine(this.toWords(set), (a, b) -> a & b);
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> intersect(final Iterable<T> set) {
+    return this.combine(this.toWords(set), (a, b) -> a & b);
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> intersect(final long mask) throws MoreThan64ElementsException {
+    return this.combine(this.toWords(mask), (a, b) -> a & b);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public OffHeapDomainBitSet<T> intersectVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.intersect(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.nextSetBit(0) < 0;
+  }
+
+  /** {@inheritDoc}
+   * <p>
+   * The iterator throws a {@link ConcurrentModificationException} if this set is closed during
+   * iteration. Other modifications are visible to the iterator. */
+  @Override
+  public Iterator<T> iterator() {
+    return new Itr();
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> minus(final BigInteger mask) {
+    return this.minus(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> minus(final BitSet set) {
+    return this.combine(this.toWords(set), (a, b) -> a & ~b);
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> minus(final Iterable<T> set) {
+    return this.combine(this.toWords(set), (a, b) -> a & ~b);
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> minus(final long mask) throws MoreThan64ElementsException {
+    return this.combine(this.toWords(mask), (a, b) -> a & ~b);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public OffHeapDomainBitSet<T> minusVarArgs(@SuppressFBWarnings("unchecked") final T... elements) {
+    return this.minus(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public int nextClearIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    final int size = this.domain.size();
+    if (from >= size)
+      return -1;
+    final LongBuffer w = this.words();
+    return Bitmaps.nextClearIndex(w::get, size, from);
+  }
+
+  @Override
+  public int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    final LongBuffer w = this.words();
+    return Bitmaps.nextSetIndex(w::get, w.limit(), from);
+  }
+
+  @Override
+  public int previousSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < -1)
+      throw new IndexOutOfBoundsException("from < -1: " + from);
+    final int start = Math.min(from, this.domain.size() - 1);
+    if (start < 0)
+      return -1;
+    final LongBuffer w = this.words();
+    return Bitmaps.previousSetIndex(w::get, start);
+  }
+
+  @Override
+  public int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.domain.size())
+      throw new IndexOutOfBoundsException();
+    final LongBuffer w = this.words();
+    return Bitmaps.rank(w::get, w.limit(), bitIndex);
+  }
+
+  @Override
+  public int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0)
+      throw new IndexOutOfBoundsException();
+    final LongBuffer w = this.words();
+    return Bitmaps.select(w::get, w.limit(), n);
+  }
+
+  @Override
+  public int size() {
+    final LongBuffer w = this.words();
+    int size = 0;
+    for (int i = 0; i < w.limit(); i++)
+      size += Long.bitCount(w.get(i));
+    return size;
+  }
+
+  @Override
+  public BigInteger toBigInteger() {
+    return BitSetUtilities.asBigInteger(this.toBitSet());
+  }
+
+  @Override
+  public BitSet toBitSet() {
+    return BitSet.valueOf(this.words().duplicate());
+  }
+
+  @Override
+  public long toLong() throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    final LongBuffer w = this.words();
+    return w.limit() == 0 ? 0L : w.get(0);
+  }
+
+  @Override
+  public long[] toLongArray() {
+    final LongBuffer w = this.words().duplicate();
+    final long[] result = new long[w.limit()];
+    w.get(result);
+    return result;
+  }
+
+  @Override
+  public Set<T> toSet() {
+    final Set<T> result = new LinkedHashSet<>(this.size());
+    this.forEach(result::add);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    if (this.isClosed())
+      return "[closed]";
+    final Iterator<T> it = this.iterator();
+    if (!it.hasNext())
+      return "[]";
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (;;) {
+      sb.append(it.next());
+      if (!it.hasNext())
+        return sb.append(']').toString();
+      sb.append(',').append(' ');
+    }
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> union(final BigInteger mask) {
+    return this.union(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> union(final BitSet set) {
+    return this.combine(this.toWords(set), (a, b) -> a | b);
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> union(final Iterable<T> set) {
+    return this.combine(this.toWords(set), (a, b) -> a | b);
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> union(final long mask) throws MoreThan64ElementsException {
+    return this.combine(this.toWords(mask), (a, b) -> a | b);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public OffHeapDomainBitSet<T> unionVarArgs(@SuppressFBWarnings("unchecked") final T... elements) {
+    return this.union(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public OffHeapDomainBitSet<T> xor(final DomainBitSet<T> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    return this.combine(set.toLongArray(), (a, b) -> a ^ b);
+  }
+
+  @Override
+  public Stream<Pair<Object, Integer, T>> zipWithPosition() {
+    return this.stream().map(e -> Pair.of(this.domain.indexOf(e), e));
+  }
+
+  /** This proxy class is used to serialize OffHeapDomainBitSet instances. The words are copied to
+   * the heap. */
+  private static class SerializationProxy<T> implements java.io.Serializable {
+    private static final long serialVersionUID = -5533931489026373627L;
+
+    private final Domain<T>   domain;
+    private final long[]      words;
+
+    public SerializationProxy(@NonNull final Domain<T> domain, @NonNull final long[] words) {
+      this.domain = domain;
+      this.words = words;
+    }
+
+    private Object readResolve() {
+      return of(this.domain, this.words);
+    }
+  }
+
+  private Object writeReplace() {
+    return new SerializationProxy<>(this.domain, this.toLongArray());
+  }
+
+  @SuppressFBWarnings({ "static-method", "unused" })
+  private void readObject(final java.io.ObjectInputStream stream)
+      throws java.io.InvalidObjectException {
+    throw new java.io.InvalidObjectException("Proxy required");
+  }
+}
@@ -0,0 +1,824 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static java.util.Objects.requireNonNull;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+import ch.claude_martin.enumbitset.annotations.Nullable;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+/** Immutable, persistent BitSet for large domains. The words are stored in a tree of chunks: each
+ * leaf holds {@value #BRANCH} words and each inner node holds {@value #BRANCH} children. A chunk
+ * that has no elements is not stored at all.
+ * <p>
+ * The result of an operation shares all chunks with this set, that are not changed by the
+ * operation. Only the leaves that change and the path from the root to them are copied, so adding
+ * or removing a few elements takes <code>O(log n)</code> time and memory, even for a domain of
+ * millions of elements. A set can therefore be used as a snapshot of another set at no cost.
+ * Operations on two sets of the same tree share the chunks of both sets and don't visit chunks that
+ * are the same in both sets.
+ * <p>
+ * The size and the hash code are calculated when they are used for the first time.
+ *
+ * @param <T>
+ *          The type of the domain. All elements in the domain must be of type T or of any subtype
+ *          of T.
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+public final class PersistentDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
+  private static final long serialVersionUID = -6317232916467105744L;
+
+  /** Number of words in a leaf and number of children of an inner node. */
+  static final int          BRANCH           = 32;
+  private static final int  SHIFT            = 5;
+  private static final int  MASK             = BRANCH - 1;
+
+  private static final int  AND              = 0;
+  private static final int  AND_NOT          = 1;
+  private static final int  OR               = 2;
+  private static final int  XOR              = 3;
+
+  private static long apply(final int op, final long a, final long b) {
+    switch (op) {
+      case AND:
+        return a & b;
+      case AND_NOT:
+        return a & ~b;
+      case OR:
+        return a | b;
+      default:
+        return a ^ b;
+    }
+  }
+
+  /** Number of levels of inner nodes for a domain of the given size. */
+  private static int depth(final int size) {
+    int depth = 0;
+    for (long words = BRANCH; words < Container.words(size); words <<= SHIFT)
+      depth++;
+    return depth;
+  }
+
+  private static final class Itr<T> implements Iterator<T> {
+    @NonNull
+    private final PersistentDomainBitSet<T> set;
+    private int                             next;
+
+    public Itr(@NonNull final PersistentDomainBitSet<T> set) {
+      this.set = set;
+      this.next = set.nextSetIndex(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next >= 0;
+    }
+
+    @Override
+    public T next() {
+      if (this.next < 0)
+        throw new NoSuchElementException();
+      final T result = this.set.domain.get(this.next);
+      this.next = this.set.nextSetIndex(this.next + 1);
+      return result;
+    }
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return A PersistentDomainBitSet containing all elements of the given domain. */
+  @NonNull
+  public static <T> PersistentDomainBitSet<T> allOf(final List<T> domain) {
+    return noneOf(domain).complement();
+  }
+
+  /** Creates a set with the given domain, that contains all elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return A PersistentDomainBitSet containing all elements of the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> PersistentDomainBitSet<T> allOf(final T... domain) {
+    return allOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return Empty PersistentDomainBitSet based on the given domain. */
+  @NonNull
+  public static <T> PersistentDomainBitSet<T> noneOf(final List<T> domain) {
+    return new PersistentDomainBitSet<>(DefaultDomain.of(requireNonNull(domain, "domain")), null);
+  }
+
+  /** Creates a set with the given domain, that contains none of the elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @return Empty PersistentDomainBitSet based on the given domain. */
+  @SafeVarargs
+  @NonNull
+  public static <T> PersistentDomainBitSet<T> noneOf(final T... domain) {
+    return noneOf(asList(domain));
+  }
+
+  /** Creates a set with the given domain, containing all given elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The elements.
+   * @throws IllegalArgumentException
+   *           if an element is not in the domain.
+   * @return PersistentDomainBitSet based on the given domain and set. */
+  @NonNull
+  public static <T> PersistentDomainBitSet<T> of(final List<T> domain, final Collection<T> set) {
+    return noneOf(domain).union(requireNonNull(set, "set"));
+  }
+
+  /** Creates a set with the given domain, containing all given elements.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The elements.
+   * @throws IllegalArgumentException
+   *           if an element is not in the domain.
+   * @return PersistentDomainBitSet based on the given domain and set. */
+  @SafeVarargs
+  @NonNull
+  public static <T> PersistentDomainBitSet<T> of(@NonNull final List<T> domain,
+      @NonNull final T... set) {
+    return of(domain, asList(set));
+  }
+
+  /** Creates a set with the given domain, containing elements according to the given bit set.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param domain
+   *          The elements of the domain.
+   * @param set
+   *          The positions of the elements.
+   * @throws IllegalArgumentException
+   *           if the bit set contains positions that are not in the domain.
+   * @return PersistentDomainBitSet based on the given domain and bit set. */
+  @NonNull
+  public static <T> PersistentDomainBitSet<T> of(final List<T> domain, final BitSet set) {
+    return noneOf(domain).union(requireNonNull(set, "set"));
+  }
+
+  /** Creates a set with the same domain and elements as the given set.
+   *
+   * @param <T>
+   *          The type of the set and its domain.
+   * @param set
+   *          The set to copy.
+   * @return PersistentDomainBitSet with the elements of the given set. */
+  @NonNull
+  public static <T> PersistentDomainBitSet<T> copyOf(final DomainBitSet<T> set) {
+    if (set instanceof PersistentDomainBitSet)
+      return (PersistentDomainBitSet<T>) set;
+    return of(set.getDomain(), set.toLongArray());
+  }
+
+  @NonNull
+  static <T> PersistentDomainBitSet<T> of(final Domain<T> domain, final long[] words) {
+    final PersistentDomainBitSet<T> empty = new PersistentDomainBitSet<>(domain, null);
+    empty.checkWords(words);
+    return empty.combine(words, OR);
+  }
+
+  private final Domain<T>    domain;
+
+  /** Number of levels of inner nodes. The root is a leaf if this is 0. */
+  private final int          depth;
+
+  /** The root: a <code>long[]</code> if depth is 0, an <code>Object[]</code> otherwise, and
+   * <code>null</code> if the set is empty. */
+  @Nullable
+  private final Object       root;
+
+  @SuppressFBWarnings(value = "JCIP_FIELD_ISNT_FINAL_IN_IMMUTABLE_CLASS", justification = "It's lazy.")
+  private transient int      hash = 0; // defaults to 0, later it's set to a hash code.
+
+  @SuppressFBWarnings(value = "JCIP_FIELD_ISNT_FINAL_IN_IMMUTABLE_CLASS", justification = "It's lazy.")
+  private transient int      size = -1; // -1 until the size is counted.
+
+  private PersistentDomainBitSet(final Domain<T> domain, @Nullable final Object root) {
+    this.domain = domain;
+    this.depth = depth(domain.size());
+    this.root = root;
+  }
+
+  /** A set of the same domain with the given root. */
+  private PersistentDomainBitSet<T> with(@Nullable final Object newRoot) {
+    if (newRoot == this.root)
+      return this;
+    return new PersistentDomainBitSet<>(this.domain, newRoot);
+  }
+
+  /** The leaf that contains the word at the given index, or <code>null</code> if it is empty. */
+  @Nullable
+  long[] leaf(final int index) {
+    Object node = this.root;
+    for (int level = this.depth; level > 0 && node != null; level--)
+      node = ((Object[]) node)[index >>> SHIFT * level & MASK];
+    return (long[]) node;
+  }
+
+  /** The word at the given index. */
+  long word(final int index) {
+    final long[] leaf = this.leaf(index);
+    return leaf == null ? 0L : leaf[index & MASK];
+  }
+
+  private void checkWords(final long[] words) throws IllegalArgumentException {
+    final int bits = this.domain.size();
+    final int n = Container.words(bits);
+    for (int i = n; i < words.length; i++)
+      if (words[i] != 0L)
+        throw new IllegalArgumentException(
+            "The parameter contains more elements than the domain allows.");
+    if (n > 0 && n <= words.length && (bits & 63) != 0 && words[n - 1] >>> bits != 0L)
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+  }
+
+  /** Applies the operation to a node and the words of a mask. The mask is 0 after its last word.
+   * The result shares all chunks that are not changed.
+   *
+   * @param node
+   *          A node or <code>null</code>.
+   * @param level
+   *          The level of the node; 0 for a leaf.
+   * @param base
+   *          The index of the first word of the node.
+   * @return The resulting node, or <code>null</code> if it is empty. */
+  @Nullable
+  private Object combine(@Nullable final Object node, final int level, final int base,
+      final long[] words, final int op) {
+    if (base >= words.length)
+      return op == AND ? null : node;
+    if (node == null && (op == AND || op == AND_NOT))
+      return null;
+    if (level == 0) {
+      final long[] leaf = (long[]) node;
+      long[] result = null;
+      boolean empty = true;
+      for (int i = 0; i < BRANCH; i++) {
+        final long w = leaf == null ? 0L : leaf[i];
+        final long r = apply(op, w, base + i < words.length ? words[base + i] : 0L);
+        if (r != w && result == null)
+          result = leaf == null ? new long[BRANCH] : leaf.clone();
+        if (result != null)
+          result[i] = r;
+        empty &= r == 0L;
+      }
+      return empty ? null : result == null ? node : result;
+    }
+    final Object[] children = (Object[]) node;
+    final int span = 1 << SHIFT * level;
+    Object[] result = null;
+    boolean empty = true;
+    for (int c = 0; c < BRANCH; c++) {
+      final Object child = children == null ? null : children[c];
+      final Object r = this.combine(child, level - 1, base + c * span, words, op);
+      if (r != child && result == null)
+        result = children == null ? new Object[BRANCH] : children.clone();
+      if (result != null)
+        result[c] = r;
+      empty &= r == null;
+    }
+    return empty ? null : result == null ? node : result;
+  }
+
+  /** Applies the operation to two nodes of the same level. Chunks that are the same in both trees
+   * are not visited. */
+  @Nullable
+  private static Object combine(@Nullable final Object a, @Nullable final Object b,
+      final int level, final int op) {
+    if (a == b)
+      return op == AND || op == OR ? a : null;
+    if (b == null)
+      return op == AND ? null : a;
+    if (a == null)
+      return op == AND || op == AND_NOT ? null : b;
+    if (level == 0) {
+      final long[] x = (long[]) a;
+      final long[] y = (long[]) b;
+      final long[] result = new long[BRANCH];
+      boolean sameAsA = true, sameAsB = true, empty = true;
+      for (int i = 0; i < BRANCH; i++) {
+        final long r = apply(op, x[i], y[i]);
+        result[i] = r;
+        sameAsA &= r == x[i];
+        sameAsB &= r == y[i];
+        empty &= r == 0L;
+      }
+      return empty ? null : sameAsA ? a : sameAsB ? b : result;
+    }
+    final Object[] x = (Object[]) a;
+    final Object[] y = (Object[]) b;
+    final Object[] result = new Object[BRANCH];
+    boolean sameAsA = true, sameAsB = true, empty = true;
+    for (int c = 0; c < BRANCH; c++) {
+      final Object r = combine(x[c], y[c], level - 1, op);
+      result[c] = r;
+      sameAsA &= r == x[c];
+      sameAsB &= r == y[c];
+      empty &= r == null;
+    }
+    return empty ? null : sameAsA ? a : sameAsB ? b : result;
+  }
+
+  /** Sets or clears the bits at the given sorted indices <code>[from, to)</code>, which are all in
+   * the node. Only the leaves that contain one of the indices are copied. */
+  @Nullable
+  private static Object update(@Nullable final Object node, final int level, final int base,
+      final int[] indices, final int from, final int to, final boolean value) {
+    if (node == null && !value)
+      return null;
+    if (level == 0) {
+      final long[] leaf = (long[]) node;
+      long[] result = null;
+      for (int j = from; j < to; j++) {
+        final int i = (indices[j] >>> 6) - base;
+        final long bit = 1L << indices[j];
+        final long w = result != null ? result[i] : leaf == null ? 0L : leaf[i];
+        if ((w & bit) != 0L == value)
+          continue;
+        if (result == null)
+          result = leaf == null ? new long[BRANCH] : leaf.clone();
+        result[i] ^= bit;
+      }
+      if (result == null)
+        return node;
+      for (final long w : result)
+        if (w != 0L)
+          return result;
+      return null;
+    }
+    final Object[] children = (Object[]) node;
+    final int span = 1 << SHIFT * level;
+    Object[] result = null;
+    int j = from;
+    while (j < to) {
+      final int c = ((indices[j] >>> 6) - base) / span;
+      int k = j + 1;
+      while (k < to && ((indices[k] >>> 6) - base) / span == c)
+        k++;
+      final Object child = children == null ? null : children[c];
+      final Object r = update(child, level - 1, base + c * span, indices, j, k, value);
+      if (r != child) {
+        if (result == null)
+          result = children == null ? new Object[BRANCH] : children.clone();
+        result[c] = r;
+      }
+      j = k;
+    }
+    if (result == null)
+      return node;
+    for (final Object child : result)
+      if (child != null)
+        return result;
+    return null;
+  }
+
+  /** The sorted positions of the elements of the given Iterable. */
+  private int[] toIndices(final Iterable<T> itr) throws IllegalArgumentException {
+    int[] indices = new int[itr instanceof Collection ? ((Collection<?>) itr).size() : 16];
+    int n = 0;
+    for (final T t : itr) {
+      final int index = this.domain.indexOf(t);
+      if (index < 0)
+        throw new IllegalArgumentException(String.format(
+            "The object '%s' is not element of the domain.", t));
+      if (n == indices.length)
+        indices = Arrays.copyOf(indices, 2 * n + 1);
+      indices[n++] = index;
+    }
+    indices = Arrays.copyOf(indices, n);
+    Arrays.sort(indices);
+    return indices;
+  }
+
+  /** Checks whether the given set is a PersistentDomainBitSet of the same domain. */
+  @SuppressFBWarnings("unchecked")
+  private boolean isSameTree(final Iterable<T> set) {
+    return set instanceof PersistentDomainBitSet
+        && this.ofEqualDomain((PersistentDomainBitSet<T>) set);
+  }
+
+  private long[] toWords(final BitSet set) throws IllegalArgumentException {
+    if (requireNonNull(set, "set").length() > this.domain.size())
+      throw new IllegalArgumentException(
+          "The parameter contains more elements than the domain allows.");
+    return set.toLongArray();
+  }
+
+  private long[] toWords(final long mask) throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    final long[] words = new long[] { mask };
+    this.checkWords(words);
+    return words;
+  }
+
+  private PersistentDomainBitSet<T> update(final Iterable<T> set, final boolean value) {
+    final int[] indices = this.toIndices(requireNonNull(set, "set"));
+    return this.with(update(this.root, this.depth, 0, indices, 0, indices.length, value));
+  }
+
+  @SuppressFBWarnings("unchecked")
+  private PersistentDomainBitSet<T> combine(final Iterable<T> set, final int op) {
+    return this.with(combine(this.root, ((PersistentDomainBitSet<T>) set).root, this.depth, op));
+  }
+
+  private PersistentDomainBitSet<T> combine(final long[] words, final int op) {
+    return this.with(this.combine(this.root, this.depth, 0, words, op));
+  }
+
+  @Override
+  @SuppressFBWarnings("CN_IDIOM_NO_SUPER_CALL")
+  public PersistentDomainBitSet<T> clone() {
+    return this;
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> complement() {
+    final long[] words = new long[Container.words(this.domain.size())];
+    Arrays.fill(words, -1L);
+    if ((this.domain.size() & 63) != 0)
+      words[words.length - 1] = -1L >>> -this.domain.size();
+    return this.combine(words, XOR);
+  }
+
+  @Override
+  public boolean contains(final Object o) {
+    final int index = this.domain.indexOf(o);
+    return index >= 0 && (this.word(index >>> 6) & 1L << index) != 0L;
+  }
+
+  @Override
+  public boolean equals(final Object other) {
+    if (other == this)
+      return true;
+    if (other instanceof DomainBitSet) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<T> domBitSet = (DomainBitSet<T>) other;
+      if (!this.ofEqualDomain(domBitSet))
+        return false;
+      if (other instanceof PersistentDomainBitSet)
+        return combine(this.root, ((PersistentDomainBitSet<?>) other).root, this.depth,
+            XOR) == null;
+      if (this.size() != domBitSet.size())
+        return false;
+      if (BitSetUtilities.isWordComparable(other))
+        return BitSetUtilities.equalWords(this, domBitSet);
+      return this.containsAll(domBitSet.toSet());
+    }
+    return false;
+  }
+
+  @Override
+  public boolean getBit(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex >= this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return (this.word(bitIndex >>> 6) & 1L << bitIndex) != 0L;
+  }
+
+  @Override
+  @NonNull
+  public Domain<T> getDomain() {
+    return this.domain;
+  }
+
+  @Override
+  public int hashCode() {
+    if (this.hash == 0)
+      this.hash = this.domain.hashCode() ^ BitSetUtilities.hashCode(this.toLongArray());
+    return this.hash;
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> intersect(final BigInteger mask) {
+    return this.intersect(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> intersect(final BitSet set) {
+    return this.combine(this.toWords(set), AND);
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> intersect(final Iterable<T> set) {
+    if (this.isSameTree(set))
+      return this.combine(set, AND);
+    final int[] indices = this.toIndices(requireNonNull(set, "set"));
+    int n = 0;
+    for (final int i : indices)
+      if ((this.word(i >>> 6) & 1L << i) != 0L)
+        indices[n++] = i;
+    return this.with(update(null, this.depth, 0, indices, 0, n, true));
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> intersect(final long mask) throws MoreThan64ElementsException {
+    return this.combine(this.toWords(mask), AND);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public PersistentDomainBitSet<T> intersectVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.intersect(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.root == null;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new Itr<>(this);
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> minus(final BigInteger mask) {
+    return this.minus(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> minus(final BitSet set) {
+    return this.combine(this.toWords(set), AND_NOT);
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> minus(final Iterable<T> set) {
+    if (this.isSameTree(set))
+      return this.combine(set, AND_NOT);
+    return this.update(set, false);
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> minus(final long mask) throws MoreThan64ElementsException {
+    return this.combine(this.toWords(mask), AND_NOT);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public PersistentDomainBitSet<T> minusVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.minus(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    if (from >= this.domain.size())
+      return -1;
+    return nextSetIndex(this.root, this.depth, 0, from);
+  }
+
+  /** The next set bit in the node, at or after <code>from</code>, which is in the node. Empty
+   * chunks are skipped. */
+  private static int nextSetIndex(@Nullable final Object node, final int level, final int base,
+      final int from) {
+    if (node == null)
+      return -1;
+    if (level == 0) {
+      final long[] leaf = (long[]) node;
+      int i = (from >>> 6) - base;
+      long w = leaf[i] & -1L << from;
+      while (w == 0L) {
+        if (++i == BRANCH)
+          return -1;
+        w = leaf[i];
+      }
+      return base + i << 6 | Long.numberOfTrailingZeros(w);
+    }
+    final Object[] children = (Object[]) node;
+    final int span = 1 << SHIFT * level;
+    for (int c = ((from >>> 6) - base) / span; c < BRANCH; c++) {
+      if (children[c] == null)
+        continue;
+      final int childBase = base + c * span;
+      final int r = nextSetIndex(children[c], level - 1, childBase, Math.max(from, childBase << 6));
+      if (r >= 0)
+        return r;
+    }
+    return -1;
+  }
+
+  @Override
+  public int nextClearIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    final int size = this.domain.size();
+    if (from >= size)
+      return -1;
+    return Bitmaps.nextClearIndex(this::word, size, from);
+  }
+
+  @Override
+  public int previousSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < -1)
+      throw new IndexOutOfBoundsException("from < -1: " + from);
+    final int start = Math.min(from, this.domain.size() - 1);
+    if (start < 0)
+      return -1;
+    return Bitmaps.previousSetIndex(this::word, start);
+  }
+
+  @Override
+  public int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return Bitmaps.rank(this::word, Container.words(this.domain.size()), bitIndex);
+  }
+
+  @Override
+  public int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0 || n >= this.size())
+      throw new IndexOutOfBoundsException();
+    return Bitmaps.select(this::word, Container.words(this.domain.size()), n);
+  }
+
+  @Override
+  public int size() {
+    if (this.size < 0) {
+      int count = 0;
+      for (final long w : this.toLongArray())
+        count += Long.bitCount(w);
+      this.size = count;
+    }
+    return this.size;
+  }
+
+  @Override
+  public Spliterator<T> spliterator() {
+    return Spliterators.spliterator(this.iterator(), this.size(), Spliterator.SIZED
+        | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+  }
+
+  @Override
+  public BigInteger toBigInteger() {
+    return BitSetUtilities.asBigInteger(this.toBitSet());
+  }
+
+  @Override
+  public BitSet toBitSet() {
+    return BitSet.valueOf(this.toLongArray());
+  }
+
+  @Override
+  public long toLong() throws MoreThan64ElementsException {
+    if (this.domain.size() > 64)
+      throw new MoreThan64ElementsException();
+    return this.word(0);
+  }
+
+  @Override
+  public long[] toLongArray() {
+    final long[] result = new long[Container.words(this.domain.size())];
+    copyWords(this.root, this.depth, 0, result);
+    return result;
+  }
+
+  private static void copyWords(@Nullable final Object node, final int level, final int base,
+      final long[] result) {
+    if (node == null || base >= result.length)
+      return;
+    if (level == 0) {
+      System.arraycopy(node, 0, result, base, Math.min(BRANCH, result.length - base));
+      return;
+    }
+    final Object[] children = (Object[]) node;
+    final int span = 1 << SHIFT * level;
+    for (int c = 0; c < BRANCH; c++)
+      copyWords(children[c], level - 1, base + c * span, result);
+  }
+
+  @Override
+  public Set<T> toSet() {
+    final Set<T> result = new LinkedHashSet<>(this.size());
+    this.forEach(result::add);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    final Iterator<T> it = this.iterator();
+    if (!it.hasNext())
+      return "[]";
+
+    final StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    for (;;) {
+      sb.append(it.next());
+      if (!it.hasNext())
+        return sb.append(']').toString();
+      sb.append(',').append(' ');
+    }
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> union(final BigInteger mask) {
+    return this.union(BitSetUtilities.asBitSet(requireNonNull(mask, "mask")));
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> union(final BitSet set) {
+    return this.combine(this.toWords(set), OR);
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> union(final Iterable<T> set) {
+    if (this.isSameTree(set))
+      return this.combine(set, OR);
+    return this.update(set, true);
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> union(final long mask) throws MoreThan64ElementsException {
+    return this.combine(this.toWords(mask), OR);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public PersistentDomainBitSet<T> unionVarArgs(
+      @SuppressFBWarnings("unchecked") final T... elements) {
+    return this.union(asList(requireNonNull(elements, "elements")));
+  }
+
+  @Override
+  public PersistentDomainBitSet<T> xor(final DomainBitSet<T> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    if (set instanceof PersistentDomainBitSet)
+      return this.combine(set, XOR);
+    return this.combine(set.toLongArray(), XOR);
+  }
+
+  /** This proxy class is used to serialize PersistentDomainBitSet instances. */
+  private static class SerializationProxy<T> implements java.io.Serializable {
+    private static final long serialVersionUID = 2904418571384519020L;
+
+    private final Domain<T>   domain;
+    private final long[]      words;
+
+    public SerializationProxy(@NonNull final Domain<T> domain, @NonNull final long[] words) {
+      this.domain = domain;
+      this.words = words;
+    }
+
+    private Object readResolve() {
+      return of(this.domain, this.words);
+    }
+  }
+
+  private Object writeReplace() {
+    return new SerializationProxy<>(this.domain, this.toLongArray());
+  }
+
+  @SuppressFBWarnings({ "static-method", "unused" })
+  private void readObject(final java.io.ObjectInputStream stream)
+      throws java.io.InvalidObjectException {
+    throw new java.io.InvalidObjectException("Proxy required");
+  }
+}
@@ -0,0 +1,298 @@
+package ch.claude_martin.enumbitset;
+
+import java.util.Arrays;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.Immutable;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** A {@link Container} of intervals of consecutive indices. This is used for clustered sets.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@Immutable
+@DefaultAnnotationForParameters({ NonNull.class })
+final class RunContainer extends Container {
+  private static final long serialVersionUID = -6108294006747931484L;
+
+  /** Collects intervals in ascending order. Overlapping and adjacent intervals are merged. */
+  static final class Builder {
+    private int[] runs;
+    private int   length      = 0;
+    private int   cardinality = 0;
+
+    Builder(final int capacity) {
+      this.runs = new int[Math.max(2, 2 * capacity)];
+    }
+
+    /** Adds the interval from <code>start</code> (inclusive) to <code>end</code> (exclusive). The
+     * start must not be lower than the start of the previous interval. */
+    void add(final int start, final int end) {
+      if (start >= end)
+        return;
+      if (this.length > 0 && start <= this.runs[this.length - 1]) {
+        final int last = this.runs[this.length - 1];
+        if (end > last) {
+          this.cardinality += end - last;
+          this.runs[this.length - 1] = end;
+        }
+        return;
+      }
+      if (this.length == this.runs.length)
+        this.runs = Arrays.copyOf(this.runs, 2 * this.length);
+      this.runs[this.length++] = start;
+      this.runs[this.length++] = end;
+      this.cardinality += end - start;
+    }
+
+    RunContainer build() {
+      return new RunContainer(this.length == this.runs.length ? this.runs : Arrays.copyOf(
+          this.runs, this.length), this.cardinality);
+    }
+  }
+
+  /** Pairs of start (inclusive) and end (exclusive), sorted and not adjacent. Must not be
+   * modified. */
+  final int[]                      runs;
+  private final int                cardinality;
+  /** Number of indices before each run, or null. */
+  private transient volatile int[] ranks = null;
+
+  RunContainer(final int[] runs, final int cardinality) {
+    this.runs = runs;
+    this.cardinality = cardinality;
+  }
+
+  /** Position of the last run that starts at or before the given index, or -1. */
+  private int runBefore(final int index) {
+    int low = 0, high = this.runs.length / 2 - 1, result = -1;
+    while (low <= high) {
+      final int mid = low + high >>> 1;
+      if (this.runs[2 * mid] <= index) {
+        result = mid;
+        low = mid + 1;
+      } else
+        high = mid - 1;
+    }
+    return result;
+  }
+
+  /** The number of indices before each run, created on first use. */
+  private int[] ranks() {
+    int[] ranks = this.ranks;
+    if (ranks == null) {
+      ranks = new int[this.runs.length / 2];
+      for (int r = 1; r < ranks.length; r++)
+        ranks[r] = ranks[r - 1] + this.runs[2 * r - 1] - this.runs[2 * r - 2];
+      this.ranks = ranks;
+    }
+    return ranks;
+  }
+
+  @Override
+  int cardinality() {
+    return this.cardinality;
+  }
+
+  @Override
+  boolean contains(final int index) {
+    final int r = this.runBefore(index);
+    return r >= 0 && index < this.runs[2 * r + 1];
+  }
+
+  @Override
+  int nextSetBit(final int from) {
+    final int r = this.runBefore(from);
+    if (r >= 0 && from < this.runs[2 * r + 1])
+      return Math.max(from, 0);
+    return 2 * (r + 1) < this.runs.length ? this.runs[2 * (r + 1)] : -1;
+  }
+
+  @Override
+  int last() {
+    return this.runs.length == 0 ? -1 : this.runs[this.runs.length - 1] - 1;
+  }
+
+  @Override
+  int rank(final int index) {
+    if (index <= 0)
+      return 0;
+    // the last run that starts before the index:
+    final int r = this.runBefore(index - 1);
+    if (r < 0)
+      return 0;
+    return this.ranks()[r] + Math.min(this.runs[2 * r + 1], index) - this.runs[2 * r];
+  }
+
+  @Override
+  int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0 || n >= this.cardinality)
+      throw new IndexOutOfBoundsException();
+    final int[] ranks = this.ranks();
+    int r = Arrays.binarySearch(ranks, n);
+    if (r < 0)
+      r = -r - 2;
+    return this.runs[2 * r] + n - ranks[r];
+  }
+
+  @Override
+  int numberOfRuns() {
+    return this.runs.length / 2;
+  }
+
+  @Override
+  long[] toWords(final int length) {
+    final long[] words = new long[length];
+    for (int r = 0; r < this.runs.length; r += 2)
+      BitmapContainer.setRange(words, this.runs[r], this.runs[r + 1], true);
+    return words;
+  }
+
+  @Override
+  ArrayContainer toArrayContainer() {
+    final int[] values = new int[this.cardinality];
+    int n = 0;
+    for (int r = 0; r < this.runs.length; r += 2)
+      for (int i = this.runs[r]; i < this.runs[r + 1]; i++)
+        values[n++] = i;
+    return new ArrayContainer(values);
+  }
+
+  @Override
+  BitmapContainer toBitmapContainer(final int universe) {
+    final int length = Math.max(words(universe), words(this.last() + 1));
+    return new BitmapContainer(this.toWords(length), this.cardinality);
+  }
+
+  @Override
+  RunContainer toRunContainer() {
+    return this;
+  }
+
+  @Override
+  Container and(final Container other) {
+    if (other instanceof RunContainer) {
+      final int[] a = this.runs;
+      final int[] b = ((RunContainer) other).runs;
+      final Builder builder = new Builder(this.numberOfRuns() + other.numberOfRuns());
+      int i = 0, j = 0;
+      while (i < a.length && j < b.length) {
+        builder.add(Math.max(a[i], b[j]), Math.min(a[i + 1], b[j + 1]));
+        if (a[i + 1] < b[j + 1])
+          i += 2;
+        else
+          j += 2;
+      }
+      return builder.build();
+    }
+    return other.and(this);
+  }
+
+  @Override
+  Container or(final Container other) {
+    if (other instanceof BitmapContainer)
+      return other.or(this);
+    final int[] a = this.runs;
+    final int[] b = other.toRunContainer().runs;
+    final Builder builder = new Builder(a.length / 2 + b.length / 2);
+    int i = 0, j = 0;
+    while (i < a.length || j < b.length)
+      if (j >= b.length || i < a.length && a[i] <= b[j]) {
+        builder.add(a[i], a[i + 1]);
+        i += 2;
+      } else {
+        builder.add(b[j], b[j + 1]);
+        j += 2;
+      }
+    return builder.build();
+  }
+
+  @Override
+  Container andNot(final Container other) {
+    if (other instanceof BitmapContainer)
+      return this.toBitmapContainer(0).andNot(other);
+    final int[] a = this.runs;
+    final int[] b = other.toRunContainer().runs;
+    final Builder builder = new Builder(a.length / 2 + b.length / 2);
+    int j = 0;
+    for (int i = 0; i < a.length; i += 2) {
+      int start = a[i];
+      final int end = a[i + 1];
+      while (j < b.length && b[j + 1] <= start)
+        j += 2;
+      for (int k = j; k < b.length && b[k] < end; k += 2) {
+        builder.add(start, b[k]);
+        start = Math.max(start, b[k + 1]);
+      }
+      builder.add(start, end);
+    }
+    return builder.build();
+  }
+
+  @Override
+  Container xor(final Container other) {
+    if (other instanceof BitmapContainer)
+      return other.xor(this);
+    // Each start and end toggles membership, so the result toggles where exactly one does:
+    final int[] a = this.runs;
+    final int[] b = other.toRunContainer().runs;
+    final int[] result = new int[a.length + b.length];
+    int i = 0, j = 0, n = 0;
+    while (i < a.length && j < b.length)
+      if (a[i] < b[j])
+        result[n++] = a[i++];
+      else if (a[i] > b[j])
+        result[n++] = b[j++];
+      else {
+        i++;
+        j++;
+      }
+    while (i < a.length)
+      result[n++] = a[i++];
+    while (j < b.length)
+      result[n++] = b[j++];
+    int cardinality = 0;
+    for (int r = 0; r < n; r += 2)
+      cardinality += result[r + 1] - result[r];
+    return new RunContainer(Arrays.copyOf(result, n), cardinality);
+  }
+
+  @Override
+  Container complement(final int universe) {
+    final Builder builder = new Builder(this.numberOfRuns() + 1);
+    int start = 0;
+    for (int r = 0; r < this.runs.length; r += 2) {
+      builder.add(start, this.runs[r]);
+      start = this.runs[r + 1];
+    }
+    builder.add(start, universe);
+    return builder.build();
+  }
+
+  @Override
+  long wordsXor(final int offset) {
+    long h = 0;
+    long word = 0L;
+    int current = -1;
+    for (int r = 0; r < this.runs.length; r += 2) {
+      final int first = this.runs[r] >>> 6;
+      final int last = (this.runs[r + 1] - 1) >>> 6;
+      for (int w = first; w <= last; w++) {
+        if (w != current) {
+          if (current >= 0)
+            h ^= word * (offset + current + 1);
+          current = w;
+          word = 0L;
+        }
+        long mask = -1L;
+        if (w == first)
+          mask &= -1L << this.runs[r];
+        if (w == last)
+          mask &= -1L >>> -this.runs[r + 1];
+        word |= mask;
+      }
+    }
+    if (current >= 0)
+      h ^= word * (offset + current + 1);
+    return h;
+  }
+}
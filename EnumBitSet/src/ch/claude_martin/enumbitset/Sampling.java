@@ -0,0 +1,157 @@
+package ch.claude_martin.enumbitset;
+
+import java.util.SplittableRandom;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+import ch.claude_martin.enumbitset.annotations.DefaultAnnotationForParameters;
+import ch.claude_martin.enumbitset.annotations.NonNull;
+
+/** Random sampling of the bits of a bit vector. This is used by
+ * {@link DomainBitSet#randomSubset(java.util.Random, double)} and the related methods. All methods
+ * work on the words of a set and return the words of the sample, without creating a list of the
+ * candidates.
+ * <p>
+ * The parallel methods split the words into blocks and use one generator per block. The generators
+ * are {@link SplittableRandom#split() split} before the blocks are processed, so the result only
+ * depends on the state of the given generator, not on the scheduling of the threads.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+@DefaultAnnotationForParameters({ NonNull.class })
+final class Sampling {
+  private Sampling() {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Number of words per block of the parallel methods. */
+  static final int BLOCK = 1024;
+
+  static void checkProbability(final double probability) {
+    if (!(probability >= 0d && probability <= 1d))
+      throw new IllegalArgumentException("probability must be in [0, 1]: " + probability);
+  }
+
+  /** Number of elements to skip until the next element is selected, with a probability of
+   * <code>p</code> for each element, where <code>log = log(1 - p)</code>. */
+  private static long skip(final DoubleSupplier uniform, final double log) {
+    final double skip = Math.floor(Math.log(1d - uniform.getAsDouble()) / log);
+    return skip < Long.MAX_VALUE ? (long) skip : Long.MAX_VALUE;
+  }
+
+  /** Selects each bit of <code>words[from..to)</code> with the given probability. Instead of one
+   * random number per bit, this draws the geometrically distributed gaps between selected bits. */
+  static void bernoulli(final long[] words, final int from, final int to,
+      final double probability, final DoubleSupplier uniform, final long[] result) {
+    if (probability == 0d)
+      return;
+    if (probability == 1d) {
+      System.arraycopy(words, from, result, from, to - from);
+      return;
+    }
+    final double log = Math.log1p(-probability);
+    long skip = skip(uniform, log);
+    for (int i = from; i < to; i++) {
+      long w = words[i];
+      int count = Long.bitCount(w);
+      while (skip < count) {
+        long x = w;
+        for (long s = skip; s > 0; s--)
+          x &= x - 1;
+        final long bit = Long.lowestOneBit(x);
+        result[i] |= bit;
+        w &= -bit << 1;
+        count = Long.bitCount(w);
+        skip = skip(uniform, log);
+      }
+      skip -= count;
+    }
+  }
+
+  /** Selects exactly <code>k</code> of the <code>n</code> bits of <code>words[from..to)</code>,
+   * by selection sampling: each bit is selected with the probability
+   * <code>(needed / remaining)</code>. */
+  static void selection(final long[] words, final int from, final int to, final int k,
+      final int n, final IntUnaryOperator nextInt, final long[] result) {
+    int needed = k;
+    int remaining = n;
+    for (int i = from; i < to && needed > 0; i++)
+      for (long w = words[i]; w != 0L && needed > 0; w &= w - 1, remaining--)
+        if (nextInt.applyAsInt(remaining) < needed) {
+          result[i] |= Long.lowestOneBit(w);
+          needed--;
+        }
+  }
+
+  static int bitCount(final long[] words, final int from, final int to) {
+    int count = 0;
+    for (int i = from; i < to; i++)
+      count += Long.bitCount(words[i]);
+    return count;
+  }
+
+  /** The end of block b, exclusive. */
+  private static int end(final long[] words, final int b) {
+    return Math.min(words.length, (b + 1) * BLOCK);
+  }
+
+  private static SplittableRandom[] split(final SplittableRandom rnd, final int blocks) {
+    final SplittableRandom[] result = new SplittableRandom[blocks];
+    for (int b = 0; b < blocks; b++)
+      result[b] = rnd.split();
+    return result;
+  }
+
+  /** Parallel version of {@link #bernoulli(long[], int, int, double, DoubleSupplier, long[])} for
+   * all words. */
+  @NonNull
+  static long[] parallelBernoulli(final long[] words, final double probability,
+      final SplittableRandom rnd) {
+    final long[] result = new long[words.length];
+    final int blocks = (words.length + BLOCK - 1) / BLOCK;
+    final SplittableRandom[] generators = split(rnd, blocks);
+    IntStream.range(0, blocks).parallel().forEach(b -> bernoulli(words, b * BLOCK, end(words, b),
+        probability, generators[b]::nextDouble, result));
+    return result;
+  }
+
+  /** Parallel version of {@link #selection(long[], int, int, int, int, IntUnaryOperator, long[])}
+   * for all words. The number of bits to select from each block is distributed first, so that the
+   * blocks can be processed independently. */
+  @NonNull
+  static long[] parallelSelection(final long[] words, final int k, final SplittableRandom rnd) {
+    final long[] result = new long[words.length];
+    final int blocks = (words.length + BLOCK - 1) / BLOCK;
+    // counts[b] is the number of bits before block b:
+    final int[] counts = new int[blocks + 1];
+    for (int b = 0; b < blocks; b++)
+      counts[b + 1] = counts[b] + bitCount(words, b * BLOCK, end(words, b));
+    if (blocks == 0)
+      return result;
+    final int[] ks = new int[blocks];
+    distribute(counts, 0, blocks, k, rnd, ks);
+    final SplittableRandom[] generators = split(rnd, blocks);
+    IntStream.range(0, blocks).parallel().forEach(b -> selection(words, b * BLOCK, end(words, b),
+        ks[b], counts[b + 1] - counts[b], generators[b]::nextInt, result));
+    return result;
+  }
+
+  /** Distributes <code>k</code> selected bits to the blocks <code>[lo, hi)</code>, by drawing the
+   * number of bits in the lower half from a hypergeometric distribution. */
+  private static void distribute(final int[] counts, final int lo, final int hi, final int k,
+      final SplittableRandom rnd, final int[] ks) {
+    if (hi - lo == 1) {
+      ks[lo] = k;
+      return;
+    }
+    final int mid = (lo + hi) >>> 1;
+    final int lower = counts[mid] - counts[lo];
+    final int total = counts[hi] - counts[lo];
+    int selected = 0;
+    for (int i = 0; i < k; i++)
+      if (rnd.nextInt(total - i) < lower - selected)
+        selected++;
+    distribute(counts, lo, mid, selected, rnd, ks);
+    distribute(counts, mid, hi, k - selected, rnd, ks);
+  }
+}
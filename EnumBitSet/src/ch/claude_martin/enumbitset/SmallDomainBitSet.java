@@ -132,9 +132,9 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
    *          The elements.
    * @return SmallDomainBitSet based on the given domain and set. */
   @NonNull
-  private static <T> SmallDomainBitSet<T> of(final Domain<T> domain, final long set)
+  static <T> SmallDomainBitSet<T> of(final Domain<T> domain, final long set)
       throws MoreThan64ElementsException {
-    return new SmallDomainBitSet<>(domain, set);
+    return DomainBitSetPool.internIfEnabled(new SmallDomainBitSet<>(domain, set));
   }
 
   /** Creates a set with the given domain, containing all given elements.
@@ -231,7 +231,7 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
 
   @Override
   public DomainBitSet<T> complement() {
-    return new SmallDomainBitSet<>(this.domain, this.not(this.set));
+    return of(this.domain, this.not(this.set));
   }
 
   @Override
@@ -243,7 +243,7 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
       final DomainBitSet<T> domBitSet = (DomainBitSet<T>) other;
       if (this.size() != domBitSet.size() || !this.ofEqualDomain(domBitSet))
         return false;
-      if (other instanceof SmallDomainBitSet)
+      if (BitSetUtilities.isWordComparable(other))
         return this.set == domBitSet.toLong();
       else
         return this.containsAll(domBitSet.toSet());
@@ -265,36 +265,125 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
   @Override
   public int hashCode() {
     if (this.hash == 0)
-      this.hash = this.domain.hashCode() ^ this.stream().mapToInt(Object::hashCode).sum();
+      this.hash = this.domain.hashCode() ^ BitSetUtilities.hashCode(this.set);
     return this.hash;
   }
 
   @Override
   public DomainBitSet<T> intersect(final BigInteger mask) {
-    return new SmallDomainBitSet<>(this.domain, this.set & this.checkMask(asLong(mask)));
+    return of(this.domain, this.set & this.checkMask(asLong(mask)));
   }
 
   @Override
   public DomainBitSet<T> intersect(final BitSet s) {
     requireNonNull(s, "s");
-    return new SmallDomainBitSet<>(this.domain, this.set & this.checkMask(asLong(s)));
+    return of(this.domain, this.set & this.checkMask(asLong(s)));
   }
 
   @Override
   public DomainBitSet<T> intersect(final Iterable<T> s) {
     requireNonNull(s, "s");
-    return new SmallDomainBitSet<>(this.domain, this.set & this.itrToLong(s));
+    return of(this.domain, this.set & this.itrToLong(s));
   }
 
   @Override
   public DomainBitSet<T> intersect(final long mask) throws IllegalArgumentException {
-    return new SmallDomainBitSet<>(this.domain, this.set & this.checkMask(mask));
+    return of(this.domain, this.set & this.checkMask(mask));
   }
 
   @Override
   public DomainBitSet<T> intersectVarArgs(@SuppressFBWarnings("unchecked") final T... elements) {
     requireNonNull(elements, "elements");
-    return new SmallDomainBitSet<>(this.domain, this.set & this.arrayToLong(elements));
+    return of(this.domain, this.set & this.arrayToLong(elements));
+  }
+
+  /** The mask of the positions <code>[from, to)</code>. */
+  private long rangeMask(final int from, final int to) throws IndexOutOfBoundsException {
+    if (from < 0 || from > to || to > this.domain.size())
+      throw new IndexOutOfBoundsException("from: " + from + ", to: " + to);
+    return from == to ? 0L : -1L << from & -1L >>> -to;
+  }
+
+  /** Returns a set with all elements of this set and all elements at the positions from
+   * <code>from</code> (inclusive) to <code>to</code> (exclusive).
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @return A new set, or this, if it already contains the range.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain.
+   * @see BitSet#set(int, int) */
+  @NonNull
+  public SmallDomainBitSet<T> unionRange(final int from, final int to)
+      throws IndexOutOfBoundsException {
+    final long mask = this.rangeMask(from, to);
+    return (this.set & mask) == mask ? this : of(this.domain, this.set | mask);
+  }
+
+  /** Returns a set with all elements of this set, except those at the positions from
+   * <code>from</code> (inclusive) to <code>to</code> (exclusive).
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @return A new set, or this, if it contains no element of the range.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain.
+   * @see BitSet#clear(int, int) */
+  @NonNull
+  public SmallDomainBitSet<T> minusRange(final int from, final int to)
+      throws IndexOutOfBoundsException {
+    final long mask = this.rangeMask(from, to);
+    return (this.set & mask) == 0L ? this : of(this.domain, this.set & ~mask);
+  }
+
+  /** Returns a set, where the elements at the positions from <code>from</code> (inclusive) to
+   * <code>to</code> (exclusive) are complemented. All other elements are the same as in this set.
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @return A new set.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain.
+   * @see BitSet#flip(int, int) */
+  @NonNull
+  public SmallDomainBitSet<T> complementRange(final int from, final int to)
+      throws IndexOutOfBoundsException {
+    return of(this.domain, this.set ^ this.rangeMask(from, to));
+  }
+
+  /** Checks whether all elements at the positions from <code>from</code> (inclusive) to
+   * <code>to</code> (exclusive) are in this set.
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @return <code>true</code>, if the range is empty or all its elements are in this set.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain. */
+  public boolean isRangeSet(final int from, final int to) throws IndexOutOfBoundsException {
+    final long mask = this.rangeMask(from, to);
+    return (this.set & mask) == mask;
+  }
+
+  /** Checks whether none of the elements at the positions from <code>from</code> (inclusive) to
+   * <code>to</code> (exclusive) are in this set.
+   * 
+   * @param from
+   *          The first position.
+   * @param to
+   *          The position after the last position.
+   * @return <code>true</code>, if no element of the range is in this set.
+   * @throws IndexOutOfBoundsException
+   *           if the range is not in the domain. */
+  public boolean isRangeClear(final int from, final int to) throws IndexOutOfBoundsException {
+    return (this.set & this.rangeMask(from, to)) == 0L;
   }
 
   @Override
@@ -309,6 +398,8 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
 
   private long itrToLong(final Iterable<T> itr) {
     requireNonNull(itr, "itr");
+    if (itr instanceof DomainBitSet && this.ofEqualDomain((DomainBitSet<T>) itr))
+      return ((DomainBitSet<T>) itr).toLong();
     long result = 0;
     for (final T t : itr) {
       final int index = this.domain.indexOf(t);
@@ -320,28 +411,28 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
 
   @Override
   public DomainBitSet<T> minus(final BigInteger mask) {
-    return new SmallDomainBitSet<>(this.domain, this.set & this.not(asLong(mask)));
+    return of(this.domain, this.set & this.not(asLong(mask)));
   }
 
   @Override
   public DomainBitSet<T> minus(final BitSet s) {
-    return new SmallDomainBitSet<>(this.domain, this.set & this.not(asLong(s)));
+    return of(this.domain, this.set & this.not(asLong(s)));
   }
 
   @Override
   public DomainBitSet<T> minus(final Iterable<T> s) {
-    return new SmallDomainBitSet<>(this.domain, this.set & this.not(this.itrToLong(s)));
+    return of(this.domain, this.set & this.not(this.itrToLong(s)));
   }
 
   @Override
   public DomainBitSet<T> minus(final long mask) throws IllegalArgumentException {
     this.checkMask(mask);
-    return new SmallDomainBitSet<>(this.domain, this.set & this.not(mask));
+    return of(this.domain, this.set & this.not(mask));
   }
 
   @Override
   public DomainBitSet<T> minusVarArgs(@SuppressFBWarnings("unchecked") final T... elements) {
-    return new SmallDomainBitSet<>(this.domain, this.set & this.not(this.arrayToLong(elements)));
+    return of(this.domain, this.set & this.not(this.arrayToLong(elements)));
   }
 
   private long not(final long mask) throws IllegalArgumentException {
@@ -382,6 +473,53 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
     DomainBitSet.super.powerset(consumer, blocking);
   }
 
+  @Override
+  public int nextClearIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    if (from >= 64)
+      return -1;
+    final long clear = ~this.set & this.all & -1L << from;
+    return clear == 0L ? -1 : Long.numberOfTrailingZeros(clear);
+  }
+
+  @Override
+  public int nextSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < 0)
+      throw new IndexOutOfBoundsException("from < 0: " + from);
+    if (from >= 64)
+      return -1;
+    final long w = this.set & -1L << from;
+    return w == 0L ? -1 : Long.numberOfTrailingZeros(w);
+  }
+
+  @Override
+  public int previousSetIndex(final int from) throws IndexOutOfBoundsException {
+    if (from < -1)
+      throw new IndexOutOfBoundsException("from < -1: " + from);
+    if (from < 0)
+      return -1;
+    final long w = from >= 63 ? this.set : this.set & -1L >>> ~from;
+    return w == 0L ? -1 : 63 - Long.numberOfLeadingZeros(w);
+  }
+
+  @Override
+  public int rank(final int bitIndex) throws IndexOutOfBoundsException {
+    if (bitIndex < 0 || bitIndex > this.domain.size())
+      throw new IndexOutOfBoundsException();
+    return bitIndex == 64 ? Long.bitCount(this.set) : Long.bitCount(this.set & ~(-1L << bitIndex));
+  }
+
+  @Override
+  public int select(final int n) throws IndexOutOfBoundsException {
+    if (n < 0 || n >= this.size())
+      throw new IndexOutOfBoundsException();
+    long w = this.set;
+    for (int i = 0; i < n; i++)
+      w &= w - 1;
+    return Long.numberOfTrailingZeros(w);
+  }
+
   @Override
   public int size() {
     return Long.bitCount(this.set);
@@ -408,6 +546,11 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
     return this.set;
   }
 
+  @Override
+  public long[] toLongArray() {
+    return this.domain.isEmpty() ? new long[0] : new long[] { this.set };
+  }
+
   @Override
   public Set<T> toSet() {
     final Set<T> result = new LinkedHashSet<>(this.size());
@@ -435,27 +578,35 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
   @Override
   @NonNull
   public DomainBitSet<T> union(@NonNull final BigInteger mask) {
-    return new SmallDomainBitSet<>(this.domain, this.set | this.checkMask(asLong(mask)));
+    return of(this.domain, this.set | this.checkMask(asLong(mask)));
   }
 
   @Override
   public DomainBitSet<T> union(final BitSet s) {
-    return new SmallDomainBitSet<>(this.domain, this.set | this.checkMask(asLong(s)));
+    return of(this.domain, this.set | this.checkMask(asLong(s)));
   }
 
   @Override
   public DomainBitSet<T> union(final Iterable<T> s) {
-    return new SmallDomainBitSet<>(this.domain, this.set | this.itrToLong(s));
+    return of(this.domain, this.set | this.itrToLong(s));
   }
 
   @Override
   public DomainBitSet<T> union(final long mask) throws IllegalArgumentException {
-    return new SmallDomainBitSet<>(this.domain, this.set | this.checkMask(mask));
+    return of(this.domain, this.set | this.checkMask(mask));
   }
 
   @Override
   public DomainBitSet<T> unionVarArgs(@SuppressFBWarnings("unchecked") final T... elements) {
-    return new SmallDomainBitSet<>(this.domain, this.set | this.arrayToLong(elements));
+    return of(this.domain, this.set | this.arrayToLong(elements));
+  }
+
+  @Override
+  public SmallDomainBitSet<T> xor(final DomainBitSet<T> set) throws IllegalArgumentException {
+    requireNonNull(set, "set");
+    if (!this.ofEqualDomain(set))
+      throw new IllegalArgumentException("The set is of a different domain.");
+    return of(this.domain, this.set ^ set.toLong());
   }
 
   @Override
@@ -476,7 +627,7 @@ public class SmallDomainBitSet<T> implements DomainBitSet<T>, Cloneable {
     }
 
     private Object readResolve() {
-      return new SmallDomainBitSet<>(this.domain, this.set);
+      return of(this.domain, this.set);
     }
   }
 
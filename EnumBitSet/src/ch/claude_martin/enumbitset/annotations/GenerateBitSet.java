@@ -0,0 +1,36 @@
+package ch.claude_martin.enumbitset.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Requests a specialized bit set class for the annotated enum type. The enum type must implement
+ * {@link ch.claude_martin.enumbitset.EnumBitSetHelper EnumBitSetHelper}.
+ * <p>
+ * The class is generated at compile time by the
+ * {@link ch.claude_martin.enumbitset.processor.GenerateBitSetProcessor annotation processor}. It is
+ * final and immutable, backed by a <code>long</code> (up to 64 constants) or a <code>long[]</code>,
+ * and it implements {@link ch.claude_martin.enumbitset.DomainBitSet DomainBitSet}.
+ *
+ * <pre>
+ * <code>
+ * &#64;GenerateBitSet(combinations = { "READ_WRITE=READ,WRITE" })
+ * public enum Permission implements EnumBitSetHelper&lt;Permission&gt; {
+ *   READ, WRITE, EXECUTE, DELETE;
+ * }
+ *
+ * PermissionBitSet p = PermissionBitSet.READ_WRITE.with(Permission.DELETE);
+ * </code>
+ * </pre> */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.CLASS)
+public @interface GenerateBitSet {
+  /** Simple name of the generated class. The default is the name of the enum type followed by
+   * <code>BitSet</code>. */
+  String name() default "";
+
+  /** Named combinations of constants. Each entry has the form <code>NAME=A,B,C</code> and results in
+   * a public constant of the generated type. */
+  String[] combinations() default {};
+}
@@ -0,0 +1,787 @@
+package ch.claude_martin.enumbitset.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic.Kind;
+
+import ch.claude_martin.enumbitset.EnumBitSetHelper;
+import ch.claude_martin.enumbitset.annotations.GenerateBitSet;
+
+/** Annotation processor for {@link GenerateBitSet}.
+ * <p>
+ * For each annotated enum type this generates a final and immutable implementation of
+ * {@link ch.claude_martin.enumbitset.DomainBitSet DomainBitSet}. Up to 64 constants are stored in a
+ * single <code>long</code>, larger enum types use a <code>long[]</code> of fixed length. All masks
+ * are compile time constants and the {@link ch.claude_martin.enumbitset.Domain Domain} is created
+ * from the listed constants, so no reflection is needed at run time.
+ * <p>
+ * The mask of each constant is named like the constant, followed by <code>_MASK</code>. The mask of
+ * all constants is <code>ALL_MASK</code>, unless the enum type has a constant named
+ * <code>ALL</code>. Then it is <code>ALL_ALL_MASK</code> (and so on, if that is taken as well).
+ * <p>
+ * The processor is registered in <code>META-INF/services</code>, so it runs whenever the jar is on
+ * the class path of <code>javac</code>.
+ *
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+public final class GenerateBitSetProcessor extends AbstractProcessor {
+  private static final String DOMAIN_BIT_SET = "ch.claude_martin.enumbitset.DomainBitSet";
+  private static final String DOMAIN         = "ch.claude_martin.enumbitset.Domain";
+  private static final String UTILITIES      = "ch.claude_martin.enumbitset.BitSetUtilities";
+  private static final String MORE_THAN_64   = "ch.claude_martin.enumbitset.MoreThan64ElementsException";
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(GenerateBitSet.class.getName());
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment env) {
+    for (final Element element : env.getElementsAnnotatedWith(GenerateBitSet.class)) {
+      if (element.getKind() != ElementKind.ENUM) {
+        this.error(element, "@GenerateBitSet can only be used on enum types.");
+        continue;
+      }
+      final TypeElement type = (TypeElement) element;
+      if (!this.isEnumBitSetHelper(type)) {
+        this.error(type, "%s must implement EnumBitSetHelper.", type.getSimpleName());
+        continue;
+      }
+      if (type.getModifiers().contains(Modifier.PRIVATE)) {
+        this.error(type, "%s must not be private.", type.getSimpleName());
+        continue;
+      }
+      try {
+        this.generate(type, type.getAnnotation(GenerateBitSet.class));
+      } catch (final IOException e) {
+        this.error(type, "Could not write bit set for %s: %s", type.getSimpleName(), e);
+      }
+    }
+    return true;
+  }
+
+  private void error(final Element element, final String format, final Object... args) {
+    this.processingEnv.getMessager().printMessage(Kind.ERROR, String.format(format, args), element);
+  }
+
+  private boolean isEnumBitSetHelper(final TypeElement type) {
+    final String helper = EnumBitSetHelper.class.getCanonicalName();
+    for (final TypeMirror i : type.getInterfaces())
+      if (i instanceof DeclaredType
+          && ((TypeElement) ((DeclaredType) i).asElement()).getQualifiedName().contentEquals(helper))
+        return true;
+    return false;
+  }
+
+  private void generate(final TypeElement type, final GenerateBitSet annotation) throws IOException {
+    final PackageElement pkg = this.processingEnv.getElementUtils().getPackageOf(type);
+    final String name = annotation.name().isEmpty() ? type.getSimpleName() + "BitSet" : annotation
+        .name();
+    final List<String> constants = new ArrayList<>();
+    for (final Element e : type.getEnclosedElements())
+      if (e.getKind() == ElementKind.ENUM_CONSTANT)
+        constants.add(e.getSimpleName().toString());
+
+    final Map<String, List<String>> combinations = new LinkedHashMap<>();
+    for (final String c : annotation.combinations()) {
+      final int eq = c.indexOf('=');
+      final String key = eq < 0 ? "" : c.substring(0, eq).trim();
+      if (!SourceVersion.isIdentifier(key) || SourceVersion.isKeyword(key)) {
+        this.error(type, "Invalid combination '%s'. Expected: NAME=A,B,C", c);
+        return;
+      }
+      final List<String> members = new ArrayList<>();
+      for (final String m : c.substring(eq + 1).split(","))
+        if (!m.trim().isEmpty())
+          members.add(m.trim());
+      if (!constants.containsAll(members)) {
+        this.error(type, "Combination '%s' contains unknown constants.", c);
+        return;
+      }
+      combinations.put(key, members);
+    }
+
+    // The mask of a constant named ALL is ALL_MASK, so then the mask of all constants is renamed:
+    String allMask = "ALL_MASK";
+    while (constants.contains(allMask.substring(0, allMask.length() - 5)))
+      allMask = "ALL_" + allMask;
+
+    // Names that are used by the generated class:
+    final Set<String> reserved = new HashSet<>();
+    for (final String r : new String[] { "DOMAIN", "NONE", "ALL", allMask, "SIZE", "WORDS",
+        "VALUES" })
+      reserved.add(r);
+    for (final String c : constants)
+      reserved.add(c + "_MASK");
+    for (final String key : combinations.keySet())
+      if (!reserved.add(key)) {
+        this.error(type, "The name %s is already used by the generated class.", key);
+        return;
+      }
+
+    final String qualified = pkg.isUnnamed() ? name : pkg.getQualifiedName() + "." + name;
+    final Source src = new Source();
+    src.var("$N", name);
+    src.var("$E", type.getQualifiedName().toString());
+    src.var("$D", DOMAIN);
+    src.var("$S", DOMAIN_BIT_SET);
+    src.var("$U", UTILITIES);
+    src.var("$X", MORE_THAN_64);
+    src.var("$ALL_MASK", allMask);
+    src.var("$SIZE", Integer.toString(constants.size()));
+    src.var("$W", Integer.toString((constants.size() + 63) / 64));
+    if (constants.size() <= 64)
+      generateSingle(src, pkg, constants, combinations);
+    else
+      generateMulti(src, pkg, constants, combinations);
+    try (Writer w = this.processingEnv.getFiler().createSourceFile(qualified, type).openWriter()) {
+      w.write(src.toString());
+    }
+  }
+
+  /** Simple template engine. Variables start with '$'. */
+  private static final class Source {
+    private final StringBuilder       sb   = new StringBuilder();
+    private final Map<String, String> vars = new HashMap<>();
+
+    void var(final String key, final String value) {
+      this.vars.put(key, value);
+    }
+
+    Source line(final String line) {
+      String result = line;
+      // Longer keys first, so that $SIZE is not replaced by $S.
+      final List<String> keys = new ArrayList<>(this.vars.keySet());
+      keys.sort((a, b) -> b.length() - a.length());
+      for (final String key : keys)
+        result = result.replace(key, this.vars.get(key));
+      this.sb.append(result).append('\n');
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return this.sb.toString();
+    }
+  }
+
+  private static void header(final Source src, final PackageElement pkg, final String backing,
+      final List<String> constants) {
+    if (!pkg.isUnnamed())
+      src.line("package " + pkg.getQualifiedName() + ";");
+    src.line("");
+    src.line("/** Immutable set of {@link $E} constants, backed by " + backing + ".");
+    src.line(" * <p>");
+    src.line(" * Generated by {@link ch.claude_martin.enumbitset.processor.GenerateBitSetProcessor}."
+        + " Do not edit. */");
+    src.line("public final class $N implements $S<$E> {");
+    src.line("  private static final long serialVersionUID = 1L;");
+    src.line("");
+    src.line("  /** Number of constants in {@link $E}. */");
+    src.line("  public static final int SIZE = $SIZE;");
+    src.line("");
+    final StringBuilder values = new StringBuilder();
+    for (final String c : constants)
+      values.append(values.length() == 0 ? "" : ", ").append("$E.").append(c);
+    src.line("  private static final $E[] VALUES = { " + values + " };");
+    src.line("");
+    src.line("  /** The domain, containing all constants of {@link $E}. */");
+    src.line("  public static final $D<$E> DOMAIN = $D.of(VALUES);");
+    src.line("");
+  }
+
+  private static void commonMethods(final Source src) {
+    src.line("  @Override");
+    src.line("  public boolean domainContains(final $E object) {");
+    src.line("    java.util.Objects.requireNonNull(object, \"object\");");
+    src.line("    return true;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  @SuppressWarnings(\"unchecked\")");
+    src.line("  public boolean equals(final Object other) {");
+    src.line("    if (this == other)");
+    src.line("      return true;");
+    src.line("    if (other instanceof $N)");
+    src.line("      return this.equalsSameType(($N) other);");
+    src.line("    if (other instanceof $S)");
+    src.line("      return this.ofEqualDomain(($S<$E>) other)");
+    src.line("          && this.ofEqualElements(($S<$E>) other);");
+    src.line("    return false;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $D<$E> getDomain() {");
+    src.line("    return DOMAIN;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public int hashCode() {");
+    src.line("    return $U.hashCode(this);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N intersect(final Iterable<$E> set) {");
+    src.line("    return this.intersect(copyOf(set));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N minus(final Iterable<$E> set) {");
+    src.line("    return this.minus(copyOf(set));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N union(final Iterable<$E> set) {");
+    src.line("    return this.union(copyOf(set));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public java.util.EnumSet<$E> toSet() {");
+    src.line("    final java.util.EnumSet<$E> result = java.util.EnumSet.noneOf($E.class);");
+    src.line("    this.forEach(result::add);");
+    src.line("    return result;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public String toString() {");
+    src.line("    final java.util.StringJoiner sj = new java.util.StringJoiner(\", \", \"[\", \"]\");");
+    src.line("    for (final $E e : this)");
+    src.line("      sj.add(e.toString());");
+    src.line("    return sj.toString();");
+    src.line("  }");
+  }
+
+  private static void generateSingle(final Source src, final PackageElement pkg,
+      final List<String> constants, final Map<String, List<String>> combinations) {
+    header(src, pkg, "a single <code>long</code>", constants);
+    for (int i = 0; i < constants.size(); i++) {
+      src.line("  /** Mask of {@link $E#" + constants.get(i) + "}. */");
+      src.line("  public static final long " + constants.get(i) + "_MASK = 0x"
+          + Long.toHexString(1L << i) + "L;");
+    }
+    src.line("  /** Mask of all constants. */");
+    final long all = constants.size() == 64 ? -1L : (1L << constants.size()) - 1L;
+    src.line("  public static final long $ALL_MASK = 0x" + Long.toHexString(all) + "L;");
+    src.line("");
+    src.line("  /** The empty set. */");
+    src.line("  public static final $N NONE = new $N(0L);");
+    src.line("  /** The set of all constants. */");
+    src.line("  public static final $N ALL = new $N($ALL_MASK);");
+    for (final Map.Entry<String, List<String>> c : combinations.entrySet()) {
+      final StringBuilder mask = new StringBuilder();
+      for (final String m : c.getValue())
+        mask.append(mask.length() == 0 ? "" : " | ").append(m).append("_MASK");
+      src.line("  /** " + c.getValue() + " */");
+      src.line("  public static final $N " + c.getKey() + " = new $N("
+          + (mask.length() == 0 ? "0L" : mask) + ");");
+    }
+    src.line("");
+    src.line("  private final long mask;");
+    src.line("");
+    src.line("  private $N(final long mask) {");
+    src.line("    this.mask = mask;");
+    src.line("  }");
+    src.line("");
+    src.line("  private static long check(final long mask) {");
+    src.line("    if ((mask & ~$ALL_MASK) != 0L)");
+    src.line("      throw new IllegalArgumentException(");
+    src.line("          \"The parameter contains more elements than the domain allows.\");");
+    src.line("    return mask;");
+    src.line("  }");
+    src.line("");
+    src.line("  /** Returns the set of the given bit mask.");
+    src.line("   * ");
+    src.line("   * @param mask");
+    src.line("   *          A bit mask.");
+    src.line("   * @throws IllegalArgumentException");
+    src.line("   *           if the mask contains bits that are not in the domain.");
+    src.line("   * @return The set of the given mask. */");
+    src.line("  public static $N of(final long mask) {");
+    src.line("    if (mask == 0L)");
+    src.line("      return NONE;");
+    src.line("    if (mask == $ALL_MASK)");
+    src.line("      return ALL;");
+    src.line("    return new $N(check(mask));");
+    src.line("  }");
+    src.line("");
+    src.line("  /** Returns the set of the given constants.");
+    src.line("   * ");
+    src.line("   * @param elements");
+    src.line("   *          The elements of the set.");
+    src.line("   * @return The set of the given elements. */");
+    src.line("  public static $N of(final $E... elements) {");
+    src.line("    long m = 0L;");
+    src.line("    for (final $E e : elements)");
+    src.line("      m |= 1L << e.ordinal();");
+    src.line("    return of(m);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** Returns the set of the given constants.");
+    src.line("   * ");
+    src.line("   * @param elements");
+    src.line("   *          The elements of the set.");
+    src.line("   * @return The set of the given elements. */");
+    src.line("  public static $N copyOf(final Iterable<$E> elements) {");
+    src.line("    if (elements instanceof $N)");
+    src.line("      return ($N) elements;");
+    src.line("    long m = 0L;");
+    src.line("    for (final $E e : elements)");
+    src.line("      m |= 1L << e.ordinal();");
+    src.line("    return of(m);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @return the bit mask of this set. */");
+    src.line("  public long mask() {");
+    src.line("    return this.mask;");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param e an element");
+    src.line("   * @return <code>this &#x222a; {e}</code> */");
+    src.line("  public $N with(final $E e) {");
+    src.line("    return of(this.mask | 1L << e.ordinal());");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param e an element");
+    src.line("   * @return <code>this &#x2216; {e}</code> */");
+    src.line("  public $N without(final $E e) {");
+    src.line("    return of(this.mask & ~(1L << e.ordinal()));");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param set another set");
+    src.line("   * @return <code>this &#x222a; set</code> */");
+    src.line("  public $N union(final $N set) {");
+    src.line("    return of(this.mask | set.mask);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param set another set");
+    src.line("   * @return <code>this &#x2229; set</code> */");
+    src.line("  public $N intersect(final $N set) {");
+    src.line("    return of(this.mask & set.mask);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param set another set");
+    src.line("   * @return <code>this &#x2216; set</code> */");
+    src.line("  public $N minus(final $N set) {");
+    src.line("    return of(this.mask & ~set.mask);");
+    src.line("  }");
+    src.line("");
+    src.line("  private boolean equalsSameType(final $N other) {");
+    src.line("    return this.mask == other.mask;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N clone() {");
+    src.line("    return this;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N complement() {");
+    src.line("    return of(~this.mask & $ALL_MASK);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public boolean contains(final Object o) {");
+    src.line("    if (java.util.Objects.requireNonNull(o) instanceof $E)");
+    src.line("      return (this.mask & 1L << (($E) o).ordinal()) != 0L;");
+    src.line("    return false;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public boolean getBit(final int bitIndex) {");
+    src.line("    if (bitIndex < 0 || bitIndex >= SIZE)");
+    src.line("      throw new IndexOutOfBoundsException();");
+    src.line("    return (this.mask >>> bitIndex & 1L) != 0L;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N intersect(final java.math.BigInteger mask) {");
+    src.line("    return of(this.mask & check($U.asLong(mask)));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N intersect(final java.util.BitSet set) {");
+    src.line("    return of(this.mask & check($U.asLong(set)));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N intersect(final long mask) {");
+    src.line("    return of(this.mask & check(mask));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public boolean isEmpty() {");
+    src.line("    return this.mask == 0L;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public java.util.Iterator<$E> iterator() {");
+    src.line("    return new java.util.Iterator<$E>() {");
+    src.line("      private long next = $N.this.mask;");
+    src.line("");
+    src.line("      @Override");
+    src.line("      public boolean hasNext() {");
+    src.line("        return this.next != 0L;");
+    src.line("      }");
+    src.line("");
+    src.line("      @Override");
+    src.line("      public $E next() {");
+    src.line("        if (this.next == 0L)");
+    src.line("          throw new java.util.NoSuchElementException();");
+    src.line("        final int i = Long.numberOfTrailingZeros(this.next);");
+    src.line("        this.next &= this.next - 1L;");
+    src.line("        return VALUES[i];");
+    src.line("      }");
+    src.line("    };");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N minus(final java.math.BigInteger mask) {");
+    src.line("    return of(this.mask & ~check($U.asLong(mask)));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N minus(final java.util.BitSet set) {");
+    src.line("    return of(this.mask & ~check($U.asLong(set)));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N minus(final long mask) {");
+    src.line("    return of(this.mask & ~check(mask));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public int size() {");
+    src.line("    return Long.bitCount(this.mask);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public java.math.BigInteger toBigInteger() {");
+    src.line("    return $U.asBigInteger(this.mask);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public java.util.BitSet toBitSet() {");
+    src.line("    return java.util.BitSet.valueOf(new long[] { this.mask });");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public long toLong() {");
+    src.line("    return this.mask;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public long[] toLongArray() {");
+    src.line("    return SIZE == 0 ? new long[0] : new long[] { this.mask };");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N union(final java.math.BigInteger mask) {");
+    src.line("    return of(this.mask | check($U.asLong(mask)));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N union(final java.util.BitSet set) {");
+    src.line("    return of(this.mask | check($U.asLong(set)));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N union(final long mask) {");
+    src.line("    return of(this.mask | check(mask));");
+    src.line("  }");
+    src.line("");
+    commonMethods(src);
+    src.line("");
+    src.line("  private Object readResolve() {");
+    src.line("    return of(this.mask);");
+    src.line("  }");
+    src.line("}");
+  }
+
+  private static void generateMulti(final Source src, final PackageElement pkg,
+      final List<String> constants, final Map<String, List<String>> combinations) {
+    header(src, pkg, "a <code>long[]</code> of fixed length", constants);
+    final int size = constants.size();
+    final int last = size % 64;
+    src.line("  /** Number of words used by each set. */");
+    src.line("  public static final int WORDS = $W;");
+    src.line("  private static final long LAST_WORD = 0x"
+        + Long.toHexString(last == 0 ? -1L : (1L << last) - 1L) + "L;");
+    src.line("");
+    src.line("  /** The empty set. */");
+    src.line("  public static final $N NONE = new $N(new long[WORDS]);");
+    src.line("  /** The set of all constants. */");
+    src.line("  public static final $N ALL = NONE.complement();");
+    for (final Map.Entry<String, List<String>> c : combinations.entrySet()) {
+      final StringBuilder args = new StringBuilder();
+      for (final String m : c.getValue())
+        args.append(args.length() == 0 ? "" : ", ").append("$E.").append(m);
+      src.line("  /** " + c.getValue() + " */");
+      src.line("  public static final $N " + c.getKey() + " = of(new $E[] { " + args + " });");
+    }
+    src.line("");
+    src.line("  private final long[] words;");
+    src.line("");
+    src.line("  private $N(final long[] words) {");
+    src.line("    this.words = words;");
+    src.line("  }");
+    src.line("");
+    src.line("  private static long[] check(final java.util.BitSet set) {");
+    src.line("    if (set.length() > SIZE)");
+    src.line("      throw new IllegalArgumentException(");
+    src.line("          \"The parameter contains more elements than the domain allows.\");");
+    src.line("    return java.util.Arrays.copyOf(set.toLongArray(), WORDS);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** Returns the set of the given bit mask.");
+    src.line("   * ");
+    src.line("   * @param words");
+    src.line("   *          A bit mask of exactly {@link #WORDS} words.");
+    src.line("   * @throws IllegalArgumentException");
+    src.line("   *           if the mask contains bits that are not in the domain.");
+    src.line("   * @return The set of the given mask. */");
+    src.line("  public static $N of(final long[] words) {");
+    src.line("    if (words.length != WORDS || (words[WORDS - 1] & ~LAST_WORD) != 0L)");
+    src.line("      throw new IllegalArgumentException(");
+    src.line("          \"The parameter contains more elements than the domain allows.\");");
+    src.line("    return new $N(words.clone());");
+    src.line("  }");
+    src.line("");
+    src.line("  /** Returns the set of the given constants.");
+    src.line("   * ");
+    src.line("   * @param elements");
+    src.line("   *          The elements of the set.");
+    src.line("   * @return The set of the given elements. */");
+    src.line("  public static $N of(final $E... elements) {");
+    src.line("    final long[] w = new long[WORDS];");
+    src.line("    for (final $E e : elements)");
+    src.line("      w[e.ordinal() >>> 6] |= 1L << e.ordinal();");
+    src.line("    return new $N(w);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** Returns the set of the given constants.");
+    src.line("   * ");
+    src.line("   * @param elements");
+    src.line("   *          The elements of the set.");
+    src.line("   * @return The set of the given elements. */");
+    src.line("  public static $N copyOf(final Iterable<$E> elements) {");
+    src.line("    if (elements instanceof $N)");
+    src.line("      return ($N) elements;");
+    src.line("    final long[] w = new long[WORDS];");
+    src.line("    for (final $E e : elements)");
+    src.line("      w[e.ordinal() >>> 6] |= 1L << e.ordinal();");
+    src.line("    return new $N(w);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public long[] toLongArray() {");
+    src.line("    return this.words.clone();");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param e an element");
+    src.line("   * @return <code>this &#x222a; {e}</code> */");
+    src.line("  public $N with(final $E e) {");
+    src.line("    final long[] w = this.words.clone();");
+    src.line("    w[e.ordinal() >>> 6] |= 1L << e.ordinal();");
+    src.line("    return new $N(w);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param e an element");
+    src.line("   * @return <code>this &#x2216; {e}</code> */");
+    src.line("  public $N without(final $E e) {");
+    src.line("    final long[] w = this.words.clone();");
+    src.line("    w[e.ordinal() >>> 6] &= ~(1L << e.ordinal());");
+    src.line("    return new $N(w);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param set another set");
+    src.line("   * @return <code>this &#x222a; set</code> */");
+    src.line("  public $N union(final $N set) {");
+    src.line("    final long[] w = new long[WORDS];");
+    src.line("    for (int i = 0; i < WORDS; i++)");
+    src.line("      w[i] = this.words[i] | set.words[i];");
+    src.line("    return new $N(w);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param set another set");
+    src.line("   * @return <code>this &#x2229; set</code> */");
+    src.line("  public $N intersect(final $N set) {");
+    src.line("    final long[] w = new long[WORDS];");
+    src.line("    for (int i = 0; i < WORDS; i++)");
+    src.line("      w[i] = this.words[i] & set.words[i];");
+    src.line("    return new $N(w);");
+    src.line("  }");
+    src.line("");
+    src.line("  /** @param set another set");
+    src.line("   * @return <code>this &#x2216; set</code> */");
+    src.line("  public $N minus(final $N set) {");
+    src.line("    final long[] w = new long[WORDS];");
+    src.line("    for (int i = 0; i < WORDS; i++)");
+    src.line("      w[i] = this.words[i] & ~set.words[i];");
+    src.line("    return new $N(w);");
+    src.line("  }");
+    src.line("");
+    src.line("  private boolean equalsSameType(final $N other) {");
+    src.line("    return java.util.Arrays.equals(this.words, other.words);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N clone() {");
+    src.line("    return this;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N complement() {");
+    src.line("    final long[] w = new long[WORDS];");
+    src.line("    for (int i = 0; i < WORDS; i++)");
+    src.line("      w[i] = ~this.words[i];");
+    src.line("    w[WORDS - 1] &= LAST_WORD;");
+    src.line("    return new $N(w);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public boolean contains(final Object o) {");
+    src.line("    if (java.util.Objects.requireNonNull(o) instanceof $E) {");
+    src.line("      final int i = (($E) o).ordinal();");
+    src.line("      return (this.words[i >>> 6] & 1L << i) != 0L;");
+    src.line("    }");
+    src.line("    return false;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public boolean getBit(final int bitIndex) {");
+    src.line("    if (bitIndex < 0 || bitIndex >= SIZE)");
+    src.line("      throw new IndexOutOfBoundsException();");
+    src.line("    return (this.words[bitIndex >>> 6] & 1L << bitIndex) != 0L;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N intersect(final java.math.BigInteger mask) {");
+    src.line("    return this.intersect($U.asBitSet(mask));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N intersect(final java.util.BitSet set) {");
+    src.line("    return this.intersect(new $N(check(set)));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N intersect(final long mask) {");
+    src.line("    throw new $X($E.class);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public boolean isEmpty() {");
+    src.line("    for (final long w : this.words)");
+    src.line("      if (w != 0L)");
+    src.line("        return false;");
+    src.line("    return true;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public java.util.Iterator<$E> iterator() {");
+    src.line("    return new java.util.Iterator<$E>() {");
+    src.line("      private int  index = 0;");
+    src.line("      private long next  = $N.this.words[0];");
+    src.line("");
+    src.line("      @Override");
+    src.line("      public boolean hasNext() {");
+    src.line("        while (this.next == 0L && this.index < WORDS - 1)");
+    src.line("          this.next = $N.this.words[++this.index];");
+    src.line("        return this.next != 0L;");
+    src.line("      }");
+    src.line("");
+    src.line("      @Override");
+    src.line("      public $E next() {");
+    src.line("        if (!this.hasNext())");
+    src.line("          throw new java.util.NoSuchElementException();");
+    src.line("        final int i = Long.numberOfTrailingZeros(this.next);");
+    src.line("        this.next &= this.next - 1L;");
+    src.line("        return VALUES[this.index * 64 + i];");
+    src.line("      }");
+    src.line("    };");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N minus(final java.math.BigInteger mask) {");
+    src.line("    return this.minus($U.asBitSet(mask));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N minus(final java.util.BitSet set) {");
+    src.line("    return this.minus(new $N(check(set)));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N minus(final long mask) {");
+    src.line("    throw new $X($E.class);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public int size() {");
+    src.line("    int size = 0;");
+    src.line("    for (final long w : this.words)");
+    src.line("      size += Long.bitCount(w);");
+    src.line("    return size;");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public java.math.BigInteger toBigInteger() {");
+    src.line("    return $U.asBigInteger(this.toBitSet());");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public java.util.BitSet toBitSet() {");
+    src.line("    return java.util.BitSet.valueOf(this.words);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public long toLong() {");
+    src.line("    throw new $X($E.class);");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N union(final java.math.BigInteger mask) {");
+    src.line("    return this.union($U.asBitSet(mask));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N union(final java.util.BitSet set) {");
+    src.line("    return this.union(new $N(check(set)));");
+    src.line("  }");
+    src.line("");
+    src.line("  @Override");
+    src.line("  public $N union(final long mask) {");
+    src.line("    throw new $X($E.class);");
+    src.line("  }");
+    src.line("");
+    commonMethods(src);
+    src.line("");
+    src.line("  private Object readResolve() {");
+    src.line("    return of(this.words);");
+    src.line("  }");
+    src.line("}");
+  }
+}
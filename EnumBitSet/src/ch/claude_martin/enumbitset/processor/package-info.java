@@ -0,0 +1,4 @@
+/** Annotation processing for {@link ch.claude_martin.enumbitset.annotations.GenerateBitSet}.
+ * 
+ * @author <a href="http://claude-martin.ch/enumbitset/">Copyright &copy; 2014 Claude Martin</a> */
+package ch.claude_martin.enumbitset.processor;
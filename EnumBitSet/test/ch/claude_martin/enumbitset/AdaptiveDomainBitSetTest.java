@@ -0,0 +1,258 @@
+package ch.claude_martin.enumbitset;
+
+import static ch.claude_martin.enumbitset.TestUtilities.withPool;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.AdaptiveDomainBitSet.Representation;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class AdaptiveDomainBitSetTest {
+
+  static final int           SIZE   = 100_000;
+  static final List<Integer> domain = IntStream.range(0, SIZE).boxed()
+                                        .collect(Collectors.toList());
+
+  /** Random bit set: sparse, dense or clustered. */
+  private static BitSet random(final Random rnd, final int universe) {
+    final BitSet result = new BitSet();
+    switch (rnd.nextInt(3)) {
+      case 0:
+        for (int i = rnd.nextInt(50); i > 0; i--)
+          result.set(rnd.nextInt(universe));
+        break;
+      case 1:
+        for (int i = 0; i < universe; i++)
+          if (rnd.nextBoolean())
+            result.set(i);
+        break;
+      default:
+        for (int i = rnd.nextInt(5); i > 0; i--) {
+          final int start = rnd.nextInt(universe);
+          result.set(start, Math.min(universe, start + rnd.nextInt(universe / 3)));
+        }
+    }
+    return result;
+  }
+
+  private static Container[] containers(final BitSet set) {
+    final Container bitmap = new BitmapContainer(set.toLongArray());
+    return new Container[] { bitmap.toArrayContainer(), bitmap,
+        bitmap.toArrayContainer().toRunContainer() };
+  }
+
+  private static void check(final BitSet expected, final Container actual) {
+    assertEquals(expected.cardinality(), actual.cardinality());
+    assertEquals(expected, BitSet.valueOf(actual.toWords(Container.words(actual.last() + 1))));
+    assertEquals(expected.length() - 1, actual.last());
+  }
+
+  @Test
+  public void testContainers() {
+    final Random rnd = new Random(42);
+    final int universe = 1000;
+    for (int round = 0; round < 100; round++) {
+      final BitSet a = random(rnd, universe);
+      final BitSet b = random(rnd, universe);
+      final BitSet and = (BitSet) a.clone();
+      and.and(b);
+      final BitSet or = (BitSet) a.clone();
+      or.or(b);
+      final BitSet andNot = (BitSet) a.clone();
+      andNot.andNot(b);
+      final BitSet xor = (BitSet) a.clone();
+      xor.xor(b);
+      // same cardinality, but one index is moved:
+      final BitSet moved = (BitSet) a.clone();
+      if (!a.isEmpty() && a.nextClearBit(0) < universe) {
+        moved.clear(a.length() - 1);
+        moved.set(a.nextClearBit(0));
+      }
+      final BitSet not = (BitSet) a.clone();
+      not.flip(0, universe);
+      for (final Container x : containers(a)) {
+        check(a, x);
+        check(not, x.complement(universe));
+        check(a, x.optimize(universe));
+        assertEquals(BitSetUtilities.hashCode(a.toLongArray()), x.wordsHashCode());
+        for (int i = 0; i < universe; i += 7) {
+          assertEquals(a.get(i), x.contains(i));
+          assertEquals(a.nextSetBit(i), x.nextSetBit(i));
+          assertEquals(a.get(0, i).cardinality(), x.rank(i));
+        }
+        assertEquals(a.cardinality(), x.rank(universe + 100));
+        for (int n = 0; n < a.cardinality(); n += 5)
+          assertEquals(a.stream().skip(n).findFirst().getAsInt(), x.select(n));
+        for (final Container y : containers(b)) {
+          check(and, x.and(y));
+          check(or, x.or(y));
+          check(andNot, x.andNot(y));
+          check(xor, x.xor(y));
+          assertEquals(a.equals(b), x.sameIndices(y));
+        }
+        for (final Container y : containers(a))
+          assertTrue(x.sameIndices(y));
+        for (final Container y : containers(moved))
+          assertEquals(a.equals(moved), x.sameIndices(y));
+      }
+    }
+  }
+
+  @Test
+  public void testRepresentation() {
+    final AdaptiveDomainBitSet<Integer> none = AdaptiveDomainBitSet.noneOf(domain);
+    final AdaptiveDomainBitSet<Integer> five = none.unionVarArgs(1, 10, 100, 1000, 99_999);
+    assertEquals(Representation.SPARSE, five.getRepresentation());
+    assertEquals(5, five.size());
+
+    final AdaptiveDomainBitSet<Integer> runs = AdaptiveDomainBitSet.allOf(domain).minus(five);
+    assertEquals(Representation.RUNS, runs.getRepresentation());
+    assertEquals(SIZE - 5, runs.size());
+    assertEquals(five, runs.complement());
+
+    final BitSet even = new BitSet();
+    for (int i = 0; i < SIZE; i += 2)
+      even.set(i);
+    final AdaptiveDomainBitSet<Integer> dense = AdaptiveDomainBitSet.of(domain, even);
+    assertEquals(Representation.DENSE, dense.getRepresentation());
+    assertEquals(SIZE / 2, dense.size());
+    assertEquals(even, dense.toBitSet());
+
+    assertEquals(Representation.SPARSE, dense.intersect(five).getRepresentation());
+    assertEquals(asList(10, 100, 1000), dense.intersect(five).toSet().stream()
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testOperations() {
+    final AdaptiveDomainBitSet<Integer> a = AdaptiveDomainBitSet.of(domain, 1, 2, 3);
+    final AdaptiveDomainBitSet<Integer> b = AdaptiveDomainBitSet.of(domain, 3, 4);
+    assertEquals(AdaptiveDomainBitSet.of(domain, 1, 2, 3, 4), a.union(b));
+    assertEquals(AdaptiveDomainBitSet.of(domain, 3), a.intersect(b));
+    assertEquals(AdaptiveDomainBitSet.of(domain, 1, 2), a.minus(b));
+    assertEquals(AdaptiveDomainBitSet.of(domain, 1, 2, 4), a.xor(b));
+    assertEquals(a.xor(b), a.xor(GeneralDomainBitSet.of(b.getDomain(), b.toSet())));
+    assertEquals(a, a.union(a.toBigInteger()));
+    assertTrue(a.contains(2));
+    assertFalse(a.contains(4));
+    assertFalse(a.contains("foo"));
+    assertTrue(a.getBit(1));
+    assertEquals("[1, 2, 3]", a.toString());
+    assertSame(a, a.clone());
+    try {
+      a.union(asList(SIZE));
+      fail("element out of domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      a.toLong();
+      fail("toLong() with large domain");
+    } catch (final MoreThan64ElementsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEqualsAndHashCode() throws Exception {
+    final AdaptiveDomainBitSet<Integer> a = AdaptiveDomainBitSet.of(domain, 5, 6, 7, 70_000);
+    final GeneralDomainBitSet<Integer> g = GeneralDomainBitSet.of(a.getDomain(), a.toSet());
+    assertEquals(a, g);
+    assertEquals(g, a);
+    assertEquals(g.hashCode(), a.hashCode());
+    assertArrayEquals(g.toLongArray(), a.toLongArray());
+    final AdaptiveDomainBitSet<Integer> dense = AdaptiveDomainBitSet.of(domain, a.toBitSet());
+    assertEquals(a, dense);
+    assertEquals(a.hashCode(), dense.hashCode());
+
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bas)) {
+      oos.writeObject(a);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(
+        new ByteArrayInputStream(bas.toByteArray()))) {
+      assertEquals(a, ois.readObject());
+    }
+  }
+
+  @Test
+  public void testPoolEnabled() throws Exception {
+    // Equal sets of other classes in the pool must not be returned by the factories:
+    final DefaultDomain<Integer> medium = DefaultDomain.intern(domain.subList(0, 200).toArray(
+        new Integer[0]));
+    final DefaultDomain<Integer> large = DefaultDomain.intern(domain.subList(0, 1_000).toArray(
+        new Integer[0]));
+    final BitSet bits = random(new Random(5), large.size());
+    bits.set(0, 100);
+    withPool(() -> {
+      final MediumDomainBitSet<Integer> m = MediumDomainBitSet.allOf(medium);
+      final CompressedDomainBitSet<Integer> c = CompressedDomainBitSet.of(large, bits);
+      final AdaptiveDomainBitSet<Integer> a = AdaptiveDomainBitSet.allOf(medium);
+      final AdaptiveDomainBitSet<Integer> b = AdaptiveDomainBitSet.of(large, bits);
+      assertEquals(m, a);
+      assertEquals(c, b);
+      assertSame(a, AdaptiveDomainBitSet.allOf(medium));
+      assertSame(b, AdaptiveDomainBitSet.of(large, bits));
+      assertEquals(c.complement(), b.complement());
+
+      // DomainBitSetCodec:
+      for (final DomainBitSet<Integer> set : asList(a, b)) {
+        final ByteBuffer buffer = ByteBuffer.allocate(DomainBitSetCodec.encodedSize(set));
+        DomainBitSetCodec.write(set, buffer);
+        buffer.flip();
+        assertEquals(set, DomainBitSetCodec.read(set.getDomain(), buffer));
+        buffer.rewind();
+        try (ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(buffer
+            .array()))) {
+          assertEquals(set, DomainBitSetCodec.read(set.getDomain(), channel));
+        }
+        // MappedDomainBitSet:
+        buffer.rewind();
+        final DomainBitSet<Integer> view = DomainBitSetCodec.wrap(set.getDomain(), buffer);
+        assertEquals(set.complement(), view.complement());
+        assertEquals(set, view.intersect(set));
+      }
+
+      // BitSetUtilities:
+      assertEquals(b, BitSetUtilities.unionAll(asList(b, c)).get());
+      assertEquals(b, BitSetUtilities.withWords(large, b.toLongArray()));
+      assertEquals(AdaptiveDomainBitSet.class, BitSetUtilities.withWords(large,
+          b.toLongArray()).getClass());
+
+      // DomainBitSetDeltaReader:
+      final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+      try (DomainBitSetDeltaWriter<Integer> writer = new DomainBitSetDeltaWriter<>(large, bas, 2)) {
+        writer.write(b);
+        writer.write(c.minusVarArgs(0));
+        writer.write(b);
+      }
+      try (DomainBitSetDeltaReader<Integer> reader = new DomainBitSetDeltaReader<>(large,
+          new ByteArrayInputStream(bas.toByteArray()))) {
+        assertEquals(b, reader.read());
+        assertEquals(c.minusVarArgs(0), reader.read());
+        assertSame(b, reader.read());
+      }
+    });
+  }
+}
@@ -1,23 +1,32 @@
 package ch.claude_martin.enumbitset;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.math.BigInteger;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 import java.util.TreeMap;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 
 import ch.claude_martin.enumbitset.EnumBitSetTest.Element;
+import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
 import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
 
 @SuppressFBWarnings("static-method")
@@ -140,6 +149,36 @@ public class BitSetUtilitiesTest {
     }
   }
 
+  @Test
+  public void testHashCode() throws Exception {
+    final BitSet bitset = new BitSet();
+    for (int i = 0; i < 200; i += 7) {
+      bitset.set(i);
+      assertEquals(bitset.hashCode(), BitSetUtilities.hashCode(bitset.toLongArray()));
+      // trailing zeros:
+      final long[] padded = Arrays.copyOf(bitset.toLongArray(), 5);
+      assertEquals(bitset.hashCode(), BitSetUtilities.hashCode(padded));
+    }
+    assertEquals(new BitSet().hashCode(), BitSetUtilities.hashCode(0L));
+    assertEquals(BitSetUtilities.hashCode(new long[] { 42L }), BitSetUtilities.hashCode(42L));
+
+    // Equal sets of different implementations (more than 64 elements):
+    final EnumBitSet<Element> e = EnumBitSet.of(Element.H, Element.Fe, Element.R);
+    final GeneralDomainBitSet<Element> g = GeneralDomainBitSet.of(e.getDomain(), e);
+    final DomainBitSet<Element> t = DomainBitSetTest.TestBitSet.of(e.getDomain(), e.toSet());
+    assertArrayEquals(e.toLongArray(), g.toLongArray());
+    assertArrayEquals(e.toLongArray(), t.toLongArray());
+    assertEquals(2, e.toLongArray().length);
+    assertEquals(BitSetUtilities.hashCode(e), e.hashCode());
+    assertEquals(e.hashCode(), g.hashCode());
+    assertEquals(e.hashCode(), t.hashCode());
+    assertEquals(e, g);
+    assertEquals(g, e);
+    assertEquals(e, t);
+    assertEquals(g, t);
+    assertNotEquals(g, e.union(EnumBitSet.of(Element.O)));
+  }
+
   @Test
   public void testToTreeMap() throws Exception {
     {
@@ -269,4 +308,108 @@ public class BitSetUtilitiesTest {
       fail("Pair.toString failed: " + e);
     }
   }
+
+  /** Dense and sparse sets of different implementations. */
+  private static List<DomainBitSet<Integer>> randomSets(final int domainSize, final int count,
+      final Random rnd) {
+    final List<Integer> domain = IntStream.range(0, domainSize).boxed()
+        .collect(Collectors.toList());
+    final DomainBitSet<Integer> none = DomainBitSet.noneOf(domain);
+    final List<DomainBitSet<Integer>> result = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final BitSet bits = new BitSet();
+      for (int j = 0; j < domainSize; j++)
+        if (i % 2 == 0 ? rnd.nextInt(3) > 0 : rnd.nextInt(40) == 0)
+          bits.set(j);
+      switch (i % 6) {
+        case 0:
+          result.add(none.union(bits));
+          break;
+        case 1:
+          result.add(AdaptiveDomainBitSet.of(domain, bits));
+          break;
+        case 2:
+          result.add(CompressedDomainBitSet.of(domain, bits));
+          break;
+        case 3:
+          result.add(PersistentDomainBitSet.of(domain, bits));
+          break;
+        case 4:
+          result.add(OffHeapDomainBitSet.of(domain, bits));
+          break;
+        default:
+          result.add(new MappedDomainBitSet<>(DefaultDomain.of(domain), LongBuffer.wrap(Arrays
+              .copyOf(bits.toLongArray(), Container.words(domainSize)))));
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testBulkOperations() throws Exception {
+    final Random rnd = new Random(42);
+    for (final int domainSize : new int[] { 50, 200, 1000, 70000 })
+      for (final int count : new int[] { 1, 2, 7 }) {
+        final List<DomainBitSet<Integer>> sets = randomSets(domainSize, count, rnd);
+        final BitSet or = new BitSet(), xor = new BitSet();
+        final BitSet and = sets.get(0).toBitSet();
+        final int[] counts = new int[domainSize];
+        for (final DomainBitSet<Integer> s : sets) {
+          final BitSet b = s.toBitSet();
+          or.or(b);
+          and.and(b);
+          xor.xor(b);
+          b.stream().forEach(i -> counts[i]++);
+        }
+        assertEquals(or, BitSetUtilities.unionAll(sets).get().toBitSet());
+        assertEquals(or, BitSetUtilities.unionAll(sets.parallelStream()).get().toBitSet());
+        assertEquals(and, BitSetUtilities.intersectAll(sets).get().toBitSet());
+        assertEquals(and, BitSetUtilities.intersectAll(sets.parallelStream()).get().toBitSet());
+        assertEquals(xor, BitSetUtilities.xorAll(sets).get().toBitSet());
+        assertEquals(xor, BitSetUtilities.xorAll(sets.parallelStream()).get().toBitSet());
+        for (int k = 1; k <= count + 1; k++) {
+          final BitSet atLeast = new BitSet();
+          for (int i = 0; i < domainSize; i++)
+            if (counts[i] >= k)
+              atLeast.set(i);
+          assertEquals(atLeast, BitSetUtilities.countAtLeast(sets, k).get().toBitSet());
+          assertEquals(atLeast, BitSetUtilities.countAtLeast(sets.parallelStream(), k).get()
+              .toBitSet());
+        }
+        assertTrue(sets.get(0).ofEqualDomain(BitSetUtilities.unionAll(sets).get()));
+      }
+
+    assertFalse(BitSetUtilities.unionAll(new ArrayList<DomainBitSet<Integer>>()).isPresent());
+    assertFalse(BitSetUtilities.intersectAll(Stream.<DomainBitSet<Integer>> empty()).isPresent());
+
+    final DomainBitSet<Element> result = BitSetUtilities.unionAll(
+        Arrays.asList(EnumBitSet.just(Element.H), EnumBitSet.just(Element.R))).get();
+    assertTrue(result instanceof EnumBitSet);
+    assertEquals(EnumBitSet.of(Element.H, Element.R), result);
+    final CopyOnWriteEnumBitSet<Element> cow = CopyOnWriteEnumBitSet.of(Element.H, Element.R);
+    assertEquals(EnumBitSet.of(Element.H, Element.Ac), BitSetUtilities.xorAll(Arrays.asList(cow,
+        CopyOnWriteEnumBitSet.of(Element.Ac, Element.R))).get());
+    final MultiEnumBitSet multi = MultiEnumBitSet.noneOf(Element.class, Planet.class);
+    multi.addAll(Arrays.asList(Element.R, Planet.MARS));
+    assertEquals(multi, BitSetUtilities.intersectAll(Arrays.asList(multi, MultiEnumBitSet.allOf(
+        Element.class, Planet.class))).get());
+
+    // The intersection is empty after the second set, so the third is ignored:
+    final List<DomainBitSet<Integer>> sets = randomSets(100, 2, rnd);
+    sets.add(1, sets.get(0).complement());
+    sets.add(DomainBitSet.allOf(1, 2, 3));
+    assertTrue(BitSetUtilities.intersectAll(sets).get().isEmpty());
+    try {
+      BitSetUtilities.unionAll(sets);
+      fail("different domains");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      BitSetUtilities.countAtLeast(sets, 0);
+      fail("k must be positive");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
 }
@@ -0,0 +1,97 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class BitSlicedCounterTest {
+
+  @Test
+  public void testCounts() {
+    final Random rnd = new Random(99);
+    for (final int size : new int[] { 1, 64, 130, 1000 }) {
+      final Domain<Integer> domain = DefaultDomain.of(IntStream.range(0, size).boxed()
+          .collect(Collectors.toList()));
+      for (final int n : new int[] { 0, 1, 3, 4, 17, 50 }) {
+        final List<DomainBitSet<Integer>> sets = new ArrayList<>();
+        final long[] expected = new long[size];
+        for (int s = 0; s < n; s++) {
+          final BitSet bits = new BitSet();
+          for (int i = 0; i < size; i++)
+            if (rnd.nextInt(3) == 0) {
+              bits.set(i);
+              expected[i]++;
+            }
+          sets.add(DomainBitSet.noneOf(domain).union(bits));
+        }
+        final BitSlicedCounter<Integer> bulk = BitSlicedCounter.of(domain, sets);
+        final BitSlicedCounter<Integer> single = new BitSlicedCounter<>(domain);
+        sets.forEach(single::add);
+        final BitSlicedCounter<Integer> merged = BitSlicedCounter.of(domain, sets.subList(0,
+            n / 2));
+        merged.addAll(BitSlicedCounter.of(domain, sets.subList(n / 2, n)));
+
+        for (final BitSlicedCounter<Integer> counter : asList(bulk, single, merged)) {
+          assertEquals(n, counter.getSetCount());
+          assertArrayEquals(expected, counter.counts());
+          for (int i = 0; i < size; i++)
+            assertEquals(expected[i], counter.count(i));
+          for (int k = 0; k <= n + 1; k++) {
+            final BitSet atLeast = new BitSet(), exactly = new BitSet();
+            for (int i = 0; i < size; i++) {
+              if (expected[i] >= k)
+                atLeast.set(i);
+              if (expected[i] == k)
+                exactly.set(i);
+            }
+            assertEquals(atLeast, counter.atLeast(k).toBitSet());
+            assertEquals(exactly, counter.exactly(k).toBitSet());
+          }
+          assertEquals(counter.atLeast(n / 2 + 1), counter.majority());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testElements() {
+    final BitSlicedCounter<Planet> counter = BitSlicedCounter.of(EnumBitSet.allOf(Planet.class)
+        .getDomain(), asList(EnumBitSet.of(Planet.EARTH, Planet.MARS), EnumBitSet.of(Planet.MARS),
+        EnumBitSet.of(Planet.MARS, Planet.VENUS)));
+    counter.addAll(counter);
+    assertEquals(6, counter.getSetCount());
+    assertEquals(6, counter.count(Planet.MARS));
+    assertEquals(2, counter.count(Planet.EARTH));
+    assertEquals(0, counter.count("Pluto"));
+    assertEquals(EnumBitSet.of(Planet.MARS), counter.majority());
+    assertTrue(counter.exactly(2) instanceof EnumBitSet);
+    assertEquals(EnumBitSet.of(Planet.EARTH, Planet.VENUS), counter.exactly(2));
+    try {
+      counter.add(DomainBitSet.allOf(Planet.MARS, Planet.EARTH));
+      fail("different domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      counter.atLeast(-1);
+      fail("negative");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
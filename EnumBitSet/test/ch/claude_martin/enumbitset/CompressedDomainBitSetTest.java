@@ -0,0 +1,228 @@
+package ch.claude_martin.enumbitset;
+
+import static ch.claude_martin.enumbitset.TestUtilities.withPool;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class CompressedDomainBitSetTest {
+
+  static final int           SIZE   = 300_000;
+  static final List<Integer> domain = IntStream.range(0, SIZE).boxed()
+                                        .collect(Collectors.toList());
+
+  /** Random bit set with sparse, dense and clustered chunks. */
+  private static BitSet random(final Random rnd) {
+    final BitSet result = new BitSet();
+    for (int chunk = 0; chunk * CompressedDomainBitSet.CHUNK_SIZE < SIZE; chunk++) {
+      final int from = chunk * CompressedDomainBitSet.CHUNK_SIZE;
+      final int to = Math.min(SIZE, from + CompressedDomainBitSet.CHUNK_SIZE);
+      switch (rnd.nextInt(4)) {
+        case 0:
+          break;
+        case 1:
+          for (int i = rnd.nextInt(100); i > 0; i--)
+            result.set(from + rnd.nextInt(to - from));
+          break;
+        case 2:
+          for (int i = from; i < to; i++)
+            if (rnd.nextBoolean())
+              result.set(i);
+          break;
+        default:
+          final int start = from + rnd.nextInt(to - from);
+          result.set(start, Math.min(to, start + rnd.nextInt(20_000)));
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testOperations() {
+    final Random rnd = new Random(7);
+    for (int round = 0; round < 10; round++) {
+      final BitSet a = random(rnd);
+      final BitSet b = random(rnd);
+      final CompressedDomainBitSet<Integer> x = CompressedDomainBitSet.of(domain, a);
+      final CompressedDomainBitSet<Integer> y = CompressedDomainBitSet.of(domain, b);
+      assertEquals(a, x.toBitSet());
+      assertEquals(a.cardinality(), x.size());
+
+      final BitSet and = (BitSet) a.clone();
+      and.and(b);
+      assertEquals(and, x.intersect(y).toBitSet());
+      final BitSet or = (BitSet) a.clone();
+      or.or(b);
+      assertEquals(or, x.union(y).toBitSet());
+      assertEquals(or, x.union(b).toBitSet());
+      final BitSet andNot = (BitSet) a.clone();
+      andNot.andNot(b);
+      assertEquals(andNot, x.minus(y).toBitSet());
+      final BitSet not = (BitSet) a.clone();
+      not.flip(0, SIZE);
+      assertEquals(not, x.complement().toBitSet());
+      assertEquals(x, x.complement().complement());
+
+      assertEquals(a.hashCode() ^ x.getDomain().hashCode(), x.hashCode());
+      assertArrayEquals(Arrays.copyOf(a.toLongArray(), (SIZE + 63) / 64), x.toLongArray());
+    }
+  }
+
+  @Test
+  public void testRankAndSelect() {
+    final BitSet bits = random(new Random(3));
+    final CompressedDomainBitSet<Integer> set = CompressedDomainBitSet.of(domain, bits);
+    int n = 0;
+    for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1), n++) {
+      assertEquals(n, set.rank(i));
+      assertEquals(i, set.select(n));
+    }
+    assertEquals(set.size(), set.rank(SIZE));
+    assertEquals(0, set.rank(0));
+    for (final int i : new int[] { -1, SIZE + 1 })
+      try {
+        set.rank(i);
+        fail("rank(" + i + ")");
+      } catch (final IndexOutOfBoundsException e) {
+        // expected
+      }
+    try {
+      set.select(set.size());
+      fail("select(size())");
+    } catch (final IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testElements() {
+    final CompressedDomainBitSet<Integer> a;
+    a = CompressedDomainBitSet.of(domain, 1, 70_000, 299_999);
+    assertEquals(3, a.size());
+    assertTrue(a.contains(70_000));
+    assertFalse(a.contains(70_001));
+    assertFalse(a.contains("foo"));
+    assertEquals("[1, 70000, 299999]", a.toString());
+    assertEquals(asList(1, 70_000, 299_999), a.stream().collect(Collectors.toList()));
+    assertEquals(a, a.minusVarArgs(5));
+    assertEquals(CompressedDomainBitSet.of(domain, 70_000), a.intersectVarArgs(70_000, 2));
+    assertSame(a, a.clone());
+    assertEquals(SIZE, CompressedDomainBitSet.allOf(domain).size());
+    assertTrue(CompressedDomainBitSet.noneOf(domain).isEmpty());
+    assertEquals(CompressedDomainBitSet.allOf(domain), CompressedDomainBitSet.noneOf(domain)
+        .complement());
+    try {
+      a.union(asList(SIZE));
+      fail("element out of domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEquals() {
+    final CompressedDomainBitSet<Integer> a = CompressedDomainBitSet.of(domain, 5, 6, 100_000);
+    final GeneralDomainBitSet<Integer> g = GeneralDomainBitSet.of(a.getDomain(), a.toSet());
+    final AdaptiveDomainBitSet<Integer> adaptive = AdaptiveDomainBitSet.of(domain, a.toSet());
+    assertEquals(a, g);
+    assertEquals(g, a);
+    assertEquals(a, adaptive);
+    assertEquals(adaptive, a);
+    assertEquals(g.hashCode(), a.hashCode());
+    assertEquals(adaptive.hashCode(), a.hashCode());
+
+    final List<String> small = asList("a", "b", "c");
+    final CompressedDomainBitSet<String> s = CompressedDomainBitSet.of(small, "a", "c");
+    assertEquals(SmallDomainBitSet.of(small, "a", "c"), s);
+    assertEquals(SmallDomainBitSet.of(small, "a", "c").hashCode(), s.hashCode());
+    assertEquals(0b101L, s.toLong());
+    assertEquals(s, s.union(0b100L));
+  }
+
+  @Test
+  public void testPortableFormat() throws Exception {
+    final BitSet bits = random(new Random(11));
+    final CompressedDomainBitSet<Integer> set = CompressedDomainBitSet.of(domain, bits);
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bas)) {
+      set.writeTo(out);
+    }
+    final byte[] bytes = bas.toByteArray();
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      assertEquals(set, CompressedDomainBitSet.readFrom(set.getDomain(), in));
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      CompressedDomainBitSet.readFrom(DefaultDomain.of(asList(1, 2, 3)), in);
+      fail("different domain");
+    } catch (final IOException e) {
+      // expected
+    }
+    bytes[0]++;
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      CompressedDomainBitSet.readFrom(set.getDomain(), in);
+      fail("corrupt input");
+    } catch (final IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    final BitSet bits = random(new Random(13));
+    final CompressedDomainBitSet<Integer> set = CompressedDomainBitSet.of(domain, bits);
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bas)) {
+      oos.writeObject(set);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(
+        new ByteArrayInputStream(bas.toByteArray()))) {
+      assertEquals(set, ois.readObject());
+    }
+  }
+
+  @Test
+  public void testPoolEnabled() throws Exception {
+    // Equal sets of other classes in the pool must not be returned by the factories:
+    final DefaultDomain<Integer> d = DefaultDomain.intern(domain.subList(0, 250).toArray(
+        new Integer[0]));
+    final BitSet bits = new BitSet();
+    bits.set(3, 70);
+    bits.set(200);
+    withPool(() -> {
+      final MediumDomainBitSet<Integer> m = MediumDomainBitSet.allOf(d);
+      final AdaptiveDomainBitSet<Integer> a = AdaptiveDomainBitSet.of(d, bits);
+      final CompressedDomainBitSet<Integer> all = CompressedDomainBitSet.allOf(d);
+      final CompressedDomainBitSet<Integer> c = CompressedDomainBitSet.of(d, bits);
+      assertEquals(m, all);
+      assertEquals(a, c);
+      assertSame(all, CompressedDomainBitSet.allOf(d));
+      assertSame(c, CompressedDomainBitSet.of(d, bits));
+      assertSame(c, all.intersect(bits));
+      assertSame(all, c.union(c.complement()));
+      assertEquals(CompressedDomainBitSet.class, c.complement().getClass());
+    });
+  }
+}
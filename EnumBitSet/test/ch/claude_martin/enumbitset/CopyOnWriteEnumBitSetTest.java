@@ -0,0 +1,167 @@
+package ch.claude_martin.enumbitset;
+
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Element.Ac;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Element.Ba;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Element.Pr;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Element.Zr;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Planet.EARTH;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Planet.MARS;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Planet.MERCURY;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Planet.VENUS;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.EnumBitSetTest.Alphabet;
+import ch.claude_martin.enumbitset.EnumBitSetTest.Element;
+import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class CopyOnWriteEnumBitSetTest {
+
+  @Test
+  public void testMutation() {
+    final CopyOnWriteEnumBitSet<Planet> set = CopyOnWriteEnumBitSet.noneOf(Planet.class);
+    assertTrue(set.isEmpty());
+    assertTrue(set.add(EARTH));
+    assertFalse(set.add(EARTH));
+    assertTrue(set.addAll(asList(MARS, VENUS)));
+    assertEquals(EnumSet.of(VENUS, EARTH, MARS), set.toSet());
+    assertTrue(set.remove(VENUS));
+    assertFalse(set.remove(VENUS));
+    assertFalse(set.remove("foo"));
+    assertTrue(set.retainAll(asList(EARTH, MERCURY)));
+    assertEquals(EnumSet.of(EARTH), set.toEnumSet());
+    assertTrue(set.removeAll(asList(EARTH)));
+    assertTrue(set.isEmpty());
+    assertEquals(Planet.values().length, CopyOnWriteEnumBitSet.allOf(Planet.class).size());
+
+    final CopyOnWriteEnumBitSet<Element> elements = CopyOnWriteEnumBitSet.of(Ac, Ba, Pr);
+    assertTrue(elements.add(Zr));
+    assertTrue(elements.contains(Ac));
+    assertTrue(elements.getBit(Ac.ordinal()));
+    assertEquals(EnumBitSet.of(Ac, Ba, Pr, Zr), elements);
+    assertEquals(elements, EnumBitSet.of(Ac, Ba, Pr, Zr));
+    assertEquals(EnumBitSet.of(Ac, Ba, Pr, Zr).hashCode(), elements.hashCode());
+    assertEquals(EnumBitSet.of(Ac, Ba, Pr, Zr).toString(), elements.toString());
+    assertEquals(Ba.ordinal(), elements.nextSetIndex(Zr.ordinal() + 1));
+
+    final CopyOnWriteEnumBitSet<Alphabet> letters = CopyOnWriteEnumBitSet.allOf(Alphabet.class);
+    assertTrue(letters.contains(Alphabet.A));
+    assertEquals(EnumBitSet.allOf(Alphabet.class), letters);
+  }
+
+  @Test
+  public void testOperations() {
+    final CopyOnWriteEnumBitSet<Element> a = CopyOnWriteEnumBitSet.of(Ac, Ba, Pr);
+    final EnumBitSet<Element> b = EnumBitSet.of(Ba, Zr);
+    assertEquals(EnumBitSet.of(Ac, Ba, Pr, Zr), a.union(b));
+    assertEquals(EnumBitSet.of(Ba), a.intersect(b));
+    assertEquals(EnumBitSet.of(Ac, Pr), a.minus(b));
+    assertEquals(EnumBitSet.of(Ac, Pr, Zr), a.xor(b));
+    assertEquals(EnumBitSet.of(Ac, Pr, Zr), a.xor(CopyOnWriteEnumBitSet.copyOf(b)));
+    assertEquals(b, a.union(b.toBitSet()).minus(a.minus(b.toBigInteger())));
+    assertEquals(a.toEnumBitSet().complement(), a.complement());
+    assertEquals(CopyOnWriteEnumBitSet.class, a.union(b).getClass());
+    assertEquals(EnumBitSet.of(Ac, Ba, Pr), a);
+
+    final CopyOnWriteEnumBitSet<Planet> p = CopyOnWriteEnumBitSet.of(MERCURY, EARTH);
+    assertEquals(0b101L, p.toLong());
+    assertEquals(EnumBitSet.of(EARTH), p.intersect(0b100L));
+    assertEquals(EnumBitSet.of(MERCURY, VENUS, EARTH), p.union(0b10L));
+    try {
+      p.union(1L << 8);
+      fail("mask out of domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      a.toLong();
+      fail("toLong() with large domain");
+    } catch (final MoreThan64ElementsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSnapshots() throws Exception {
+    final CopyOnWriteEnumBitSet<Planet> set = CopyOnWriteEnumBitSet.of(MERCURY, VENUS, EARTH);
+    final CopyOnWriteEnumBitSet<Planet> clone = set.clone();
+    assertNotSame(set, clone);
+    final Iterator<Planet> itr = set.iterator();
+    assertEquals(MERCURY, itr.next());
+    set.clear();
+    set.add(MARS);
+    assertEquals(VENUS, itr.next());
+    assertEquals(EARTH, itr.next());
+    assertFalse(itr.hasNext());
+    assertEquals(EnumSet.of(MARS), set.toSet());
+    assertEquals(EnumSet.of(MERCURY, VENUS, EARTH), clone.toSet());
+
+    assertTrue(clone.removeIf(p -> p.ordinal() % 2 == 0));
+    assertFalse(clone.removeIf(p -> p == MERCURY));
+    assertEquals(EnumSet.of(VENUS), clone.toSet());
+    assertEquals(EnumSet.of(MARS), set.toSet());
+
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bas)) {
+      oos.writeObject(clone);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(
+        new ByteArrayInputStream(bas.toByteArray()))) {
+      assertEquals(clone, ois.readObject());
+    }
+  }
+
+  @Test
+  public void testConcurrentWrites() throws Exception {
+    final CopyOnWriteEnumBitSet<Element> set = CopyOnWriteEnumBitSet.noneOf(Element.class);
+    final Element[] values = Element.values();
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      final int offset = t;
+      threads.add(new Thread(() -> {
+        for (int i = offset; i < values.length; i += 4)
+          set.add(values[i]);
+      }));
+      threads.add(new Thread(() -> {
+        try {
+          for (int i = 0; i < 1_000; i++) {
+            // each snapshot is consistent:
+            int size = 0;
+            for (final Iterator<Element> itr = set.iterator(); itr.hasNext(); itr.next())
+              size++;
+            assertTrue(size <= values.length);
+            set.stream().forEach(e -> assertTrue(e.getDeclaringClass() == Element.class));
+          }
+        } catch (final Throwable e) {
+          error.set(e);
+        }
+      }));
+    }
+    for (final Thread t : threads)
+      t.start();
+    for (final Thread t : threads)
+      t.join();
+    assertEquals(null, error.get());
+    assertEquals(values.length, set.size());
+    assertEquals(EnumBitSet.allOf(Element.class), set);
+  }
+}
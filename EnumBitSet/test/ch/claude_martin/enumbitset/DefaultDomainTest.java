@@ -4,16 +4,24 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.InvalidObjectException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
+import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
 import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
 
 @SuppressFBWarnings("static-method")
@@ -111,6 +119,82 @@ public class DefaultDomainTest {
     assertEquals(-1, domain123.indexOf(null));
   }
 
+  @Test
+  public final void testIntern() throws Exception {
+    final Planet[] planets = Planet.values();
+    final DefaultDomain<Planet> domain = DefaultDomain.intern(planets);
+    assertSame(domain, DefaultDomain.intern(planets.clone()));
+
+    // The same enum type, loaded by another class loader, has an equal fingerprint:
+    try (URLClassLoader loader = new URLClassLoader(new URL[] {
+        Planet.class.getProtectionDomain().getCodeSource().getLocation(),
+        Domain.class.getProtectionDomain().getCodeSource().getLocation() }, null)) {
+      final Class<?> type = Class.forName(Planet.class.getName(), true, loader);
+      assertNotSame(Planet.class, type);
+      final Object[] other = type.getEnumConstants();
+      assertEquals(DomainFingerprint.of(asList(planets)), DomainFingerprint.of(asList(other)));
+      final DefaultDomain<Object> domain2 = DefaultDomain.intern(other);
+      assertNotSame(domain, domain2);
+      assertFalse(domain.equals(domain2));
+      assertFalse(domain2.equals(domain));
+      assertFalse(EnumDomain.of(Planet.class).equals(domain2));
+      assertFalse(domain2.equals(EnumDomain.of(Planet.class)));
+      assertEquals(0, domain2.indexOf(other[0]));
+      assertEquals(-1, domain2.indexOf(planets[0]));
+      assertSame(domain2, DefaultDomain.intern(other.clone()));
+    }
+  }
+
+  @Test
+  public final void testRegister() throws Exception {
+    final List<String> elements = IntStream.range(0, 200).mapToObj(i -> "element" + i)
+        .collect(Collectors.toList());
+    final DomainBitSet<String> small = SmallDomainBitSet.of(elements.subList(0, 60), asList(
+        "element1", "element7"));
+    final DomainBitSet<String> general = GeneralDomainBitSet.of(elements, asList("element3"));
+    // Each set is written to its own stream:
+    final byte[] smallFull = TestUtilities.serialize(small);
+    final byte[] generalFull = TestUtilities.serialize(general);
+
+    final Domain<String> domain = Domain.register(elements);
+    final Domain<String> domain60 = Domain.register(elements.subList(0, 60));
+    try {
+      assertSame(domain, Domain.register(new ArrayList<>(elements)));
+      final byte[] smallRef = TestUtilities.serialize(small);
+      final byte[] generalRef = TestUtilities.serialize(general);
+      assertTrue(smallRef.length * 2 < smallFull.length);
+      assertTrue(generalRef.length * 5 < generalFull.length);
+      final DomainBitSet<?> small2 = (DomainBitSet<?>) TestUtilities.deserialize(smallRef);
+      final DomainBitSet<?> general2 = (DomainBitSet<?>) TestUtilities.deserialize(generalRef);
+      assertEquals(small, small2);
+      assertEquals(general, general2);
+      assertSame(domain60, small2.getDomain());
+      assertSame(domain, general2.getDomain());
+      // The full table is resolved to the registered domain:
+      assertSame(domain, ((DomainBitSet<?>) TestUtilities.deserialize(generalFull)).getDomain());
+
+      try {
+        Domain.register(asList(new Object()));
+        fail("unstable fingerprint");
+      } catch (final IllegalArgumentException e) {
+        // expected
+      }
+
+      assertTrue(Domain.unregister(domain60));
+      assertFalse(Domain.unregister(domain60));
+      try {
+        TestUtilities.deserialize(smallRef);
+        fail("domain not registered");
+      } catch (final InvalidObjectException e) {
+        // expected
+      }
+      assertEquals(small, TestUtilities.deserialize(TestUtilities.serialize(small)));
+    } finally {
+      Domain.unregister(domain);
+      Domain.unregister(domain60);
+    }
+  }
+
   @Test
   public final void testOf() {
     assertSame(domainABC, DefaultDomain.of(GeneralDomainBitSet.of(domainABC, domainABC)));
@@ -0,0 +1,193 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.DomainBitSetCodec.Encoding;
+import ch.claude_martin.enumbitset.EnumBitSetTest.Element;
+import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class DomainBitSetCodecTest {
+
+  static final Domain<Integer> domain = DefaultDomain.of(IntStream.range(0, 1000).boxed()
+                                          .collect(Collectors.toList()));
+
+  private static DomainBitSet<Integer> random(final Random rnd, final int oneIn) {
+    final BitSet bits = new BitSet();
+    for (int i = 0; i < domain.size(); i++)
+      if (rnd.nextInt(oneIn) == 0)
+        bits.set(i);
+    return AdaptiveDomainBitSet.of(domain, bits);
+  }
+
+  private static List<DomainBitSet<Integer>> sets() {
+    final Random rnd = new Random(3);
+    final List<DomainBitSet<Integer>> result = new ArrayList<>();
+    result.add(DomainBitSet.noneOf(domain));
+    result.add(DomainBitSet.allOf(domain));
+    result.add(AdaptiveDomainBitSet.of(domain, 0, 999));
+    for (int i = 0; i < 10; i++) {
+      result.add(random(rnd, 2));
+      result.add(random(rnd, 50));
+      final BitSet bits = new BitSet();
+      for (int j = 0; j < 5; j++) {
+        final int from = rnd.nextInt(domain.size());
+        bits.set(from, Math.min(domain.size(), from + rnd.nextInt(200)));
+      }
+      result.add(AdaptiveDomainBitSet.of(domain, bits));
+    }
+    return result;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    for (final DomainBitSet<Integer> set : sets()) {
+      final int size = DomainBitSetCodec.encodedSize(set);
+      final ByteBuffer buffer = ByteBuffer.allocate(size + 3);
+      buffer.put((byte) 42);
+      DomainBitSetCodec.write(set, buffer);
+      assertEquals(size + 1, buffer.position());
+      buffer.flip().position(1);
+      final DomainBitSet<Integer> read = DomainBitSetCodec.read(domain, buffer);
+      assertEquals(size + 1, buffer.position());
+      assertEquals(set, read);
+      assertEquals(set.hashCode(), read.hashCode());
+
+      buffer.position(1);
+      final DomainBitSet<Integer> view = DomainBitSetCodec.wrap(domain, buffer);
+      assertEquals(set, view);
+      assertEquals(set.toBitSet(), view.toBitSet());
+
+      final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+      DomainBitSetCodec.write(set, Channels.newChannel(bas));
+      assertEquals(size, bas.size());
+      assertEquals(set, DomainBitSetCodec.read(domain,
+          Channels.newChannel(new ByteArrayInputStream(bas.toByteArray()))));
+    }
+  }
+
+  @Test
+  public void testEncoding() {
+    final Random rnd = new Random(7);
+    final DomainBitSet<Integer> dense = random(rnd, 2);
+    assertEquals(Encoding.WORDS, DomainBitSetCodec.encodingOf(dense));
+    final DomainBitSet<Integer> sparse = random(rnd, 100);
+    assertEquals(Encoding.INDICES, DomainBitSetCodec.encodingOf(sparse));
+    assertTrue(DomainBitSetCodec.encodedSize(sparse) < 3 * sparse.size());
+    final DomainBitSet<Integer> runs = AdaptiveDomainBitSet.of(domain, IntStream.range(100, 900)
+        .boxed().collect(Collectors.toList()));
+    assertEquals(Encoding.RUNS, DomainBitSetCodec.encodingOf(runs));
+    assertEquals(8, DomainBitSetCodec.encodedSize(runs));
+    assertEquals(Encoding.WORDS, DomainBitSetCodec.encodingOf(DomainBitSet.noneOf(domain)));
+    assertEquals(5, DomainBitSetCodec.encodedSize(DomainBitSet.noneOf(domain)));
+
+    for (final DomainBitSet<?> set : asList(EnumBitSet.allOf(Element.class),
+        EnumBitSet.of(Element.Na, Element.Ca), SmallDomainBitSet.of(asList(Planet.values()),
+            Planet.EARTH))) {
+      final ByteBuffer buffer = ByteBuffer.allocate(DomainBitSetCodec.encodedSize(set));
+      DomainBitSetCodec.write(set, buffer);
+      assertFalse(buffer.hasRemaining());
+    }
+  }
+
+  @Test
+  public void testZeroCopy() throws IOException {
+    final DomainBitSet<Integer> set = random(new Random(11), 3);
+    for (final ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(200),
+        ByteBuffer.allocateDirect(200) }) {
+      DomainBitSetCodec.write(set, buffer);
+      final int end = buffer.position();
+      buffer.flip();
+      final DomainBitSet<Integer> view = DomainBitSetCodec.wrap(domain, buffer);
+      assertEquals(end, buffer.position());
+      assertEquals(set, view);
+      final int first = end - 8 * 16;
+      buffer.put(first, (byte) (buffer.get(first) ^ 1));
+      assertEquals(!set.getBit(0), view.getBit(0));
+      assertEquals(set.size(), view.size() + (set.getBit(0) ? 1 : -1));
+    }
+  }
+
+  @Test
+  public void testInvalid() throws IOException {
+    final DomainBitSet<Integer> set = AdaptiveDomainBitSet.of(domain, 5, 500);
+    try {
+      DomainBitSetCodec.write(set, ByteBuffer.allocate(2));
+      fail("buffer too small");
+    } catch (final BufferOverflowException e) {
+      // expected
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(DomainBitSetCodec.encodedSize(set));
+    DomainBitSetCodec.write(set, buffer);
+    buffer.flip();
+    try {
+      DomainBitSetCodec.read(Domain.of(1, 2, 3), buffer.duplicate());
+      fail("different domain");
+    } catch (final StreamCorruptedException e) {
+      // expected
+    }
+    try {
+      DomainBitSetCodec.read(domain, (ByteBuffer) buffer.duplicate().limit(buffer.limit() - 1));
+      fail("too short");
+    } catch (final EOFException e) {
+      // expected
+    }
+    try {
+      DomainBitSetCodec.read(domain, Channels.newChannel(new ByteArrayInputStream(new byte[2])));
+      fail("too short");
+    } catch (final EOFException e) {
+      // expected
+    }
+    buffer.put(buffer.limit() - 1, (byte) 0x7F);
+    try {
+      DomainBitSetCodec.read(domain, buffer.duplicate());
+      fail("not in domain");
+    } catch (final StreamCorruptedException e) {
+      // expected
+    }
+    buffer.put(0, (byte) 7);
+    try {
+      DomainBitSetCodec.read(domain, buffer.duplicate());
+      fail("unknown encoding");
+    } catch (final StreamCorruptedException e) {
+      // expected
+    }
+
+    // The header is checked before the payload is allocated:
+    for (final int size : new int[] { domain.size(), domain.size() + 1 }) {
+      final ByteBuffer header = ByteBuffer.allocate(11);
+      header.put((byte) Encoding.WORDS.ordinal());
+      DomainBitSetCodec.putVarint(header, size);
+      DomainBitSetCodec.putVarint(header, Integer.MAX_VALUE);
+      try {
+        DomainBitSetCodec.read(domain, Channels.newChannel(new ByteArrayInputStream(header
+            .array(), 0, header.position())));
+        fail("payload too large");
+      } catch (final StreamCorruptedException e) {
+        // expected
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package ch.claude_martin.enumbitset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class DomainBitSetColumnTest {
+
+  private static <T> List<DomainBitSet<T>> randomSets(final Domain<T> domain, final int count) {
+    final Random rnd = new Random(count);
+    final List<DomainBitSet<T>> result = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      final BitSet bits = new BitSet();
+      for (int j = 0; j < domain.size(); j++)
+        if (rnd.nextInt(3) == 0)
+          bits.set(j);
+      result.add(AdaptiveDomainBitSet.of(domain, bits));
+    }
+    return result;
+  }
+
+  private static <T> void check(final Domain<T> domain, final List<DomainBitSet<T>> masks) {
+    final List<DomainBitSet<T>> sets = randomSets(domain, 200);
+    final DomainBitSetColumn<T> column = new DomainBitSetColumn<>(domain, 10);
+    for (final DomainBitSet<T> set : sets)
+      assertEquals(column.size(), column.add(set));
+    assertEquals(sets.size(), column.size());
+    for (final DomainBitSet<T> mask : masks) {
+      final BitSet all = column.rowsContainingAll(mask);
+      final BitSet any = column.rowsIntersecting(mask);
+      for (int r = 0; r < sets.size(); r++) {
+        assertEquals(sets.get(r).containsAll(mask.toSet()), all.get(r));
+        assertEquals(!sets.get(r).intersect((Iterable<T>) mask).isEmpty(), any.get(r));
+      }
+    }
+    final DomainBitSetColumn<T>.Cursor cursor = column.cursor();
+    for (int r = 0; r < sets.size(); r++) {
+      final DomainBitSet<T> set = sets.get(r);
+      assertEquals(set, column.get(r));
+      cursor.moveTo(r);
+      assertEquals(r, cursor.getRow());
+      assertEquals(set.size(), cursor.size());
+      for (final T e : domain)
+        assertEquals(set.contains(e), cursor.contains(e));
+      int i = cursor.nextSetBit(0);
+      for (final T e : set) {
+        assertEquals(domain.indexOf(e), i);
+        i = cursor.nextSetBit(i + 1);
+      }
+      assertEquals(-1, i);
+    }
+  }
+
+  @Test
+  public void testFilters() {
+    final Domain<Planet> small = EnumDomain.of(Planet.class);
+    final List<DomainBitSet<Planet>> smallMasks = new ArrayList<>();
+    smallMasks.add(DomainBitSet.noneOf(small));
+    smallMasks.add(EnumBitSet.of(Planet.EARTH));
+    smallMasks.add(EnumBitSet.of(Planet.MARS, Planet.VENUS));
+    smallMasks.add(DomainBitSet.allOf(small));
+    check(small, smallMasks);
+
+    final Domain<Integer> large = DefaultDomain.of(IntStream.range(0, 150).boxed()
+        .collect(Collectors.toList()));
+    final List<DomainBitSet<Integer>> largeMasks = randomSets(large, 5);
+    largeMasks.add(DomainBitSet.noneOf(large));
+    largeMasks.add(DomainBitSet.noneOf(large).union(DomainBitSet.allOf(3, 140)));
+    check(large, largeMasks);
+  }
+
+  @Test
+  public void testModify() {
+    final Domain<Planet> domain = EnumDomain.of(Planet.class);
+    final DomainBitSetColumn<Planet> column = new DomainBitSetColumn<>(domain, 0);
+    column.add(EnumBitSet.of(Planet.EARTH));
+    column.add(EnumBitSet.noneOf(Planet.class));
+    column.setBit(1, Planet.MARS.ordinal(), true);
+    column.set(0, EnumBitSet.of(Planet.VENUS));
+    column.setBit(0, Planet.VENUS.ordinal(), false);
+    column.trimToSize();
+    assertEquals(EnumBitSet.noneOf(Planet.class), column.get(0));
+    assertEquals(EnumBitSet.of(Planet.MARS), column.get(1));
+    final DomainBitSetColumn<Planet>.Cursor cursor = column.cursor();
+    assertTrue(cursor.moveTo(1).getBit(Planet.MARS.ordinal()));
+    assertFalse(cursor.contains("MARS"));
+    try {
+      cursor.moveTo(2);
+      fail("no such row");
+    } catch (final IndexOutOfBoundsException e) {
+      // expected
+    }
+    final DomainBitSetColumn<Integer> numbers = new DomainBitSetColumn<>(DefaultDomain.of(Arrays
+        .asList(1, 2, 3)), 1);
+    try {
+      numbers.add(DomainBitSet.allOf(1, 2, 3, 4));
+      fail("different domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package ch.claude_martin.enumbitset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.DomainBitSetDeltaReader.KeyframeIndex;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class DomainBitSetDeltaWriterTest {
+
+  static final Domain<Integer> domain = DefaultDomain.of(IntStream.range(0, 700).boxed()
+                                          .collect(Collectors.toList()));
+
+  /** Random walk: each set differs from the previous one in a few positions. */
+  private static List<DomainBitSet<Integer>> sequence(final int length) {
+    final Random rnd = new Random(23);
+    final BitSet bits = new BitSet();
+    for (int i = 0; i < domain.size(); i++)
+      if (rnd.nextBoolean())
+        bits.set(i);
+    final List<DomainBitSet<Integer>> result = new ArrayList<>();
+    for (int i = 0; i < length; i++) {
+      for (int j = rnd.nextInt(5); j > 0; j--)
+        bits.flip(rnd.nextInt(domain.size()));
+      result.add(AdaptiveDomainBitSet.of(domain, bits));
+    }
+    return result;
+  }
+
+  private static byte[] write(final List<DomainBitSet<Integer>> sets, final int interval,
+      final long[][] keyframes) throws IOException {
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (DomainBitSetDeltaWriter<Integer> writer = new DomainBitSetDeltaWriter<>(domain, bas,
+        interval)) {
+      for (final DomainBitSet<Integer> set : sets)
+        writer.write(set);
+      assertEquals(sets.size(), writer.getFrameCount());
+      assertEquals(bas.size(), writer.getPosition());
+      keyframes[0] = writer.getKeyframeOffsets();
+    }
+    return bas.toByteArray();
+  }
+
+  @Test
+  public void testReplay() throws IOException {
+    final List<DomainBitSet<Integer>> sets = sequence(100);
+    final long[][] keyframes = new long[1][];
+    final byte[] bytes = write(sets, 32, keyframes);
+    assertEquals(4, keyframes[0].length);
+    assertEquals(0L, keyframes[0][0]);
+    // Full masks would need at least 88 bytes per set:
+    assertTrue(bytes.length < 100 * 88 / 5);
+
+    try (DomainBitSetDeltaReader<Integer> reader = new DomainBitSetDeltaReader<>(domain,
+        new BufferedInputStream(new ByteArrayInputStream(bytes)))) {
+      for (final DomainBitSet<Integer> set : sets)
+        assertEquals(set, reader.read());
+      assertNull(reader.read());
+      assertEquals(sets.size(), reader.getFrameCount());
+    }
+
+    for (int k = 0; k < keyframes[0].length; k++)
+      try (DomainBitSetDeltaReader<Integer> reader = DomainBitSetDeltaReader.fromKeyframe(domain,
+          new ByteArrayInputStream(bytes), keyframes[0][k])) {
+        for (int i = 32 * k; i < sets.size(); i++)
+          assertArrayEquals(sets.get(i).toLongArray(), reader.readWords());
+        assertNull(reader.readWords());
+      }
+  }
+
+  @Test
+  public void testKeyframesOnly() throws IOException {
+    final List<DomainBitSet<Integer>> sets = sequence(5);
+    sets.add(DomainBitSet.noneOf(domain));
+    sets.add(DomainBitSet.allOf(domain));
+    final long[][] keyframes = new long[1][];
+    final byte[] bytes = write(sets, 1, keyframes);
+    assertEquals(sets.size(), keyframes[0].length);
+    try (DomainBitSetDeltaReader<Integer> reader = DomainBitSetDeltaReader.fromKeyframe(domain,
+        new ByteArrayInputStream(bytes), keyframes[0][5])) {
+      assertEquals(DomainBitSet.noneOf(domain), reader.read());
+      assertEquals(DomainBitSet.allOf(domain), reader.read());
+      assertNull(reader.read());
+    }
+  }
+
+  @Test
+  public void testInvalid() throws IOException {
+    try (DomainBitSetDeltaWriter<Integer> writer = new DomainBitSetDeltaWriter<>(domain,
+        new ByteArrayOutputStream(), 0)) {
+      fail("interval must be positive");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+    try (DomainBitSetDeltaWriter<Integer> writer = new DomainBitSetDeltaWriter<>(domain,
+        new ByteArrayOutputStream(), 10)) {
+      writer.write(DomainBitSet.allOf(1, 2, 3));
+      fail("different domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+    final List<DomainBitSet<Integer>> sets = sequence(3);
+    final byte[] bytes = write(sets, 10, new long[1][]);
+    final int second = DomainBitSetCodec.encodedSize(sets.get(0)) + 1;
+    try (DomainBitSetDeltaReader<Integer> reader = DomainBitSetDeltaReader.fromKeyframe(domain,
+        new ByteArrayInputStream(bytes), second)) {
+      reader.read();
+      fail("no keyframe");
+    } catch (final StreamCorruptedException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testIndex() throws IOException {
+    final List<DomainBitSet<Integer>> sets = sequence(100);
+    final Path file = Files.createTempFile("delta", ".bin");
+    try {
+      final long[] keyframes;
+      try (OutputStream out = Files.newOutputStream(file)) {
+        // Some other data before the sequence:
+        out.write(new byte[] { 1, 2, 3 });
+        try (DomainBitSetDeltaWriter<Integer> writer = new DomainBitSetDeltaWriter<>(domain, out,
+            32)) {
+          for (final DomainBitSet<Integer> set : sets)
+            writer.write(set);
+          keyframes = writer.getKeyframeOffsets();
+          writer.finish();
+          assertTrue(writer.isFinished());
+          try {
+            writer.write(sets.get(0));
+            fail("finished");
+          } catch (final IllegalStateException e) {
+            // expected
+          }
+        }
+      }
+
+      // Read the persisted sequence without the writer:
+      try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+        final KeyframeIndex index = DomainBitSetDeltaReader.readIndex(channel);
+        assertEquals(3, index.getStart());
+        assertEquals(32, index.getKeyframeInterval());
+        assertEquals(sets.size(), index.getFrameCount());
+        assertArrayEquals(keyframes, index.getKeyframeOffsets());
+      }
+      for (final int frame : new int[] { 0, 31, 32, 70, 99 })
+        try (DomainBitSetDeltaReader<Integer> reader = DomainBitSetDeltaReader.fromFrame(domain,
+            Files.newByteChannel(file), frame)) {
+          for (int i = frame; i < sets.size(); i++)
+            assertEquals(sets.get(i), reader.read());
+          // The reader stops at the index:
+          assertNull(reader.read());
+          assertNull(reader.read());
+        }
+      try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+        DomainBitSetDeltaReader.fromFrame(domain, channel, 100);
+        fail("no such frame");
+      } catch (final IndexOutOfBoundsException e) {
+        // expected
+      }
+
+      // A truncated sequence has no valid index:
+      Files.write(file, write(sets, 32, new long[1][]));
+      Files.write(file, Arrays.copyOf(Files.readAllBytes(file), (int) Files.size(file) - 1));
+      try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+        DomainBitSetDeltaReader.readIndex(channel);
+        fail("no index");
+      } catch (final StreamCorruptedException e) {
+        // expected
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
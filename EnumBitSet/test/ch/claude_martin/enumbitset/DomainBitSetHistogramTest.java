@@ -0,0 +1,92 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class DomainBitSetHistogramTest {
+
+  @Test
+  public void testCounts() {
+    final Random rnd = new Random(7);
+    for (final int size : new int[] { 1, 64, 200 }) {
+      final Domain<Integer> domain = DefaultDomain.of(IntStream.range(0, size).boxed()
+          .collect(Collectors.toList()));
+      final List<DomainBitSet<Integer>> sets = new ArrayList<>();
+      final long[] expected = new long[size];
+      for (int s = 0; s < 300; s++) {
+        // alternate between sparse and dense sets:
+        final int density = s % 2 == 0 ? 2 : 40;
+        final BitSet bits = new BitSet();
+        for (int i = 0; i < size; i++)
+          if (rnd.nextInt(density) == 0) {
+            bits.set(i);
+            expected[i]++;
+          }
+        sets.add(DomainBitSet.noneOf(domain).union(bits));
+      }
+      final DomainBitSetHistogram<Integer> single = new DomainBitSetHistogram<>(domain);
+      single.addAll(sets);
+      final DomainBitSetHistogram<Integer> parallel = new DomainBitSetHistogram<>(domain);
+      parallel.addAll(sets.parallelStream());
+      final DomainBitSetHistogram<Integer> collected = sets.stream().collect(
+          DomainBitSetHistogram.collector(domain));
+      final DomainBitSetHistogram<Integer> merged = new DomainBitSetHistogram<>(domain);
+      sets.subList(0, 100).forEach(merged);
+      final DomainBitSetHistogram<Integer> rest = new DomainBitSetHistogram<>(domain);
+      rest.addAll(sets.subList(100, 300));
+      merged.merge(rest);
+
+      for (final DomainBitSetHistogram<Integer> h : asList(single, parallel, collected, merged)) {
+        assertEquals(sets.size(), h.getSetCount());
+        assertArrayEquals(expected, h.counts());
+        for (int i = 0; i < size; i++) {
+          assertEquals(expected[i], h.count(i));
+          assertEquals(expected[i], h.count(domain.get(i)));
+        }
+        final List<Integer> sorted = new ArrayList<>(domain);
+        Collections.sort(sorted, (a, b) -> Long.compare(expected[b], expected[a]));
+        for (final int n : new int[] { 0, 1, 5, size, size + 3 })
+          assertEquals(sorted.subList(0, Math.min(n, size)), h.topK(n));
+      }
+    }
+  }
+
+  @Test
+  public void testInvalid() {
+    final DomainBitSetHistogram<Planet> h = new DomainBitSetHistogram<>(EnumDomain
+        .of(Planet.class));
+    h.add(EnumBitSet.of(Planet.EARTH, Planet.MARS));
+    assertEquals(0L, h.count("EARTH"));
+    assertEquals(1L, h.count(Planet.EARTH));
+    assertEquals(asList(Planet.EARTH, Planet.MARS, Planet.MERCURY), h.topK(3));
+    try {
+      h.topK(-1);
+      fail("negative n");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      new DomainBitSetHistogram<>(DefaultDomain.of(asList(1, 2))).merge(
+          new DomainBitSetHistogram<>(DefaultDomain.of(asList(1, 3))));
+      fail("different domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class DomainBitSetPoolTest {
+
+  private final List<Integer>          list   = asList(1, 2, 3, 4, 5);
+  // Sets are only pooled if they share the same domain instance:
+  private final DefaultDomain<Integer> domain = DefaultDomain.intern(this.list
+                                                  .toArray(new Integer[0]));
+
+  @After
+  public void tearDown() {
+    DomainBitSetPool.setEnabled(false);
+    DomainBitSetPool.clear();
+  }
+
+  @Test
+  public void testDisabled() {
+    DomainBitSetPool.setEnabled(false);
+    final SmallDomainBitSet<Integer> a = SmallDomainBitSet.of(this.domain, 0b101L);
+    final SmallDomainBitSet<Integer> b = SmallDomainBitSet.of(this.domain, 0b101L);
+    assertEquals(a, b);
+    assertNotSame(a, b);
+  }
+
+  @Test
+  public void testEnabled() {
+    DomainBitSetPool.setEnabled(true);
+    assertTrue(DomainBitSetPool.isEnabled());
+    final SmallDomainBitSet<Integer> a = SmallDomainBitSet.of(this.domain, 0b101L);
+    final SmallDomainBitSet<Integer> b = SmallDomainBitSet.of(this.domain, 0b101L);
+    assertSame(a, b);
+    assertSame(a, b.union(0b001L));
+    assertSame(a, a.complement().complement());
+    assertNotSame(a, SmallDomainBitSet.of(this.domain, 0b111L));
+    assertFalse(DomainBitSetPool.size() == 0);
+  }
+
+  @Test
+  public void testIntern() {
+    final SmallDomainBitSet<Integer> a = SmallDomainBitSet.of(this.domain, 0b11L);
+    final SmallDomainBitSet<Integer> b = SmallDomainBitSet.of(this.domain, 0b11L);
+    assertSame(DomainBitSetPool.intern(a), DomainBitSetPool.intern(b));
+    final PersistentDomainBitSet<Integer> c = PersistentDomainBitSet.of(this.domain, asList(2, 3));
+    final PersistentDomainBitSet<Integer> d = PersistentDomainBitSet.noneOf(this.domain)
+        .union(asList(3, 4)).minus(asList(4)).union(asList(2));
+    assertTrue(DomainBitSetPool.isImmutable(c));
+    assertNotSame(c, d);
+    assertSame(DomainBitSetPool.intern(c), DomainBitSetPool.intern(d));
+    try {
+      DomainBitSetPool.intern(GeneralDomainBitSet.noneOf(this.list));
+      fail("mutable set was interned");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testImplementations() {
+    DomainBitSetPool.setEnabled(true);
+    final AdaptiveDomainBitSet<Integer> adaptive = AdaptiveDomainBitSet.of(this.domain,
+        BitSet.valueOf(new long[] { 0b110L }));
+    final SmallDomainBitSet<Integer> small = SmallDomainBitSet.of(this.domain, 0b110L);
+    final MediumDomainBitSet<Integer> medium = MediumDomainBitSet.of(this.domain,
+        new long[] { 0b110L });
+    assertEquals(adaptive, small);
+    assertEquals(small, medium);
+    assertSame(small, SmallDomainBitSet.of(this.domain, 0b110L));
+    assertSame(medium, MediumDomainBitSet.of(this.domain, new long[] { 0b110L }));
+    assertSame(adaptive, AdaptiveDomainBitSet.of(this.domain, BitSet.valueOf(new long[] { 6L })));
+    assertSame(small, DomainBitSetPool.intern(SmallDomainBitSet.of(this.domain, 0b110L)));
+    assertSame(adaptive, DomainBitSetPool.intern(adaptive));
+    // equal sets of equal, but distinct domains are not mixed:
+    final SmallDomainBitSet<Integer> other = SmallDomainBitSet.of(DefaultDomain.of(this.list),
+        0b110L);
+    assertEquals(small, other);
+    assertNotSame(small, other);
+    assertNotSame(this.domain, other.getDomain());
+  }
+
+  @Test
+  public void testDeserialization() throws Exception {
+    DomainBitSetPool.setEnabled(true);
+    final SmallDomainBitSet<Integer> a = SmallDomainBitSet.of(this.domain, 0b1001L);
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bas)) {
+      oos.writeObject(a);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bas.toByteArray()))) {
+      assertSame(a, ois.readObject());
+    }
+  }
+}
@@ -13,7 +13,9 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.math.BigInteger;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
@@ -23,8 +25,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 import java.util.Spliterators;
+import java.util.SplittableRandom;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collector;
@@ -36,6 +40,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import ch.claude_martin.enumbitset.EnumBitSetTest.Alphabet;
+import ch.claude_martin.enumbitset.EnumBitSetTest.Element;
 import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
 import ch.claude_martin.enumbitset.EnumBitSetTest.Rank;
 import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
@@ -75,7 +80,7 @@ public class DomainBitSetTest {
 
     @Override
     public int hashCode() {
-      return this.getDomain().hashCode() ^ this.stream().mapToInt(Object::hashCode).sum();
+      return BitSetUtilities.hashCode(this);
     }
 
     @Override
@@ -125,7 +130,7 @@ public class DomainBitSetTest {
 
     @Override
     public DomainBitSet<T> minus(final BitSet set) {
-      final Map<Integer, T> m = this.map.keySet().stream().filter(set::get)
+      final Map<Integer, T> m = this.map.keySet().stream().filter(i -> !set.get(i))
           .collect(Collectors.toMap(Function.identity(), this.map::get));
       return new TestBitSet<>(this.domain, m);
     }
@@ -227,6 +232,62 @@ public class DomainBitSetTest {
     assertEquals(a1, a2);
   }
 
+  @Test
+  public final void testBuilder() {
+    for (final int size : new int[] { 10, 200, 5_000 }) {
+      final Domain<Integer> domain = DefaultDomain.of(IntStream.range(0, size).boxed()
+          .collect(Collectors.toList()));
+      final DomainBitSet.Builder<Integer> builder = DomainBitSet.builder(domain);
+      final BitSet expected = new BitSet();
+      builder.add(1).addAll(asList(3, 4)).addIndex(size - 1).addRange(5, 9);
+      expected.set(1);
+      expected.set(3, 9);
+      expected.set(size - 1);
+      builder.remove(4).removeIndex(6).removeRange(size - 1, size);
+      expected.clear(4);
+      expected.clear(6);
+      expected.clear(size - 1);
+      builder.addMask(BitSet.valueOf(new long[] { 1L }));
+      expected.set(0);
+      if (size <= 64) {
+        builder.addMask(1L << 9);
+        expected.set(9);
+      }
+      assertTrue(builder.getBit(3));
+      assertFalse(builder.getBit(4));
+      final DomainBitSet<Integer> set = builder.freeze();
+      assertEquals(expected, set.toBitSet());
+      assertEquals(domain, set.getDomain());
+      assertEquals(size <= 64 ? SmallDomainBitSet.class : size <= 256 ? MediumDomainBitSet.class
+          : AdaptiveDomainBitSet.class, set.getClass());
+      try {
+        builder.add(1);
+        fail("frozen builder");
+      } catch (final IllegalStateException e) {
+        // expected
+      }
+      try {
+        DomainBitSet.builder(domain).addIndex(size);
+        fail("index out of domain");
+      } catch (final IndexOutOfBoundsException e) {
+        // expected
+      }
+    }
+    final DomainBitSet<Element> elements = DomainBitSet.builder(EnumBitSet.noneOf(Element.class)
+        .getDomain()).add(Ac).add(Zr).freeze();
+    assertEquals(EnumBitSet.of(Ac, Zr), elements);
+    assertEquals(elements, EnumBitSet.of(Ac, Zr));
+    assertEquals(EnumBitSet.of(Ac, Zr).hashCode(), elements.hashCode());
+    assertEquals(MediumDomainBitSet.class, elements.getClass());
+    assertTrue(DomainBitSetPool.isImmutable(elements));
+    final DomainBitSet<Planet> planets = DomainBitSet.builder(EnumDomain.of(Planet.class)).add(
+        Planet.MARS).freeze();
+    assertEquals(SmallDomainBitSet.class, planets.getClass());
+    assertEquals(EnumBitSet.of(Planet.MARS), planets);
+    assertEquals(1L << Planet.MARS.ordinal(), planets.toLong());
+    assertTrue(DomainBitSet.builder(DefaultDomain.of(asList(1, 2))).freeze().isEmpty());
+  }
+
   @Test
   public final void testCreateMultiEnumBitSet() {
     final DomainBitSet<Enum<?>> s1 = DomainBitSet.createMultiEnumBitSet(Alphabet.class,
@@ -374,6 +435,144 @@ public class DomainBitSetTest {
       assertTrue(s.ofEqualElements(s));
   }
 
+  @Test
+  public final void testRandomSampling() {
+    final Random rnd = new Random(47);
+    final List<Integer> domain = IntStream.range(0, 200_000).boxed().collect(Collectors.toList());
+    final BitSet bits = new BitSet();
+    for (int i = 0; i < domain.size(); i++)
+      if (rnd.nextInt(3) == 0)
+        bits.set(i);
+    final List<DomainBitSet<?>> sets = new ArrayList<>();
+    sets.add(AdaptiveDomainBitSet.of(domain, bits));
+    sets.add(PersistentDomainBitSet.of(domain, bits));
+    sets.add(SmallDomainBitSet.of(domain.subList(0, 64), bits.get(0, 64).toLongArray()[0]));
+    sets.add(EnumBitSet.of(Ac, Ba, Pr, Zr));
+    for (final DomainBitSet<?> s : sets) {
+      @SuppressWarnings("unchecked")
+      final DomainBitSet<Object> set = (DomainBitSet<Object>) s;
+      final int size = set.size();
+      assertTrue(set.contains(set.randomElement(rnd).get()));
+      for (final double p : new double[] { 0d, 0.01, 0.5, 1d }) {
+        final DomainBitSet<Object> subset = set.randomSubset(rnd, p);
+        assertEquals(set.getClass(), subset.getClass());
+        assertTrue(set.containsAll(subset.toSet()));
+        final DomainBitSet<Object> parallel = set.parallelRandomSubset(new SplittableRandom(p
+            > 0.1 ? 1 : 2), p);
+        assertTrue(set.containsAll(parallel.toSet()));
+        assertEquals(parallel, set.parallelRandomSubset(new SplittableRandom(p > 0.1 ? 1 : 2), p));
+        if (size > 1000)
+          for (final DomainBitSet<Object> sample : asList(subset, parallel))
+            assertEquals(p * size, sample.size(), 5 * Math.sqrt(size * p * (1 - p)) + 1);
+      }
+      for (final int k : new int[] { 0, 1, size / 3, size }) {
+        final DomainBitSet<Object> subset = set.randomSubsetOfSize(rnd, k);
+        assertEquals(k, subset.size());
+        assertTrue(set.containsAll(subset.toSet()));
+        final DomainBitSet<Object> parallel = set.parallelRandomSubsetOfSize(
+            new SplittableRandom(k), k);
+        assertEquals(k, parallel.size());
+        assertTrue(set.containsAll(parallel.toSet()));
+        assertEquals(parallel, set.parallelRandomSubsetOfSize(new SplittableRandom(k), k));
+      }
+      for (final int k : new int[] { -1, size + 1 })
+        try {
+          set.randomSubsetOfSize(rnd, k);
+          fail("k = " + k);
+        } catch (final IllegalArgumentException e) {
+          // expected
+        }
+      try {
+        set.randomSubset(rnd, Double.NaN);
+        fail("NaN");
+      } catch (final IllegalArgumentException e) {
+        // expected
+      }
+    }
+    assertFalse(DomainBitSet.noneOf(1, 2, 3).randomElement(rnd).isPresent());
+
+    // Each of the 4 elements must be chosen about equally often:
+    final DomainBitSet<Element> elements = EnumBitSet.of(Ac, Ba, Pr, Zr);
+    final Map<Element, Integer> counts = new HashMap<>();
+    for (int i = 0; i < 4000; i++) {
+      for (final Element e : elements.randomSubsetOfSize(rnd, 2))
+        counts.merge(e, 1, Integer::sum);
+      counts.merge(elements.randomElement(rnd).get(), 1, Integer::sum);
+    }
+    for (final Element e : elements)
+      assertEquals(3000, counts.get(e), 200);
+  }
+
+  private static <T> void checkRankSelect(final DomainBitSet<T> set, final BitSet bits) {
+    final int size = set.getDomain().size();
+    int rank = 0;
+    for (int i = 0; i <= size; i++) {
+      assertEquals(set.getClass().getSimpleName(), rank, set.rank(i));
+      if (i < size) {
+        assertEquals(bits.nextSetBit(i), set.nextSetIndex(i));
+        assertEquals(bits.previousSetBit(i), set.previousSetIndex(i));
+        final int clear = bits.nextClearBit(i);
+        assertEquals(clear < size ? clear : -1, set.nextClearIndex(i));
+        if (bits.get(i))
+          assertEquals(i, set.select(rank++));
+      }
+    }
+    assertEquals(-1, set.nextSetIndex(size));
+    assertEquals(-1, set.previousSetIndex(-1));
+    assertEquals(bits.previousSetBit(size), set.previousSetIndex(size + 100));
+    for (final int n : new int[] { -1, set.size() })
+      try {
+        set.select(n);
+        fail("select(" + n + ")");
+      } catch (final IndexOutOfBoundsException e) {
+        // expected
+      }
+    try {
+      set.rank(size + 1);
+      fail("rank(size + 1)");
+    } catch (final IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public final void testRankSelect() {
+    final Random rnd = new Random(43);
+    for (final int size : new int[] { 1, 50, 64, 200, 3000 }) {
+      final List<Integer> domain = IntStream.range(0, size).boxed().collect(Collectors.toList());
+      for (final int density : new int[] { 1, 2, 30 }) {
+        final BitSet bits = new BitSet();
+        for (int i = 0; i < size; i++)
+          if (rnd.nextInt(density) == 0)
+            bits.set(i);
+        final List<DomainBitSet<Integer>> sets = new ArrayList<>();
+        sets.add(GeneralDomainBitSet.noneOf(domain).union(bits));
+        sets.add(AdaptiveDomainBitSet.of(domain, bits));
+        sets.add(CompressedDomainBitSet.of(domain, bits));
+        sets.add(PersistentDomainBitSet.of(domain, bits));
+        sets.add(OffHeapDomainBitSet.of(domain, bits));
+        // The buffer of a mapped set has no words after the last element:
+        sets.add(new MappedDomainBitSet<>(DefaultDomain.of(domain), LongBuffer.wrap(bits
+            .toLongArray())));
+        sets.add(TestBitSet.of(DefaultDomain.of(domain), bits.stream().boxed().collect(Collectors
+            .toList())));
+        if (size <= 64)
+          sets.add(SmallDomainBitSet.noneOf(domain).union(bits));
+        if (size <= 256)
+          sets.add(MediumDomainBitSet.noneOf(domain).union(bits));
+        for (final DomainBitSet<Integer> set : sets)
+          checkRankSelect(set, bits);
+      }
+    }
+    final EnumBitSet<Element> elements = EnumBitSet.of(Ac, Ba, Pr, Zr);
+    checkRankSelect(elements, elements.toBitSet());
+    assertEquals(Pr, elements.getDomain().get(elements.select(2)));
+    checkRankSelect(CopyOnWriteEnumBitSet.of(Ac, Ba, Pr, Zr), elements.toBitSet());
+    final MultiEnumBitSet multi = MultiEnumBitSet.noneOf(Element.class, Planet.class);
+    multi.addAll(asList(Ac, Zr, Planet.MARS));
+    checkRankSelect(multi, multi.toBitSet());
+  }
+
   @Test
   public final void testSemijoin() {
     for (final DomainBitSet<Integer> s : this.all) {
@@ -395,6 +594,69 @@ public class DomainBitSetTest {
     }
   }
 
+  @Test
+  public final void testXorAndDiff() {
+    final Random rnd = new Random(53);
+    for (final int size : new int[] { 10, 64, 200, 3000, 70000 }) {
+      final List<Integer> domain = IntStream.range(0, size).boxed().collect(Collectors.toList());
+      final BitSet a = new BitSet(), b = new BitSet();
+      for (int i = 0; i < size; i++) {
+        if (rnd.nextBoolean())
+          a.set(i);
+        if (rnd.nextInt(3) == 0)
+          b.set(i);
+      }
+      final BitSet xor = (BitSet) a.clone();
+      xor.xor(b);
+      final BitSet added = (BitSet) b.clone();
+      added.andNot(a);
+      final BitSet removed = (BitSet) a.clone();
+      removed.andNot(b);
+      final List<DomainBitSet<Integer>> sets = new ArrayList<>();
+      sets.add(GeneralDomainBitSet.noneOf(domain).union(a));
+      sets.add(AdaptiveDomainBitSet.of(domain, a));
+      sets.add(CompressedDomainBitSet.of(domain, a));
+      sets.add(PersistentDomainBitSet.of(domain, a));
+      sets.add(OffHeapDomainBitSet.of(domain, a));
+      sets.add(new MappedDomainBitSet<>(DefaultDomain.of(domain), LongBuffer.wrap(Arrays.copyOf(a
+          .toLongArray(), Container.words(size)))));
+      sets.add(TestBitSet.of(DefaultDomain.of(domain), a.stream().boxed().collect(Collectors
+          .toList())));
+      if (size <= 64)
+        sets.add(SmallDomainBitSet.noneOf(domain).union(a));
+      if (size <= 256)
+        sets.add(MediumDomainBitSet.noneOf(domain).union(a));
+      for (final DomainBitSet<Integer> set : sets) {
+        final DomainBitSet<Integer> other = AdaptiveDomainBitSet.of(domain, b);
+        final DomainBitSet<Integer> result = set.xor(other);
+        assertEquals(xor, result.toBitSet());
+        assertEquals(set instanceof MappedDomainBitSet ? AdaptiveDomainBitSet.class : set
+            .getClass(), result.getClass());
+        assertEquals(xor, set.xor(CompressedDomainBitSet.of(domain, b)).toBitSet());
+        assertTrue(set.xor(set).isEmpty());
+        final DomainBitSetDiff<Integer> diff = set.diff(other);
+        assertEquals(added, diff.getAdded().toBitSet());
+        assertEquals(removed, diff.getRemoved().toBitSet());
+        assertEquals(a.equals(b), diff.isEmpty());
+        assertTrue(set.diff(set).isEmpty());
+        try {
+          set.xor(DomainBitSet.noneOf(domain.subList(0, size - 1)));
+          fail("different domain");
+        } catch (final IllegalArgumentException e) {
+          // expected
+        }
+      }
+    }
+    final EnumBitSet<Element> e1 = EnumBitSet.of(Ac, Ba, Pr);
+    final EnumBitSet<Element> e2 = EnumBitSet.of(Ba, Zr);
+    assertEquals(EnumBitSet.of(Ac, Pr, Zr), e1.xor(e2));
+    assertEquals(EnumBitSet.of(Ac, Pr, Zr), e1.xor(AdaptiveDomainBitSet.of(e2.getDomain(), e2
+        .toBitSet())));
+    final DomainBitSetDiff<Element> diff = e1.diff(e2);
+    assertEquals(EnumBitSet.of(Zr), diff.getAdded());
+    assertEquals(EnumBitSet.of(Ac, Pr), diff.getRemoved());
+  }
+
   @Test
   public final void testZipWithPosition() {
     for (final DomainBitSet<Integer> s : this.all) {
@@ -0,0 +1,122 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidClassException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.EnumBitSetTest.Element;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class DomainBitSetWriterTest {
+
+  private static byte[] write(final List<DomainBitSet<?>> sets) throws Exception {
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (DomainBitSetWriter writer = new DomainBitSetWriter(bas)) {
+      for (final DomainBitSet<?> set : sets)
+        writer.write(set);
+    }
+    return bas.toByteArray();
+  }
+
+  private static List<DomainBitSet<?>> read(final byte[] bytes) throws Exception {
+    final List<DomainBitSet<?>> result = new ArrayList<>();
+    try (DomainBitSetReader reader = new DomainBitSetReader(new BufferedInputStream(
+        new ByteArrayInputStream(bytes)))) {
+      for (DomainBitSet<?> set; (set = reader.read()) != null;)
+        result.add(set);
+    }
+    return result;
+  }
+
+  @Test
+  public void testDomainsWrittenOnce() throws Exception {
+    final List<String> elements = asList("a", "b", "c", "d", "e");
+    final List<DomainBitSet<?>> sets = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      // a new, equal domain for each set:
+      sets.add(SmallDomainBitSet.of(new ArrayList<>(elements), i & 31));
+      sets.add(EnumBitSet.of(Element.values()[i]));
+    }
+    final byte[] bytes = write(sets);
+    final byte[] single = write(sets.subList(0, 2));
+    assertTrue(bytes.length < single.length + 200 * 8);
+
+    final List<DomainBitSet<?>> read = read(bytes);
+    assertEquals(sets, read);
+    final Domain<?> domain = read.get(0).getDomain();
+    assertSame(EnumBitSet.noneOf(Element.class).getDomain(), read.get(1).getDomain());
+    for (int i = 0; i < read.size(); i += 2)
+      assertSame(domain, read.get(i).getDomain());
+
+    // Equal domains are shared across streams:
+    assertSame(domain, read(single).get(0).getDomain());
+    assertNotSame(sets.get(0).getDomain(), domain);
+    assertSame(domain, ((DomainBitSet<?>) TestUtilities.deserialize(TestUtilities.serialize(sets
+        .get(0)))).getDomain());
+  }
+
+  @Test
+  public void testInvalid() throws Exception {
+    final byte[] bytes = write(asList(DomainBitSet.allOf(1, 2, 3), DomainBitSet.allOf(1, 2, 3)));
+    assertEquals(2, read(bytes).size());
+    bytes[0] = 5;
+    try {
+      read(bytes);
+      fail("unknown domain");
+    } catch (final StreamCorruptedException e) {
+      // expected
+    }
+    try (DomainBitSetReader reader = new DomainBitSetReader(new ByteArrayInputStream(
+        new byte[0]))) {
+      assertNull(reader.read());
+    }
+
+    // The length of the table is checked before it is allocated:
+    final ByteBuffer header = ByteBuffer.allocate(6).put((byte) 0);
+    DomainBitSetCodec.putVarint(header, Integer.MAX_VALUE);
+    try {
+      read(header.array());
+      fail("table too long");
+    } catch (final StreamCorruptedException e) {
+      // expected
+    }
+
+    // Only allowed classes are deserialized:
+    final UUID uuid = new UUID(1, 2);
+    final byte[] uuids = write(asList(DomainBitSet.allOf(uuid)));
+    try {
+      read(uuids);
+      fail("class not allowed");
+    } catch (final InvalidClassException e) {
+      // expected
+    }
+    try (DomainBitSetReader reader = new DomainBitSetReader(new ByteArrayInputStream(uuids),
+        DomainBitSetReader.MAX_TABLE_LENGTH, c -> c == UUID.class)) {
+      assertEquals(DomainBitSet.allOf(uuid), reader.read());
+    }
+    try (DomainBitSetReader reader = new DomainBitSetReader(new ByteArrayInputStream(uuids), 10,
+        c -> true)) {
+      reader.read();
+      fail("table too long");
+    } catch (final StreamCorruptedException e) {
+      // expected
+    }
+  }
+}
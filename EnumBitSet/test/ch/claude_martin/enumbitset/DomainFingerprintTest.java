@@ -0,0 +1,88 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.EnumBitSetTest.Alphabet;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class DomainFingerprintTest {
+
+  static final class Key {
+    final int value;
+
+    Key(final int value) {
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return obj instanceof Key && ((Key) obj).value == this.value;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0; // collisions on purpose
+    }
+  }
+
+  @Test
+  public void testOf() {
+    final DomainFingerprint abc = DomainFingerprint.of(asList("a", "b", "c"));
+    assertEquals(abc, DomainFingerprint.of(asList("a", "b", "c")));
+    assertEquals(abc.hashCode(), DomainFingerprint.of(asList("a", "b", "c")).hashCode());
+    assertNotEquals(abc, DomainFingerprint.of(asList("a", "c", "b")));
+    assertNotEquals(abc, DomainFingerprint.of(asList("a", "b")));
+    assertNotEquals(abc, DomainFingerprint.of(asList("ab", "c")));
+    assertNotEquals(DomainFingerprint.of(asList(1, 2)), DomainFingerprint.of(asList(1L, 2L)));
+    assertTrue(abc.isStable());
+    assertEquals(32, abc.toString().length());
+    assertFalse(DomainFingerprint.of(asList(new Key(1))).isStable());
+    // Stable across JVMs:
+    assertEquals("3db49682bd35edba30fbefeb566b352f", abc.toString());
+  }
+
+  @Test
+  public void testDomains() throws Exception {
+    final Domain<Integer> d1 = Domain.of(1, 2, 3);
+    final Domain<Integer> d2 = Domain.of(1, 2, 3);
+    assertEquals(d1.fingerprint(), d2.fingerprint());
+    assertSame(d1.fingerprint(), d1.fingerprint());
+    assertEquals(d1, d2);
+    assertNotEquals(d1, Domain.of(3, 2, 1));
+
+    final Domain<Alphabet> enumDomain = EnumBitSet.noneOf(Alphabet.class).getDomain();
+    final Domain<Alphabet> defaultDomain = Domain.of(Alphabet.values());
+    assertEquals(enumDomain.fingerprint(), defaultDomain.fingerprint());
+    assertEquals(enumDomain, defaultDomain);
+    assertEquals(defaultDomain, enumDomain);
+
+    // Unstable fingerprints still compare the elements:
+    final Domain<Key> k1 = Domain.of(new Key(1), new Key(2));
+    final Domain<Key> k2 = Domain.of(new Key(1), new Key(2));
+    final Domain<Key> k3 = Domain.of(new Key(1), new Key(3));
+    assertEquals(k1.fingerprint(), k3.fingerprint());
+    assertEquals(k1, k2);
+    assertNotEquals(k1, k3);
+
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bas)) {
+      oos.writeObject(d1);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bas.toByteArray()))) {
+      assertEquals(d1.fingerprint(), ((Domain<?>) ois.readObject()).fingerprint());
+    }
+  }
+}
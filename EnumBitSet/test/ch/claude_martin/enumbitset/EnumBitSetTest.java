@@ -1,8 +1,11 @@
 package ch.claude_martin.enumbitset;
 
+import static ch.claude_martin.enumbitset.TestUtilities.deserialize;
 import static ch.claude_martin.enumbitset.TestUtilities.expectIAE;
 import static ch.claude_martin.enumbitset.TestUtilities.expectIOOBE;
 import static ch.claude_martin.enumbitset.TestUtilities.expectMT64EE;
+import static ch.claude_martin.enumbitset.TestUtilities.serialize;
+import static ch.claude_martin.enumbitset.TestUtilities.serializeNested;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptySet;
 import static org.junit.Assert.assertArrayEquals;
@@ -26,6 +29,7 @@ import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -1024,4 +1028,53 @@ public class EnumBitSetTest {
     }
 
   }
+
+  @Test
+  public void testSerializedForm() throws Exception {
+    final EnumBitSet<Element> set = EnumBitSet.allOf(Element.class);
+    set.removeIf(x -> x.ordinal() % 3 == 0);
+    final byte[] compact = serialize(set);
+    assertEquals(set, deserialize(compact));
+
+    // The former serialized form is still read:
+    final byte[] old = serializeNested(EnumBitSet.class, "SerializationProxy", Element.class,
+        set.toEnumSet());
+    assertEquals(set, deserialize(old));
+    assertTrue(compact.length < old.length);
+  }
+
+  @Test
+  public void testRanges() {
+    final Random rnd = new Random(5);
+    final EnumBitSet<Element> set = EnumBitSet.noneOf(Element.class);
+    final BitSet bits = new BitSet();
+    final int size = set.getEnumTypeSize();
+    for (int i = 0; i < 300; i++) {
+      final int a = rnd.nextInt(size + 1), b = rnd.nextInt(size + 1);
+      final int from = Math.min(a, b), to = Math.max(a, b);
+      assertEquals(bits.get(from, to).cardinality() == to - from, set.isRangeSet(from, to));
+      assertEquals(bits.get(from, to).isEmpty(), set.isRangeClear(from, to));
+      if (i % 3 == 0) {
+        set.setRange(from, to);
+        bits.set(from, to);
+      } else if (i % 3 == 1) {
+        set.clearRange(from, to);
+        bits.clear(from, to);
+      } else {
+        set.flipRange(from, to);
+        bits.flip(from, to);
+      }
+      assertEquals(bits, set.toBitSet());
+    }
+    final EnumBitSet<Planet> planets = EnumBitSet.noneOf(Planet.class);
+    planets.setRange(Planet.VENUS.ordinal(), Planet.MARS.ordinal() + 1);
+    assertEquals(EnumBitSet.range(Planet.VENUS, Planet.MARS), planets);
+    for (final int[] range : new int[][] { { -1, 2 }, { 3, 2 }, { 0, size + 1 } })
+      try {
+        set.flipRange(range[0], range[1]);
+        fail("invalid range");
+      } catch (final IndexOutOfBoundsException e) {
+        // expected
+      }
+  }
 }
@@ -3,6 +3,9 @@ package ch.claude_martin.enumbitset;
 import static ch.claude_martin.enumbitset.GeneralDomainBitSet.allOf;
 import static ch.claude_martin.enumbitset.GeneralDomainBitSet.noneOf;
 import static ch.claude_martin.enumbitset.GeneralDomainBitSet.of;
+import static ch.claude_martin.enumbitset.TestUtilities.deserialize;
+import static ch.claude_martin.enumbitset.TestUtilities.serialize;
+import static ch.claude_martin.enumbitset.TestUtilities.serializeNested;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.singleton;
@@ -22,17 +25,19 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
 import ch.claude_martin.enumbitset.EnumBitSetTest.Element;
-import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
 import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
 
 @SuppressFBWarnings("static-method")
@@ -124,18 +129,6 @@ public class GeneralDomainBitSetTest {
     assertFalse(this.oneTwo.containsAll(this.oneTo4));
   }
 
-  @Test
-  public <X extends Enum<X>> void testCreateMultiEnumBitSet() {
-    @SuppressFBWarnings("unchecked")
-    final GeneralDomainBitSet<X> set = (GeneralDomainBitSet<X>) DomainBitSet.createMultiEnumBitSet(
-        Element.class, Planet.class);
-    @SuppressFBWarnings("unchecked")
-    final List<X> planets = (List<X>) asList(EnumBitSetTest.Planet.values());
-    set.addAll(planets);
-    assertEquals(set.size(), planets.size());
-    assertEquals(set.complement().size(), Element.values().length);
-  }
-
   @Test
   public void testCross() {
     assertEquals(this.oneTo4.cross(this.oneTo4), this.oneTo4.cross(this.oneTo4));
@@ -163,6 +156,21 @@ public class GeneralDomainBitSetTest {
       assertEquals(set.hashCode(), set.hashCode());
       assertEquals(set.hashCode(), SmallDomainBitSet.of(set.getDomain(), set.toLong()).hashCode());
     }
+    // The cached hash code must follow all modifications:
+    final GeneralDomainBitSet<Integer> set = this.oneTwo.clone();
+    final List<Runnable> modifications = asList(() -> set.add(4), () -> set.remove(1),
+        () -> set.addAll(asList(1, 3)), () -> set.removeAll(asList(3)),
+        () -> set.removeIf(i -> i == 4), () -> set.retainAll(asList(1)), () -> set.setRange(1, 3),
+        () -> set.clearRange(0, 2), () -> set.flipRange(0, 4), () -> {
+          final Iterator<Integer> itr = set.iterator();
+          itr.next();
+          itr.remove();
+        }, set::clear);
+    for (final Runnable modification : modifications) {
+      set.hashCode();
+      modification.run();
+      assertEquals(SmallDomainBitSet.of(set.getDomain(), set.toLong()).hashCode(), set.hashCode());
+    }
   }
 
   @Test
@@ -661,4 +669,52 @@ public class GeneralDomainBitSetTest {
     }
 
   }
+
+  @Test
+  public void testSerializedForm() throws Exception {
+    final List<String> domain = new ArrayList<>();
+    for (int i = 0; i < 200; i++)
+      domain.add("element " + i);
+    final GeneralDomainBitSet<String> set = of(domain, domain.subList(10, 150));
+    final byte[] compact = serialize(set);
+    assertEquals(set, deserialize(compact));
+
+    // The former serialized form is still read:
+    final byte[] old = serializeNested(GeneralDomainBitSet.class, "SerializationProxy",
+        set.getDomain(), new HashSet<>(set.toSet()));
+    assertEquals(set, deserialize(old));
+    assertTrue(compact.length < old.length);
+  }
+
+  @Test
+  public void testRanges() {
+    final Random rnd = new Random(7);
+    final List<Integer> domain = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    final GeneralDomainBitSet<Integer> set = noneOf(domain);
+    final BitSet bits = new BitSet();
+    for (int i = 0; i < 300; i++) {
+      final int a = rnd.nextInt(101), b = rnd.nextInt(101);
+      final int from = Math.min(a, b), to = Math.max(a, b);
+      assertEquals(bits.get(from, to).cardinality() == to - from, set.isRangeSet(from, to));
+      assertEquals(bits.get(from, to).isEmpty(), set.isRangeClear(from, to));
+      if (i % 3 == 0) {
+        set.setRange(from, to);
+        bits.set(from, to);
+      } else if (i % 3 == 1) {
+        set.clearRange(from, to);
+        bits.clear(from, to);
+      } else {
+        set.flipRange(from, to);
+        bits.flip(from, to);
+      }
+      assertEquals(bits, set.toBitSet());
+    }
+    for (final int[] range : new int[][] { { -1, 2 }, { 3, 2 }, { 0, 101 } })
+      try {
+        set.setRange(range[0], range[1]);
+        fail("invalid range");
+      } catch (final IndexOutOfBoundsException e) {
+        // expected
+      }
+  }
 }
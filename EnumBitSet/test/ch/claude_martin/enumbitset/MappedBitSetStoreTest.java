@@ -0,0 +1,186 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.MappedBitSetStore.Layout;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class MappedBitSetStoreTest {
+
+  static final Domain<Integer> domain = DefaultDomain.of(IntStream.range(0, 500).boxed()
+                                          .collect(Collectors.toList()));
+
+  private Path                 file;
+
+  @Before
+  public void setUp() throws IOException {
+    this.file = Files.createTempFile("store", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  private static List<DomainBitSet<Integer>> sets() {
+    final Random rnd = new Random(17);
+    final List<DomainBitSet<Integer>> result = new ArrayList<>();
+    result.add(DomainBitSet.noneOf(domain));
+    result.add(DomainBitSet.allOf(domain));
+    for (int i = 0; i < 50; i++) {
+      final BitSet bits = new BitSet();
+      final int length = rnd.nextInt(domain.size());
+      for (int j = 0; j < length; j++)
+        if (rnd.nextBoolean())
+          bits.set(j);
+      result.add(AdaptiveDomainBitSet.of(domain, bits));
+    }
+    return result;
+  }
+
+  @Test
+  public void testLayouts() throws IOException {
+    final List<DomainBitSet<Integer>> sets = sets();
+    for (final Layout layout : Layout.values()) {
+      MappedBitSetStore.write(this.file, domain, sets, layout);
+      try (MappedBitSetStore<Integer> store = MappedBitSetStore.open(this.file, domain)) {
+        assertEquals(layout, store.getLayout());
+        assertEquals(sets.size(), store.size());
+        assertSame(domain, store.getDomain());
+        for (int id = 0; id < sets.size(); id++) {
+          final DomainBitSet<Integer> expected = sets.get(id);
+          final DomainBitSet<Integer> actual = store.get(id);
+          assertEquals(expected, actual);
+          assertEquals(actual, expected);
+          assertEquals(expected.hashCode(), actual.hashCode());
+          assertEquals(expected.size(), actual.size());
+          assertEquals(expected.toBitSet(), actual.toBitSet());
+          assertEquals(expected.toSet(), actual.toSet());
+        }
+      }
+    }
+    final long fixed = Files.size(this.file);
+    MappedBitSetStore.write(this.file, domain, sets, Layout.FIXED_WIDTH);
+    assertTrue(fixed < Files.size(this.file));
+  }
+
+  @Test
+  public void testView() throws IOException {
+    MappedBitSetStore.write(this.file, domain,
+        asList(AdaptiveDomainBitSet.of(domain, 1, 2, 300)), Layout.OFFSET_INDEXED);
+    try (MappedBitSetStore<Integer> store = MappedBitSetStore.open(this.file)) {
+      assertNotSame(domain, store.getDomain());
+      assertEquals(domain, store.getDomain());
+      final DomainBitSet<Integer> set = store.get(0);
+      assertTrue(set.contains(300));
+      assertFalse(set.contains(301));
+      assertTrue(set.getBit(2));
+      assertFalse(set.getBit(499));
+      assertEquals("[1, 2, 300]", set.toString());
+      assertEquals(AdaptiveDomainBitSet.of(domain, 1, 300), set.minusVarArgs(2));
+      assertEquals(497, set.complement().size());
+      try {
+        store.get(1);
+        fail("no set with id 1");
+      } catch (final IndexOutOfBoundsException e) {
+        // expected
+      }
+      store.close();
+      assertEquals(3, set.size());
+      try {
+        store.get(0);
+        fail("closed");
+      } catch (final IllegalStateException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testInvalid() throws IOException {
+    MappedBitSetStore.write(this.file, domain, sets(), Layout.FIXED_WIDTH);
+    try {
+      MappedBitSetStore.open(this.file, Domain.of(1, 2, 3));
+      fail("different domain");
+    } catch (final IOException e) {
+      // expected
+    }
+    Files.write(this.file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+    try {
+      MappedBitSetStore.open(this.file);
+      fail("not a store");
+    } catch (final IOException e) {
+      // expected
+    }
+  }
+
+  private void assertCorrupt(final byte[] bytes) throws IOException {
+    Files.write(this.file, bytes);
+    try {
+      MappedBitSetStore.open(this.file).close();
+      fail("corrupt file");
+    } catch (final StreamCorruptedException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testCorrupt() throws IOException {
+    final List<DomainBitSet<Integer>> sets = sets();
+    MappedBitSetStore.write(this.file, domain, sets, Layout.OFFSET_INDEXED);
+    final byte[] bytes = Files.readAllBytes(this.file);
+    final int start = 36 + ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(32) + 7
+        & ~7;
+    // The domain table is longer than the file:
+    byte[] copy = bytes.clone();
+    ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putInt(32, Integer.MAX_VALUE);
+    this.assertCorrupt(copy);
+    // An offset is after the end of the file:
+    copy = bytes.clone();
+    ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putLong(start + 8 * 3, 1L << 40);
+    this.assertCorrupt(copy);
+    // A set is longer than the domain:
+    copy = bytes.clone();
+    ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putLong(start + 8, 100);
+    this.assertCorrupt(copy);
+    // The last set is not complete:
+    this.assertCorrupt(Arrays.copyOf(bytes, bytes.length - 8));
+
+    // Without elements there are no words:
+    final Domain<Integer> empty = Domain.of();
+    for (final Layout layout : Layout.values()) {
+      MappedBitSetStore.write(this.file, empty, asList(DomainBitSet.noneOf(empty), DomainBitSet
+          .noneOf(empty)), layout);
+      try (MappedBitSetStore<Integer> store = MappedBitSetStore.open(this.file, empty)) {
+        assertEquals(2, store.size());
+        assertTrue(store.get(1).isEmpty());
+        assertEquals(DomainBitSet.noneOf(empty), store.get(0));
+      }
+    }
+  }
+}
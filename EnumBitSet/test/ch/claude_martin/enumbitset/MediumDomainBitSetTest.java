@@ -0,0 +1,152 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.EnumBitSetTest.Element;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class MediumDomainBitSetTest {
+
+  static final List<Integer>         domain200 = IntStream.range(0, 200).boxed()
+                                                   .collect(Collectors.toList());
+
+  final MediumDomainBitSet<Integer> none      = MediumDomainBitSet.noneOf(domain200);
+  final MediumDomainBitSet<Integer> all       = MediumDomainBitSet.allOf(domain200);
+  final MediumDomainBitSet<Integer> edges     = MediumDomainBitSet.of(domain200, 0, 63, 64, 199);
+
+  @Test
+  public void testFactories() {
+    assertTrue(DomainBitSet.noneOf(domain200) instanceof MediumDomainBitSet);
+    assertTrue(DomainBitSet.allOf(domain200) instanceof MediumDomainBitSet);
+    assertTrue(DomainBitSet.noneOf(domain200.subList(0, 64)) instanceof SmallDomainBitSet);
+    final List<Integer> domain300 = IntStream.range(0, 300).boxed().collect(Collectors.toList());
+    assertTrue(DomainBitSet.noneOf(domain300) instanceof GeneralDomainBitSet);
+    assertTrue(this.none.getDomain().factory().apply(asList(1, 2)) instanceof MediumDomainBitSet);
+    try {
+      MediumDomainBitSet.noneOf(domain300);
+      fail("domain with 300 elements");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testBasics() {
+    assertTrue(this.none.isEmpty());
+    assertEquals(0, this.none.size());
+    assertEquals(200, this.all.size());
+    assertEquals(4, this.edges.size());
+    assertEquals(asList(0, 63, 64, 199), new ArrayList<>(this.edges.toSet()));
+    assertEquals("[0, 63, 64, 199]", this.edges.toString());
+    assertTrue(this.edges.contains(199));
+    assertFalse(this.edges.contains(198));
+    assertFalse(this.edges.contains("foo"));
+    assertTrue(this.edges.getBit(64));
+    assertFalse(this.edges.getBit(65));
+    assertSame(this.edges, this.edges.clone());
+    try {
+      this.edges.getBit(200);
+      fail("getBit(200)");
+    } catch (final IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testOperations() {
+    assertEquals(this.all, this.edges.union(this.edges.complement()));
+    assertEquals(this.none, this.edges.intersect(this.edges.complement()));
+    assertEquals(196, this.all.minus(this.edges).size());
+    assertEquals(this.edges, this.all.intersect(this.edges.toBitSet()));
+    assertEquals(this.edges, this.none.union(this.edges.toBigInteger()));
+    assertEquals(this.edges, this.edges.minusVarArgs(5, 6).intersectVarArgs(0, 63, 64, 199, 5));
+    assertEquals(this.edges, this.none.unionVarArgs(0, 63, 64, 199));
+    assertEquals(this.edges.toBitSet().cardinality(), this.edges.size());
+    assertEquals(BigInteger.ONE.shiftLeft(200).subtract(BigInteger.ONE), this.all.toBigInteger());
+    try {
+      this.edges.union(1L);
+      fail("union(long) with 200 elements");
+    } catch (final MoreThan64ElementsException e) {
+      // expected
+    }
+    try {
+      final BitSet bs = new BitSet();
+      bs.set(200);
+      this.none.union(bs);
+      fail("union(BitSet) with element out of domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      this.none.union(asList(1000));
+      fail("union(Iterable) with element out of domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+    final MediumDomainBitSet<Integer> edges2 = MediumDomainBitSet.of(domain200,
+        this.edges.toLongArray());
+    assertEquals(this.edges, edges2);
+    assertEquals(this.edges.hashCode(), edges2.hashCode());
+    assertArrayEquals(this.edges.toBitSet().toLongArray(), this.edges.toLongArray());
+    assertNotEquals(this.edges, this.none);
+
+    final GeneralDomainBitSet<Integer> general = GeneralDomainBitSet.of(this.edges.getDomain(),
+        this.edges.toSet());
+    assertEquals(this.edges, general);
+    assertEquals(general, this.edges);
+    assertEquals(general.hashCode(), this.edges.hashCode());
+
+    final EnumBitSet<Element> e = EnumBitSet.of(Element.H, Element.R);
+    final MediumDomainBitSet<Element> m = MediumDomainBitSet.of(e.getDomain(), e.toSet());
+    assertEquals(e, m);
+    assertEquals(m, e);
+    assertEquals(e.hashCode(), m.hashCode());
+  }
+
+  @Test
+  public void testPowerset() {
+    int count = 0;
+    for (final DomainBitSet<Integer> s : this.edges.powerset()) {
+      assertTrue(s instanceof MediumDomainBitSet);
+      assertTrue(this.edges.containsAll(s.toSet()));
+      count++;
+    }
+    assertEquals(16, count);
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bas)) {
+      oos.writeObject(this.edges);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bas.toByteArray()))) {
+      assertEquals(this.edges, ois.readObject());
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package ch.claude_martin.enumbitset;
+
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Element.Ac;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Element.H;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Element.R;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Planet.EARTH;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Planet.MARS;
+import static ch.claude_martin.enumbitset.EnumBitSetTest.Planet.MERCURY;
+import static ch.claude_martin.enumbitset.TestUtilities.deserialize;
+import static ch.claude_martin.enumbitset.TestUtilities.serialize;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.EnumBitSetTest.Alphabet;
+import ch.claude_martin.enumbitset.EnumBitSetTest.Element;
+import ch.claude_martin.enumbitset.EnumBitSetTest.Planet;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class MultiEnumBitSetTest {
+
+  @Test
+  public void testCreateMultiEnumBitSet() {
+    final DomainBitSet<Enum<?>> set = DomainBitSet.createMultiEnumBitSet(Element.class,
+        Planet.class);
+    assertEquals(MultiEnumBitSet.class, set.getClass());
+    final List<Enum<?>> planets = asList(Planet.values());
+    ((MultiEnumBitSet) set).addAll(planets);
+    assertEquals(set.size(), planets.size());
+    assertEquals(set.complement().size(), Element.values().length);
+    try {
+      DomainBitSet.createMultiEnumBitSet(Element.class, Planet.class, Element.class);
+      fail("duplicate type");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testDomain() {
+    final MultiEnumDomain domain = new MultiEnumDomain(Alphabet.class, Element.class,
+        Planet.class);
+    final int offset = Alphabet.values().length + Element.values().length;
+    assertEquals(offset + Planet.values().length, domain.size());
+    assertEquals(0, domain.indexOf(Alphabet.A));
+    assertEquals(Alphabet.values().length + H.ordinal(), domain.indexOf(H));
+    assertEquals(offset + MARS.ordinal(), domain.indexOf(MARS));
+    assertEquals(MARS, domain.get(offset + MARS.ordinal()));
+    assertEquals(-1, domain.indexOf(EnumBitSetTest.Suit.values()[0]));
+    assertEquals(-1, domain.indexOf("foo"));
+    assertEquals(-1, domain.indexOf(null));
+    for (int i = 0; i < domain.size(); i++)
+      assertEquals(i, domain.indexOf(domain.get(i)));
+
+    final List<Enum<?>> list = new ArrayList<>(domain);
+    assertEquals(domain, DefaultDomain.of(list));
+    assertEquals(DefaultDomain.of(list), domain);
+    assertEquals(DefaultDomain.of(list).hashCode(), domain.hashCode());
+    assertEquals(new MultiEnumDomain(Alphabet.class, Element.class, Planet.class), domain);
+    assertFalse(domain.equals(new MultiEnumDomain(Element.class, Alphabet.class, Planet.class)));
+
+    final MultiEnumDomain cached = MultiEnumDomain.of(Alphabet.class, Element.class, Planet.class);
+    assertEquals(domain, cached);
+    assertSame(cached, MultiEnumDomain.of(Alphabet.class, Element.class, Planet.class));
+    assertSame(MultiEnumBitSet.noneOf(Element.class, Planet.class).getDomain(), MultiEnumBitSet
+        .allOf(Element.class, Planet.class).getDomain());
+    assertNotSame(cached, MultiEnumDomain.of(Element.class, Alphabet.class, Planet.class));
+  }
+
+  @Test
+  public void testOperations() {
+    final MultiEnumBitSet a = MultiEnumBitSet.noneOf(Element.class, Planet.class);
+    assertTrue(a.isEmpty());
+    assertTrue(a.add(H));
+    assertFalse(a.add(H));
+    assertTrue(a.add(EARTH));
+    assertTrue(a.addAll(asList(R, MERCURY)));
+    assertTrue(a.contains(EARTH));
+    assertFalse(a.contains(MARS));
+    assertFalse(a.contains("foo"));
+    assertEquals("[H, R, MERCURY, EARTH]", a.toString());
+    try {
+      a.add(Alphabet.A);
+      fail("element out of domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+
+    final MultiEnumBitSet b = MultiEnumBitSet.noneOf(Element.class, Planet.class);
+    b.addAll(asList(Ac, R, EARTH, MARS));
+    assertEquals(asList(H, Ac, R, MERCURY, EARTH, MARS), new ArrayList<>(a.union(b).toSet()));
+    assertEquals(a.union(b), b.union(a));
+    assertEquals(a.toSet().size() + 2, a.union(b).size());
+    assertEquals(asList(R, EARTH), new ArrayList<>(a.intersect(b)));
+    assertEquals(asList(H, MERCURY), new ArrayList<>(a.minus(b)));
+    assertEquals(asList(H, Ac, MERCURY, MARS), new ArrayList<>(a.xor(b)));
+    assertEquals(a.minus(b), a.intersect(b.complement()));
+    assertEquals(a, a.intersect(a.toBitSet()).union(a.toBigInteger()));
+    assertEquals(MultiEnumBitSet.allOf(Element.class, Planet.class), a.union(a.complement()));
+    assertEquals(a.toBitSet(), BitSetUtilities.asBitSet(a.toBigInteger()));
+    try {
+      a.toLong();
+      fail("toLong() with large domain");
+    } catch (final MoreThan64ElementsException e) {
+      // expected
+    }
+
+    final MultiEnumBitSet c = a.clone();
+    assertNotSame(a, c);
+    assertTrue(c.removeAll(b));
+    assertEquals(a.minus(b), c);
+    assertTrue(c.retainAll(asList(H, "foo")));
+    assertEquals(asList(H), new ArrayList<>(c));
+    assertTrue(c.remove(H));
+    assertFalse(c.remove(H));
+    assertTrue(c.isEmpty());
+    final Iterator<Enum<?>> itr = a.clone().iterator();
+    itr.next();
+    itr.remove();
+
+    final MultiEnumBitSet small = MultiEnumBitSet.noneOf(Planet.class, Alphabet.class);
+    small.add(EARTH);
+    assertEquals(1L << EARTH.ordinal(), small.toLong());
+    assertEquals(1L << EARTH.ordinal() | 1L, small.union(1L).toLong());
+  }
+
+  @Test
+  public void testEqualsAndSerialization() throws Exception {
+    final MultiEnumBitSet a = MultiEnumBitSet.noneOf(Element.class, Planet.class);
+    a.addAll(asList(H, Ac, MARS));
+    final List<Enum<?>> list = new ArrayList<>(a.getDomain());
+    final DomainBitSet<Enum<?>> general = GeneralDomainBitSet.of(list, asList(H, Ac, MARS));
+    assertEquals(general, a);
+    assertEquals(a, general);
+    assertEquals(general.hashCode(), a.hashCode());
+    assertArrayEquals(general.toLongArray(), a.toLongArray());
+    final DomainBitSet<Enum<?>> other = DomainBitSet.createMultiEnumBitSet(Planet.class,
+        Element.class);
+    assertFalse(a.equals(other.union(asList(H, Ac, MARS))));
+
+    final MultiEnumBitSet copy = (MultiEnumBitSet) deserialize(serialize(a));
+    assertEquals(a, copy);
+    assertSame(a.getDomain(), copy.getDomain());
+    assertTrue(copy.add(EARTH));
+  }
+}
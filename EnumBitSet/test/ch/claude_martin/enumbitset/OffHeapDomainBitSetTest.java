@@ -0,0 +1,195 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class OffHeapDomainBitSetTest {
+
+  static final int           SIZE   = 1000;
+  static final List<Integer> domain = IntStream.range(0, SIZE).boxed()
+                                        .collect(Collectors.toList());
+
+  private static BitSet random(final Random rnd) {
+    final BitSet result = new BitSet();
+    for (int i = 0; i < SIZE; i++)
+      if (rnd.nextInt(4) == 0)
+        result.set(i);
+    return result;
+  }
+
+  @Test
+  public void testOperations() {
+    final Random rnd = new Random(5);
+    for (int round = 0; round < 20; round++) {
+      final BitSet a = random(rnd);
+      final BitSet b = random(rnd);
+      try (OffHeapDomainBitSet<Integer> x = OffHeapDomainBitSet.of(domain, a);
+          OffHeapDomainBitSet<Integer> y = OffHeapDomainBitSet.of(domain, b)) {
+        assertEquals(a, x.toBitSet());
+        assertEquals(a.cardinality(), x.size());
+        final BitSet and = (BitSet) a.clone();
+        and.and(b);
+        assertEquals(and, x.intersect(y).toBitSet());
+        final BitSet or = (BitSet) a.clone();
+        or.or(b);
+        assertEquals(or, x.union(y).toBitSet());
+        assertEquals(or, x.union(b).toBitSet());
+        final BitSet andNot = (BitSet) a.clone();
+        andNot.andNot(b);
+        assertEquals(andNot, x.minus(y.toSet()).toBitSet());
+        final BitSet not = (BitSet) a.clone();
+        not.flip(0, SIZE);
+        assertEquals(not, x.complement().toBitSet());
+        assertEquals(a.hashCode() ^ x.getDomain().hashCode(), x.hashCode());
+      }
+    }
+  }
+
+  @Test
+  public void testMutation() {
+    try (OffHeapDomainBitSet<Integer> set = OffHeapDomainBitSet.noneOf(domain)) {
+      assertTrue(set.isEmpty());
+      assertTrue(set.add(3));
+      assertFalse(set.add(3));
+      assertTrue(set.add(999));
+      assertEquals("[3, 999]", set.toString());
+      assertTrue(set.remove(3));
+      assertFalse(set.remove(3));
+      assertFalse(set.remove("foo"));
+      assertFalse(set.setBit(64, true));
+      assertTrue(set.getBit(64));
+      final OffHeapDomainBitSet<Integer> clone = set.clone();
+      assertNotSame(set, clone);
+      assertEquals(set, clone);
+      set.clear();
+      assertTrue(set.isEmpty());
+      assertEquals(2, clone.size());
+      set.copyFrom(new long[] { 0b110L });
+      assertEquals(asList(1, 2), set.stream().collect(Collectors.toList()));
+      try {
+        set.add(SIZE);
+        fail("element out of domain");
+      } catch (final IllegalArgumentException e) {
+        // expected
+      }
+      try {
+        final long[] tooLarge = new long[16];
+        tooLarge[15] = -1L;
+        set.copyFrom(tooLarge);
+        fail("words out of domain");
+      } catch (final IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testChannels() throws Exception {
+    final BitSet bits = random(new Random(9));
+    try (OffHeapDomainBitSet<Integer> set = OffHeapDomainBitSet.of(domain, bits)) {
+      final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+      set.writeTo(Channels.newChannel(bas));
+      final byte[] bytes = bas.toByteArray();
+      assertEquals(16 * 8, bytes.length);
+      assertEquals(bits, BitSet.valueOf(bytes));
+
+      try (OffHeapDomainBitSet<Integer> read = OffHeapDomainBitSet.readFrom(set.getDomain(),
+          Channels.newChannel(new ByteArrayInputStream(bytes)))) {
+        assertEquals(set, read);
+      }
+      try {
+        OffHeapDomainBitSet.readFrom(set.getDomain(), Channels.newChannel(new ByteArrayInputStream(
+            new byte[10])));
+        fail("end of stream");
+      } catch (final EOFException e) {
+        // expected
+      }
+
+      final ByteBuffer view = set.asReadOnlyBuffer();
+      assertTrue(view.isReadOnly());
+      assertEquals(bits.toLongArray()[0], view.getLong(0));
+    }
+  }
+
+  @Test
+  public void testWrap() {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(16 * 8);
+    try (OffHeapDomainBitSet<Integer> set = OffHeapDomainBitSet.wrap(DefaultDomain.of(domain),
+        buffer)) {
+      set.add(65);
+      assertEquals(2L, buffer.order(ByteOrder.LITTLE_ENDIAN).getLong(8));
+      buffer.putLong(0, 1L);
+      assertTrue(set.contains(0));
+      assertEquals(2, set.size());
+    }
+    try {
+      OffHeapDomainBitSet.wrap(DefaultDomain.of(domain), ByteBuffer.allocate(8));
+      fail("wrong size");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testClose() {
+    final OffHeapDomainBitSet<Integer> set = OffHeapDomainBitSet.allOf(domain);
+    assertEquals(SIZE, set.size());
+    assertFalse(set.isClosed());
+    set.close();
+    set.close();
+    assertTrue(set.isClosed());
+    assertEquals("[closed]", set.toString());
+    try {
+      set.size();
+      fail("closed");
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEqualsAndSerialization() throws Exception {
+    try (OffHeapDomainBitSet<Integer> set = OffHeapDomainBitSet.of(domain, asList(1, 500, 999))) {
+      final GeneralDomainBitSet<Integer> g = GeneralDomainBitSet.of(set.getDomain(), set.toSet());
+      assertEquals(set, g);
+      assertEquals(g, set);
+      assertEquals(g.hashCode(), set.hashCode());
+      assertEquals(BitSetUtilities.hashCode(g.toLongArray()), BitSetUtilities.hashCode(set
+          .asReadOnlyBuffer().asLongBuffer()));
+      assertArrayEquals(g.toLongArray(), set.toLongArray());
+
+      final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bas)) {
+        oos.writeObject(set);
+      }
+      try (ObjectInputStream ois = new ObjectInputStream(
+          new ByteArrayInputStream(bas.toByteArray()))) {
+        assertEquals(set, ois.readObject());
+      }
+    }
+  }
+}
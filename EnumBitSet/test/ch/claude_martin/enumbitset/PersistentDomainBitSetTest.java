@@ -0,0 +1,160 @@
+package ch.claude_martin.enumbitset;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class PersistentDomainBitSetTest {
+
+  static final int           SIZE   = 700_000;
+  static final List<Integer> domain = IntStream.range(0, SIZE).boxed()
+                                        .collect(Collectors.toList());
+
+  @Test
+  public void testSharing() {
+    final BitSet bits = new BitSet();
+    for (int i = 0; i < SIZE; i += 3)
+      bits.set(i);
+    final PersistentDomainBitSet<Integer> a = PersistentDomainBitSet.of(domain, bits);
+    final PersistentDomainBitSet<Integer> b = a.unionVarArgs(1);
+    final PersistentDomainBitSet<Integer> c = b.minusVarArgs(SIZE - 1);
+    assertEquals(a.size() + 1, b.size());
+    assertEquals(b.size() - 1, c.size());
+    // only the changed leaves are copied:
+    assertNotSame(a.leaf(0), b.leaf(0));
+    assertSame(a.leaf(5_000), b.leaf(5_000));
+    assertSame(a.leaf(SIZE / 64), b.leaf(SIZE / 64));
+    assertSame(b.leaf(0), c.leaf(0));
+    assertNotSame(b.leaf(SIZE / 64), c.leaf(SIZE / 64));
+    // nothing changes:
+    assertSame(a, a.unionVarArgs(0, 3));
+    assertSame(a, a.minusVarArgs(1, 2));
+    assertSame(a, a.union(a));
+    assertSame(a, a.intersect(a));
+    assertSame(a, a.intersect(b));
+    assertSame(a, a.union(new BitSet()));
+    // operations on two trees keep the chunks of both:
+    final PersistentDomainBitSet<Integer> d = a.minusVarArgs(SIZE - 1);
+    final PersistentDomainBitSet<Integer> union = b.union(d);
+    assertSame(b.leaf(0), union.leaf(0));
+    assertSame(a.leaf(5_000), union.leaf(5_000));
+    assertEquals(a.unionVarArgs(1), union);
+    assertEquals(PersistentDomainBitSet.of(domain, 1, SIZE - 1), b.xor(d));
+    assertTrue(a.minus(a).isEmpty());
+    assertNull(a.minus(a).leaf(0));
+  }
+
+  @Test
+  public void testOperations() {
+    final Random rnd = new Random(47);
+    final List<Integer> small = domain.subList(0, 5_000);
+    final BitSet all = new BitSet();
+    all.set(0, small.size());
+    for (int round = 0; round < 50; round++) {
+      final BitSet a = new BitSet();
+      final BitSet b = new BitSet();
+      for (int i = rnd.nextInt(200); i > 0; i--)
+        a.set(rnd.nextInt(small.size()));
+      for (int i = rnd.nextInt(3_000); i > 0; i--)
+        b.set(rnd.nextInt(small.size()));
+      final PersistentDomainBitSet<Integer> x = PersistentDomainBitSet.of(small, a);
+      final PersistentDomainBitSet<Integer> y = PersistentDomainBitSet.of(small, b);
+      final List<Integer> list = new ArrayList<>(y.toSet());
+      final BitSet and = (BitSet) a.clone();
+      and.and(b);
+      final BitSet or = (BitSet) a.clone();
+      or.or(b);
+      final BitSet andNot = (BitSet) a.clone();
+      andNot.andNot(b);
+      final BitSet not = (BitSet) a.clone();
+      not.xor(all);
+      assertEquals(a, x.toBitSet());
+      assertEquals(a.cardinality(), x.size());
+      assertEquals(and, x.intersect(y).toBitSet());
+      assertEquals(and, x.intersect(b).toBitSet());
+      assertEquals(and, x.intersect(list).toBitSet());
+      assertEquals(or, x.union(y).toBitSet());
+      assertEquals(or, x.union(b).toBitSet());
+      assertEquals(or, x.union(list).toBitSet());
+      assertEquals(andNot, x.minus(y).toBitSet());
+      assertEquals(andNot, x.minus(b).toBitSet());
+      assertEquals(andNot, x.minus(list).toBitSet());
+      assertEquals(not, x.complement().toBitSet());
+      assertEquals(x, x.complement().complement());
+      assertEquals(a.stream().boxed().collect(Collectors.toList()), new ArrayList<>(x.toSet()));
+      for (int i = 0; i < small.size(); i += 11) {
+        assertEquals(a.get(i), x.getBit(i));
+        assertEquals(a.nextSetBit(i), x.nextSetIndex(i));
+      }
+    }
+  }
+
+  @Test
+  public void testSmallDomain() {
+    final List<Integer> d = domain.subList(0, 10);
+    final PersistentDomainBitSet<Integer> a = PersistentDomainBitSet.of(d, 1, 2, 3);
+    assertEquals(0b1110L, a.toLong());
+    assertEquals(PersistentDomainBitSet.of(d, 1), a.intersect(0b11L));
+    assertEquals(PersistentDomainBitSet.of(d, 1, 2, 3, 9), a.union(1L << 9));
+    assertEquals(PersistentDomainBitSet.allOf(d), a.union(a.complement()));
+    assertEquals(10, PersistentDomainBitSet.allOf(d).size());
+    assertEquals("[1, 2, 3]", a.toString());
+    assertSame(a, a.clone());
+    try {
+      a.union(1L << 10);
+      fail("mask out of domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      a.union(asList(10));
+      fail("element out of domain");
+    } catch (final IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testEqualsAndHashCode() throws Exception {
+    final PersistentDomainBitSet<Integer> a = PersistentDomainBitSet.of(domain, 5, 6, 7, 650_000);
+    final AdaptiveDomainBitSet<Integer> adaptive = AdaptiveDomainBitSet.of(domain, a.toBitSet());
+    assertEquals(a, adaptive);
+    assertEquals(adaptive, a);
+    assertEquals(adaptive.hashCode(), a.hashCode());
+    assertArrayEquals(adaptive.toLongArray(), a.toLongArray());
+    assertEquals(a, PersistentDomainBitSet.copyOf(adaptive));
+    assertEquals(a, a.unionVarArgs(8).minusVarArgs(8));
+    assertFalse(a.equals(a.unionVarArgs(8)));
+
+    final ByteArrayOutputStream bas = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bas)) {
+      oos.writeObject(a);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(
+        new ByteArrayInputStream(bas.toByteArray()))) {
+      assertEquals(a, ois.readObject());
+    }
+  }
+}
@@ -25,6 +25,7 @@ import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -425,4 +426,41 @@ public class SmallDomainBitSetTest {
       assertEquals(set, set2);
     }
   }
+
+  @Test
+  public void testRanges() {
+    final Random rnd = new Random(11);
+    for (final int size : new int[] { 0, 10, 64 }) {
+      final List<Integer> domain = new ArrayList<>();
+      for (int i = 0; i < size; i++)
+        domain.add(i);
+      SmallDomainBitSet<Integer> set = noneOf(domain);
+      final BitSet bits = new BitSet();
+      for (int i = 0; i < 200; i++) {
+        final int a = rnd.nextInt(size + 1), b = rnd.nextInt(size + 1);
+        final int from = Math.min(a, b), to = Math.max(a, b);
+        assertEquals(bits.get(from, to).cardinality() == to - from, set.isRangeSet(from, to));
+        assertEquals(bits.get(from, to).isEmpty(), set.isRangeClear(from, to));
+        final SmallDomainBitSet<Integer> before = set;
+        if (i % 3 == 0) {
+          set = set.unionRange(from, to);
+          bits.set(from, to);
+        } else if (i % 3 == 1) {
+          set = set.minusRange(from, to);
+          bits.clear(from, to);
+        } else {
+          set = set.complementRange(from, to);
+          bits.flip(from, to);
+        }
+        assertEquals(bits, set.toBitSet());
+        assertEquals(before.toBitSet().cardinality(), before.size());
+      }
+      try {
+        set.unionRange(0, size + 1);
+        fail("invalid range");
+      } catch (final IndexOutOfBoundsException e) {
+        // expected
+      }
+    }
+  }
 }
@@ -2,6 +2,13 @@ package ch.claude_martin.enumbitset;
 
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Constructor;
+
 public class TestUtilities {
   @FunctionalInterface
   public static interface Failable<E extends Throwable> {
@@ -70,4 +77,42 @@ public class TestUtilities {
   static void expectMT64EE(final String msg, final Failable<MoreThan64ElementsException>... code) {
     expect(MoreThan64ElementsException.class, msg, code);
   }
+
+  /** Runs the given code with the {@link DomainBitSetPool} enabled. Afterwards the pool is disabled
+   * and cleared. */
+  static void withPool(final Failable<Exception> code) throws Exception {
+    DomainBitSetPool.setEnabled(true);
+    try {
+      code.run();
+    } finally {
+      DomainBitSetPool.setEnabled(false);
+      DomainBitSetPool.clear();
+    }
+  }
+
+  /** Serializes the given object. */
+  static byte[] serialize(final Object object) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ObjectOutputStream obj = new ObjectOutputStream(out)) {
+      obj.writeObject(object);
+    }
+    return out.toByteArray();
+  }
+
+  /** Deserializes the given data. */
+  static Object deserialize(final byte[] data) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream obj = new ObjectInputStream(new ByteArrayInputStream(data))) {
+      return obj.readObject();
+    }
+  }
+
+  /** Serializes a new instance of a nested, private class, such as the former serialization proxy
+   * of a class. This creates data in an old serialized form. */
+  static byte[] serializeNested(final Class<?> outer, final String name, final Object... args)
+      throws Exception {
+    final Class<?> nested = Class.forName(outer.getName() + '$' + name);
+    final Constructor<?> constructor = nested.getDeclaredConstructors()[0];
+    constructor.setAccessible(true);
+    return serialize(constructor.newInstance(args));
+  }
 }
@@ -0,0 +1,162 @@
+package ch.claude_martin.enumbitset.processor;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import ch.claude_martin.enumbitset.DomainBitSet;
+import ch.claude_martin.enumbitset.EnumBitSet;
+import ch.claude_martin.enumbitset.MoreThan64ElementsException;
+import ch.claude_martin.enumbitset.annotations.SuppressFBWarnings;
+
+@SuppressFBWarnings("static-method")
+public class GenerateBitSetProcessorTest {
+
+  private static ClassLoader loader;
+
+  @BeforeClass
+  public static void compile() throws IOException {
+    final Path dir = Files.createTempDirectory("GenerateBitSetProcessorTest");
+    final Path pkg = Files.createDirectories(dir.resolve("gen"));
+    final String big = IntStream.range(0, 70).mapToObj(i -> "C" + i)
+        .collect(Collectors.joining(", "));
+    final Path small = write(pkg.resolve("Permission.java"), "package gen;\n"
+        + "@ch.claude_martin.enumbitset.annotations.GenerateBitSet("
+        + "combinations = { \"READ_WRITE=READ,WRITE\" })\n"
+        + "public enum Permission implements ch.claude_martin.enumbitset.EnumBitSetHelper"
+        + "<Permission> { READ, WRITE, EXECUTE, DELETE }\n");
+    final Path large = write(pkg.resolve("Large.java"), "package gen;\n"
+        + "@ch.claude_martin.enumbitset.annotations.GenerateBitSet("
+        + "name = \"LargeSet\", combinations = { \"EDGES=C0,C69\" })\n"
+        + "public enum Large implements ch.claude_martin.enumbitset.EnumBitSetHelper<Large> { "
+        + big + " }\n");
+    // The mask of the constant ALL is ALL_MASK:
+    final Path scope = write(pkg.resolve("Scope.java"), "package gen;\n"
+        + "@ch.claude_martin.enumbitset.annotations.GenerateBitSet\n"
+        + "public enum Scope implements ch.claude_martin.enumbitset.EnumBitSetHelper<Scope> { "
+        + "SOME, ALL, ALL_ALL }\n");
+
+    final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    assertNotNull("A JDK is required to run this test.", javac);
+    final List<String> args = new ArrayList<>(asList("-d", dir.toString(), "-s", dir.toString(),
+        "-cp", System.getProperty("java.class.path"), "-processor",
+        GenerateBitSetProcessor.class.getName()));
+    args.add(small.toString());
+    args.add(large.toString());
+    args.add(scope.toString());
+    final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    final int result = javac.run(null, err, err, args.toArray(new String[args.size()]));
+    assertEquals(err.toString(), 0, result);
+    loader = new URLClassLoader(new URL[] { dir.toUri().toURL() },
+        GenerateBitSetProcessorTest.class.getClassLoader());
+    assertTrue(new File(dir.toFile(), "gen/PermissionBitSet.java").exists());
+  }
+
+  private static Path write(final Path path, final String code) throws IOException {
+    return Files.write(path, code.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static DomainBitSet field(final String type, final String name) throws Exception {
+    return (DomainBitSet) loader.loadClass(type).getField(name).get(null);
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testSmall() throws Exception {
+    final Class enumType = loader.loadClass("gen.Permission");
+    final Class setType = loader.loadClass("gen.PermissionBitSet");
+    final DomainBitSet none = field("gen.PermissionBitSet", "NONE");
+    final DomainBitSet all = field("gen.PermissionBitSet", "ALL");
+    final DomainBitSet rw = field("gen.PermissionBitSet", "READ_WRITE");
+    final Object[] constants = enumType.getEnumConstants();
+
+    assertEquals(0, none.size());
+    assertEquals(4, all.size());
+    assertEquals(0b0011L, rw.toLong());
+    assertEquals(0b1111L, setType.getField("ALL_MASK").getLong(null));
+    assertEquals(0b0100L, setType.getField("EXECUTE_MASK").getLong(null));
+    assertEquals(asList(constants), all.getDomain());
+
+    assertTrue(rw.contains(constants[0]));
+    assertFalse(rw.contains(constants[2]));
+    assertTrue(rw.getBit(1));
+    assertEquals(rw.complement(), all.minus(rw));
+    assertEquals(rw, none.union(asList(constants[0], constants[1])));
+    assertSame(all, all.complement().complement());
+
+    final Method with = setType.getMethod("with", enumType);
+    final DomainBitSet rwx = (DomainBitSet) with.invoke(rw, constants[2]);
+    assertEquals(0b0111L, rwx.toLong());
+    assertEquals("[READ, WRITE, EXECUTE]", rwx.toString());
+
+    // Equal to other implementations with the same domain:
+    final EnumBitSet enumBitSet = EnumBitSet.asEnumBitSet(0b0111L, enumType);
+    assertEquals(enumBitSet, rwx);
+    assertEquals(rwx, enumBitSet);
+    assertEquals(enumBitSet.hashCode(), rwx.hashCode());
+    assertEquals(enumBitSet.toSet(), rwx.toSet());
+  }
+
+  @SuppressWarnings({ "rawtypes" })
+  @Test
+  public void testConstantNamedAll() throws Exception {
+    final Class setType = loader.loadClass("gen.ScopeBitSet");
+    assertEquals(0b010L, setType.getField("ALL_MASK").getLong(null));
+    assertEquals(0b100L, setType.getField("ALL_ALL_MASK").getLong(null));
+    assertEquals(0b111L, setType.getField("ALL_ALL_ALL_MASK").getLong(null));
+    final DomainBitSet all = field("gen.ScopeBitSet", "ALL");
+    assertEquals(0b111L, all.toLong());
+    assertSame(all, field("gen.ScopeBitSet", "NONE").complement());
+  }
+
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @Test
+  public void testLarge() throws Exception {
+    final Class enumType = loader.loadClass("gen.Large");
+    final DomainBitSet none = field("gen.LargeSet", "NONE");
+    final DomainBitSet all = field("gen.LargeSet", "ALL");
+    final DomainBitSet edges = field("gen.LargeSet", "EDGES");
+    final Object[] constants = enumType.getEnumConstants();
+
+    assertEquals(0, none.size());
+    assertEquals(70, all.size());
+    assertEquals(2, edges.size());
+    assertTrue(edges.getBit(69));
+    assertTrue(edges.contains(constants[0]));
+    assertEquals(68, edges.complement().size());
+    assertEquals(all, edges.union(edges.complement()));
+    assertEquals(none, edges.intersect(edges.complement()));
+    assertEquals(edges.toBitSet(), EnumBitSet.asEnumBitSet(edges.toBitSet(), enumType).toBitSet());
+    assertEquals(EnumBitSet.asEnumBitSet(edges.toBitSet(), enumType), edges);
+    try {
+      edges.toLong();
+      throw new AssertionError("toLong() should fail");
+    } catch (final MoreThan64ElementsException e) {
+      assertSame(enumType, e.getType());
+    }
+  }
+}